@@ -26,6 +26,7 @@ import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.Port;
 import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.memory.MemProfile;
 import com.cburch.logisim.tools.MenuExtender;
 import com.cburch.logisim.tools.key.BitWidthConfigurator;
 import com.cburch.logisim.tools.key.JoinedConfigurator;
@@ -44,7 +45,7 @@ abstract class Mem extends InstanceFactory {
 	public static final Attribute<BitWidth> ADDR_ATTR = Attributes.forBitWidth(
 			"addrWidth", Strings.getter("ramAddrWidthAttr"), 2, 24);
 	public static final Attribute<BitWidth> DATA_ATTR = Attributes.forBitWidth(
-			"dataWidth", Strings.getter("ramDataWidthAttr"));
+			"dataWidth", Strings.getter("ramDataWidthAttr"), 1, 32);
 	
 	// port-related constants
 	static final int DATA = 0;
@@ -63,7 +64,7 @@ abstract class Mem extends InstanceFactory {
 		setInstancePoker(MemPoker.class);
 		setKeyConfigurator(JoinedConfigurator.create(
 				new BitWidthConfigurator(ADDR_ATTR, 2, 24, 0),
-				new BitWidthConfigurator(DATA_ATTR)));
+				new BitWidthConfigurator(DATA_ATTR, 1, 32)));
 
 		setOffsetBounds(Bounds.create(-140, -40, 140, 80));
 	}
@@ -158,11 +159,31 @@ abstract class Mem extends InstanceFactory {
 	
 	public void loadImage(InstanceState instanceState, File imageFile)
 			throws IOException { 
-		MemState s = this.getState(instanceState);
-		HexFile.open(s.getContents(), imageFile);
+		MemContents contents = this.getState(instanceState).getContents();
+		if (HexFile.getImageFormat(imageFile) == HexFile.FORMAT_BINARY) {
+			contents.mapImage(imageFile);
+		} else {
+			HexFile.open(contents, imageFile);
+		}
 		this.setCurrentImage(instanceState.getInstance(), imageFile);
 	}
 
+	/** Returns the profile of the accesses that the simulator has made to
+	 * the memory in the given state, or null if it is not being profiled. */
+	public MemProfile getProfile(Instance instance, CircuitState state) {
+		MemState s = getState(instance, state);
+		return s == null ? null : s.getProfile();
+	}
+
+	/** Starts counting the accesses to the memory in the given state,
+	 * discarding any earlier profile, or stops counting them. */
+	public void setProfiled(Instance instance, CircuitState state,
+			boolean value) {
+		MemState s = getState(instance, state);
+		if (s == null) return;
+		s.setProfile(value ? new MemProfile(s.getAddrBits()) : null);
+	}
+
 	@Override
 	protected Object getInstanceFeature(Instance instance, Object key) {
 		if (key == MenuExtender.class) return new MemMenu(this, instance);
@@ -3,6 +3,8 @@
 
 package cake.ram2;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 
 import com.cburch.hex.HexModel;
@@ -23,6 +25,8 @@ class MemContents implements Cloneable, HexModel {
 	private int addrBits;
 	private int mask;
 	private MemContentsSub.ContentsInterface[] pages;
+	private boolean[] pageShared; // whether a page is also used by a clone
+	private MemImage image = null; // the file that unwritten pages read from
 	
 	private MemContents(int addrBits, int width) {
 		listeners = null;
@@ -72,12 +76,10 @@ class MemContents implements Cloneable, HexModel {
 		try {
 			MemContents ret = (MemContents) super.clone();
 			ret.listeners = null;
-			ret.pages = new MemContentsSub.ContentsInterface[this.pages.length];
-			for (int i = 0; i < ret.pages.length; i++) {
-				if (this.pages[i] != null) {
-					ret.pages[i] = this.pages[i].clone();
-				}
-			}
+			// the pages are shared until either copy writes into them
+			ret.pages = this.pages.clone();
+			Arrays.fill(this.pageShared, true);
+			ret.pageShared = this.pageShared.clone();
 			return ret;
 		} catch (CloneNotSupportedException ex) { return this; }
 	}
@@ -110,9 +112,7 @@ class MemContents implements Cloneable, HexModel {
 		int old = pages[page] == null ? 0 : pages[page].get(offs) & mask;
 		int val = value & mask;
 		if (old != val) {
-			if (pages[page] == null) {
-				pages[page] = MemContentsSub.createContents(PAGE_SIZE, width);
-			}
+			ensurePage(page);
 			pages[page].set(offs, val);
 			fireBytesChanged(addr, 1, new int[] { old });
 		}
@@ -149,7 +149,7 @@ class MemContents implements Cloneable, HexModel {
 					int[] oldValues = page.get(startOffs, vals.length);
 					page.load(startOffs, vals, mask);
 					if (page.isClear()) pages[pageStart] = null;
-					fireBytesChanged(start, PAGE_SIZE - pageStart, oldValues);
+					fireBytesChanged(start, PAGE_SIZE - startOffs, oldValues);
 				}
 				nextOffs = vals.length;
 			}
@@ -163,14 +163,16 @@ class MemContents implements Cloneable, HexModel {
 						if ((values[offs + j] & mask) != 0) { allZeroes = false; break; }
 					}
 					if (!allZeroes) {
-						page = MemContentsSub.createContents(PAGE_SIZE, width);
-						pages[i] = page;
+						ensurePage(i);
+						page = pages[i];
 					}
 				}
 				if (page != null) {
 					System.arraycopy(values, offs, vals, 0, PAGE_SIZE);
-					if (!page.matches(vals, startOffs, mask)) {
+					if (!page.matches(vals, 0, mask)) {
 						int[] oldValues = page.get(0, PAGE_SIZE);
+						ensurePage(i);
+						page = pages[i];
 						page.load(0, vals, mask);
 						if (page.isClear()) pages[i] = null;
 						fireBytesChanged((long) i << PAGE_SIZE_BITS, PAGE_SIZE, oldValues);
@@ -182,7 +184,7 @@ class MemContents implements Cloneable, HexModel {
 				vals = new int[endOffs + 1];
 				System.arraycopy(values, offs, vals, 0, endOffs + 1);
 				MemContentsSub.ContentsInterface page = pages[pageEnd];
-				if (!page.matches(vals, startOffs, mask)) {
+				if (!page.matches(vals, 0, mask)) {
 					int[] oldValues = page.get(0, endOffs + 1);
 					page.load(0, vals, mask);
 					if (page.isClear()) pages[pageEnd] = null;
@@ -227,7 +229,7 @@ class MemContents implements Cloneable, HexModel {
 						int[] oldValues = page.get(startOffs, vals.length);
 						page.load(startOffs, vals, mask);
 						if (value == 0 && page.isClear()) pages[pageStart] = null;
-						fireBytesChanged(start, PAGE_SIZE - pageStart, oldValues);
+						fireBytesChanged(start, PAGE_SIZE - startOffs, oldValues);
 					}
 				}
 			}
@@ -254,6 +256,7 @@ class MemContents implements Cloneable, HexModel {
 					// nothing to do
 				} else {
 					ensurePage(pageEnd);
+					page = pages[pageEnd];
 					int[] vals = new int[endOffs + 1];
 					Arrays.fill(vals, value);
 					if (!page.matches(vals, 0, mask)) {
@@ -302,6 +305,7 @@ class MemContents implements Cloneable, HexModel {
 		if (addrBits < PAGE_SIZE_BITS) { pageCount = 1; pageLength = 1 << addrBits; }
 		else { pageCount = 1 << (addrBits - PAGE_SIZE_BITS); pageLength = PAGE_SIZE; }
 		pages = new MemContentsSub.ContentsInterface[pageCount];
+		pageShared = new boolean[pageCount];
 		if (oldPages != null) {
 			int n = Math.min(oldPages.length, pages.length);
 			for (int i = 0; i < n; i++) {
@@ -317,9 +321,74 @@ class MemContents implements Cloneable, HexModel {
 		if (pageCount == 0 && pages[0] == null) {
 			pages[0] = MemContentsSub.createContents(pageLength, width);
 		}
+		image = null; // the pages were all copied
 		fireMetainfoChanged();
 	}
 
+	//
+	// memory-mapped images
+	//
+	File getImageFile() {
+		return image == null ? null : image.getFile();
+	}
+
+	/** Replaces the contents with a raw image file, which is mapped into
+	 * memory rather than read. Each page reads from the file until it is
+	 * first written; saveImage writes the changed values back. The caller
+	 * holds the propagator of any simulation reading the memory, since the
+	 * pages are replaced. */
+	void mapImage(File file) throws IOException {
+		MemImage img = MemImage.map(file, width, getLastOffset() + 1);
+		int pageLength = getPageLength();
+		for (int i = 0; i < pages.length; i++) {
+			long start = (long) i << PAGE_SIZE_BITS;
+			pages[i] = start < img.getLength() ? img.createPage(start, pageLength) : null;
+		}
+		Arrays.fill(pageShared, false);
+		image = img;
+		// the values before are not worth keeping just for the listeners
+		fireBytesChanged(0, getLastOffset() + 1, null);
+	}
+
+	/** Writes the values back into the image file they were mapped from,
+	 * if any has changed, after which the pages read from the file again.
+	 * The file keeps its length, except that it grows just far enough to
+	 * hold any values past its end that are not 0. Clones reading the
+	 * file before keep the values they had. As with mapImage, the caller
+	 * holds the propagator. */
+	void saveImage() throws IOException {
+		if (image == null) return;
+		long length = image.getLength();
+		boolean changed = false;
+		for (int i = 0; i < pages.length; i++) {
+			MemContentsSub.ContentsInterface page = pages[i];
+			long start = (long) i << PAGE_SIZE_BITS;
+			if (page == null ? start < length : page.getImage() != image) {
+				changed = true;
+				for (int j = page == null ? -1 : page.getLength() - 1;
+						j >= 0 && start + j >= length; j--) {
+					if ((page.get(j) & mask) != 0) {
+						length = start + j + 1;
+						break;
+					}
+				}
+			}
+		}
+		if (!changed) return;
+		int pageLength = getPageLength();
+		MemImage img = image.write(pages, pageLength, length);
+		for (int i = 0; i < pages.length; i++) {
+			long start = (long) i << PAGE_SIZE_BITS;
+			pages[i] = start < length ? img.createPage(start, pageLength) : null;
+		}
+		Arrays.fill(pageShared, false);
+		image = img;
+	}
+
+	private int getPageLength() {
+		return addrBits < PAGE_SIZE_BITS ? 1 << addrBits : PAGE_SIZE;
+	}
+
 	public long getFirstOffset() {
 		return 0;
 	}
@@ -332,9 +401,14 @@ class MemContents implements Cloneable, HexModel {
 		return width;
 	}
 	
+	/** Makes the page one of its own, ready for writing. */
 	private void ensurePage(int index) {
 		if (pages[index] == null) {
 			pages[index] = MemContentsSub.createContents(PAGE_SIZE, width);
+			pageShared[index] = false;
+		} else if (pageShared[index]) {
+			pages[index] = pages[index].clone();
+			pageShared[index] = false;
 		}
 	}
 }
@@ -3,6 +3,7 @@
 
 package cake.ram2;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 class MemContentsSub {
@@ -29,6 +30,12 @@ class MemContentsSub {
 		abstract void clear();
 		abstract void load(int start, int[] values, int mask);
 
+		/** Returns the image that the page reads its values from, or null
+		 * if it holds them itself. */
+		MemImage getImage() {
+			return null;
+		}
+
 		boolean matches(int[] values, int start, int mask) {
 			for (int i = 0; i < values.length; i++) {
 				if (get(start + i) != (values[i] & mask)) return false;
@@ -201,8 +208,83 @@ class MemContentsSub {
 		void load(int start, int[] values, int mask) {
 			int n = Math.min(values.length, data.length - start);
 			for (int i = 0; i < n; i++) {
-				data[i] = values[i] & mask;
+				data[start + i] = values[i] & mask;
+			}
+		}
+	}
+
+	/** A page reading from a mapped image. The page copies its values
+	 * onto the heap when it is first written, so that the image, which
+	 * other memories may also read, stays as it is. */
+	static class MappedContents extends ContentsInterface {
+		private MemImage image;
+		private int index; // the page's index in the image
+		private int bytesPerValue;
+		private int length;
+		private int width;
+		private ContentsInterface written = null; // the values once written
+
+		MappedContents(MemImage image, int index, int bytesPerValue,
+				int length, int width) {
+			this.image = image;
+			this.index = index;
+			this.bytesPerValue = bytesPerValue;
+			this.length = length;
+			this.width = width;
+		}
+
+		@Override
+		public MappedContents clone() {
+			MappedContents ret = (MappedContents) super.clone();
+			if (written != null) ret.written = written.clone();
+			return ret;
+		}
+
+		@Override
+		MemImage getImage() {
+			return written == null ? image : null;
+		}
+
+		@Override
+		int getLength() {
+			return length;
+		}
+
+		@Override
+		int get(int addr) {
+			if (written != null) return written.get(addr);
+			ByteBuffer buffer = image.getSlice(index);
+			int pos = addr * bytesPerValue;
+			if (addr < 0 || pos + bytesPerValue > buffer.limit()) return 0;
+			switch (bytesPerValue) {
+			case 1: return buffer.get(pos);
+			case 2: return buffer.getShort(pos);
+			default: return buffer.getInt(pos);
+			}
+		}
+
+		@Override
+		void set(int addr, int value) {
+			getWritten().set(addr, value);
+		}
+
+		@Override
+		void clear() {
+			written = createContents(length, width);
+		}
+
+		@Override
+		void load(int start, int[] values, int mask) {
+			getWritten().load(start, values, mask);
+		}
+
+		private ContentsInterface getWritten() {
+			if (written == null) {
+				ContentsInterface copy = createContents(length, width);
+				copy.load(0, get(0, length), -1);
+				written = copy;
 			}
+			return written;
 		}
 	}
 }
@@ -10,6 +10,7 @@ import com.cburch.hex.HexModel;
 import com.cburch.hex.HexModelListener;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.instance.InstanceData;
+import com.cburch.logisim.std.memory.MemProfile;
 import com.cburch.logisim.util.GraphicsUtil;
 import com.cburch.logisim.util.StringUtil;
 
@@ -33,6 +34,7 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
 	private long curScroll = 0;
 	private long cursorLoc = -1;
 	private long curAddr = -1;
+	private MemProfile profile = null;
 
 	MemState(MemContents contents) {
 		this.contents = contents;
@@ -46,6 +48,7 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
 			MemState ret = (MemState) super.clone();
 			ret.contents = contents.clone();
 			ret.contents.addHexModelListener(ret);
+			ret.profile = null;
 			return ret;
 		} catch (CloneNotSupportedException e) { return null; }
 	}
@@ -80,6 +83,17 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
 		return contents;
 	}
 
+	//
+	// methods for accessing the access profile
+	//
+	MemProfile getProfile() {
+		return profile;
+	}
+
+	void setProfile(MemProfile value) {
+		profile = value;
+	}
+
 	//
 	// methods for accessing data within memory
 	//
@@ -6,7 +6,9 @@ package cake.ram2;
 import java.awt.Color;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 
+import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeEvent;
@@ -19,6 +21,7 @@ import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LogisimFile;
 import com.cburch.logisim.gui.hex.HexFrame;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceData;
@@ -36,12 +39,14 @@ import java.awt.event.MouseListener;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import java.util.WeakHashMap;
 import javax.swing.JLabel;
-import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.main.Frame;
+import com.cburch.logisim.std.memory.MemContentsCodec;
+import com.cburch.logisim.std.memory.MemProfile;
 
 public class Ram extends Mem {
 	
@@ -180,7 +185,10 @@ public class Ram extends Mem {
 		RamState myState = (RamState) state.getData();
 		if (myState == null) {
 			MemContents contents = getMemContents(state.getInstance());
-			myState = new RamState(instance, contents, new MemListener(instance));
+			RamJournal journal = persist && state.isCircuitRoot()
+				? getJournal(instance, state.getProject()) : null;
+			myState = new RamState(instance, contents, new MemListener(instance),
+					journal);
 			state.setData(myState);
 		}
 		//else if (myState == null) {
@@ -206,7 +214,10 @@ public class Ram extends Mem {
 		RamState myState = (RamState) instance.getData(state);
 		if (myState == null) {
 			MemContents contents = getMemContents(instance);
-			myState = new RamState(instance, contents, new MemListener(instance));
+			RamJournal journal = persist && !state.isSubstate()
+				? getJournal(instance, state.getProject()) : null;
+			myState = new RamState(instance, contents, new MemListener(instance),
+					journal);
 			instance.setData(state, myState);
 		}
 		//else if(myState == null){
@@ -222,6 +233,32 @@ public class Ram extends Mem {
 		return myState;
 	}
 
+	// Retrieves the journal keeping the contents of a persistent RAM, in
+	// a file named for the project, the RAM's circuit and its location;
+	// a project that has not been saved has nowhere to keep them
+	private static RamJournal getJournal(Instance instance, Project proj) {
+		LogisimFile lib = proj == null ? null : proj.getLogisimFile();
+		File main = lib == null ? null : lib.getLoader().getMainFile();
+		if (main == null) return null;
+		String circName = null;
+		for (Circuit circ : lib.getCircuits()) {
+			if (circ.contains(Instance.getComponentFor(instance))) {
+				circName = circ.getName();
+				break;
+			}
+		}
+		if (circName == null) return null;
+		StringBuilder name = new StringBuilder(main.getName()).append('.');
+		for (int i = 0; i < circName.length(); i++) {
+			char c = circName.charAt(i);
+			name.append(Character.isLetterOrDigit(c) ? c : '_');
+		}
+		Location loc = instance.getLocation();
+		name.append('@').append(loc.getX()).append(',').append(loc.getY())
+			.append(".ram");
+		return RamJournal.get(new File(main.getParentFile(), name.toString()));
+	}
+
 	MemContents getMemContents(Instance instance) {
 		return instance.getAttributeValue(CONTENTS_ATTR);
 	}
@@ -251,6 +288,8 @@ public class Ram extends Mem {
 		Value addrValue = state.getPort(ADDR);
 		boolean chipSelect = state.getPort(CS) != Value.FALSE;
 		boolean triggered = asynch || ramState.setClock(state.getPort(CLK), StdAttr.TRIG_RISING);
+		MemProfile profile = myState.getProfile();
+		if (profile != null && triggered && !asynch) profile.recordCycle();
 		boolean outputEnabled = state.getPort(OE) != Value.FALSE;
 		boolean shouldClear = state.getPort(CLR) == Value.TRUE;
 		
@@ -298,6 +337,15 @@ public class Ram extends Mem {
 				}
 				myState.getContents().set(addr, dataValue.toIntValue());
 			}
+			if (profile != null) {
+				if (shouldStore) profile.recordWrite(addr);
+				if (rw) {
+					// reads go through the second address port
+					if (outputEnabled) profile.recordRead(state.getPort(DADD).toIntValue());
+				} else if (!shouldStore && outputEnabled) {
+					profile.recordRead(addr);
+				}
+			}
 		}
 
 		if (outputEnabled) {
@@ -372,16 +420,19 @@ public class Ram extends Mem {
 
 		@Override
 		public String toStandardString(MemContents state) {
-			int addr = state.getLogLength();
-			int data = state.getWidth();
 			StringWriter ret = new StringWriter();
-			ret.write("addr/data: " + addr + " " + data + "\n");
 			try {
-				HexFile.save(ret, state);
+				writeStandardString(ret, state);
 			} catch (IOException e) { }
 			return ret.toString();
 		}
 
+		@Override
+		public void writeStandardString(Writer out, MemContents state)
+				throws IOException {
+			MemContentsCodec.writeContents(out, state);
+		}
+
 		@Override
 		public MemContents parse(String value) {
 			int lineBreak = value.indexOf('\n');
@@ -393,8 +444,9 @@ public class Ram extends Mem {
 				if (!header.equals("addr/data:")) return null;
 				int addr = Integer.parseInt(toks.nextToken());
 				int data = Integer.parseInt(toks.nextToken());
+				String format = toks.hasMoreTokens() ? toks.nextToken() : null;
 				MemContents ret = MemContents.create(addr, data);
-				HexFile.open(ret, new StringReader(rest));
+				MemContentsCodec.readContents(new StringReader(rest), ret, format);
 				return ret;
 			} catch (IOException e) {
 				return null;
@@ -439,16 +491,20 @@ public class Ram extends Mem {
 			implements InstanceData, AttributeListener {
 		private Instance parent;
 		private MemListener listener;
+		private RamJournal journal;
 		private HexFrame hexFrame = null;
 		private ClockState clockState;
 
-		RamState(Instance parent, MemContents contents, MemListener listener) {
+		RamState(Instance parent, MemContents contents, MemListener listener,
+				RamJournal journal) {
 			super(contents);
 			this.parent = parent;
 			this.listener = listener;
+			this.journal = journal;
 			this.clockState = new ClockState();
 			if (parent != null) parent.getAttributeSet().addAttributeListener(this);
 			contents.addHexModelListener(listener);
+			if (journal != null) journal.restore(contents);
 		}
 		
 		void setRam(Instance value) {
@@ -464,6 +520,12 @@ public class Ram extends Mem {
 			ret.parent = null;
 			ret.clockState = this.clockState.clone();
 			ret.getContents().addHexModelListener(listener);
+			// the simulation continues with the copy, so the journal
+			// follows it
+			if (journal != null) {
+				journal.follow(ret.getContents());
+				this.journal = null;
+			}
 			return ret;
 		}
 		
@@ -9,6 +9,7 @@ import java.awt.event.MouseListener;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import java.util.WeakHashMap;
@@ -20,7 +21,6 @@ import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
-import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.hex.HexFrame;
 import com.cburch.logisim.gui.main.Frame;
 import com.cburch.logisim.instance.Instance;
@@ -40,6 +40,8 @@ import com.cburch.logisim.instance.InstanceData;
 import com.cburch.logisim.instance.InstanceLogger;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.memory.MemContentsCodec;
+import com.cburch.logisim.std.memory.MemProfile;
 import java.awt.Color;
 
 public class Ram2 extends Mem {
@@ -184,6 +186,8 @@ public class Ram2 extends Mem {
 		boolean chipSelect = state.getPort(CS) != Value.FALSE;
 		
 		boolean triggered = asynch || clockState.updateClock(state.getPort(CLK), StdAttr.TRIG_RISING);
+		MemProfile profile = myState.getProfile();
+		if (profile != null && triggered && !asynch) profile.recordCycle();
 		boolean outputEnabled = state.getPort(OE) != Value.FALSE;
 		boolean shouldClear = state.getPort(CLR) == Value.TRUE;
 		
@@ -215,6 +219,10 @@ public class Ram2 extends Mem {
 				Value dataValue = state.getPort(separate ? DIN : DATA);
 				myState.getContents().set(addr, dataValue.toIntValue());
 			}
+			if (profile != null) {
+				if (shouldStore) profile.recordWrite(addr);
+				else if (outputEnabled) profile.recordRead(addr);
+			}
 		}
 
 		if (outputEnabled) {
@@ -259,16 +267,19 @@ public class Ram2 extends Mem {
 
 		@Override
 		public String toStandardString(MemContents state) {
-			int addr = state.getLogLength();
-			int data = state.getWidth();
 			StringWriter ret = new StringWriter();
-			ret.write("addr/data: " + addr + " " + data + "\n");
 			try {
-				HexFile.save(ret, state);
+				writeStandardString(ret, state);
 			} catch (IOException e) { }
 			return ret.toString();
 		}
 
+		@Override
+		public void writeStandardString(Writer out, MemContents state)
+				throws IOException {
+			MemContentsCodec.writeContents(out, state);
+		}
+
 		@Override
 		public MemContents parse(String value) {
 			int lineBreak = value.indexOf('\n');
@@ -280,8 +291,9 @@ public class Ram2 extends Mem {
 				if (!header.equals("addr/data:")) return null;
 				int addr = Integer.parseInt(toks.nextToken());
 				int data = Integer.parseInt(toks.nextToken());
+				String format = toks.hasMoreTokens() ? toks.nextToken() : null;
 				MemContents ret = MemContents.create(addr, data);
-				HexFile.open(ret, new StringReader(rest));
+				MemContentsCodec.readContents(new StringReader(rest), ret, format);
 				return ret;
 			} catch (IOException e) {
 				return null;
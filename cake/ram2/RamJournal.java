@@ -0,0 +1,314 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package cake.ram2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.StringTokenizer;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.cburch.hex.HexModel;
+import com.cburch.hex.HexModelListener;
+import com.cburch.logisim.std.memory.MemContentsCodec;
+
+/** Keeps the contents of a persistent RAM in a file beside the project,
+ * so that writes made by a long simulation survive restarting Logisim
+ * without waiting for the whole project to be saved. The file holds a
+ * snapshot of the contents, in the format of the RAM's contents
+ * attribute, and a second file alongside it, with ".journal" appended to
+ * its name, records each write made since the snapshot.
+ *
+ * The simulator only appends each write to a buffer in memory; a
+ * background thread moves the buffer into the journal a few times each
+ * second. Once the journal outgrows the snapshot, the thread changing the
+ * contents takes a copy of them, and the background thread writes it out
+ * as the new snapshot and empties the journal. */
+class RamJournal implements HexModelListener {
+	private static final long FLUSH_MILLIS = 500;
+	// the journal is compacted once it is at least this long and also
+	// longer than the snapshot
+	private static final long MIN_COMPACT_BYTES = 1 << 20;
+	// larger edits are saved by writing a new snapshot
+	private static final int MAX_RECORDED_CHANGE = 256;
+
+	private static HashMap<File,RamJournal> journals
+		= new HashMap<File,RamJournal>();
+	private static Timer timer = null;
+
+	/** Returns the journal kept in the given file. Should several RAMs
+	 * name the same file, the one most recently restored is kept. */
+	static synchronized RamJournal get(File file) {
+		try {
+			file = file.getCanonicalFile();
+		} catch (IOException e) { }
+		RamJournal ret = journals.get(file);
+		if (ret == null) {
+			ret = new RamJournal(file);
+			journals.put(file, ret);
+			if (timer == null) {
+				timer = new Timer("RamJournal", true);
+				timer.schedule(new TimerTask() {
+					@Override
+					public void run() { flushAll(); }
+				}, FLUSH_MILLIS, FLUSH_MILLIS);
+				Runtime.getRuntime().addShutdownHook(new Thread() {
+					@Override
+					public void run() { flushAll(); }
+				});
+			}
+		}
+		return ret;
+	}
+
+	private static void flushAll() {
+		ArrayList<RamJournal> all;
+		synchronized (RamJournal.class) {
+			all = new ArrayList<RamJournal>(journals.values());
+		}
+		for (RamJournal journal : all) journal.flush();
+	}
+
+	private File file;
+	private File journalFile;
+	private MemContents contents = null;
+
+	// guarded by this: the writes not yet in the journal, and a copy of
+	// the contents waiting to be written as the new snapshot
+	private int[] buffer = new int[1024];
+	private int bufferLength = 0;
+	private MemContents pendingSnapshot = null;
+	private int[] pendingRecords = null;
+	private int pendingLength = 0;
+	private volatile boolean snapshotWanted = false;
+
+	// guarded by ioLock
+	private Object ioLock = new Object();
+	private DataOutputStream journalOut = null;
+	private long journalLength;
+	private long snapshotLength;
+	private boolean failed = false;
+
+	private RamJournal(File file) {
+		this.file = file;
+		this.journalFile = new File(file.getPath() + ".journal");
+		this.journalLength = journalFile.length();
+		this.snapshotLength = file.length();
+	}
+
+	/** Loads the saved contents into a memory, which this journal then
+	 * keeps. Saved contents of other dimensions are ignored. */
+	void restore(MemContents dst) {
+		synchronized (this) {
+			if (contents == dst) return;
+		}
+		flush();
+		synchronized (ioLock) {
+			try {
+				readSnapshot(dst);
+				replayJournal(dst);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+		follow(dst);
+	}
+
+	/** Switches the journal over to a copy of the memory it keeps, which
+	 * the simulation continues with; the copy must hold the same values. */
+	void follow(MemContents dst) {
+		synchronized (this) {
+			contents = dst;
+		}
+		dst.addHexModelListener(this);
+	}
+
+	public void metainfoChanged(HexModel source) {
+		synchronized (this) {
+			if (source == contents) takeSnapshot();
+		}
+	}
+
+	public void bytesChanged(HexModel source, long start, long numBytes,
+			int[] oldValues) {
+		synchronized (this) {
+			if (source != contents) return;
+			if (numBytes > MAX_RECORDED_CHANGE) {
+				takeSnapshot();
+			} else {
+				for (int i = 0; i < numBytes; i++) {
+					append((int) (start + i), contents.get(start + i));
+				}
+				if (snapshotWanted) takeSnapshot();
+			}
+		}
+	}
+
+	private void append(int addr, int value) {
+		if (bufferLength + 2 > buffer.length) {
+			int[] old = buffer;
+			buffer = new int[2 * old.length];
+			System.arraycopy(old, 0, buffer, 0, bufferLength);
+		}
+		buffer[bufferLength] = addr;
+		buffer[bufferLength + 1] = value;
+		bufferLength += 2;
+	}
+
+	// called while holding this, on the thread that changes the contents
+	private void takeSnapshot() {
+		snapshotWanted = false;
+		pendingSnapshot = contents.clone();
+		// the writes so far are in the snapshot, but they still go into
+		// the journal first in case writing the snapshot fails
+		if (pendingRecords == null) {
+			pendingRecords = buffer;
+			pendingLength = bufferLength;
+		} else {
+			int[] old = pendingRecords;
+			pendingRecords = new int[pendingLength + bufferLength];
+			System.arraycopy(old, 0, pendingRecords, 0, pendingLength);
+			System.arraycopy(buffer, 0, pendingRecords, pendingLength, bufferLength);
+			pendingLength += bufferLength;
+		}
+		buffer = new int[1024];
+		bufferLength = 0;
+	}
+
+	void flush() {
+		synchronized (ioLock) {
+			if (failed) return;
+			int[] records;
+			int length;
+			MemContents snapshot;
+			int[] before;
+			int beforeLength;
+			synchronized (this) {
+				before = pendingRecords;
+				beforeLength = pendingLength;
+				snapshot = pendingSnapshot;
+				records = buffer;
+				length = bufferLength;
+				pendingRecords = null;
+				pendingLength = 0;
+				pendingSnapshot = null;
+				if (length > 0) {
+					buffer = new int[buffer.length];
+					bufferLength = 0;
+				}
+			}
+			try {
+				if (before != null) writeRecords(before, beforeLength);
+				if (snapshot != null) writeSnapshot(snapshot);
+				writeRecords(records, length);
+				if (journalOut != null) journalOut.flush();
+			} catch (IOException e) {
+				fail(e);
+				return;
+			}
+			if (journalLength >= MIN_COMPACT_BYTES && journalLength > snapshotLength) {
+				snapshotWanted = true;
+			}
+		}
+	}
+
+	private void writeRecords(int[] records, int length) throws IOException {
+		if (length == 0) return;
+		if (journalOut == null) {
+			journalOut = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(journalFile, true)));
+		}
+		for (int i = 0; i < length; i++) journalOut.writeInt(records[i]);
+		journalLength += 4L * length;
+	}
+
+	private void writeSnapshot(MemContents snapshot) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(tmp), "US-ASCII"));
+		try {
+			MemContentsCodec.writeContents(out, snapshot);
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				throw new IOException(Strings.get("ramPersistWriteError"));
+			}
+		}
+		snapshotLength = file.length();
+
+		// the journal holds nothing past the snapshot, so it can go
+		if (journalOut != null) {
+			journalOut.close();
+			journalOut = null;
+		}
+		new FileOutputStream(journalFile, false).close();
+		journalLength = 0;
+	}
+
+	private void readSnapshot(MemContents dst) throws IOException {
+		if (!file.exists()) return;
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "US-ASCII"));
+		try {
+			String first = in.readLine();
+			StringTokenizer toks = new StringTokenizer(first == null ? "" : first);
+			int count = toks.countTokens();
+			if (count < 3 || count > 4 || !toks.nextToken().equals("addr/data:")) {
+				throw new IOException(Strings.get("romContentsFormatError"));
+			}
+			int addrBits = Integer.parseInt(toks.nextToken());
+			int width = Integer.parseInt(toks.nextToken());
+			String format = toks.hasMoreTokens() ? toks.nextToken() : null;
+			if (addrBits == dst.getLogLength() && width == dst.getWidth()) {
+				MemContentsCodec.readContents(in, dst, format);
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException(Strings.get("romContentsFormatError"));
+		} finally {
+			in.close();
+		}
+	}
+
+	private void replayJournal(MemContents dst) throws IOException {
+		if (!journalFile.exists()) return;
+		long last = dst.getLastOffset();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(journalFile)));
+		try {
+			while (true) {
+				int addr = in.readInt();
+				int value = in.readInt();
+				if (addr >= 0 && addr <= last) dst.set(addr, value);
+			}
+		} catch (EOFException e) {
+			// a record cut short by a crash is simply dropped
+		} finally {
+			in.close();
+		}
+	}
+
+	private void fail(IOException e) {
+		if (!failed) {
+			failed = true;
+			System.err.println(file + ": " + e.getMessage()); //OK
+		}
+	}
+}
@@ -9,6 +9,7 @@ import java.awt.event.MouseListener;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import java.util.WeakHashMap;
@@ -20,13 +21,14 @@ import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
-import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.hex.HexFrame;
 import com.cburch.logisim.gui.main.Frame;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.Port;
 import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.memory.MemContentsCodec;
+import com.cburch.logisim.std.memory.MemProfile;
 
 public class Rom extends Mem {
 	public static Attribute<MemContents> CONTENTS_ATTR = new ContentsAttribute();
@@ -105,6 +107,8 @@ public class Rom extends Mem {
 		if (addr != myState.getCurrent()) {
 			myState.setCurrent(addr);
 			myState.scrollToShow(addr);
+			MemProfile profile = myState.getProfile();
+			if (profile != null) profile.recordRead(addr);
 		}
 
 		int val = myState.getContents().get(addr);
@@ -143,16 +147,19 @@ public class Rom extends Mem {
 
 		@Override
 		public String toStandardString(MemContents state) {
-			int addr = state.getLogLength();
-			int data = state.getWidth();
 			StringWriter ret = new StringWriter();
-			ret.write("addr/data: " + addr + " " + data + "\n");
 			try {
-				HexFile.save(ret, state);
+				writeStandardString(ret, state);
 			} catch (IOException e) { }
 			return ret.toString();
 		}
 
+		@Override
+		public void writeStandardString(Writer out, MemContents state)
+				throws IOException {
+			MemContentsCodec.writeContents(out, state);
+		}
+
 		@Override
 		public MemContents parse(String value) {
 			int lineBreak = value.indexOf('\n');
@@ -164,8 +171,9 @@ public class Rom extends Mem {
 				if (!header.equals("addr/data:")) return null;
 				int addr = Integer.parseInt(toks.nextToken());
 				int data = Integer.parseInt(toks.nextToken());
+				String format = toks.hasMoreTokens() ? toks.nextToken() : null;
 				MemContents ret = MemContents.create(addr, data);
-				HexFile.open(ret, new StringReader(rest));
+				MemContentsCodec.readContents(new StringReader(rest), ret, format);
 				return ret;
 			} catch (IOException e) {
 				return null;
@@ -0,0 +1,469 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.analyze.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/** A store of nodes of reduced, ordered decision diagrams whose leaves
+ * are truth table entries. A node is an int: the first few are the
+ * leaves, one for each kind of Entry, and every other tests the input
+ * given by its variable, leading to its low node when that input is 0
+ * and to its high node when it is 1. Variable i is the i-th input of the
+ * table, so the first input is tested first, and a node never repeats,
+ * so equal diagrams are equal ints.
+ *
+ * Nodes are never freed; a BddColumn moves into a fresh store once its
+ * store has grown well beyond what it uses. */
+class Bdd {
+	static final int ZERO = 0;
+	static final int ONE = 1;
+	static final int DONT_CARE = 2;
+	private static final Entry[] LEAVES = { Entry.ZERO, Entry.ONE,
+		Entry.DONT_CARE, Entry.BUS_ERROR, Entry.OSCILLATE_ERROR };
+	private static final int LEAF_VAR = Integer.MAX_VALUE;
+
+	// operations on pairs of nodes
+	private static final int AND = 0;
+	private static final int OR = 1;
+	private static final int XOR = 2;
+	private static final int AND_NOT = 3;  // a and not b
+	private static final int MERGE = 4;    // a where a = b, else DONT_CARE
+	private static final int CONFLICT = 5; // a and b known and different
+
+	private static class Key {
+		private int a;
+		private int b;
+		private int c;
+
+		Key(int a, int b, int c) {
+			this.a = a;
+			this.b = b;
+			this.c = c;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) return false;
+			Key o = (Key) other;
+			return a == o.a && b == o.b && c == o.c;
+		}
+
+		@Override
+		public int hashCode() {
+			return (a * 31 + b) * 31 + c;
+		}
+	}
+
+	// an irredundant cover and the cubes it is the sum of
+	private static class Cover {
+		private int node;
+		private long[] cubes;
+
+		Cover(int node, long[] cubes) {
+			this.node = node;
+			this.cubes = cubes;
+		}
+	}
+
+	private int[] vars = new int[256];
+	private int[] lows = new int[256];
+	private int[] highs = new int[256];
+	private int[] nexts = new int[256];
+	private int[] buckets = new int[512];
+	private int size = 0;
+	private HashMap<Key,Integer> memo = new HashMap<Key,Integer>();
+
+	Bdd() {
+		Arrays.fill(buckets, -1);
+		for (int i = 0; i < LEAVES.length; i++) {
+			vars[i] = LEAF_VAR;
+			size++;
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	static boolean isLeaf(int node) {
+		return node < LEAVES.length;
+	}
+
+	static int getLeaf(Entry entry) {
+		for (int i = 0; i < LEAVES.length; i++) {
+			if (LEAVES[i] == entry) return i;
+		}
+		return DONT_CARE;
+	}
+
+	static Entry getEntry(int leaf) {
+		return LEAVES[leaf];
+	}
+
+	int mk(int var, int low, int high) {
+		if (low == high) return low;
+		int h = ((var * 31 + low) * 31 + high) * 0x9E3779B9;
+		int bucket = (h >>> 8) & (buckets.length - 1);
+		for (int n = buckets[bucket]; n >= 0; n = nexts[n]) {
+			if (vars[n] == var && lows[n] == low && highs[n] == high) return n;
+		}
+		if (size == vars.length) {
+			grow();
+			bucket = (h >>> 8) & (buckets.length - 1);
+		}
+		int ret = size++;
+		vars[ret] = var;
+		lows[ret] = low;
+		highs[ret] = high;
+		nexts[ret] = buckets[bucket];
+		buckets[bucket] = ret;
+		return ret;
+	}
+
+	private void grow() {
+		int cap = 2 * vars.length;
+		vars = Arrays.copyOf(vars, cap);
+		lows = Arrays.copyOf(lows, cap);
+		highs = Arrays.copyOf(highs, cap);
+		nexts = Arrays.copyOf(nexts, cap);
+		buckets = new int[2 * cap];
+		Arrays.fill(buckets, -1);
+		for (int n = LEAVES.length; n < size; n++) {
+			int h = ((vars[n] * 31 + lows[n]) * 31 + highs[n]) * 0x9E3779B9;
+			int bucket = (h >>> 8) & (buckets.length - 1);
+			nexts[n] = buckets[bucket];
+			buckets[bucket] = n;
+		}
+	}
+
+	private int variable(int var) {
+		return mk(var, ZERO, ONE);
+	}
+
+	// the node reached from node when var takes the value
+	private int cofactor(int node, int var, boolean value) {
+		if (vars[node] != var) return node;
+		return value ? highs[node] : lows[node];
+	}
+
+	//
+	// conversions
+	//
+	Entry get(int root, int row, int inputs) {
+		int n = root;
+		while (!isLeaf(n)) {
+			n = TruthTable.isInputSet(row, vars[n], inputs) ? highs[n] : lows[n];
+		}
+		return LEAVES[n];
+	}
+
+	/** Returns the diagram with the entry for one row replaced. */
+	int set(int root, int row, int inputs, Entry value) {
+		return set(root, 0, row, inputs, getLeaf(value));
+	}
+
+	private int set(int node, int var, int row, int inputs, int leaf) {
+		if (var == inputs) return leaf;
+		int low = cofactor(node, var, false);
+		int high = cofactor(node, var, true);
+		if (TruthTable.isInputSet(row, var, inputs)) {
+			high = set(high, var + 1, row, inputs, leaf);
+		} else {
+			low = set(low, var + 1, row, inputs, leaf);
+		}
+		return mk(var, low, high);
+	}
+
+	int fromColumn(PackedColumn column) {
+		return fromColumn(column, column.getInputCount(), 0, 0);
+	}
+
+	private int fromColumn(PackedColumn column, int inputs, int var, int start) {
+		if (var == inputs) return getLeaf(column.get(start));
+		if (inputs - var == 5) {
+			// the 32 rows lie in one word, which is often uniform
+			int code = column.getWordCode(start >> 5);
+			if (code >= 0) return code; // codes 0 to 2 are the leaves
+		}
+		int half = 1 << (inputs - var - 1);
+		int low = fromColumn(column, inputs, var + 1, start);
+		int high = fromColumn(column, inputs, var + 1, start + half);
+		return mk(var, low, high);
+	}
+
+	/** Returns the diagram of the expression, whose variables are named
+	 * by inputNames; any other variable is taken to be 0. */
+	int fromExpression(Expression expr, final List<String> inputNames) {
+		memo.clear();
+		Integer ret = expr.visit(new ExpressionVisitor<Integer>() {
+			public Integer visitAnd(Expression a, Expression b) {
+				return Integer.valueOf(apply(AND, a.visit(this).intValue(),
+						b.visit(this).intValue()));
+			}
+			public Integer visitOr(Expression a, Expression b) {
+				return Integer.valueOf(apply(OR, a.visit(this).intValue(),
+						b.visit(this).intValue()));
+			}
+			public Integer visitXor(Expression a, Expression b) {
+				return Integer.valueOf(apply(XOR, a.visit(this).intValue(),
+						b.visit(this).intValue()));
+			}
+			public Integer visitNot(Expression a) {
+				return Integer.valueOf(apply(AND_NOT, ONE, a.visit(this).intValue()));
+			}
+			public Integer visitVariable(String name) {
+				int index = inputNames.indexOf(name);
+				return Integer.valueOf(index < 0 ? ZERO : variable(index));
+			}
+			public Integer visitConstant(int value) {
+				return Integer.valueOf((value & 1) != 0 ? ONE : ZERO);
+			}
+		});
+		memo.clear();
+		return ret.intValue();
+	}
+
+	/** Returns a copy of the diagram in another store. */
+	int copyTo(Bdd dest, int root) {
+		HashMap<Integer,Integer> copies = new HashMap<Integer,Integer>();
+		return copyTo(dest, root, copies);
+	}
+
+	private int copyTo(Bdd dest, int node, HashMap<Integer,Integer> copies) {
+		if (isLeaf(node)) return node;
+		Integer done = copies.get(Integer.valueOf(node));
+		if (done != null) return done.intValue();
+		int low = copyTo(dest, lows[node], copies);
+		int high = copyTo(dest, highs[node], copies);
+		int ret = dest.mk(vars[node], low, high);
+		copies.put(Integer.valueOf(node), Integer.valueOf(ret));
+		return ret;
+	}
+
+	//
+	// changes to the inputs
+	//
+	/** Returns the diagram for a table without the input at index, each
+	 * entry being that for both values of the input, or DONT_CARE if they
+	 * differ; the later inputs move down by one. */
+	int removeInput(int root, int index, int inputs) {
+		memo.clear();
+		int merged = apply(MERGE, restrict(root, index, false),
+				restrict(root, index, true));
+		int[] newVars = new int[inputs];
+		for (int i = 0; i < inputs; i++) newVars[i] = i < index ? i : i - 1;
+		int ret = permute(merged, newVars);
+		memo.clear();
+		return ret;
+	}
+
+	/** Returns the diagram for a table whose input at oldIndex moves to
+	 * newIndex, shifting those between by one. */
+	int moveInput(int root, int oldIndex, int newIndex, int inputs) {
+		int[] newVars = new int[inputs];
+		for (int i = 0; i < inputs; i++) {
+			if (i == oldIndex) newVars[i] = newIndex;
+			else if (oldIndex < newIndex && i > oldIndex && i <= newIndex) newVars[i] = i - 1;
+			else if (newIndex < oldIndex && i >= newIndex && i < oldIndex) newVars[i] = i + 1;
+			else newVars[i] = i;
+		}
+		memo.clear();
+		int ret = permute(root, newVars);
+		memo.clear();
+		return ret;
+	}
+
+	private int restrict(int node, int var, boolean value) {
+		if (vars[node] > var) return node;
+		if (vars[node] == var) return value ? highs[node] : lows[node];
+		Key key = new Key(-1 - var, node, value ? 1 : 0);
+		Integer done = memo.get(key);
+		if (done != null) return done.intValue();
+		int ret = mk(vars[node], restrict(lows[node], var, value),
+				restrict(highs[node], var, value));
+		memo.put(key, Integer.valueOf(ret));
+		return ret;
+	}
+
+	// renames each variable v to newVars[v], which needs not keep them
+	// in order; the diagram is rebuilt by if-then-else from the bottom
+	private int permute(int node, int[] newVars) {
+		if (isLeaf(node)) return node;
+		Key key = new Key(-100, node, 0);
+		Integer done = memo.get(key);
+		if (done != null) return done.intValue();
+		int low = permute(lows[node], newVars);
+		int high = permute(highs[node], newVars);
+		int ret = ite(variable(newVars[vars[node]]), high, low);
+		memo.put(key, Integer.valueOf(ret));
+		return ret;
+	}
+
+	// the diagram that is g where the 0-1 diagram f is 1, and h elsewhere
+	private int ite(int f, int g, int h) {
+		if (f == ONE || g == h) return g;
+		if (f == ZERO) return h;
+		Key key = new Key(f, g, -1 - h);
+		Integer done = memo.get(key);
+		if (done != null) return done.intValue();
+		int var = Math.min(vars[f], Math.min(vars[g], vars[h]));
+		int low = ite(cofactor(f, var, false), cofactor(g, var, false),
+				cofactor(h, var, false));
+		int high = ite(cofactor(f, var, true), cofactor(g, var, true),
+				cofactor(h, var, true));
+		int ret = mk(var, low, high);
+		memo.put(key, Integer.valueOf(ret));
+		return ret;
+	}
+
+	//
+	// questions
+	//
+	/** Returns whether any row of the diagram holds ZERO or ONE. */
+	boolean hasKnownEntry(int root) {
+		BitSet seen = new BitSet();
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			int n = stack[--top];
+			if (n == ZERO || n == ONE) return true;
+			if (isLeaf(n) || seen.get(n)) continue;
+			seen.set(n);
+			if (top + 2 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+			stack[top++] = lows[n];
+			stack[top++] = highs[n];
+		}
+		return false;
+	}
+
+	/** Returns whether the 0-1 diagram expr agrees with every row of root
+	 * holding ZERO or ONE. */
+	boolean isConsistent(int root, int expr) {
+		memo.clear();
+		int ret = apply(CONFLICT, root, expr);
+		memo.clear();
+		return ret == ZERO;
+	}
+
+	private int apply(int op, int a, int b) {
+		switch (op) {
+		case AND:
+			if (a == ZERO || b == ZERO) return ZERO;
+			if (a == ONE) return b;
+			if (b == ONE || a == b) return a;
+			break;
+		case OR:
+			if (a == ONE || b == ONE) return ONE;
+			if (a == ZERO) return b;
+			if (b == ZERO || a == b) return a;
+			break;
+		case XOR:
+			if (a == b) return ZERO;
+			if (a == ZERO) return b;
+			if (b == ZERO) return a;
+			break;
+		case AND_NOT:
+			if (a == ZERO || b == ONE || a == b) return ZERO;
+			if (b == ZERO) return a;
+			break;
+		case MERGE:
+			if (a == b) return a;
+			break;
+		case CONFLICT:
+			if (a == b || (isLeaf(a) && a != ZERO && a != ONE)) return ZERO;
+			break;
+		}
+		if (isLeaf(a) && isLeaf(b)) {
+			switch (op) {
+			case AND:      return a & b;
+			case OR:       return a | b;
+			case XOR:      return a ^ b;
+			case AND_NOT:  return a & ~b & 1;
+			case MERGE:    return DONT_CARE;
+			default:       return (b == ZERO || b == ONE) ? ONE : ZERO;
+			}
+		}
+
+		Key key = new Key(op, a, b);
+		Integer done = memo.get(key);
+		if (done != null) return done.intValue();
+		int var = Math.min(vars[a], vars[b]);
+		int low = apply(op, cofactor(a, var, false), cofactor(b, var, false));
+		int high = apply(op, cofactor(a, var, true), cofactor(b, var, true));
+		int ret = mk(var, low, high);
+		memo.put(key, Integer.valueOf(ret));
+		return ret;
+	}
+
+	//
+	// minimization
+	//
+	/** Returns the cubes of an irredundant sum of products covering every
+	 * row holding desired and no row holding undesired; each cube has the
+	 * bits of the inputs it leaves free in its upper half and the values
+	 * of the others in its lower half, the first input in the highest bit,
+	 * as Implicant numbers them. The cover is found as Minato and Morreale
+	 * describe, which keeps to the size of the diagrams rather than the
+	 * number of rows. */
+	long[] getCover(int root, int inputs, Entry desired, Entry undesired) {
+		memo.clear();
+		int lower = select(root, desired, false);
+		int upper = select(root, undesired, true);
+		Cover ret = isop(lower, upper, inputs, new HashMap<Key,Cover>());
+		memo.clear();
+		return ret.cubes;
+	}
+
+	// the 0-1 diagram that is 1 where root holds entry, or where it does
+	// not if negate is set
+	private int select(int node, Entry entry, boolean negate) {
+		if (isLeaf(node)) return (LEAVES[node] == entry) != negate ? ONE : ZERO;
+		Key key = new Key(-200 - getLeaf(entry), node, negate ? 1 : 0);
+		Integer done = memo.get(key);
+		if (done != null) return done.intValue();
+		int ret = mk(vars[node], select(lows[node], entry, negate),
+				select(highs[node], entry, negate));
+		memo.put(key, Integer.valueOf(ret));
+		return ret;
+	}
+
+	private Cover isop(int lower, int upper, int inputs,
+			HashMap<Key,Cover> covers) {
+		if (lower == ZERO) return new Cover(ZERO, new long[0]);
+		if (upper == ONE) {
+			long all = (1L << inputs) - 1;
+			return new Cover(ONE, new long[] { all << 32 });
+		}
+		Key key = new Key(lower, upper, 0);
+		Cover done = covers.get(key);
+		if (done != null) return done;
+
+		int var = Math.min(vars[lower], vars[upper]);
+		int l0 = cofactor(lower, var, false);
+		int l1 = cofactor(lower, var, true);
+		int u0 = cofactor(upper, var, false);
+		int u1 = cofactor(upper, var, true);
+		// the rows that must be covered with var = 0, or with var = 1
+		Cover c0 = isop(apply(AND_NOT, l0, u1), u0, inputs, covers);
+		Cover c1 = isop(apply(AND_NOT, l1, u0), u1, inputs, covers);
+		// and the rest, by cubes free of var
+		int rest = apply(OR, apply(AND_NOT, l0, c0.node), apply(AND_NOT, l1, c1.node));
+		Cover cs = isop(rest, apply(AND, u0, u1), inputs, covers);
+
+		long bit = 1L << (inputs - 1 - var);
+		long[] cubes = new long[c0.cubes.length + c1.cubes.length + cs.cubes.length];
+		int k = 0;
+		for (long cube : c0.cubes) cubes[k++] = cube & ~(bit << 32);
+		for (long cube : c1.cubes) cubes[k++] = (cube & ~(bit << 32)) | bit;
+		for (long cube : cs.cubes) cubes[k++] = cube;
+		int node = apply(OR, mk(var, c0.node, c1.node), cs.node);
+		Cover ret = new Cover(node, cubes);
+		covers.put(key, ret);
+		return ret;
+	}
+}
@@ -0,0 +1,104 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.analyze.model;
+
+import java.util.List;
+
+/** A column of a truth table kept as a decision diagram, for tables too
+ * large to hold every entry. */
+class BddColumn extends OutputColumn {
+	// the store is compacted once it is this large and twice what the
+	// column used when it was last compacted
+	private static final int COMPACT_MIN = 1 << 16;
+
+	private Bdd bdd;
+	private int root;
+	private int inputs;
+	private int compactSize;
+
+	BddColumn(int inputs, Entry value) {
+		this(new Bdd(), Bdd.getLeaf(value), inputs);
+	}
+
+	BddColumn(Bdd bdd, int root, int inputs) {
+		this.bdd = bdd;
+		this.root = root;
+		this.inputs = inputs;
+		this.compactSize = bdd.size();
+	}
+
+	@Override
+	int getInputCount() {
+		return inputs;
+	}
+
+	@Override
+	Entry get(int row) {
+		return bdd.get(root, row, inputs);
+	}
+
+	@Override
+	void set(int row, Entry value) {
+		root = bdd.set(root, row, inputs, value);
+		int size = bdd.size();
+		if (size > COMPACT_MIN && size > 2 * compactSize) {
+			Bdd dest = new Bdd();
+			root = bdd.copyTo(dest, root);
+			bdd = dest;
+			compactSize = dest.size();
+		}
+	}
+
+	@Override
+	OutputColumn addInput() {
+		// the new input is tested last, and no node tests it yet
+		return new BddColumn(bdd, root, inputs + 1);
+	}
+
+	@Override
+	OutputColumn removeInput(int index) {
+		Bdd dest = new Bdd();
+		int ret = dest.removeInput(bdd.copyTo(dest, root), index, inputs);
+		BddColumn col = new BddColumn(dest, ret, inputs - 1);
+		return inputs - 1 <= PACKED_MAX_INPUTS ? col.toPacked() : col;
+	}
+
+	@Override
+	OutputColumn moveInput(int oldIndex, int newIndex) {
+		Bdd dest = new Bdd();
+		int ret = dest.moveInput(bdd.copyTo(dest, root), oldIndex, newIndex, inputs);
+		return new BddColumn(dest, ret, inputs);
+	}
+
+	@Override
+	BddColumn toBdd() {
+		return this;
+	}
+
+	PackedColumn toPacked() {
+		PackedColumn ret = new PackedColumn(inputs);
+		int rows = ret.getRowCount();
+		for (int i = 0; i < rows; i++) ret.set(i, get(i));
+		return ret;
+	}
+
+	@Override
+	boolean hasKnownEntry() {
+		return bdd.hasKnownEntry(root);
+	}
+
+	@Override
+	boolean isConsistentWith(List<String> inputNames, Expression expr) {
+		if (expr == null) return true;
+		return bdd.isConsistent(root, bdd.fromExpression(expr, inputNames));
+	}
+
+	/** Returns the cubes of a sum of products giving desired in every row
+	 * holding it and the other value in every row holding that, in the
+	 * form Bdd.getCover describes. */
+	long[] getCover(Entry desired) {
+		Entry undesired = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
+		return bdd.getCover(root, inputs, desired, undesired);
+	}
+}
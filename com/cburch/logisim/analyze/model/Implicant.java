@@ -13,6 +13,9 @@ import java.util.List;
 import java.util.Map;
 
 public class Implicant implements Comparable<Implicant> {
+	// beyond this many inputs, the rows are too many to combine one by one
+	private static final int TABULAR_MAX_INPUTS = 12;
+
 	static Implicant MINIMAL_IMPLICANT = new Implicant(0, -1);
 	static List<Implicant> MINIMAL_LIST = Arrays.asList(new Implicant[] { MINIMAL_IMPLICANT });
 
@@ -148,6 +151,9 @@ public class Implicant implements Comparable<Implicant> {
 		Entry desired = format == AnalyzerModel.FORMAT_SUM_OF_PRODUCTS
 			? Entry.ONE : Entry.ZERO;
 		Entry undesired = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
+		if (table.getInputColumnCount() > TABULAR_MAX_INPUTS) {
+			return computeCover(table, column, desired);
+		}
 
 		// determine the first-cut implicants, as well as the rows
 		// that we need to cover.
@@ -289,4 +295,20 @@ public class Implicant implements Comparable<Implicant> {
 		Collections.sort(ret);
 		return ret;
 	}
+	
+	// finds an irredundant cover from the column's decision diagram; it
+	// need not be as small as the one above, but it is found in time
+	// depending on the diagram rather than on the number of rows
+	private static List<Implicant> computeCover(TruthTable table, int column,
+			Entry desired) {
+		OutputColumn data = table.getColumn(column);
+		if (data == null || !data.hasKnownEntry()) return null;
+		long[] cubes = data.toBdd().getCover(desired);
+		ArrayList<Implicant> ret = new ArrayList<Implicant>(cubes.length);
+		for (long cube : cubes) {
+			ret.add(new Implicant((int) (cube >>> 32), (int) cube));
+		}
+		Collections.sort(ret);
+		return ret;
+	}
 }
@@ -0,0 +1,67 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.analyze.model;
+
+import java.util.List;
+
+/** The entries of one output in a truth table. A column for up to
+ * PACKED_MAX_INPUTS inputs is a PackedColumn, holding every entry; a
+ * column for more is a BddColumn, a decision diagram whose size depends
+ * on how regular the entries are rather than on how many there are.
+ * TruthTable keeps each column in the form suiting its inputs, and the
+ * operations changing the inputs return the column in that form. */
+abstract class OutputColumn {
+	static final int PACKED_MAX_INPUTS = 16;
+
+	static OutputColumn create(int inputs) {
+		if (inputs <= PACKED_MAX_INPUTS) return new PackedColumn(inputs);
+		else return new BddColumn(inputs, Entry.DONT_CARE);
+	}
+
+	static OutputColumn create(int inputs, Entry[] values) {
+		PackedColumn ret = new PackedColumn(inputs);
+		for (int i = 0; i < values.length; i++) ret.set(i, values[i]);
+		return ret.normalize();
+	}
+
+	/** Returns a column holding the value of the expression in each row,
+	 * or DONT_CARE throughout if it is null. */
+	static OutputColumn create(List<String> inputNames, Expression expr) {
+		int inputs = inputNames.size();
+		if (inputs <= PACKED_MAX_INPUTS) {
+			return PackedColumn.create(inputNames, expr);
+		} else if (expr == null) {
+			return new BddColumn(inputs, Entry.DONT_CARE);
+		} else {
+			Bdd bdd = new Bdd();
+			return new BddColumn(bdd, bdd.fromExpression(expr, inputNames), inputs);
+		}
+	}
+
+	abstract int getInputCount();
+
+	abstract Entry get(int row);
+
+	abstract void set(int row, Entry value);
+
+	/** Returns the column after a new input is added after the others;
+	 * each entry is repeated for both values of the input. */
+	abstract OutputColumn addInput();
+
+	/** Returns the column after the input is removed; each entry is the
+	 * one shared by both values of the input, or DONT_CARE if they
+	 * differ. */
+	abstract OutputColumn removeInput(int index);
+
+	abstract OutputColumn moveInput(int oldIndex, int newIndex);
+
+	abstract BddColumn toBdd();
+
+	/** Returns whether any entry is ZERO or ONE. */
+	abstract boolean hasKnownEntry();
+
+	/** Returns whether the expression gives the value of every entry that
+	 * is ZERO or ONE. */
+	abstract boolean isConsistentWith(List<String> inputNames, Expression expr);
+}
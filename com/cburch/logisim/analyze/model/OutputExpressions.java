@@ -4,7 +4,6 @@
 package com.cburch.logisim.analyze.model;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -64,11 +63,11 @@ public class OutputExpressions {
 			exprString = newExprString;
 
 			if (expr != minimalExpr) { // for efficiency to avoid recomputation
-				Entry[] values = computeColumn(model.getTruthTable(), expr);
+				OutputColumn values = OutputColumn.create(model.getInputs().getAll(), expr);
 				int outputColumn = model.getOutputs().indexOf(output);
 				updatingTable = true;
 				try {
-					model.getTruthTable().setOutputColumn(outputColumn, values);
+					model.getTruthTable().setColumn(outputColumn, values);
 				} finally {
 					updatingTable = false;
 				}
@@ -135,12 +134,10 @@ public class OutputExpressions {
 				if (!updatingTable) {
 					// see whether the expression is still consistent with the truth table
 					TruthTable table = model.getTruthTable();
-					Entry[] outputColumn = computeColumn(model.getTruthTable(), expr);
 					int outputIndex = model.getOutputs().indexOf(output);
-					
-					Entry[] currentColumn = table.getOutputColumn(outputIndex);
-					if (!columnsMatch(currentColumn, outputColumn)
-							|| isAllUndefined(outputColumn) || formatChanged) {
+					OutputColumn currentColumn = table.getColumn(outputIndex);
+					if (expr == null || formatChanged || (currentColumn != null
+							&& !currentColumn.isConsistentWith(model.getInputs().getAll(), expr))) {
 						// if not, then we need to change the expression to maintain consistency
 						boolean exprChanged = expr != oldMinExpr || minChanged;
 						expr = minimalExpr;
@@ -334,44 +331,6 @@ public class OutputExpressions {
 		return ret;
 	}
 	
-	private static Entry[] computeColumn(TruthTable table, Expression expr) {
-		int rows = table.getRowCount();
-		int cols = table.getInputColumnCount();
-		Entry[] values = new Entry[rows];
-		if (expr == null) {
-			Arrays.fill(values, Entry.DONT_CARE);
-		} else {
-			Assignments assn = new Assignments();
-			for (int i = 0; i < rows; i++) {
-				for (int j = 0; j < cols; j++) {
-					assn.put(table.getInputHeader(j),
-							TruthTable.isInputSet(i, j, cols));
-				}
-				values[i] = expr.evaluate(assn) ? Entry.ONE : Entry.ZERO;
-			}
-		}
-		return values;
-	}
-	
-	private static boolean columnsMatch(Entry[] a, Entry[] b) {
-		if (a.length != b.length) return false;
-		for (int i = 0; i < a.length; i++) {
-			if (a[i] != b[i]) {
-				boolean bothDefined = (a[i] == Entry.ZERO || a[i] == Entry.ONE)
-									&& (b[i] == Entry.ZERO || b[i] == Entry.ONE);
-				if (bothDefined) return false;
-			}
-		}
-		return true;
-	}
-	
-	private static boolean isAllUndefined(Entry[] a) {
-		for (int i = 0; i < a.length; i++) {
-			if (a[i] == Entry.ZERO || a[i] == Entry.ONE) return false;
-		}
-		return true;
-	}
-	
 	private static boolean implicantsSame(List<Implicant> a, List<Implicant> b) {
 		if (a == null) {
 			return b == null || b.size() == 0;
@@ -0,0 +1,188 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.analyze.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** A column of a truth table holding each entry in two bits, thirty-two
+ * to a word. The codes 0, 1, and 2 stand for ZERO, ONE, and DONT_CARE;
+ * 3 marks an error, and which error it is is kept aside, as errors are
+ * few. Entries lying in different words (rows 32k through 32k + 31) may
+ * be set from different threads at once. */
+public class PackedColumn extends OutputColumn {
+	private static final Entry[] CODES = { Entry.ZERO, Entry.ONE, Entry.DONT_CARE };
+	private static final int ERROR_CODE = 3;
+	private static final long ALL_DONT_CARE = 0xAAAAAAAAAAAAAAAAL;
+
+	private int inputs;
+	private long[] words;
+	private HashMap<Integer,Entry> errors = new HashMap<Integer,Entry>();
+
+	/** Creates a column with every entry DONT_CARE. */
+	public PackedColumn(int inputs) {
+		if (inputs < 0 || inputs > 30) {
+			throw new IllegalArgumentException("inputs: " + inputs);
+		}
+		this.inputs = inputs;
+		this.words = new long[((1 << inputs) + 31) >> 5];
+		Arrays.fill(words, ALL_DONT_CARE);
+	}
+
+	public int getRowCount() {
+		return 1 << inputs;
+	}
+
+	@Override
+	int getInputCount() {
+		return inputs;
+	}
+
+	@Override
+	public Entry get(int row) {
+		int code = (int) (words[row >> 5] >>> ((row & 31) << 1)) & 3;
+		if (code != ERROR_CODE) return CODES[code];
+		synchronized (errors) {
+			return errors.get(Integer.valueOf(row));
+		}
+	}
+
+	@Override
+	public void set(int row, Entry value) {
+		int code;
+		if (value == Entry.ZERO) code = 0;
+		else if (value == Entry.ONE) code = 1;
+		else if (value == Entry.DONT_CARE) code = 2;
+		else code = ERROR_CODE;
+
+		int shift = (row & 31) << 1;
+		long word = words[row >> 5];
+		int old = (int) (word >>> shift) & 3;
+		if (old == ERROR_CODE || code == ERROR_CODE) {
+			synchronized (errors) {
+				if (code == ERROR_CODE) errors.put(Integer.valueOf(row), value);
+				else errors.remove(Integer.valueOf(row));
+			}
+		}
+		words[row >> 5] = (word & ~(3L << shift)) | ((long) code << shift);
+	}
+
+	// returns the code shared by all rows of the word, or -1 if they
+	// differ or are errors
+	int getWordCode(int word) {
+		long w = words[word];
+		int code = (int) w & 3;
+		if (code == ERROR_CODE) return -1;
+		return w == code * 0x5555555555555555L ? code : -1;
+	}
+
+	// returns the column in the form it is kept in for its inputs
+	OutputColumn normalize() {
+		return inputs <= PACKED_MAX_INPUTS ? this : toBdd();
+	}
+
+	@Override
+	OutputColumn addInput() {
+		if (inputs + 1 > PACKED_MAX_INPUTS) return toBdd().addInput();
+		PackedColumn ret = new PackedColumn(inputs + 1);
+		int rows = getRowCount();
+		for (int i = 0; i < rows; i++) {
+			Entry e = get(i);
+			ret.set(2 * i, e);
+			ret.set(2 * i + 1, e);
+		}
+		return ret;
+	}
+
+	@Override
+	OutputColumn removeInput(int index) {
+		PackedColumn ret = new PackedColumn(inputs - 1);
+		int rows = getRowCount();
+		int j = 0;
+		int mask = 1 << (inputs - 1 - index);
+		for (int i = 0; i < rows; i++) {
+			if ((i & mask) == 0) {
+				Entry e0 = get(i);
+				Entry e1 = get(i | mask);
+				ret.set(j, e0 == e1 ? e0 : Entry.DONT_CARE);
+				j++;
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	OutputColumn moveInput(int oldIndex, int newIndex) {
+		int rows = getRowCount();
+		oldIndex = inputs - 1 - oldIndex;
+		newIndex = inputs - 1 - newIndex;
+		PackedColumn ret = new PackedColumn(inputs);
+		int sameMask = (rows - 1) ^ ((1 << (1 + Math.max(oldIndex, newIndex))) - 1)
+			^ ((1 << Math.min(oldIndex, newIndex)) - 1);        // bits that don't change
+		int moveMask = 1 << oldIndex;                           // bit that moves
+		int moveDist = Math.abs(newIndex - oldIndex);
+		boolean moveLeft = newIndex > oldIndex;
+		int blockMask = (rows - 1) ^ sameMask ^ moveMask; // bits that move by one
+		for (int i = 0; i < rows; i++) {
+			int j; // new index
+			if (moveLeft) {
+				j = (i & sameMask) | ((i & moveMask) << moveDist)
+					| ((i & blockMask) >> 1);
+			} else {
+				j = (i & sameMask) | ((i & moveMask) >> moveDist)
+					| ((i & blockMask) << 1);
+			}
+			ret.set(j, get(i));
+		}
+		return ret;
+	}
+
+	@Override
+	BddColumn toBdd() {
+		Bdd bdd = new Bdd();
+		return new BddColumn(bdd, bdd.fromColumn(this), inputs);
+	}
+
+	@Override
+	boolean hasKnownEntry() {
+		int rows = getRowCount();
+		for (int i = 0; i < rows; i++) {
+			Entry e = get(i);
+			if (e == Entry.ZERO || e == Entry.ONE) return true;
+		}
+		return false;
+	}
+
+	@Override
+	boolean isConsistentWith(List<String> inputNames, Expression expr) {
+		if (expr == null) return true;
+		Assignments assn = new Assignments();
+		int rows = getRowCount();
+		for (int i = 0; i < rows; i++) {
+			Entry e = get(i);
+			if (e != Entry.ZERO && e != Entry.ONE) continue;
+			for (int j = 0; j < inputs; j++) {
+				assn.put(inputNames.get(j), TruthTable.isInputSet(i, j, inputs));
+			}
+			if (expr.evaluate(assn) != (e == Entry.ONE)) return false;
+		}
+		return true;
+	}
+
+	static PackedColumn create(List<String> inputNames, Expression expr) {
+		int inputs = inputNames.size();
+		PackedColumn ret = new PackedColumn(inputs);
+		if (expr == null) return ret;
+		Assignments assn = new Assignments();
+		int rows = ret.getRowCount();
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < inputs; j++) {
+				assn.put(inputNames.get(j), TruthTable.isInputSet(i, j, inputs));
+			}
+			ret.set(i, expr.evaluate(assn) ? Entry.ONE : Entry.ZERO);
+		}
+		return ret;
+	}
+}
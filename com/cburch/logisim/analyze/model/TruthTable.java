@@ -3,8 +3,8 @@
 
 package com.cburch.logisim.analyze.model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,33 +24,22 @@ public class TruthTable {
 		
 		private void inputsChanged(VariableListEvent event) {
 			int action = event.getType();
-			if (action == VariableListEvent.ADD) {
-				for (Map.Entry<String,Entry[]> curEntry : outputColumns.entrySet()) {
-					String output = curEntry.getKey();
-					Entry[] column = curEntry.getValue();
-					Entry[] newColumn = new Entry[2 * column.length];
-					for (int i = 0; i < column.length; i++) {
-						newColumn[2 * i] = column[i];
-						newColumn[2 * i + 1] = column[i];
-					}
-					outputColumns.put(output, newColumn);
+			if (action == VariableListEvent.ALL_REPLACED) {
+				outputColumns.clear();
+			} else if (action == VariableListEvent.ADD) {
+				for (Map.Entry<String,OutputColumn> curEntry : outputColumns.entrySet()) {
+					curEntry.setValue(curEntry.getValue().addInput());
 				}
 			} else if (action == VariableListEvent.REMOVE) {
 				int index = ((Integer) event.getData()).intValue();
-				for (Map.Entry<String,Entry[]> curEntry : outputColumns.entrySet()) {
-					String output = curEntry.getKey();
-					Entry[] column = curEntry.getValue();
-					Entry[] newColumn = removeInput(column, index);
-					outputColumns.put(output, newColumn);
+				for (Map.Entry<String,OutputColumn> curEntry : outputColumns.entrySet()) {
+					curEntry.setValue(curEntry.getValue().removeInput(index));
 				}
 			} else if (action == VariableListEvent.MOVE) {
 				int delta = ((Integer) event.getData()).intValue();
 				int newIndex = model.getInputs().indexOf(event.getVariable());
-				for (Map.Entry<String,Entry[]> curEntry : outputColumns.entrySet()) {
-					String output = curEntry.getKey();
-					Entry[] column = curEntry.getValue();
-					Entry[] newColumn = moveInput(column, newIndex - delta, newIndex);
-					outputColumns.put(output, newColumn);
+				for (Map.Entry<String,OutputColumn> curEntry : outputColumns.entrySet()) {
+					curEntry.setValue(curEntry.getValue().moveInput(newIndex - delta, newIndex));
 				}
 			}
 		}
@@ -62,7 +51,7 @@ public class TruthTable {
 			} else if (action == VariableListEvent.REMOVE) {
 				outputColumns.remove(event.getVariable());
 			} else if (action == VariableListEvent.REPLACE) {
-				Entry[] column = outputColumns.remove(event.getVariable());
+				OutputColumn column = outputColumns.remove(event.getVariable());
 				if (column != null) {
 					int index = ((Integer) event.getData()).intValue();
 					String newVariable = model.getOutputs().get(index);
@@ -70,53 +59,12 @@ public class TruthTable {
 				}
 			}           
 		}
-		
-		private Entry[] removeInput(Entry[] old, int index) {
-			int oldInputCount = model.getInputs().size() + 1;
-			Entry[] ret = new Entry[old.length / 2];
-			int j = 0;
-			int mask = 1 << (oldInputCount - 1 - index);
-			for (int i = 0; i < old.length; i++) {
-				if ((i & mask) == 0) {
-					Entry e0 = old[i];
-					Entry e1 = old[i | mask];
-					ret[j] = (e0 == e1 ? e0 : Entry.DONT_CARE);
-					j++;
-				}
-			}
-			return ret;
-		}
-		
-		private Entry[] moveInput(Entry[] old, int oldIndex, int newIndex) {
-			int inputs = model.getInputs().size();
-			oldIndex = inputs - 1 - oldIndex;
-			newIndex = inputs - 1 - newIndex;
-			Entry[] ret = new Entry[old.length];
-			int sameMask = (old.length - 1) ^ ((1 << (1 + Math.max(oldIndex, newIndex))) - 1)
-				^ ((1 << Math.min(oldIndex, newIndex)) - 1);        // bits that don't change
-			int moveMask = 1 << oldIndex;                           // bit that moves
-			int moveDist = Math.abs(newIndex - oldIndex);
-			boolean moveLeft = newIndex > oldIndex;
-			int blockMask = (old.length - 1) ^ sameMask ^ moveMask; // bits that move by one
-			for (int i = 0; i < old.length; i++) {
-				int j; // new index
-				if (moveLeft) {
-					j = (i & sameMask) | ((i & moveMask) << moveDist)
-						| ((i & blockMask) >> 1);
-				} else {
-					j = (i & sameMask) | ((i & moveMask) >> moveDist)
-						| ((i & blockMask) << 1);
-				}
-				ret[j] = old[i];
-			}
-			return ret;
-		}
 	}
 	
 	private MyListener myListener = new MyListener();
 	private List<TruthTableListener> listeners = new ArrayList<TruthTableListener>();
 	private AnalyzerModel model;
-	private HashMap<String,Entry[]> outputColumns = new HashMap<String,Entry[]>();
+	private HashMap<String,OutputColumn> outputColumns = new HashMap<String,OutputColumn>();
 	
 	public TruthTable(AnalyzerModel model) {
 		this.model = model;
@@ -194,10 +142,9 @@ public class TruthTable {
 			return Entry.DONT_CARE;
 		} else {
 			String outputName = model.getOutputs().get(column);
-			Entry[] columnData = outputColumns.get(outputName);
+			OutputColumn columnData = outputColumns.get(outputName);
 			if (columnData == null) return DEFAULT_ENTRY;
-			if (row < 0 || row >= columnData.length) return Entry.DONT_CARE;
-			return columnData[row];
+			return columnData.get(row);
 		}
 	}
 	
@@ -212,50 +159,75 @@ public class TruthTable {
 		}
 		
 		String outputName = model.getOutputs().get(column);
-		Entry[] columnData = outputColumns.get(outputName);
+		OutputColumn columnData = outputColumns.get(outputName);
 		
 		if (columnData == null) {
 			if (value == DEFAULT_ENTRY) return;
-			columnData = new Entry[getRowCount()];
+			columnData = OutputColumn.create(model.getInputs().size());
 			outputColumns.put(outputName, columnData);
-			Arrays.fill(columnData, DEFAULT_ENTRY);
-			columnData[row] = value;
 		} else {
-			if (columnData[row] == value) return;
-			columnData[row] = value;
+			if (columnData.get(row) == value) return;
 		}
+		columnData.set(row, value);
 		
 		fireCellsChanged(column);
 	}
 	
-	public Entry[] getOutputColumn(int column) {
+	/** Returns a read-only view of the column's entries. The view reads
+	 * each entry from the table as it is asked for, so that even a table
+	 * of many inputs never needs an array of every row. */
+	public List<Entry> getOutputColumn(final int column) {
 		int outputs = model.getOutputs().size();
 		if (column < 0 || column >= outputs) {
 			throw new IllegalArgumentException("index: " + column + " size: " + outputs);
 		}
 
-		String outputName = model.getOutputs().get(column);
-		Entry[] columnData = outputColumns.get(outputName);
-		if (columnData == null) {
-			columnData = new Entry[getRowCount()];
-			Arrays.fill(columnData, DEFAULT_ENTRY);
-			outputColumns.put(outputName, columnData);
-		}
-		return columnData;
+		return new AbstractList<Entry>() {
+			@Override
+			public Entry get(int row) {
+				if (row < 0 || row >= getRowCount()) {
+					throw new IndexOutOfBoundsException("row index: " + row);
+				}
+				return getOutputEntry(row, column);
+			}
+
+			@Override
+			public int size() {
+				return getRowCount();
+			}
+		};
 	}
 	
 	public void setOutputColumn(int column, Entry[] values) {
 		if (values != null && values.length != getRowCount()) {
 			throw new IllegalArgumentException("argument to setOutputColumn is wrong length");
 		}
-		
+		int inputs = model.getInputs().size();
+		setColumn(column, values == null ? null : OutputColumn.create(inputs, values));
+	}
+	
+	/** Replaces the column's entries by those of a packed column, which
+	 * the table then owns. */
+	public void setOutputColumn(int column, PackedColumn values) {
+		if (values != null && values.getRowCount() != getRowCount()) {
+			throw new IllegalArgumentException("argument to setOutputColumn is wrong length");
+		}
+		setColumn(column, values == null ? null : values.normalize());
+	}
+	
+	// returns the column's entries, or null if none has been set
+	OutputColumn getColumn(int column) {
+		return outputColumns.get(model.getOutputs().get(column));
+	}
+	
+	void setColumn(int column, OutputColumn values) {
 		int outputs = model.getOutputs().size();
 		if (column < 0 || column >= outputs) {
 			throw new IllegalArgumentException("index: " + column + " size: " + outputs);
 		}
 
 		String outputName = model.getOutputs().get(column);
-		Entry[] oldValues = outputColumns.get(outputName);
+		OutputColumn oldValues = outputColumns.get(outputName);
 		if (oldValues == values) return;
 		else if (values == null) outputColumns.remove(outputName);
 		else outputColumns.put(outputName, values);
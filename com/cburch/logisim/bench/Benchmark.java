@@ -0,0 +1,52 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+/** A single measurement performed by the BenchmarkRunner. The runner
+ * calls <code>setUp</code> once, then <code>run</code> once for each
+ * warmup and measurement iteration, timing each call. Every call to
+ * <code>run</code> must do the same, fixed amount of work, so that the
+ * checksum reported at the end depends only on the parameters and the
+ * number of iterations. */
+abstract class Benchmark {
+	private String name;
+	private String parameters;
+	protected long checksum = 0;
+
+	Benchmark(String name, String parameters) {
+		this.name = name;
+		this.parameters = parameters;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	String getParameters() {
+		return parameters;
+	}
+
+	/** Returns a digest of the results computed by the benchmark, which
+	 * ought to change whenever the simulator's behavior changes. */
+	long getChecksum() {
+		return checksum;
+	}
+
+	/** Returns anything more to report about the measurement, or null. */
+	String getNote() {
+		return null;
+	}
+
+	void setUp() throws Exception { }
+
+	/** Performs one iteration, returning the number of operations it
+	 * performed. */
+	abstract long run();
+
+	void tearDown() { }
+
+	protected void mix(long value) {
+		checksum = 31 * checksum + value;
+	}
+}
@@ -0,0 +1,286 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.prefs.AppPreferences;
+import com.cburch.logisim.std.wiring.Pin;
+
+/** Runs the simulator benchmarks without a graphical interface and
+ * prints one tab-separated line for each: its name, its parameters, the
+ * mean operations per second over the measured iterations, the relative
+ * standard deviation of that rate, and a checksum of what was computed.
+ *
+ * A benchmark may follow its line with a comment line, beginning with
+ * <code>#</code>, reporting more about the measurement.
+ *
+ * The circuits, seeds, and amount of work are all fixed by the command
+ * line, so the checksums are the same from one run to the next unless
+ * the simulator's behavior changes. Given the output of a previous run
+ * through <code>-baseline</code>, the runner also reports any benchmark
+ * whose rate dropped by more than the tolerance or whose checksum
+ * changed, and exits with status 1 if there is any.
+ *
+ * A circuit given through <code>-circ</code> is simulated with its own
+ * options; its checksum is reproducible only if its propagation delays
+ * are not randomized. */
+public class BenchmarkRunner {
+	private int warmup = 3;
+	private int iterations = 5;
+	private int size = 64;
+	private int ticks = 500;
+	private String queue = AppPreferences.SIM_QUEUE_WHEEL;
+	private boolean parallel = false;
+	private boolean compiled = false;
+	private String only = null;
+	private File circFile = null;
+	private File baselineFile = null;
+	private double tolerance = 10.0;
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		BenchmarkRunner runner = new BenchmarkRunner();
+		if (!runner.parseArgs(args)) {
+			printUsage();
+			System.exit(-1);
+		}
+		int code;
+		try {
+			code = runner.runAll();
+		} catch (Exception e) {
+			e.printStackTrace();
+			code = -1;
+		}
+		System.exit(code);
+	}
+
+	private static void printUsage() {
+		System.err.println("usage: BenchmarkRunner [options]"); //OK
+		System.err.println("   -size n         size of the generated circuits (default 64)"); //OK
+		System.err.println("   -ticks n        clock ticks per propagation iteration (default 500)"); //OK
+		System.err.println("   -warmup n       unmeasured iterations (default 3)"); //OK
+		System.err.println("   -iterations n   measured iterations (default 5)"); //OK
+		System.err.println("   -queue type     event queue: wheel or heap (default wheel)"); //OK
+		System.err.println("   -parallel       propagate subcircuits in parallel"); //OK
+		System.err.println("   -compiled       evaluate combinational logic compiled"); //OK
+		System.err.println("   -only name      run only benchmarks whose name contains name"); //OK
+		System.err.println("   -circ file      benchmark propagation in this circuit instead"); //OK
+		System.err.println("   -baseline file  compare against the output of an earlier run"); //OK
+		System.err.println("   -tolerance pct  allowed slowdown against the baseline (default 10)"); //OK
+	}
+
+	private boolean parseArgs(String[] args) {
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (arg.equals("-parallel")) {
+					parallel = true;
+					continue;
+				}
+				if (arg.equals("-compiled")) {
+					compiled = true;
+					continue;
+				}
+				if (i + 1 >= args.length) return false;
+				String val = args[++i];
+				if (arg.equals("-size")) {
+					size = Integer.parseInt(val);
+				} else if (arg.equals("-ticks")) {
+					ticks = Integer.parseInt(val);
+				} else if (arg.equals("-warmup")) {
+					warmup = Integer.parseInt(val);
+				} else if (arg.equals("-iterations")) {
+					iterations = Integer.parseInt(val);
+				} else if (arg.equals("-queue")) {
+					if (!val.equals(AppPreferences.SIM_QUEUE_WHEEL)
+							&& !val.equals(AppPreferences.SIM_QUEUE_HEAP)) {
+						return false;
+					}
+					queue = val;
+				} else if (arg.equals("-only")) {
+					only = val;
+				} else if (arg.equals("-circ")) {
+					circFile = new File(val);
+				} else if (arg.equals("-baseline")) {
+					baselineFile = new File(val);
+				} else if (arg.equals("-tolerance")) {
+					tolerance = Double.parseDouble(val);
+				} else {
+					return false;
+				}
+			}
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return size > 0 && ticks > 0 && warmup >= 0 && iterations > 0;
+	}
+
+	private List<Benchmark> createBenchmarks() {
+		ArrayList<Benchmark> ret = new ArrayList<Benchmark>();
+		String mode = "queue=" + queue + (parallel ? ",parallel" : "")
+			+ (compiled ? ",compiled" : "");
+		if (circFile != null) {
+			ret.add(new PropagateBenchmark("propagate",
+					circFile.getName() + "," + mode,
+					new FileSource(circFile), ticks, queue, parallel, compiled));
+			return ret;
+		}
+
+		for (String kind : CircuitGenerator.KINDS) {
+			ret.add(new PropagateBenchmark("propagate",
+					kind + "=" + size + "," + mode,
+					new PropagateBenchmark.Generated(kind, size),
+					ticks, queue, parallel, compiled));
+		}
+		ret.add(new WireBenchmark(CircuitGenerator.RIPPLE_ADDER, size, 50));
+		ret.add(new WireBenchmark(CircuitGenerator.RAM_CPU, size, 50));
+		ret.add(new BundleMapBenchmark(CircuitGenerator.RIPPLE_ADDER, size, 20));
+		ret.add(new BundleMapBenchmark(CircuitGenerator.COUNTER_CHAIN, size, 20));
+		ret.add(new EditBenchmark(16 * size, 20, true));
+		ret.add(new EditBenchmark(16 * size, 20, false));
+		ret.add(new ValueBenchmark(1, 200));
+		ret.add(new ValueBenchmark(8, 200));
+		ret.add(new ValueBenchmark(32, 200));
+		ret.add(new ValueBenchmark(64, 200));
+		ret.add(new MemoryBenchmark(8, 16, 1000000));
+		ret.add(new MemoryBenchmark(20, 32, 1000000));
+		// about 100,000 components at the default size
+		for (boolean save : new boolean[] { false, true }) {
+			ret.add(new FileBenchmark(58 * size, save, true));
+			ret.add(new FileBenchmark(58 * size, save, false));
+		}
+
+		if (only != null) {
+			for (int i = ret.size() - 1; i >= 0; i--) {
+				if (!ret.get(i).getName().contains(only)) ret.remove(i);
+			}
+		}
+		return ret;
+	}
+
+	private int runAll() throws Exception {
+		Map<String,String[]> baseline = null;
+		if (baselineFile != null) baseline = readBaseline(baselineFile);
+
+		System.out.println("# benchmark\tparameters\tops/s\terror%\tchecksum"); //OK
+		int failures = 0;
+		for (Benchmark bench : createBenchmarks()) {
+			bench.setUp();
+			for (int i = 0; i < warmup; i++) {
+				bench.run();
+			}
+			double[] rates = new double[iterations];
+			for (int i = 0; i < iterations; i++) {
+				long start = System.nanoTime();
+				long ops = bench.run();
+				long elapse = Math.max(1, System.nanoTime() - start);
+				rates[i] = ops * 1e9 / elapse;
+			}
+			bench.tearDown();
+
+			double mean = 0;
+			for (double r : rates) mean += r;
+			mean /= rates.length;
+			double var = 0;
+			for (double r : rates) var += (r - mean) * (r - mean);
+			double error = rates.length < 2 ? 0.0
+					: 100.0 * Math.sqrt(var / (rates.length - 1)) / mean;
+
+			String key = bench.getName() + "\t" + bench.getParameters();
+			String checksum = Long.toHexString(bench.getChecksum());
+			String line = String.format(Locale.US, "%s\t%.1f\t%.1f\t%s",
+					key, Double.valueOf(mean), Double.valueOf(error), checksum);
+			if (baseline != null) {
+				String[] base = baseline.get(key);
+				String verdict = compare(base, mean, checksum);
+				if (verdict != null) {
+					line += "\t" + verdict;
+					failures++;
+				}
+			}
+			System.out.println(line); //OK
+			String note = bench.getNote();
+			if (note != null) {
+				System.out.println("# " + key + "\t" + note); //OK
+			}
+		}
+		return failures > 0 ? 1 : 0;
+	}
+
+	private String compare(String[] base, double rate, String checksum) {
+		if (base == null) return null;
+		try {
+			double baseRate = Double.parseDouble(base[0]);
+			if (!base[1].equals(checksum)) {
+				return "CHANGED (was " + base[1] + ")";
+			}
+			if (rate < baseRate * (1.0 - tolerance / 100.0)) {
+				return String.format(Locale.US, "SLOWER (%.1f%% of %.1f)",
+						Double.valueOf(100.0 * rate / baseRate),
+						Double.valueOf(baseRate));
+			}
+		} catch (NumberFormatException e) {
+			// a malformed baseline line is just ignored
+		}
+		return null;
+	}
+
+	private static Map<String,String[]> readBaseline(File file)
+			throws IOException {
+		HashMap<String,String[]> ret = new HashMap<String,String[]>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith("#")) continue;
+				String[] fields = line.split("\t");
+				if (fields.length < 5) continue;
+				ret.put(fields[0] + "\t" + fields[1],
+						new String[] { fields[2], fields[4] });
+			}
+		} finally {
+			in.close();
+		}
+		return ret;
+	}
+
+	private static class FileSource extends PropagateBenchmark.Source {
+		private File file;
+
+		FileSource(File file) {
+			this.file = file;
+		}
+
+		@Override
+		LogisimFile getFile() throws Exception {
+			return new Loader(null).openLogisimFile(file);
+		}
+
+		@Override
+		List<Component> getOutputs(Circuit circuit) {
+			ArrayList<Component> ret = new ArrayList<Component>();
+			for (Instance pin : Analyze.getPinLabels(circuit).keySet()) {
+				if (!Pin.FACTORY.isInputPin(pin)) {
+					ret.add(Instance.getComponentFor(pin));
+				}
+			}
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitBenchmarks;
+
+/** Measures CircuitWires.computeBundleMap, the work done after each
+ * edit to a circuit, by discarding and recomputing the bundle map of a
+ * generated circuit once per operation. */
+class BundleMapBenchmark extends Benchmark {
+	private String kind;
+	private int size;
+	private int reps;
+	private Circuit circuit;
+
+	BundleMapBenchmark(String kind, int size, int reps) {
+		super("bundlemap", kind + "=" + size);
+		this.kind = kind;
+		this.size = size;
+		this.reps = reps;
+	}
+
+	@Override
+	void setUp() {
+		circuit = CircuitGenerator.create(kind, size).getCircuit();
+	}
+
+	@Override
+	long run() {
+		for (int i = 0; i < reps; i++) {
+			mix(CircuitBenchmarks.recomputeBundleMap(circuit));
+		}
+		return reps;
+	}
+}
@@ -0,0 +1,372 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.circuit.Wire;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Direction;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.file.Options;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.Builtin;
+import com.cburch.logisim.tools.AddTool;
+import com.cburch.logisim.tools.Library;
+import com.cburch.logisim.tools.Tool;
+
+/** Builds circuits of a given size for the benchmarks. Components are
+ * connected only through tunnels, so that the layout needs no routing;
+ * the simulator treats a tunnel exactly as it does a wire. Each
+ * generated circuit is deterministic: the same kind and size always give
+ * the same components at the same locations. */
+class CircuitGenerator {
+	static final String RIPPLE_ADDER = "adder";
+	static final String COUNTER_CHAIN = "counters";
+	static final String RAM_CPU = "cpu";
+	static final String SLICES = "slices";
+	static final String INVERTER_CHAIN = "chain";
+
+	static final String[] KINDS = { RIPPLE_ADDER, COUNTER_CHAIN, RAM_CPU,
+		SLICES, INVERTER_CHAIN };
+
+	static CircuitGenerator create(String kind, int size) {
+		CircuitGenerator ret = new CircuitGenerator();
+		if (kind.equals(RIPPLE_ADDER)) {
+			ret.buildRippleAdder(size);
+		} else if (kind.equals(COUNTER_CHAIN)) {
+			ret.buildCounterChain(size);
+		} else if (kind.equals(RAM_CPU)) {
+			ret.buildRamCpu(size);
+		} else if (kind.equals(SLICES)) {
+			ret.buildSlices(size);
+		} else if (kind.equals(INVERTER_CHAIN)) {
+			ret.buildInverterChain(size);
+		} else {
+			throw new IllegalArgumentException("unknown circuit kind " + kind);
+		}
+		return ret;
+	}
+
+	private Builtin builtin;
+	private LogisimFile file;
+	private ArrayList<Component> pending = new ArrayList<Component>();
+	private ArrayList<Component> outputs = new ArrayList<Component>();
+
+	private CircuitGenerator() {
+		Loader loader = new Loader(null);
+		builtin = loader.getBuiltin();
+		file = LogisimFile.createNew(loader);
+		// the random noise in propagation delays is drawn from an unseeded
+		// generator, so it is turned off to keep runs reproducible
+		file.getOptions().getAttributeSet().setValue(Options.sim_rand_attr,
+				Integer.valueOf(0));
+	}
+
+	LogisimFile getFile() {
+		return file;
+	}
+
+	Circuit getCircuit() {
+		return file.getMainCircuit();
+	}
+
+	/** Returns the output pins of the main circuit, in order of
+	 * significance. */
+	List<Component> getOutputs() {
+		return outputs;
+	}
+
+	/** An n-bit ripple counter built of T flip-flops, feeding one input of
+	 * an n-bit gate-level ripple-carry adder whose other input is the same
+	 * counter with its bits scrambled. */
+	private void buildRippleAdder(int bits) {
+		addClock(100, 100, "clk");
+		addConstant(100, 200, 1, "one");
+		addConstant(100, 300, 0, "c-1");
+		for (int i = 0; i < bits; i++) {
+			int y = 100 + 100 * i;
+			addFlipFlop(400, y, i == 0 ? "clk" : "nq" + (i - 1), "q" + i, "nq" + i);
+			addFullAdder(700, y, "q" + i, "q" + ((7 * i + 3) % bits),
+				"c" + (i - 1), "s" + i, "c" + i, "." + i);
+			addOutput(1700, y, "s" + i);
+		}
+		commit(getCircuit());
+	}
+
+	/** A chain of 16-bit registers, each of which adds the value of the
+	 * previous register to itself on every clock. The first register
+	 * simply counts. */
+	private void buildCounterChain(int stages) {
+		addClock(100, 100, "clk");
+		addConstant(100, 200, 1, "one", "width", "16");
+		for (int i = 0; i < stages; i++) {
+			int y = 100 + 100 * i;
+			String prev = i == 0 ? "one" : "r" + (i - 1);
+			Component reg = add("Memory", "Register", 600, y, "width", "16");
+			tunnel(reg, 0, "r" + i);
+			tunnel(reg, 1, "d" + i);
+			tunnel(reg, 2, "clk");
+			Component adder = add("Arithmetic", "Adder", 400, y, "width", "16");
+			tunnel(adder, 0, "r" + i);
+			tunnel(adder, 1, prev);
+			tunnel(adder, 2, "d" + i);
+			addOutput(900, y, "r" + i, "width", "16");
+		}
+		commit(getCircuit());
+	}
+
+	/** Some number of small accumulator machines. Each steps a program
+	 * counter through its own RAM, adding each word read (plus one) into
+	 * an accumulator and storing the accumulator back into the word. */
+	private void buildRamCpu(int cores) {
+		addClock(100, 100, "clk");
+		addConstant(100, 200, 1, "one");
+		addConstant(100, 300, 1, "pc1", "width", "8");
+		for (int i = 0; i < cores; i++) {
+			int y = 200 + 400 * i;
+			String pc = "pc" + i;
+			String acc = "acc" + i;
+			String data = "data" + i;
+
+			Component pcReg = add("Memory", "Register", 500, y, "width", "8");
+			tunnel(pcReg, 0, pc);
+			tunnel(pcReg, 1, pc + "+");
+			tunnel(pcReg, 2, "clk");
+			Component pcAdd = add("Arithmetic", "Adder", 300, y, "width", "8");
+			tunnel(pcAdd, 0, pc);
+			tunnel(pcAdd, 1, "pc1");
+			tunnel(pcAdd, 2, pc + "+");
+
+			Component ram = add("Memory", "RAM", 900, y + 100,
+				"addrWidth", "8", "dataWidth", "16", "bus", "separate");
+			tunnel(ram, 0, data);
+			tunnel(ram, 1, pc);
+			tunnel(ram, 5, "clk");
+			tunnel(ram, 6, "one");
+			tunnel(ram, 7, acc);
+
+			Component accReg = add("Memory", "Register", 1400, y, "width", "16");
+			tunnel(accReg, 0, acc);
+			tunnel(accReg, 1, acc + "+");
+			tunnel(accReg, 2, "clk");
+			Component accAdd = add("Arithmetic", "Adder", 1200, y, "width", "16");
+			tunnel(accAdd, 0, acc);
+			tunnel(accAdd, 1, data);
+			tunnel(accAdd, 2, acc + "+");
+			tunnel(accAdd, 3, "one");
+
+			addOutput(1700, y, acc, "width", "16");
+		}
+		commit(getCircuit());
+	}
+
+	/** The same circuit as the ripple adder, but with each bit's flip-flop
+	 * and full adder in an instance of a subcircuit. */
+	private void buildSlices(int bits) {
+		Circuit slice = new Circuit("slice");
+		file.addCircuit(slice);
+		String[] inputs = { "clkin", "b", "cin" };
+		String[] outs = { "q", "nq", "s", "cout" };
+		int y = 100;
+		for (String name : inputs) {
+			Component pin = add("Wiring", "Pin", 100, y, "label", name);
+			tunnel(pin, 0, name);
+			y += 50;
+		}
+		for (String name : outs) {
+			Component pin = add("Wiring", "Pin", 100, y, "output", "true",
+				"label", name);
+			tunnel(pin, 0, name);
+			y += 50;
+		}
+		addConstant(100, 600, 1, "one");
+		addFlipFlop(400, 100, "clkin", "q", "nq");
+		addFullAdder(700, 100, "q", "b", "cin", "s", "cout", "");
+		commit(slice);
+
+		addClock(100, 100, "clk");
+		addConstant(100, 300, 0, "c-1");
+		ArrayList<String> portNames = new ArrayList<String>();
+		for (Instance pin : slice.getAppearance().getPortOffsets(Direction.EAST).values()) {
+			portNames.add(pin.getAttributeValue(StdAttr.LABEL));
+		}
+		for (int i = 0; i < bits; i++) {
+			HashMap<String,String> labels = new HashMap<String,String>();
+			labels.put("clkin", i == 0 ? "clk" : "nq" + (i - 1));
+			labels.put("b", "q" + ((7 * i + 3) % bits));
+			labels.put("cin", "c" + (i - 1));
+			labels.put("q", "q" + i);
+			labels.put("nq", "nq" + i);
+			labels.put("s", "s" + i);
+			labels.put("cout", "c" + i);
+			Component sub = addComponent(slice.getSubcircuitFactory(),
+				400, 100 + 200 * i);
+			for (int k = 0; k < portNames.size(); k++) {
+				tunnel(sub, k, labels.get(portNames.get(k)));
+			}
+			addOutput(1700, 100 + 100 * i, "s" + i);
+		}
+		commit(getCircuit());
+	}
+
+	/** A chain of NOT gates driven by the clock, in rows of 100, each
+	 * connected to the next by a detour of five wires. Unlike the other
+	 * circuits, this one is wired rather than tunnelled, so that editing
+	 * it exercises the bundle map as a drawn layout would. */
+	private void buildInverterChain(int gates) {
+		Component clock = add("Wiring", "Clock", 100, 100);
+		Location prev = clock.getEnd(0).getLocation();
+		for (int i = 0; i < gates; i++) {
+			int x = 200 + 100 * (i % 100);
+			int y = 100 + 100 * (i / 100);
+			Component gate = add("Gates", "NOT Gate", x, y);
+			Location in = gate.getEnd(1).getLocation();
+			int mid = prev.getX() + 20;
+			// a detour to the next row passes between the rows
+			int low = i % 100 == 0 ? prev.getY() + 60 : in.getY() + 40;
+			addWire(prev, Location.create(mid, prev.getY()));
+			addWire(Location.create(mid, prev.getY()), Location.create(mid, low));
+			addWire(Location.create(mid, low), Location.create(in.getX() - 20, low));
+			addWire(Location.create(in.getX() - 20, low),
+				Location.create(in.getX() - 20, in.getY()));
+			addWire(Location.create(in.getX() - 20, in.getY()), in);
+			prev = gate.getEnd(0).getLocation();
+		}
+		addOutput(prev.getX() + 100, prev.getY(), "out");
+		addWire(prev, Location.create(prev.getX() + 100, prev.getY()));
+		commit(getCircuit());
+	}
+
+	//
+	// building blocks
+	//
+	private void addFlipFlop(int x, int y, String clock, String q, String nq) {
+		Component ff = add("Memory", "T Flip-Flop", x, y);
+		tunnel(ff, 0, "one");
+		tunnel(ff, 1, clock);
+		tunnel(ff, 2, q);
+		tunnel(ff, 3, nq);
+	}
+
+	private void addFullAdder(int x, int y, String a, String b, String cin,
+			String sum, String cout, String suffix) {
+		String p = "p" + suffix;
+		String g = "g" + suffix;
+		String h = "h" + suffix;
+		addGate("XOR Gate", x, y, a, b, p);
+		addGate("XOR Gate", x + 200, y, p, cin, sum);
+		addGate("AND Gate", x + 400, y, a, b, g);
+		addGate("AND Gate", x + 600, y, p, cin, h);
+		addGate("OR Gate", x + 800, y, g, h, cout);
+	}
+
+	private void addGate(String name, int x, int y, String in0, String in1,
+			String out) {
+		Component gate = add("Gates", name, x, y, "inputs", "2");
+		tunnel(gate, 0, out);
+		tunnel(gate, 1, in0);
+		tunnel(gate, 2, in1);
+	}
+
+	private void addConstant(int x, int y, int value, String label,
+			String... attrs) {
+		// the value goes last, as changing the width would truncate it
+		String[] all = new String[attrs.length + 2];
+		System.arraycopy(attrs, 0, all, 0, attrs.length);
+		all[attrs.length] = "value";
+		all[attrs.length + 1] = "0x" + Integer.toHexString(value);
+		Component c = add("Wiring", "Constant", x, y, all);
+		tunnel(c, 0, label);
+	}
+
+	private void addOutput(int x, int y, String label, String... attrs) {
+		String[] all = new String[attrs.length + 4];
+		all[0] = "output";
+		all[1] = "true";
+		all[2] = "label";
+		all[3] = label;
+		System.arraycopy(attrs, 0, all, 4, attrs.length);
+		Component pin = add("Wiring", "Pin", x, y, all);
+		tunnel(pin, 0, label);
+		outputs.add(pin);
+	}
+
+	private void addClock(int x, int y, String label) {
+		Component clock = add("Wiring", "Clock", x, y);
+		tunnel(clock, 0, label);
+	}
+
+	//
+	// low-level methods
+	//
+	private Component add(String lib, String name, int x, int y,
+			String... attrs) {
+		Library library = builtin.getLibrary(lib);
+		Tool tool = library == null ? null : library.getTool(name);
+		if (!(tool instanceof AddTool)) {
+			throw new IllegalArgumentException("no component " + lib + "/" + name);
+		}
+		return addComponent(((AddTool) tool).getFactory(), x, y, attrs);
+	}
+
+	private Component addComponent(ComponentFactory factory, int x, int y,
+			String... attrs) {
+		AttributeSet attrSet = factory.createAttributeSet();
+		for (int i = 0; i + 1 < attrs.length; i += 2) {
+			setAttribute(attrSet, attrs[i], attrs[i + 1]);
+		}
+		Component ret = factory.createComponent(Location.create(x, y), attrSet);
+		pending.add(ret);
+		return ret;
+	}
+
+	private void addWire(Location e0, Location e1) {
+		pending.add(Wire.create(e0, e1));
+	}
+
+	private void tunnel(Component comp, int end, String label) {
+		EndData data = comp.getEnd(end);
+		Location loc = data.getLocation();
+		String width = "" + data.getWidth().getWidth();
+		ComponentFactory factory = ((AddTool) builtin.getLibrary("Wiring")
+				.getTool("Tunnel")).getFactory();
+		addComponent(factory, loc.getX(), loc.getY(), "label", label,
+				"width", width);
+	}
+
+	private static void setAttribute(AttributeSet attrs, String name,
+			String value) {
+		for (Attribute<?> attr : attrs.getAttributes()) {
+			if (attr.getName().equals(name)) {
+				setParsed(attrs, attr, value);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("no attribute " + name);
+	}
+
+	private static <V> void setParsed(AttributeSet attrs, Attribute<V> attr,
+			String value) {
+		attrs.setValue(attr, attr.parse(value));
+	}
+
+	private void commit(Circuit circuit) {
+		CircuitMutation xn = new CircuitMutation(circuit);
+		xn.addAll(pending);
+		xn.execute();
+		pending.clear();
+	}
+}
@@ -0,0 +1,86 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitBenchmarks;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.Wire;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+
+/** Measures the latency of an edit to a large wired layout: each
+ * operation adds a wire stub to one of the chain's nets, or removes it
+ * again, and propagates the result, as happens when the user draws or
+ * deletes a wire. Run with incremental updates of the bundle map turned
+ * on and off, the two rates show what the incremental updates save. */
+class EditBenchmark extends Benchmark {
+	private int size;
+	private int reps;
+	private boolean incremental;
+	private Circuit circuit;
+	private CircuitState state;
+	private Propagator prop;
+	private ArrayList<Location> stubPoints = new ArrayList<Location>();
+	private Component output;
+	private int next = 0;
+
+	EditBenchmark(int size, int reps, boolean incremental) {
+		super("edit", CircuitGenerator.INVERTER_CHAIN + "=" + size
+				+ ",incremental=" + incremental);
+		this.size = size;
+		this.reps = reps;
+		this.incremental = incremental;
+	}
+
+	@Override
+	void setUp() {
+		CircuitGenerator gen = CircuitGenerator.create(
+				CircuitGenerator.INVERTER_CHAIN, size);
+		circuit = gen.getCircuit();
+		CircuitBenchmarks.setIncrementalWires(circuit, incremental);
+		state = new CircuitState(new Project(gen.getFile()), circuit);
+		prop = state.getPropagator();
+		prop.propagate();
+		output = gen.getOutputs().get(0);
+
+		// the corners of the detours are where the stubs go
+		for (Wire w : circuit.getWires()) {
+			Location loc = w.getEnd0();
+			if (w.isVertical() && loc.getY() < w.getEnd1().getY()) {
+				stubPoints.add(loc);
+			}
+		}
+		Collections.sort(stubPoints);
+	}
+
+	@Override
+	long run() {
+		for (int i = 0; i < reps; i++) {
+			Location loc = stubPoints.get(next);
+			next = (next + 7919) % stubPoints.size();
+			Wire stub = Wire.create(loc, loc.translate(0, -10));
+
+			CircuitMutation xn = new CircuitMutation(circuit);
+			xn.add(stub);
+			xn.execute();
+			prop.propagate();
+
+			xn = new CircuitMutation(circuit);
+			xn.remove(stub);
+			xn.execute();
+			prop.propagate();
+
+			mix(Pin.FACTORY.getValue(state.getInstanceState(output)).hashCode());
+		}
+		return 2L * reps;
+	}
+}
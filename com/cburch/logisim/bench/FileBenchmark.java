@@ -0,0 +1,118 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Locale;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.file.FileBenchmarks;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.tools.Library;
+
+/** Measures opening or saving a large generated file, either streaming
+ * it as Logisim does or building its whole document first, with one
+ * operation for each component. The file is held in memory, so that only
+ * the reading and writing are measured, and the most heap in use during
+ * an iteration is reported along with the rate. */
+class FileBenchmark extends Benchmark {
+	private int bits;
+	private boolean save;
+	private boolean streaming;
+	private LogisimFile file;
+	private byte[] data;
+	private int components;
+	private long peakHeap = 0;
+
+	FileBenchmark(int bits, boolean save, boolean streaming) {
+		super(save ? "save" : "open", CircuitGenerator.RIPPLE_ADDER + "=" + bits
+				+ ",xml=" + (streaming ? "stream" : "dom"));
+		this.bits = bits;
+		this.save = save;
+		this.streaming = streaming;
+	}
+
+	@Override
+	void setUp() throws Exception {
+		CircuitGenerator gen = CircuitGenerator.create(CircuitGenerator.RIPPLE_ADDER, bits);
+		file = gen.getFile();
+		for (Library lib : file.getLoader().getBuiltin().getLibraries()) {
+			if (!file.getLibraries().contains(lib)) file.addLibrary(lib);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FileBenchmarks.write(file, out, true);
+		data = out.toByteArray();
+		components = gen.getCircuit().getNonWires().size();
+		if (!save) file = null;
+	}
+
+	@Override
+	long run() {
+		resetPeakHeap();
+		try {
+			if (save) {
+				CountingStream out = new CountingStream();
+				FileBenchmarks.write(file, out, streaming);
+				mix(out.count);
+			} else {
+				LogisimFile read = FileBenchmarks.read(new ByteArrayInputStream(data),
+						new Loader(null), streaming);
+				for (Circuit circ : read.getCircuits()) {
+					mix(circ.getNonWires().size());
+					mix(circ.getWires().size());
+				}
+			}
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		peakHeap = Math.max(peakHeap, getPeakHeap());
+		return components;
+	}
+
+	@Override
+	void tearDown() {
+		file = null;
+		data = null;
+	}
+
+	@Override
+	String getNote() {
+		return String.format(Locale.US, "peak heap %.1f MB",
+				Double.valueOf(peakHeap / 1048576.0));
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+		}
+	}
+
+	private static long getPeakHeap() {
+		long ret = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) ret += pool.getPeakUsage().getUsed();
+		}
+		return ret;
+	}
+
+	private static class CountingStream extends OutputStream {
+		private long count = 0;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
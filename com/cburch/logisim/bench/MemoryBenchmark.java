@@ -0,0 +1,49 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import com.cburch.hex.HexModel;
+import com.cburch.logisim.std.memory.MemoryBenchmarks;
+
+/** Measures MemContents.get and set at pseudo-random addresses, half of
+ * the operations being reads and half writes. */
+class MemoryBenchmark extends Benchmark {
+	private int addrBits;
+	private int width;
+	private int reps;
+	private HexModel contents;
+	private long seed;
+
+	MemoryBenchmark(int addrBits, int width, int reps) {
+		super("memory", "addr=" + addrBits + ",width=" + width);
+		this.addrBits = addrBits;
+		this.width = width;
+		this.reps = reps;
+	}
+
+	@Override
+	void setUp() {
+		contents = MemoryBenchmarks.createContents(addrBits, width);
+		seed = 1;
+	}
+
+	@Override
+	long run() {
+		long mask = (1L << addrBits) - 1;
+		long x = seed;
+		long sum = 0;
+		for (int i = 0; i < reps; i++) {
+			// a linear congruential generator, so the addresses are the same
+			// from one run to the next
+			x = x * 6364136223846793005L + 1442695040888963407L;
+			long addr = (x >>> 20) & mask;
+			int val = contents.get(addr);
+			sum += val;
+			contents.set((addr * 7) & mask, val + (int) (x >>> 40));
+		}
+		seed = x;
+		mix(sum);
+		return 2L * reps;
+	}
+}
@@ -0,0 +1,95 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+
+/** Measures Propagator.propagate: each operation is one clock tick
+ * followed by propagation until the circuit is stable. The checksum
+ * covers the values of the output pins after every tick. */
+class PropagateBenchmark extends Benchmark {
+	/** Where the circuit for a PropagateBenchmark comes from. */
+	static abstract class Source {
+		abstract LogisimFile getFile() throws Exception;
+
+		/** Returns the output pins to be included in the checksum. */
+		abstract List<Component> getOutputs(Circuit circuit);
+	}
+
+	static class Generated extends Source {
+		private String kind;
+		private int size;
+		private CircuitGenerator generator = null;
+
+		Generated(String kind, int size) {
+			this.kind = kind;
+			this.size = size;
+		}
+
+		@Override
+		LogisimFile getFile() {
+			generator = CircuitGenerator.create(kind, size);
+			return generator.getFile();
+		}
+
+		@Override
+		List<Component> getOutputs(Circuit circuit) {
+			return generator.getOutputs();
+		}
+	}
+
+	private Source source;
+	private int ticks;
+	private String queue;
+	private boolean parallel;
+	private boolean compiled;
+	private CircuitState state;
+	private Propagator prop;
+	private ArrayList<Component> outputs;
+
+	PropagateBenchmark(String name, String parameters, Source source,
+			int ticks, String queue, boolean parallel, boolean compiled) {
+		super(name, parameters);
+		this.source = source;
+		this.ticks = ticks;
+		this.queue = queue;
+		this.parallel = parallel;
+		this.compiled = compiled;
+	}
+
+	@Override
+	void setUp() throws Exception {
+		LogisimFile file = source.getFile();
+		Project proj = new Project(file);
+		Circuit circuit = file.getMainCircuit();
+		outputs = new ArrayList<Component>(source.getOutputs(circuit));
+		state = new CircuitState(proj, circuit);
+		prop = state.getPropagator();
+		prop.setEventQueue(queue);
+		prop.setParallel(parallel);
+		prop.setCompiled(compiled);
+		prop.propagate();
+	}
+
+	@Override
+	long run() {
+		for (int i = 0; i < ticks; i++) {
+			prop.tick();
+			prop.propagate();
+			for (Component pin : outputs) {
+				mix(Pin.FACTORY.getValue(state.getInstanceState(pin)).hashCode());
+			}
+		}
+		return ticks;
+	}
+}
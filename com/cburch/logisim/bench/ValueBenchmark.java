@@ -0,0 +1,58 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import java.util.Random;
+
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+
+/** Measures Value.create and Value.createKnown over a fixed, seeded
+ * sequence of bit patterns, as the components create them during
+ * propagation. */
+class ValueBenchmark extends Benchmark {
+	private static final int PATTERNS = 1024;
+
+	private int width;
+	private int reps;
+	private Value[][] bits;
+	private long[] known;
+	private BitWidth bitWidth;
+
+	ValueBenchmark(int width, int reps) {
+		super("value", "width=" + width);
+		this.width = width;
+		this.reps = reps;
+	}
+
+	@Override
+	void setUp() {
+		Random rand = new Random(width);
+		Value[] choices = { Value.FALSE, Value.TRUE, Value.UNKNOWN, Value.ERROR };
+		bitWidth = BitWidth.create(width);
+		bits = new Value[PATTERNS][width];
+		known = new long[PATTERNS];
+		for (int i = 0; i < PATTERNS; i++) {
+			// mostly known values, as in a working circuit
+			for (int j = 0; j < width; j++) {
+				int k = rand.nextInt(16);
+				bits[i][j] = k < 14 ? choices[k & 1] : choices[k - 12];
+			}
+			known[i] = width <= 32 ? rand.nextInt() : rand.nextLong();
+		}
+	}
+
+	@Override
+	long run() {
+		long sum = 0;
+		for (int r = 0; r < reps; r++) {
+			for (int i = 0; i < PATTERNS; i++) {
+				sum += Value.create(bits[i]).hashCode();
+				sum += Value.createKnown(bitWidth, known[i]).hashCode();
+			}
+		}
+		mix(sum);
+		return 2L * reps * PATTERNS;
+	}
+}
@@ -0,0 +1,41 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitBenchmarks;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.proj.Project;
+
+/** Measures CircuitWires.propagate, settling every point of a generated
+ * circuit once per operation. */
+class WireBenchmark extends Benchmark {
+	private String kind;
+	private int size;
+	private int reps;
+	private CircuitState state;
+
+	WireBenchmark(String kind, int size, int reps) {
+		super("wires", kind + "=" + size);
+		this.kind = kind;
+		this.size = size;
+		this.reps = reps;
+	}
+
+	@Override
+	void setUp() {
+		CircuitGenerator gen = CircuitGenerator.create(kind, size);
+		Circuit circuit = gen.getCircuit();
+		state = new CircuitState(new Project(gen.getFile()), circuit);
+		state.getPropagator().propagate();
+	}
+
+	@Override
+	long run() {
+		for (int i = 0; i < reps; i++) {
+			mix(CircuitBenchmarks.settleWires(state));
+		}
+		return reps;
+	}
+}
@@ -8,15 +8,23 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.cburch.logisim.analyze.model.AnalyzerModel;
 import com.cburch.logisim.analyze.model.Entry;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.analyze.model.PackedColumn;
 import com.cburch.logisim.analyze.model.TruthTable;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Direction;
@@ -30,6 +38,9 @@ import com.cburch.logisim.std.wiring.Pin;
 
 public class Analyze {
 	private static final int MAX_ITERATIONS = 100;
+	// rows simulated for each thread, at the least, before another is used
+	private static final int ROWS_PER_THREAD = 64;
+	private static final int ROWS_PER_BLOCK = 32;
 	
 	private Analyze() { }
 	
@@ -319,47 +330,154 @@ public class Analyze {
 		
 		int inputCount = inputPins.size();
 		int rowCount = 1 << inputCount;
-		Entry[][] columns = new Entry[outputPins.size()][rowCount];
+		PackedColumn[] columns = new PackedColumn[outputPins.size()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = new PackedColumn(inputCount);
+		}
+		
+		CircuitState first = new CircuitState(proj, circuit);
+		BitSlicedTable sliced = BitSlicedTable.create(first, inputPins, outputPins);
+		if (sliced == null || !computeSliced(sliced, inputCount, columns)) {
+			computeSimulated(first, inputPins, outputPins, rowCount, columns);
+		}
 		
-		for (int i = 0; i < rowCount; i++) {
-			CircuitState circuitState = new CircuitState(proj, circuit);
+		model.setVariables(inputNames, outputNames);
+		for (int i = 0; i < columns.length; i++) {
+			model.getTruthTable().setOutputColumn(i, columns[i]);
+		}
+	}
+	
+	// computes the rows 64 at a time, returning false if some gate
+	// declines to be computed this way
+	private static boolean computeSliced(BitSlicedTable sliced, int inputCount,
+			PackedColumn[] columns) {
+		int rowCount = 1 << inputCount;
+		long[] inputs = new long[inputCount];
+		long[] outputs = new long[columns.length];
+		for (int base = 0; base < rowCount; base += 64) {
+			int rows = Math.min(64, rowCount - base);
 			for (int j = 0; j < inputCount; j++) {
-				Instance pin = inputPins.get(j);
-				InstanceState pinState = circuitState.getInstanceState(pin);
-				boolean value = TruthTable.isInputSet(i, j, inputCount);
-				Pin.FACTORY.setValue(pinState, value ? Value.TRUE : Value.FALSE);
+				long bits = 0;
+				for (int k = 0; k < rows; k++) {
+					if (TruthTable.isInputSet(base + k, j, inputCount)) {
+						bits |= 1L << k;
+					}
+				}
+				inputs[j] = bits;
 			}
-			
-			Propagator prop = circuitState.getPropagator();
-			prop.propagate();
-			/* TODO for the SimulatorPrototype class
-			do {
-				prop.step();
-			} while (prop.isPending()); */
-			// TODO: Search for circuit state
-			
-			if (prop.isOscillating()) {
-				for (int j = 0; j < columns.length; j++) {
-					columns[j][i] = Entry.OSCILLATE_ERROR;
+			if (!sliced.evaluate(inputs, outputs)) return false;
+			for (int j = 0; j < columns.length; j++) {
+				PackedColumn column = columns[j];
+				long bits = outputs[j];
+				for (int k = 0; k < rows; k++) {
+					column.set(base + k, ((bits >>> k) & 1) != 0 ? Entry.ONE : Entry.ZERO);
 				}
-			} else {
-				for (int j = 0; j < columns.length; j++) {
-					Instance pin = outputPins.get(j);
-					InstanceState pinState = circuitState.getInstanceState(pin);
-					Entry out;
-					Value outValue = Pin.FACTORY.getValue(pinState).get(0);
-					if (outValue == Value.TRUE) out = Entry.ONE;
-					else if (outValue == Value.FALSE) out = Entry.ZERO;
-					else if (outValue == Value.ERROR) out = Entry.BUS_ERROR;
-					else out = Entry.DONT_CARE;
-					columns[j][i] = out;
+			}
+		}
+		return true;
+	}
+	
+	// simulates each row, spreading the rows across the processors; each
+	// thread keeps one state, reset between its rows, and claims the rows
+	// ROWS_PER_BLOCK at a time, so that no two threads set entries lying in
+	// the same word of a column
+	private static void computeSimulated(CircuitState first,
+			final List<Instance> inputPins, final List<Instance> outputPins,
+			final int rowCount, final PackedColumn[] columns) {
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(),
+				rowCount / ROWS_PER_THREAD);
+		CircuitState[] states = new CircuitState[Math.max(1, threads)];
+		states[0] = first;
+		for (int t = 1; t < states.length; t++) {
+			states[t] = new CircuitState(first.getProject(), first.getCircuit());
+		}
+		for (CircuitState state : states) {
+			state.getPropagator().setParallel(false);
+		}
+		
+		// the first row is computed here, so that whatever the states of
+		// a circuit share is built before the threads begin
+		computeRow(states[0], 0, inputPins, outputPins, columns);
+		if (states.length == 1) {
+			for (int i = 1; i < rowCount; i++) {
+				computeRow(states[0], i, inputPins, outputPins, columns);
+			}
+			return;
+		}
+		
+		final AtomicInteger next = new AtomicInteger(0);
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (final CircuitState state : states) {
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					int start;
+					while ((start = ROWS_PER_BLOCK * next.getAndIncrement()) < rowCount) {
+						int end = Math.min(rowCount, start + ROWS_PER_BLOCK);
+						for (int i = Math.max(1, start); i < end; i++) {
+							computeRow(state, i, inputPins, outputPins, columns);
+						}
+					}
+					return null;
 				}
+			});
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(states.length);
+		try {
+			for (Future<Object> result : pool.invokeAll(tasks)) {
+				result.get();
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	private static void computeRow(CircuitState circuitState, int i,
+			List<Instance> inputPins, List<Instance> outputPins,
+			PackedColumn[] columns) {
+		Propagator prop = circuitState.getPropagator();
+		if (i > 0) {
+			// the state is left as a new one would be
+			prop.reset();
+			prop.setParallel(false);
+		}
+		int inputCount = inputPins.size();
+		for (int j = 0; j < inputCount; j++) {
+			Instance pin = inputPins.get(j);
+			InstanceState pinState = circuitState.getInstanceState(pin);
+			boolean value = TruthTable.isInputSet(i, j, inputCount);
+			Pin.FACTORY.setValue(pinState, value ? Value.TRUE : Value.FALSE);
 		}
 		
-		model.setVariables(inputNames, outputNames);
-		for (int i = 0; i < columns.length; i++) {
-			model.getTruthTable().setOutputColumn(i, columns[i]);
+		prop.propagate();
+		/* TODO for the SimulatorPrototype class
+		do {
+			prop.step();
+		} while (prop.isPending()); */
+		// TODO: Search for circuit state
+		
+		if (prop.isOscillating()) {
+			for (int j = 0; j < columns.length; j++) {
+				columns[j].set(i, Entry.OSCILLATE_ERROR);
+			}
+		} else {
+			for (int j = 0; j < columns.length; j++) {
+				Instance pin = outputPins.get(j);
+				InstanceState pinState = circuitState.getInstanceState(pin);
+				Entry out;
+				Value outValue = Pin.FACTORY.getValue(pinState).get(0);
+				if (outValue == Value.TRUE) out = Entry.ONE;
+				else if (outValue == Value.FALSE) out = Entry.ZERO;
+				else if (outValue == Value.ERROR) out = Entry.BUS_ERROR;
+				else out = Entry.DONT_CARE;
+				columns[j].set(i, out);
+			}
 		}
 	}
 }
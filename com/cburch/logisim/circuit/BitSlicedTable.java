@@ -0,0 +1,214 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+/** A circuit of one-bit gates compiled for computing its truth table 64
+ * rows at a time. Each net holds a long in which bit k is the net's value
+ * in the k-th of the rows, and each gate, being a BitwiseComputer, is
+ * evaluated once for all of them.
+ *
+ * This applies only when the circuit settles to the same values however
+ * its events are ordered: every component other than the pins is a
+ * BitwiseComputer with one-bit ends (or drives nothing at all, as a probe
+ * does), the gates form no cycle, and every net read is driven by exactly
+ * one of them or by an input pin. Otherwise create returns null and the
+ * rows are simulated one at a time. */
+class BitSlicedTable {
+	private static class Net {
+		int slot = -1;
+		int drivers = 0;
+		Member driver = null;
+		boolean input = false;
+	}
+
+	private static class Member {
+		BitwiseComputer computer;
+		int[] outputs;
+		boolean[] isOutput;
+		boolean[] connected;
+		Net[] nets;
+		int[] slots;
+		ArrayList<Member> succs = new ArrayList<Member>();
+		int preds = 0;
+	}
+
+	private CircuitState state;
+	private Member[] members; // in order of evaluation
+	private int[] inputSlots;
+	private int[] outputSlots;
+	private long[] slots;
+	private long[] ends;
+
+	private BitSlicedTable() { }
+
+	/** Evaluates 64 rows at once: bit k of inputs[j] is the value of the
+	 * j-th input pin in the k-th row, and bit k of outputs[j] receives that
+	 * of the j-th output pin. Returns false if some gate declines to be
+	 * computed this way, as a gate configured to emit floating values
+	 * does. */
+	boolean evaluate(long[] inputs, long[] outputs) {
+		for (int i = 0; i < inputSlots.length; i++) {
+			slots[inputSlots[i]] = inputs[i];
+		}
+		for (Member m : members) {
+			int[] ms = m.slots;
+			for (int i = 0; i < ms.length; i++) {
+				ends[i] = ms[i] < 0 ? 0 : slots[ms[i]];
+			}
+			if (!m.computer.computeBitmasks(state, ends, m.connected)) {
+				return false;
+			}
+			for (int e : m.outputs) {
+				slots[ms[e]] = ends[e];
+			}
+		}
+		for (int i = 0; i < outputSlots.length; i++) {
+			outputs[i] = slots[outputSlots[i]];
+		}
+		return true;
+	}
+
+	static BitSlicedTable create(CircuitState state, List<Instance> inputPins,
+			List<Instance> outputPins) {
+		Circuit circuit = state.getCircuit();
+		CircuitWires.BundleMap map = circuit.wires.getDriverMap();
+		HashMap<Object,Net> nets = new HashMap<Object,Net>();
+		ArrayList<Member> list = new ArrayList<Member>();
+		HashSet<Component> pins = new HashSet<Component>();
+		for (Instance pin : inputPins) pins.add(Instance.getComponentFor(pin));
+		for (Instance pin : outputPins) pins.add(Instance.getComponentFor(pin));
+		int endCount = 0;
+
+		for (Component comp : circuit.getNonWires()) {
+			if (comp.getFactory() instanceof Tunnel) continue;
+			List<EndData> compEnds = comp.getEnds();
+			Object feature = comp.getFeature(BitmaskComputer.class);
+			if (!(feature instanceof BitwiseComputer)) {
+				// the pins are handled below; anything else may only read
+				if (pins.contains(comp)) continue;
+				for (EndData end : compEnds) {
+					if (end.isOutput()) return null;
+				}
+				continue;
+			}
+
+			Member m = new Member();
+			int n = compEnds.size();
+			m.computer = (BitwiseComputer) feature;
+			m.outputs = m.computer.getOutputEnds();
+			m.isOutput = new boolean[n];
+			m.connected = new boolean[n];
+			m.nets = new Net[n];
+			m.slots = new int[n];
+			for (int e : m.outputs) {
+				if (e < 0 || e >= n) return null;
+				m.isOutput[e] = true;
+			}
+			for (int i = 0; i < n; i++) {
+				EndData end = compEnds.get(i);
+				if (end.getWidth().getWidth() != 1) return null;
+				Location loc = end.getLocation();
+				m.connected[i] = circuit.isConnected(loc, comp);
+				if (m.isOutput[i] || m.connected[i]) {
+					Net net = getNet(map, nets, loc);
+					if (net == null) return null;
+					m.nets[i] = net;
+					if (m.isOutput[i]) {
+						net.drivers++;
+						net.driver = m;
+					}
+				}
+			}
+			endCount = Math.max(endCount, n);
+			list.add(m);
+		}
+
+		BitSlicedTable ret = new BitSlicedTable();
+		ret.state = state;
+		int slotCount = 0;
+		ret.inputSlots = new int[inputPins.size()];
+		for (int i = 0; i < ret.inputSlots.length; i++) {
+			Instance pin = inputPins.get(i);
+			if (pin.getAttributeValue(StdAttr.WIDTH).getWidth() != 1) return null;
+			Net net = getNet(map, nets, pin.getLocation());
+			if (net == null) return null;
+			net.drivers++;
+			net.input = true;
+			net.slot = slotCount++;
+			ret.inputSlots[i] = net.slot;
+		}
+
+		// every net read needs its one driver
+		for (Member m : list) {
+			for (int i = 0; i < m.nets.length; i++) {
+				Net net = m.nets[i];
+				if (net == null) {
+					m.slots[i] = -1;
+					continue;
+				}
+				if (net.drivers != 1) return null;
+				if (net.slot < 0) net.slot = slotCount++;
+				m.slots[i] = net.slot;
+				if (!m.isOutput[i] && !net.input) {
+					net.driver.succs.add(m);
+					m.preds++;
+				}
+			}
+		}
+		ret.outputSlots = new int[outputPins.size()];
+		for (int i = 0; i < ret.outputSlots.length; i++) {
+			Net net = getNet(map, nets, outputPins.get(i).getLocation());
+			if (net == null || net.drivers != 1 || net.slot < 0) return null;
+			ret.outputSlots[i] = net.slot;
+		}
+
+		// put the gates in order of their dependencies
+		ArrayList<Member> order = new ArrayList<Member>(list.size());
+		for (Member m : list) {
+			if (m.preds == 0) order.add(m);
+		}
+		for (int i = 0; i < order.size(); i++) {
+			for (Member w : order.get(i).succs) {
+				w.preds--;
+				if (w.preds == 0) order.add(w);
+			}
+		}
+		if (order.size() < list.size()) return null; // there is a cycle
+
+		ret.members = order.toArray(new Member[order.size()]);
+		ret.slots = new long[slotCount];
+		ret.ends = new long[endCount];
+		return ret;
+	}
+
+	// returns the net at the location, or null if it is not a plain
+	// one-bit connection that this can handle
+	private static Net getNet(CircuitWires.BundleMap map,
+			HashMap<Object,Net> nets, Location loc) {
+		WireBundle b = map.getBundleAt(loc);
+		if (b != null) {
+			if (!CombinationalNetlist.isSimple(b)) return null;
+			if (b.getWidth().getWidth() != 1) return null;
+		}
+		Object key = b == null ? loc : b;
+		Net ret = nets.get(key);
+		if (ret == null) {
+			ret = new Net();
+			nets.put(key, ret);
+		}
+		return ret;
+	}
+}
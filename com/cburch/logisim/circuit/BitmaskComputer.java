@@ -0,0 +1,34 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+public interface BitmaskComputer {
+	/**
+	 * Returns the indices of the ends at which the component emits
+	 * values. All other ends are taken to be inputs.
+	 */
+	public int[] getOutputEnds();
+
+	/**
+	 * Returns the delay after which the component's outputs reflect
+	 * a change to its inputs.
+	 */
+	public int getDelay();
+
+	/**
+	 * Computes the component's outputs from inputs that are all fully
+	 * defined. The <code>values</code> array is indexed by end: on entry,
+	 * each input's entry holds the bits of the value at that end, or 0 if
+	 * <code>connected</code> says that nothing is attached there. The
+	 * method should place the bits of each output into its entry; bits
+	 * beyond the output's width are ignored. Input entries may be
+	 * overwritten.
+	 *
+	 * If some output would not be fully defined, or if the component is
+	 * configured in a way this method does not handle, it returns false,
+	 * and the component is propagated as usual instead.
+	 */
+	public boolean computeBitmasks(CircuitState state, long[] values,
+			boolean[] connected);
+}
@@ -0,0 +1,13 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+/**
+ * A BitmaskComputer for which each bit of an output depends only on the
+ * same bit of each input, as for a gate. Such a component with one-bit
+ * ends can be given 64 separate cases at once, one in each bit of the
+ * values, as when a truth table is computed.
+ */
+public interface BitwiseComputer extends BitmaskComputer {
+}
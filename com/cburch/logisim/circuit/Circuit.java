@@ -110,6 +110,8 @@ public class Circuit {
 	private HashSet<Component> comps = new HashSet<Component>(); // doesn't include wires
 	CircuitWires wires = new CircuitWires();
 		// wires is package-protected for CircuitState and Analyze only.
+	volatile CombinationalNetlist netlist = null;
+		// compiled by CombinationalNetlist on demand
 	private ArrayList<Component> clocks = new ArrayList<Component>();
 	private CircuitLocker locker;
 	private WeakHashMap<Component, Circuit> circuitsUsingThis;
@@ -0,0 +1,38 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.HashSet;
+
+import com.cburch.logisim.data.Location;
+
+/** Entry points into the wire-level simulator for the benchmarks in
+ * com.cburch.logisim.bench. Nothing else should use these. */
+public class CircuitBenchmarks {
+	private CircuitBenchmarks() { }
+
+	/** Settles the values on every wire of the state's circuit, as
+	 * CircuitWires.propagate does for the dirty points of a step. Returns
+	 * the number of points settled. */
+	public static int settleWires(CircuitState state) {
+		CircuitWires wires = state.getCircuit().wires;
+		HashSet<Location> points = new HashSet<Location>(wires.points.getSplitLocations());
+		wires.propagate(state, points);
+		return points.size();
+	}
+
+	/** Determines whether edits to the circuit update its bundle map
+	 * around the edit, or discard it to be computed afresh. */
+	public static void setIncrementalWires(Circuit circuit, boolean value) {
+		circuit.wires.incremental = value;
+	}
+
+	/** Discards the circuit's bundle map and computes it again. Returns
+	 * the number of points in the new map. */
+	public static int recomputeBundleMap(Circuit circuit) {
+		CircuitWires wires = circuit.wires;
+		wires.voidBundleMap();
+		return wires.getDriverMap().pointLocations.length;
+	}
+}
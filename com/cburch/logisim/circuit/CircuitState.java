@@ -3,15 +3,14 @@
 
 package com.cburch.logisim.circuit;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
 
-import com.cburch.logisim.circuit.Propagator.SetData;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.ComponentState;
@@ -68,7 +67,6 @@ public class CircuitState implements InstanceData {
 				values.clear();
 				dirtyComponents.clear();
 				dirtyPoints.clear();
-				causes.clear();
 			} else if (action == CircuitEvent.ACTION_CHANGE) {
 				Object data = event.getData();
 				if (data instanceof Collection) {
@@ -127,10 +125,16 @@ public class CircuitState implements InstanceData {
 
 	private CircuitWires.State wireData = null;
 	private HashMap<Component,Object> componentData = new HashMap<Component,Object>();
-	private Map<Location,Value> values = new HashMap<Location,Value>();
+	CircuitValues values; // values and causes at each point
 	private SmallSet<Component> dirtyComponents = new SmallSet<Component>();
 	private SmallSet<Location> dirtyPoints = new SmallSet<Location>();
-	HashMap<Location,SetData> causes = new HashMap<Location,SetData>();
+	
+	// for Propagator to detect events repeated within one step
+	CircuitWires.BundleMap visitedMap = null;
+	Object visitedEra = null;
+	int[] visitedStamps = null;
+	// for CombinationalNetlist to evaluate this state's regions
+	CombinationalNetlist.Values netlistValues = null;
 
 	private static int lastId = 0;
 	private int id = lastId++;
@@ -138,6 +142,7 @@ public class CircuitState implements InstanceData {
 	public CircuitState(Project proj, Circuit circuit) {
 		this.proj = proj;
 		this.circuit = circuit;
+		this.values = new CircuitValues(this);
 		circuit.addCircuitListener(myCircuitListener);
 	}
 	
@@ -154,9 +159,21 @@ public class CircuitState implements InstanceData {
 		return cloneState();
 	}
 	
+	/** Returns a copy of this state, which the simulation is about to
+	 * continue in. The copy takes over what follows the live memory of a
+	 * RAM, such as an open hex editor. It is made while holding the
+	 * propagator, since the copy shares value arrays and memory pages with
+	 * this state and marks them as shared in both. */
 	public CircuitState cloneState() {
 		CircuitState ret = new CircuitState(proj, circuit);
-		ret.copyFrom(this, new Propagator(ret));
+		Propagator prop = base;
+		if (prop == null) {
+			ret.copyFrom(this, new Propagator(ret));
+		} else {
+			synchronized(prop) {
+				ret.copyFrom(this, new Propagator(ret));
+			}
+		}
 		ret.parentComp = null;
 		ret.parentState = null;
 		return ret;
@@ -191,15 +208,10 @@ public class CircuitState implements InstanceData {
 				this.componentData.put(key, newValue);
 			}
 		}
-		for (Location key : src.causes.keySet()) {
-			Propagator.SetData oldValue = src.causes.get(key);
-			Propagator.SetData newValue = oldValue.cloneFor(this);
-			this.causes.put(key, newValue);
-		}
+		this.values.copyFrom(src.values);
 		if (src.wireData != null) {
 			this.wireData = (CircuitWires.State) src.wireData.clone();
 		}
-		this.values.putAll(src.values);
 		this.dirtyComponents.addAll(src.dirtyComponents);
 		this.dirtyPoints.addAll(src.dirtyPoints);
 	}
@@ -268,7 +280,7 @@ public class CircuitState implements InstanceData {
 	}
 
 	public Value getValue(Location pt) {
-		Value ret = values.get(pt);
+		Value ret = values.getValue(pt);
 		if (ret != null) return ret;
 
 		BitWidth wid = circuit.getWidth(pt);
@@ -279,6 +291,37 @@ public class CircuitState implements InstanceData {
 		if (base != null) base.setValue(this, pt, val, cause, delay);
 	}
 
+	/** Returns the slots of the component's ends in the circuit's current
+	 * point numbering, for use with the getValue and setValue methods
+	 * that take them. */
+	public PortSlots getPortSlots(Component comp) {
+		return new PortSlots(circuit.wires.getDriverMap(), comp);
+	}
+
+	/** Returns true if slots obtained from getPortSlots still match the
+	 * circuit's wiring. */
+	public boolean isCurrent(PortSlots slots) {
+		return circuit.wires.isCurrent(slots.map);
+	}
+
+	public Value getValue(PortSlots slots, int end) {
+		return getValue(slots.map, slots.points[end], slots.locs[end]);
+	}
+
+	public void setValue(PortSlots slots, int end, Value val,
+			Component cause, int delay) {
+		if (base != null) base.setValue(this, slots, end, val, cause, delay);
+	}
+
+	// the value at a point whose index in the bundle map is known
+	Value getValue(CircuitWires.BundleMap map, int index, Location pt) {
+		Value ret = values.getValue(map, index, pt);
+		if (ret != null) return ret;
+
+		BitWidth wid = circuit.getWidth(pt);
+		return Value.createUnknown(wid);
+	}
+
 	public void markComponentAsDirty(Component comp) {
 		try {
 			dirtyComponents.add(comp);
@@ -289,6 +332,10 @@ public class CircuitState implements InstanceData {
 		}
 	}
 
+	void markComponentAsClean(Component comp) {
+		dirtyComponents.remove(comp);
+	}
+
 	public void markComponentsDirty(Collection<Component> comps) {
 		dirtyComponents.addAll(comps);
 	}
@@ -323,6 +370,15 @@ public class CircuitState implements InstanceData {
 	}
 
 	void processDirtyComponents() {
+		processOwnDirtyComponents();
+
+		CircuitState[] subs = new CircuitState[substates.size()];
+		for (CircuitState substate : substates.toArray(subs)) {
+			substate.processDirtyComponents();
+		}
+	}
+
+	void processOwnDirtyComponents() {
 		if (!dirtyComponents.isEmpty()) {
 			// This seeming wasted copy is to avoid ConcurrentModifications
 			// if we used an iterator instead.
@@ -342,9 +398,19 @@ public class CircuitState implements InstanceData {
 				}
 			}
 			dirtyComponents.clear();
+			CombinationalNetlist netlist = null;
+			if (base != null && base.isCompiled()) {
+				netlist = CombinationalNetlist.get(circuit);
+			}
+			ArrayList<Component> compiled = null;
 			for (Object compObj : toProcess) {
 				if (compObj instanceof Component) {
 					Component comp = (Component) compObj;
+					if (netlist != null && netlist.contains(comp)) {
+						if (compiled == null) compiled = new ArrayList<Component>();
+						compiled.add(comp);
+						continue;
+					}
 					comp.propagate(this);
 					if (comp.getFactory() instanceof Pin && parentState != null) {
 						// should be propagated in superstate
@@ -352,18 +418,27 @@ public class CircuitState implements InstanceData {
 					}
 				}
 			}
+			if (compiled != null) netlist.propagate(this, compiled);
 		}
+	}
+
+	void processDirtyPoints() {
+		processOwnDirtyPoints(circuit.wires.isMapVoided());
 
 		CircuitState[] subs = new CircuitState[substates.size()];
 		for (CircuitState substate : substates.toArray(subs)) {
-			substate.processDirtyComponents();
+			substate.processDirtyPoints();
 		}
 	}
 
-	void processDirtyPoints() {
+	boolean hasDirtyPoints() {
+		return !dirtyPoints.isEmpty();
+	}
+
+	void processOwnDirtyPoints(boolean includeAllPoints) {
 		HashSet<Location> dirty = new HashSet<Location>(dirtyPoints);
 		dirtyPoints.clear();
-		if (circuit.wires.isMapVoided()) {
+		if (includeAllPoints) {
 			for (int i = 3; i >= 0; i--) {
 				try {
 					dirty.addAll(circuit.wires.points.getSplitLocations());
@@ -378,11 +453,6 @@ public class CircuitState implements InstanceData {
 		if (!dirty.isEmpty()) {
 			circuit.wires.propagate(this, dirty);
 		}
-
-		CircuitState[] subs = new CircuitState[substates.size()];
-		for (CircuitState substate : substates.toArray(subs)) {
-			substate.processDirtyPoints();
-		}
 	}
 	
 	void reset() {
@@ -392,9 +462,9 @@ public class CircuitState implements InstanceData {
 			if (!(comp.getFactory() instanceof SubcircuitFactory)) it.remove();
 		}
 		values.clear();
+		netlistValues = null;
 		dirtyComponents.clear();
 		dirtyPoints.clear();
-		causes.clear();
 		markAllComponentsDirty();
 		
 		for (CircuitState sub : substates) {
@@ -425,22 +495,47 @@ public class CircuitState implements InstanceData {
 
 	Value getComponentOutputAt(Location p) {
 		// for CircuitWires - to get values, ignoring wires' contributions
-		Propagator.SetData cause_list = causes.get(p);
+		Propagator.SetData cause_list = values.getCause(p);
+		return Propagator.computeValue(cause_list);
+	}
+
+	Value getComponentOutputAt(CircuitWires.BundleMap map, int index,
+			Location p) {
+		Propagator.SetData cause_list = values.getCause(map, index, p);
 		return Propagator.computeValue(cause_list);
 	}
 
 	Value getValueByWire(Location p) {
-		return values.get(p);
+		return values.getValue(p);
 	}
 
 	void setValueByWire(Location p, Value v) {
 		// for CircuitWires - to set value at point
+		Object old;
+		if (v == Value.NIL) {
+			old = values.putValue(p, null);
+		} else {
+			old = values.putValue(p, v);
+		}
+		valueSetByWire(p, v, old);
+	}
+
+	void setValueByWire(CircuitWires.BundleMap map, int index, Location p,
+			Value v) {
+		Object old;
+		if (v == Value.NIL) {
+			old = values.putValue(map, index, p, null);
+		} else {
+			old = values.putValue(map, index, p, v);
+		}
+		valueSetByWire(p, v, old);
+	}
+
+	private void valueSetByWire(Location p, Value v, Object old) {
 		boolean changed;
 		if (v == Value.NIL) {
-			Object old = values.remove(p);
 			changed = (old != null && old != Value.NIL);
 		} else {
-			Object old = values.put(p, v);
 			changed = !v.equals(old);
 		}
 		if (changed) {
@@ -0,0 +1,312 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/** The values and cause lists at the points of one CircuitState. These
+ * are kept in arrays indexed by the point numbering of the circuit's
+ * bundle map, so that the numbering is shared among all states of a
+ * circuit and each state holds only two arrays. Points that the
+ * numbering doesn't know about (such as the ends of a component that
+ * was just removed) go into small overflow maps. When the bundle map is
+ * rebuilt, the arrays are renumbered the next time a value is written;
+ * when it is only updated around an edit, they are just extended. Callers
+ * that already know a point's index in the bundle map pass it along with
+ * the map, which saves looking the point up.
+ *
+ * Copying the values of another state shares its arrays and cause lists
+ * rather than duplicating them. An array is copied when either state
+ * first changes it, and a cause list when either state first changes the
+ * causes at its point, so a copy costs only as much as the two states
+ * later diverge. */
+class CircuitValues {
+	private static class Layout {
+		CircuitWires.BundleMap map;
+		Value[] values;
+		SetData[] causes;
+		boolean valuesShared = false; // values also used by another state
+		boolean causesShared = false; // causes also used by another state
+		long[] ownedChains = null; // if not null, a bit for each cause list
+			// that belongs to this state alone; the rest may be shared
+
+		Layout(CircuitWires.BundleMap map, int size) {
+			this.map = map;
+			this.values = new Value[size];
+			this.causes = new SetData[size];
+		}
+
+		Layout(Layout src) {
+			this.map = src.map;
+			this.values = src.values;
+			this.causes = src.causes;
+			share();
+		}
+
+		void share() {
+			valuesShared = true;
+			causesShared = true;
+			ownedChains = new long[(causes.length + 63) >>> 6];
+		}
+	}
+
+	private static final Layout EMPTY = new Layout(null, 0);
+
+	private CircuitState state;
+	private CircuitWires wires;
+	private volatile Layout layout = EMPTY;
+	private HashMap<Location,Value> otherValues = null;
+	private HashMap<Location,SetData> otherCauses = null;
+
+	CircuitValues(CircuitState state) {
+		this.state = state;
+		this.wires = state.getCircuit().wires;
+	}
+
+	Value getValue(Location loc) {
+		Layout cur = layout;
+		int index = cur.map == null ? -1 : cur.map.getPointIndex(loc);
+		if (index >= 0) return cur.values[index];
+		return getOtherValue(loc);
+	}
+
+	/** Returns the value at a point given by its index in map, as
+	 * <code>getValue(loc)</code> does. When the arrays are not yet
+	 * numbered by map, the value is found by location instead. */
+	Value getValue(CircuitWires.BundleMap map, int index, Location loc) {
+		Layout cur = layout;
+		if (cur.map != map || index < 0) return getValue(loc);
+		return cur.values[index];
+	}
+
+	Value putValue(Location loc, Value val) {
+		Layout cur = getLayoutForWrite();
+		return putValue(cur, cur.map.getPointIndex(loc), loc, val);
+	}
+
+	Value putValue(CircuitWires.BundleMap map, int index, Location loc,
+			Value val) {
+		Layout cur = getLayoutForWrite();
+		if (cur.map != map) index = cur.map.getPointIndex(loc);
+		return putValue(cur, index, loc, val);
+	}
+
+	private Value putValue(Layout cur, int index, Location loc, Value val) {
+		if (index >= 0) {
+			if (cur.valuesShared) {
+				cur.values = cur.values.clone();
+				cur.valuesShared = false;
+			}
+			Value ret = cur.values[index];
+			cur.values[index] = val;
+			return ret;
+		}
+		if (val == null) {
+			return otherValues == null ? null : otherValues.remove(loc);
+		}
+		if (otherValues == null) otherValues = new HashMap<Location,Value>();
+		return otherValues.put(loc, val);
+	}
+
+	SetData getCause(Location loc) {
+		Layout cur = layout;
+		int index = cur.map == null ? -1 : cur.map.getPointIndex(loc);
+		if (index >= 0) return cur.causes[index];
+		return getOtherCause(loc);
+	}
+
+	SetData getCause(CircuitWires.BundleMap map, int index, Location loc) {
+		Layout cur = layout;
+		if (cur.map != map || index < 0) return getCause(loc);
+		return cur.causes[index];
+	}
+
+	/** Returns the cause list at a point, as <code>getCause</code> does,
+	 * but one that the caller may change in place. */
+	SetData getCauseForWrite(Location loc) {
+		Layout cur = getLayoutForWrite();
+		return getCauseForWrite(cur, cur.map.getPointIndex(loc), loc);
+	}
+
+	SetData getCauseForWrite(CircuitWires.BundleMap map, int index,
+			Location loc) {
+		Layout cur = getLayoutForWrite();
+		if (cur.map != map) index = cur.map.getPointIndex(loc);
+		return getCauseForWrite(cur, index, loc);
+	}
+
+	private SetData getCauseForWrite(Layout cur, int index, Location loc) {
+		if (index < 0) return getOtherCause(loc);
+		SetData head = cur.causes[index];
+		long[] owned = cur.ownedChains;
+		if (head != null && owned != null
+				&& (owned[index >>> 6] & (1L << index)) == 0) {
+			head = head.cloneFor(state);
+			putCause(cur, index, head);
+		}
+		return head;
+	}
+
+	void putCause(Location loc, SetData head) {
+		Layout cur = getLayoutForWrite();
+		putCause(cur, cur.map.getPointIndex(loc), loc, head);
+	}
+
+	void putCause(CircuitWires.BundleMap map, int index, Location loc,
+			SetData head) {
+		Layout cur = getLayoutForWrite();
+		if (cur.map != map) index = cur.map.getPointIndex(loc);
+		putCause(cur, index, loc, head);
+	}
+
+	private void putCause(Layout cur, int index, Location loc, SetData head) {
+		if (index >= 0) {
+			putCause(cur, index, head);
+		} else if (head == null) {
+			if (otherCauses != null) otherCauses.remove(loc);
+		} else {
+			if (otherCauses == null) otherCauses = new HashMap<Location,SetData>();
+			otherCauses.put(loc, head);
+		}
+	}
+
+	private Value getOtherValue(Location loc) {
+		HashMap<Location,Value> other = otherValues;
+		return other == null ? null : other.get(loc);
+	}
+
+	private SetData getOtherCause(Location loc) {
+		HashMap<Location,SetData> other = otherCauses;
+		return other == null ? null : other.get(loc);
+	}
+
+	private static void putCause(Layout cur, int index, SetData head) {
+		if (cur.causesShared) {
+			cur.causes = cur.causes.clone();
+			cur.causesShared = false;
+		}
+		cur.causes[index] = head;
+		// the list is either new or already copied for this state
+		if (cur.ownedChains != null) {
+			cur.ownedChains[index >>> 6] |= 1L << index;
+		}
+	}
+
+	void clear() {
+		layout = EMPTY;
+		otherValues = null;
+		otherCauses = null;
+	}
+
+	void copyFrom(CircuitValues src) {
+		Layout from = src.layout;
+		if (from == EMPTY) {
+			layout = EMPTY;
+		} else {
+			from.share();
+			layout = new Layout(from);
+		}
+		if (src.otherValues == null) {
+			otherValues = null;
+		} else {
+			otherValues = new HashMap<Location,Value>(src.otherValues);
+		}
+		if (src.otherCauses == null) {
+			otherCauses = null;
+		} else {
+			otherCauses = new HashMap<Location,SetData>();
+			for (Map.Entry<Location,SetData> entry : src.otherCauses.entrySet()) {
+				otherCauses.put(entry.getKey(), entry.getValue().cloneFor(state));
+			}
+		}
+	}
+
+	// Only the methods that change values call this, and those run on
+	// the propagator's thread, so that a state's arrays are renumbered
+	// by the thread writing into them. Readers on other threads keep
+	// using whichever arrays they find.
+	private Layout getLayoutForWrite() {
+		Layout cur = layout;
+		if (cur.map == null || !wires.isCurrent(cur.map)) {
+			cur = renumber(cur, wires.getDriverMap());
+			layout = cur;
+		}
+		return cur;
+	}
+
+	private Layout renumber(Layout old, CircuitWires.BundleMap map) {
+		Layout ret = new Layout(map, map.pointLocations.length);
+		if (old.ownedChains != null) {
+			// the lists keep their ownership, but not their numbering
+			for (int i = 0; i < old.causes.length; i++) {
+				SetData head = old.causes[i];
+				if (head != null && (old.ownedChains[i >>> 6] & (1L << i)) == 0) {
+					head = head.cloneFor(state);
+					if (old.causesShared) {
+						old.causes = old.causes.clone();
+						old.causesShared = false;
+					}
+					old.causes[i] = head;
+				}
+			}
+		}
+		if (old.map != null && map.baseSerial == old.map.serial) {
+			// the new map only adds points to the old one
+			System.arraycopy(old.values, 0, ret.values, 0, old.values.length);
+			System.arraycopy(old.causes, 0, ret.causes, 0, old.causes.length);
+		} else if (old.map != null) {
+			Location[] oldLocs = old.map.pointLocations;
+			for (int i = 0; i < oldLocs.length; i++) {
+				Value val = old.values[i];
+				SetData head = old.causes[i];
+				if (oldLocs[i] == null || (val == null && head == null)) continue;
+				int index = map.getPointIndex(oldLocs[i]);
+				if (index >= 0) {
+					ret.values[index] = val;
+					ret.causes[index] = head;
+				} else {
+					if (val != null) {
+						if (otherValues == null) otherValues = new HashMap<Location,Value>();
+						otherValues.put(oldLocs[i], val);
+					}
+					if (head != null) {
+						if (otherCauses == null) otherCauses = new HashMap<Location,SetData>();
+						otherCauses.put(oldLocs[i], head);
+					}
+				}
+			}
+		}
+		if (otherValues != null) {
+			for (Iterator<Map.Entry<Location,Value>> it = otherValues.entrySet().iterator();
+					it.hasNext(); ) {
+				Map.Entry<Location,Value> entry = it.next();
+				int index = map.getPointIndex(entry.getKey());
+				if (index >= 0) {
+					ret.values[index] = entry.getValue();
+					it.remove();
+				}
+			}
+			if (otherValues.isEmpty()) otherValues = null;
+		}
+		if (otherCauses != null) {
+			for (Iterator<Map.Entry<Location,SetData>> it = otherCauses.entrySet().iterator();
+					it.hasNext(); ) {
+				Map.Entry<Location,SetData> entry = it.next();
+				int index = map.getPointIndex(entry.getKey());
+				if (index >= 0) {
+					ret.causes[index] = entry.getValue();
+					it.remove();
+				}
+			}
+			if (otherCauses.isEmpty()) otherCauses = null;
+		}
+		return ret;
+	}
+}
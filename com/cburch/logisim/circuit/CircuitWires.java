@@ -40,6 +40,17 @@ class CircuitWires {
 		}
 	}
 
+	static class PointSlots {
+		int index;      // slot of the point in per-state arrays
+		int driverBase; // first driver slot for components at the point
+		Component[] drivers;
+		PointSlots(int index, int driverBase, Component[] drivers) {
+			this.index = index;
+			this.driverBase = driverBase;
+			this.drivers = drivers;
+		}
+	}
+
 	static class ThreadBundle {
 		int loc;
 		WireBundle b;
@@ -51,16 +62,18 @@ class CircuitWires {
 
 	static class State {
 		BundleMap bundleMap;
-		HashMap<WireThread,Value> thr_values = new HashMap<WireThread,Value>();
+		Value[] thr_values; // indexed by WireThread.index
 
 		State(BundleMap bundleMap) {
 			this.bundleMap = bundleMap;
+			this.thr_values = new Value[bundleMap.threadCount];
 		}
 		
 		@Override
 		public Object clone() {
 			State ret = new State(this.bundleMap);
-			ret.thr_values.putAll(this.thr_values);
+			System.arraycopy(this.thr_values, 0, ret.thr_values, 0,
+					this.thr_values.length);
 			return ret;
 		}
 	}
@@ -77,13 +90,59 @@ class CircuitWires {
 	}
 
 	static class BundleMap {
-		boolean computed = false;
-		HashMap<Location,WireBundle> pointBundles = new HashMap<Location,WireBundle>();
-		HashSet<WireBundle> bundles = new HashSet<WireBundle>();
-		boolean isValid = true;
+		private static int lastSerial = 0;
+
+		final int serial;
+		volatile boolean computed = false;
+		Thread owner = null; // the thread computing the map
+		HashMap<Location,WireBundle> pointBundles;
+		HashSet<WireBundle> bundles;
+		boolean isValid;
 		// NOTE: It would make things more efficient if we also had
 		// a set of just the first bundle in each tree.
-		HashSet<WidthIncompatibilityData> incompatibilityData = null;
+		HashSet<WidthIncompatibilityData> incompatibilityData;
+		// dense numbering of the circuit's points, of each point at
+		// which a component can emit a value, and of the wire threads;
+		// an index of a point that no longer exists is not reused, but
+		// its location is null
+		HashMap<Location,PointSlots> pointSlots;
+		Location[] pointLocations;
+		int driverCount;
+		int threadCount;
+		// how many of the indices above are still in use, which is less
+		// after updateBundleMap
+		int livePoints;
+		int liveDrivers;
+		int liveThreads;
+		// for a map derived from another by updateBundleMap, the serial
+		// number of the map it replaced and the threads it added; every
+		// point and thread of the older map keeps its index
+		int baseSerial;
+		ArrayList<WireThread> newThreads;
+
+		BundleMap() {
+			synchronized(BundleMap.class) {
+				serial = ++lastSerial;
+			}
+			clear();
+		}
+
+		// forgets anything computed, before computing the map again
+		void clear() {
+			pointBundles = new HashMap<Location,WireBundle>();
+			bundles = new HashSet<WireBundle>();
+			isValid = true;
+			incompatibilityData = null;
+			pointSlots = new HashMap<Location,PointSlots>();
+			pointLocations = null;
+			driverCount = 0;
+			threadCount = 0;
+			livePoints = 0;
+			liveDrivers = 0;
+			liveThreads = 0;
+			baseSerial = -1;
+			newThreads = null;
+		}
 
 		HashSet<WidthIncompatibilityData> getWidthIncompatibilityData() {
 			return incompatibilityData;
@@ -119,6 +178,22 @@ class CircuitWires {
 			isValid = false;
 		}
 
+		int getPointIndex(Location p) {
+			PointSlots slots = pointSlots.get(p);
+			return slots == null ? -1 : slots.index;
+		}
+
+		int getDriverSlot(Location p, Component cause) {
+			PointSlots slots = pointSlots.get(p);
+			if (slots != null) {
+				Component[] drivers = slots.drivers;
+				for (int i = 0; i < drivers.length; i++) {
+					if (drivers[i] == cause) return slots.driverBase + i;
+				}
+			}
+			return -1;
+		}
+
 		void setBundleAt(Location p, WireBundle b) {
 			pointBundles.put(p, b);
 		}
@@ -137,6 +212,7 @@ class CircuitWires {
 		}
 
 		synchronized void waitUntilComputed() {
+			if (owner == Thread.currentThread()) return;
 			while (!computed) {
 				try { wait(); } catch (InterruptedException e) { }
 			}
@@ -153,7 +229,13 @@ class CircuitWires {
 
 	// derived data
 	private Bounds bounds = Bounds.EMPTY_BOUNDS;
-	private BundleMap bundleMap = null;
+	private volatile BundleMap bundleMap = null;
+	// while bundleMap is null, a map that is out of date only around
+	// changedPoints; if staleMap is null, the map must be computed afresh
+	private BundleMap staleMap = null;
+	private HashSet<Location> changedPoints = null;
+	private int changeCount = 0;
+	boolean incremental = true;
 
 	CircuitWires() { }
 
@@ -161,7 +243,7 @@ class CircuitWires {
 	// query methods
 	//
 	boolean isMapVoided() {
-		return bundleMap == null;
+		return bundleMap == null && staleMap == null;
 	}
 	
 	Set<WidthIncompatibilityData> getWidthIncompatibilityData() {
@@ -194,6 +276,14 @@ class CircuitWires {
 		return q;
 	}
 
+	BundleMap getDriverMap() {
+		return getBundleMap();
+	}
+
+	boolean isCurrent(BundleMap map) {
+		return bundleMap == map;
+	}
+
 	Iterator<? extends Component> getComponents() {
 		return IteratorUtil.createJoinedIterator(splitters.iterator(),
 			wires.iterator());
@@ -229,8 +319,6 @@ class CircuitWires {
 	//
 	// action methods
 	//
-	// NOTE: this could be made much more efficient in most cases to
-	// avoid voiding the bundle map.
 	boolean add(Component comp) {
 		boolean added = true;
 		if (comp instanceof Wire) {
@@ -249,7 +337,7 @@ class CircuitWires {
 		}
 		if (added) {
 			points.add(comp);
-			voidBundleMap();
+			voidBundleMapAround(comp);
 		}
 		return added;
 	}
@@ -270,23 +358,23 @@ class CircuitWires {
 			}
 		}
 		points.remove(comp);
-		voidBundleMap();
+		voidBundleMapAround(comp);
 	}
 	
 	void add(Component comp, EndData end) {
 		points.add(comp, end);
-		voidBundleMap();
+		voidBundleMapAt(comp, end.getLocation(), null);
 	}
 	
 	void remove(Component comp, EndData end) {
 		points.remove(comp, end);
-		voidBundleMap();
+		voidBundleMapAt(comp, end.getLocation(), null);
 	}
 	
 	void replace(Component comp, EndData oldEnd, EndData newEnd) {
 		points.remove(comp, oldEnd);
 		points.add(comp, newEnd);
-		voidBundleMap();
+		voidBundleMapAt(comp, oldEnd.getLocation(), newEnd.getLocation());
 	}
 
 	private boolean addWire(Wire w) {
@@ -321,7 +409,18 @@ class CircuitWires {
 
 		// get state, or create a new one if current state is outdated
 		State s = circState.getWireData();
-		if (s == null || s.bundleMap != map) {
+		ArrayList<WireThread> added = map.newThreads;
+		if (s != null && s.bundleMap != map
+				&& s.bundleMap.serial == map.baseSerial && added != null) {
+			// the map was only updated locally, so only its new threads
+			// need computing
+			State old = s;
+			s = new State(map);
+			System.arraycopy(old.thr_values, 0, s.thr_values, 0,
+					old.thr_values.length);
+			dirtyThreads.addAll(added);
+			circState.setWireData(s);
+		} else if (s == null || s.bundleMap != map) {
 			// if it is outdated, we need to compute for all threads
 			s = new State(map);
 			for (WireBundle b : map.getBundles()) {
@@ -339,17 +438,21 @@ class CircuitWires {
 		for (Location p : points) {
 			WireBundle pb = map.getBundleAt(p);
 			if (pb == null) { // point is not wired
-				circState.setValueByWire(p, circState.getComponentOutputAt(p));
+				int index = map.getPointIndex(p);
+				circState.setValueByWire(map, index, p,
+						circState.getComponentOutputAt(map, index, p));
 			} else {
 				WireThread[] th = pb.threads;
 				if (!pb.isValid() || th == null) {
 					// immediately propagate NILs across invalid bundles
-					SmallSet<Location> pbPoints = pb.points;
+					Location[] pbPoints = pb.pointArray;
 					if (pbPoints == null) {
 						circState.setValueByWire(p, Value.NIL);
 					} else {
-						for (Location loc2 : pbPoints) {
-							circState.setValueByWire(loc2, Value.NIL);
+						int[] pbIndices = pb.pointIndices;
+						for (int i = 0; i < pbPoints.length; i++) {
+							circState.setValueByWire(map, pbIndices[i],
+									pbPoints[i], Value.NIL);
 						}
 					}
 				} else {
@@ -365,8 +468,8 @@ class CircuitWires {
 		// determine values of affected threads
 		HashSet<ThreadBundle> bundles = new HashSet<ThreadBundle>();
 		for (WireThread t : dirtyThreads) {
-			Value v = getThreadValue(circState, t);
-			s.thr_values.put(t, v);
+			Value v = getThreadValue(circState, map, t);
+			s.thr_values[t.index] = v;
 			bundles.addAll(t.getBundles());
 		}
 
@@ -378,12 +481,12 @@ class CircuitWires {
 			if (!b.isValid() || b.threads == null) {
 				; // do nothing
 			} else if (b.threads.length == 1) {
-				bv = s.thr_values.get(b.threads[0]);
+				bv = s.thr_values[b.threads[0].index];
 			} else {
 				Value[] tvs = new Value[b.threads.length];
 				boolean tvs_valid = true;
 				for (int i = 0; i < tvs.length; i++) {
-					Value tv = s.thr_values.get(b.threads[i]);
+					Value tv = s.thr_values[b.threads[i].index];
 					if (tv == null) { tvs_valid = false; break; }
 					tvs[i] = tv;
 				}
@@ -391,8 +494,10 @@ class CircuitWires {
 			}
 
 			if (bv != null) {
-				for (Location p : b.points) {
-					circState.setValueByWire(p, bv);
+				Location[] bPoints = b.pointArray;
+				int[] bIndices = b.pointIndices;
+				for (int i = 0; i < bPoints.length; i++) {
+					circState.setValueByWire(map, bIndices[i], bPoints[i], bv);
 				}
 			}
 		}
@@ -509,44 +614,287 @@ class CircuitWires {
 	//
 	// helper methods
 	//
-	private void voidBundleMap() {
+	synchronized void voidBundleMap() {
 		bundleMap = null;
+		staleMap = null;
+		changedPoints = null;
+		changeCount++;
+	}
+
+	private void voidBundleMapAround(Component comp) {
+		if (comp instanceof Wire) {
+			Wire w = (Wire) comp;
+			voidBundleMapAt(comp, w.e0, w.e1);
+		} else if (isSpecial(comp)) {
+			voidBundleMap();
+		} else {
+			ArrayList<Location> locs = new ArrayList<Location>();
+			for (EndData end : comp.getEnds()) {
+				if (end != null) locs.add(end.getLocation());
+			}
+			voidBundleMapAt(locs);
+		}
+	}
+
+	private void voidBundleMapAt(Component comp, Location a, Location b) {
+		if (isSpecial(comp)) {
+			voidBundleMap();
+		} else {
+			ArrayList<Location> locs = new ArrayList<Location>(2);
+			locs.add(a);
+			if (b != null) locs.add(b);
+			voidBundleMapAt(locs);
+		}
+	}
+
+	private synchronized void voidBundleMapAt(Collection<Location> locs) {
+		BundleMap map = bundleMap;
+		if (map != null) {
+			if (!incremental || !map.isValid()) {
+				voidBundleMap();
+				return;
+			}
+			bundleMap = null;
+			staleMap = map;
+			changedPoints = new HashSet<Location>();
+		} else if (staleMap == null) {
+			return; // the map will be computed afresh anyway
+		}
+		changedPoints.addAll(locs);
+		changeCount++;
+	}
+
+	/** Returns true for the components that connect bundles in ways other
+	 * than wires do, which updateBundleMap leaves to computeBundleMap. */
+	private static boolean isSpecial(Component comp) {
+		if (comp instanceof Splitter) return true;
+		Object factory = comp.getFactory();
+		return factory instanceof Tunnel || factory instanceof PullResistor;
 	}
 
 	private BundleMap getBundleMap() {
 		// Maybe we already have a valid bundle map (or maybe
-		// one is in progress).
+		// one is in progress). Otherwise the map is published before it
+		// is computed, so that anybody else asking waits for it.
 		BundleMap ret = bundleMap;
-		if (ret != null) {
+		if (ret != null && ret.computed) return ret;
+		BundleMap base = null;
+		HashSet<Location> changed = null;
+		synchronized(this) {
+			ret = bundleMap;
+			if (ret == null) {
+				ret = new BundleMap();
+				ret.owner = Thread.currentThread();
+				bundleMap = ret;
+				base = staleMap;
+				changed = changedPoints;
+				staleMap = null;
+				changedPoints = null;
+			}
+		}
+		if (ret.owner != Thread.currentThread()) {
 			ret.waitUntilComputed();
 			return ret;
 		}
+
 		try {
+			// Maybe the map is out of date only around a few points.
+			if (base != null) {
+				base.waitUntilComputed();
+				if (base.isValid() && updateBundleMap(base, changed, ret)) {
+					return ret;
+				}
+				ret.clear();
+			}
+
 			// Ok, we have to create our own.
 			for (int tries = 4; tries >= 0; tries--) {
 				try {
-					ret = new BundleMap();
 					computeBundleMap(ret);
-					bundleMap = ret;
 					break;
 				} catch (Throwable t) {
 					if (tries == 0) {
 						t.printStackTrace();
-						bundleMap = ret;
+					} else {
+						ret.clear();
 					}
 				}
 			}
 		} catch (RuntimeException ex) {
 			ret.invalidate();
-			ret.markComputed();
 			throw ex;
 		} finally {
 			// Mark the BundleMap as computed in case anybody is waiting for the result.
+			ret.owner = null;
 			ret.markComputed();
 		}
 		return ret;
 	}
 
+	/** Fills ret with a map derived from one computed before some edits,
+	 * rebuilding only the bundles that touch the changed points. The
+	 * bundles and threads elsewhere are shared with the old map and keep
+	 * their indices. Returns false, leaving ret to be cleared, when the
+	 * edits reach a splitter, tunnel, or pull resistor, or are too many,
+	 * or when so many indices have fallen out of use that the whole map
+	 * should be computed again to compact them. */
+	private boolean updateBundleMap(BundleMap base, Set<Location> changed,
+			BundleMap ret) {
+		if (changed.size() > 64 + base.pointLocations.length / 8) return false;
+
+		// find the bundles touching the changed points, and all their points
+		HashSet<WireBundle> affected = new HashSet<WireBundle>();
+		HashSet<Location> region = new HashSet<Location>(changed);
+		int oldThreads = 0;
+		for (Location loc : changed) {
+			WireBundle b = base.getBundleAt(loc);
+			if (b != null && affected.add(b)) {
+				if (b.getPullValue() != Value.UNKNOWN) return false;
+				if (b.threads != null) {
+					for (WireThread t : b.threads) {
+						for (ThreadBundle tb : t.getBundles()) {
+							if (tb.b != b) return false; // joined by a splitter
+						}
+					}
+					if (b.isValid()) oldThreads += b.threads.length;
+				}
+				region.addAll(b.points);
+			}
+		}
+		for (Location loc : region) {
+			for (Component comp : points.getNonWires(loc)) {
+				if (isSpecial(comp)) return false;
+			}
+		}
+
+		ret.baseSerial = base.serial;
+		ret.newThreads = new ArrayList<WireThread>();
+		ret.pointBundles = new HashMap<Location,WireBundle>(base.pointBundles);
+		ret.bundles = new HashSet<WireBundle>(base.bundles);
+		ret.bundles.removeAll(affected);
+		for (Location loc : region) {
+			ret.pointBundles.remove(loc);
+		}
+		ret.threadCount = base.threadCount;
+
+		// regroup the region's points into bundles by following wires;
+		// nothing else connects them
+		ArrayList<WireBundle> created = new ArrayList<WireBundle>();
+		HashSet<Location> seen = new HashSet<Location>();
+		ArrayList<Location> pending = new ArrayList<Location>();
+		for (Location start : region) {
+			if (seen.contains(start) || points.getWires(start).isEmpty()) continue;
+			WireBundle b = new WireBundle();
+			seen.add(start);
+			pending.add(start);
+			while (!pending.isEmpty()) {
+				Location loc = pending.remove(pending.size() - 1);
+				if (!region.contains(loc)) return false; // shouldn't happen
+				b.points.add(loc);
+				ret.setBundleAt(loc, b);
+				for (Wire w : points.getWires(loc)) {
+					Location other = w.e0.equals(loc) ? w.e1 : w.e0;
+					if (seen.add(other)) pending.add(other);
+				}
+			}
+			ret.bundles.add(b);
+			created.add(b);
+			for (Location loc : b.points) {
+				b.setWidth(points.getWidth(loc), loc);
+			}
+			if (b.isValid() && b.threads != null) {
+				for (int i = 0; i < b.threads.length; i++) {
+					WireThread thr = b.threads[i];
+					thr.index = ret.threadCount++;
+					thr.getBundles().add(new ThreadBundle(i, b));
+					ret.newThreads.add(thr);
+				}
+			}
+		}
+		ret.liveThreads = base.liveThreads - oldThreads + ret.newThreads.size();
+
+		// number the new points and any whose components changed, and
+		// drop those with no components left
+		ret.pointSlots = new HashMap<Location,PointSlots>(base.pointSlots);
+		ret.driverCount = base.driverCount;
+		ret.livePoints = base.livePoints;
+		ret.liveDrivers = base.liveDrivers;
+		Location[] pointLocations = new Location[base.pointLocations.length + changed.size()];
+		System.arraycopy(base.pointLocations, 0, pointLocations, 0,
+				base.pointLocations.length);
+		int pointCount = base.pointLocations.length;
+		for (Location loc : changed) {
+			PointSlots old = base.pointSlots.get(loc);
+			if (old != null) ret.liveDrivers -= old.drivers.length;
+			if (points.getComponentCount(loc) == 0) {
+				if (old != null) {
+					ret.pointSlots.remove(loc);
+					pointLocations[old.index] = null;
+					ret.livePoints--;
+				}
+				continue;
+			}
+			Collection<? extends Component> comps = points.getNonWires(loc);
+			if (old != null && isSameDrivers(old.drivers, comps)) {
+				ret.liveDrivers += old.drivers.length;
+				continue;
+			}
+			Component[] drivers = comps.toArray(new Component[comps.size()]);
+			int index;
+			if (old == null) {
+				index = pointCount++;
+				pointLocations[index] = loc;
+				ret.livePoints++;
+			} else {
+				index = old.index;
+			}
+			ret.pointSlots.put(loc, new PointSlots(index, ret.driverCount, drivers));
+			ret.driverCount += drivers.length;
+			ret.liveDrivers += drivers.length;
+		}
+		if (pointCount < pointLocations.length) {
+			Location[] trimmed = new Location[pointCount];
+			System.arraycopy(pointLocations, 0, trimmed, 0, pointCount);
+			pointLocations = trimmed;
+		}
+		ret.pointLocations = pointLocations;
+		if (isSparse(pointCount, ret.livePoints)
+				|| isSparse(ret.driverCount, ret.liveDrivers)
+				|| isSparse(ret.threadCount, ret.liveThreads)) {
+			return false;
+		}
+
+		for (WireBundle b : created) {
+			b.numberPoints(ret);
+		}
+
+		for (WidthIncompatibilityData wid : points.getWidthIncompatibilityData()) {
+			ret.addWidthIncompatibilityData(wid);
+		}
+		for (WireBundle b : ret.getBundles()) {
+			WidthIncompatibilityData e = b.getWidthIncompatibilityData();
+			if (e != null) ret.addWidthIncompatibilityData(e);
+		}
+		return true;
+	}
+
+	// whether so few of the indices are in use that each state's arrays
+	// should be compacted
+	private static boolean isSparse(int count, int live) {
+		return count > 2 * live + 64;
+	}
+
+	private static boolean isSameDrivers(Component[] drivers,
+			Collection<? extends Component> comps) {
+		if (drivers.length != comps.size()) return false;
+		int i = 0;
+		for (Component comp : comps) {
+			if (drivers[i] != comp) return false;
+			i++;
+		}
+		return true;
+	}
+
 	// To be called by getBundleMap only
 	private void computeBundleMap(BundleMap ret) {
 		// create bundles corresponding to wires and tunnels
@@ -639,11 +987,15 @@ class CircuitWires {
 				for (int i = 0; i < b.threads.length; i++) {
 					WireThread thr = b.threads[i].find();
 					b.threads[i] = thr;
+					if (thr.index < 0) thr.index = ret.threadCount++;
 					thr.getBundles().add(new ThreadBundle(i, b));
 				}
 			}
 		}
 
+		// number the points, noting where components emit values
+		numberPoints(ret);
+
 		// All threads are sewn together! Compute the exception set before leaving
 		Collection<WidthIncompatibilityData> exceptions = points.getWidthIncompatibilityData();
 		if (exceptions != null && exceptions.size() > 0) {
@@ -657,6 +1009,27 @@ class CircuitWires {
 		}
 	}
 	
+	private void numberPoints(BundleMap ret) {
+		Set<Location> locs = points.getSplitLocations();
+		Location[] pointLocations = new Location[locs.size()];
+		int index = 0;
+		for (Location loc : locs) {
+			Collection<? extends Component> comps = points.getNonWires(loc);
+			Component[] drivers = comps.toArray(new Component[comps.size()]);
+			ret.pointSlots.put(loc, new PointSlots(index, ret.driverCount, drivers));
+			ret.driverCount += drivers.length;
+			pointLocations[index] = loc;
+			index++;
+		}
+		ret.pointLocations = pointLocations;
+		ret.livePoints = pointLocations.length;
+		ret.liveDrivers = ret.driverCount;
+		ret.liveThreads = ret.threadCount;
+		for (WireBundle b : ret.getBundles()) {
+			b.numberPoints(ret);
+		}
+	}
+	
 	private void connectWires(BundleMap ret) {
 		// make a WireBundle object for each tree of connected wires
 		for (Wire w : wires) {
@@ -735,12 +1108,15 @@ class CircuitWires {
 		}
 	}
 
-	private Value getThreadValue(CircuitState state, WireThread t) {
+	private Value getThreadValue(CircuitState state, BundleMap map,
+			WireThread t) {
 		Value ret = Value.UNKNOWN;
 		Value pull = Value.UNKNOWN;
 		for (ThreadBundle tb : t.getBundles()) {
-			for (Location p : tb.b.points) {
-				Value val = state.getComponentOutputAt(p);
+			Location[] bPoints = tb.b.pointArray;
+			int[] bIndices = tb.b.pointIndices;
+			for (int i = 0; i < bPoints.length; i++) {
+				Value val = state.getComponentOutputAt(map, bIndices[i], bPoints[i]);
 				if (val != null && val != Value.NIL) {
 					ret = ret.combine(val.get(tb.loc));
 				}
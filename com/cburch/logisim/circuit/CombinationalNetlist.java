@@ -0,0 +1,676 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+/** The combinational parts of a circuit, compiled so that they can be
+ * evaluated with plain bit arithmetic instead of one component at a time.
+ *
+ * Every component providing a BitmaskComputer is a member, unless it
+ * lies on a cycle of such components. Members joined by nets that one
+ * member drives alone form a region, and a region is evaluated as a
+ * whole, in the order of its dependencies, whenever any of its members
+ * is dirty. A net to which nothing but members is attached is internal
+ * to its region, and its new value is stored at once. Every other output
+ * is scheduled as usual, after the longest delay along the paths through
+ * the region leading to it.
+ *
+ * A region is only evaluated this way while all of its inputs are fully
+ * defined and each of its members can compute its outputs. Otherwise its
+ * dirty members are propagated as usual, which is how unknown and error
+ * values pass through it.
+ *
+ * A netlist is compiled against one bundle map of its circuit, and it is
+ * compiled again once that map is replaced. */
+class CombinationalNetlist {
+	private static class Net {
+		boolean simple = true; // a single bundle of one width
+		boolean external = false; // attached to a non-member
+		int drivers = 0;
+		Member driver = null;
+		ArrayList<Member> readers = new ArrayList<Member>(2);
+
+		boolean isLinked() {
+			return simple && drivers == 1 && driver != null;
+		}
+	}
+
+	private static class Member {
+		Component comp;
+		BitmaskComputer computer;
+		Location[] locs;
+		PortSlots ports; // where locs fall in the netlist's bundle map
+		BitWidth[] widths;
+		boolean[] connected;
+		boolean[] isOutput;
+		int[] outputs;
+		Region region = null;
+
+		// for evaluation
+		int order; // position within the region's members
+		int[] slots; // slot holding each end's value; -1 if never read
+		boolean[] fromState; // for each end, whether it is a region input
+		boolean[] internal; // for each output, whether it is stored at once
+		int[] delays; // for each scheduled output, its delay
+		int[] sentIndex; // for each scheduled output, its index in the sent values
+		int[] outputIds; // for each output, its index among the region's
+		Member[][] readers; // for each output, the members reading it
+
+		// for compilation
+		Net[] nets;
+		ArrayList<Member> succs = new ArrayList<Member>();
+		int preds = 0;
+		int index = -1;
+		int lowlink;
+		int next;
+		boolean onStack = false;
+		Member parent = this;
+
+		Member find() {
+			Member ret = this;
+			while (ret.parent != ret) ret = ret.parent;
+			parent = ret;
+			return ret;
+		}
+	}
+
+	private static class Region {
+		int index;
+		Member[] members; // in order of evaluation
+		int slotBase; // where the region's slots start in Values
+		int slotCount;
+		int endCount; // most ends on any member
+		int sentCount; // number of scheduled outputs
+		Member[] outputMembers; // for each output id, its member
+		int[] outputIndices; // for each output id, its index in the member
+		Location[] inputLocs;
+		int[] inputPoints; // index of each input in the bundle map
+		BitWidth[] inputWidths;
+		int[] inputSlots;
+	}
+
+	/** The evaluation data for a netlist kept in each CircuitState. A
+	 * region's slots keep what it last computed, so that after a change
+	 * only the members affected by it need to be evaluated again. */
+	static class Values {
+		private CombinationalNetlist netlist;
+		private long[] slots;
+		private boolean[] valid; // whether a region's slots are up to date
+		private Value[][] sent; // what each region last scheduled
+		private ArrayList<Member>[] dirty;
+		private long[] ends;
+		private long[] pending; // one bit for each member yet to evaluate
+		private int[] writes; // the ids of the outputs to store or schedule
+		private int[] writeStamps;
+		private int writeEpoch = 0;
+
+		@SuppressWarnings("unchecked")
+		private Values(CombinationalNetlist netlist) {
+			this.netlist = netlist;
+			int slotCount = 0;
+			int endCount = 0;
+			int memberCount = 0;
+			int outputCount = 0;
+			for (Region r : netlist.regions) {
+				slotCount += r.slotCount;
+				endCount = Math.max(endCount, r.endCount);
+				memberCount = Math.max(memberCount, r.members.length);
+				outputCount = Math.max(outputCount, r.outputMembers.length);
+			}
+			slots = new long[slotCount];
+			valid = new boolean[netlist.regions.length];
+			sent = new Value[netlist.regions.length][];
+			dirty = createLists(netlist.regions.length);
+			ends = new long[endCount];
+			pending = new long[(memberCount + 63) >>> 6];
+			writes = new int[outputCount];
+			writeStamps = new int[outputCount];
+		}
+
+		// Java can't create an array of a generic type directly
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static ArrayList<Member>[] createLists(int length) {
+			return new ArrayList[length];
+		}
+
+		private int addWrite(int id, int count) {
+			if (writeStamps[id] == writeEpoch) return count;
+			writeStamps[id] = writeEpoch;
+			writes[count] = id;
+			return count + 1;
+		}
+	}
+
+	static CombinationalNetlist get(Circuit circuit) {
+		CombinationalNetlist ret = circuit.netlist;
+		if (ret == null || !circuit.wires.isCurrent(ret.map)) {
+			ret = new CombinationalNetlist(circuit);
+			circuit.netlist = ret;
+		}
+		return ret;
+	}
+
+	private Circuit circuit;
+	private CircuitWires.BundleMap map;
+	private HashMap<Component,Member> members = new HashMap<Component,Member>();
+	private Region[] regions;
+
+	private CombinationalNetlist(Circuit circuit) {
+		this.circuit = circuit;
+		this.map = circuit.wires.getDriverMap();
+
+		HashMap<Component,Member> candidates = new HashMap<Component,Member>();
+		for (Component comp : circuit.getNonWires()) {
+			Object feature = comp.getFeature(BitmaskComputer.class);
+			if (feature instanceof BitmaskComputer) {
+				Member m = createMember(comp, (BitmaskComputer) feature);
+				if (m != null) candidates.put(comp, m);
+			}
+		}
+		members.putAll(candidates);
+		computeNets(candidates);
+		if (removeCycles()) {
+			// the nets attached to the removed components have changed
+			for (Member m : members.values()) {
+				m.succs.clear();
+			}
+			computeNets(candidates);
+		}
+		regions = createRegions();
+	}
+
+	boolean contains(Component comp) {
+		return members.containsKey(comp);
+	}
+
+	/** Brings the outputs of the given dirty members up to date, one
+	 * region at a time. */
+	void propagate(CircuitState state, List<Component> dirty) {
+		Values data = state.netlistValues;
+		if (data == null || data.netlist != this) {
+			data = new Values(this);
+			state.netlistValues = data;
+		}
+
+		ArrayList<Region> touched = new ArrayList<Region>();
+		for (Component comp : dirty) {
+			Member m = members.get(comp);
+			ArrayList<Member> list = data.dirty[m.region.index];
+			if (list == null) {
+				list = new ArrayList<Member>();
+				data.dirty[m.region.index] = list;
+			}
+			if (list.isEmpty()) touched.add(m.region);
+			list.add(m);
+		}
+		for (Region r : touched) {
+			ArrayList<Member> list = data.dirty[r.index];
+			if (!evaluate(r, state, data, list)) {
+				data.valid[r.index] = false;
+				data.sent[r.index] = null;
+				for (Member m : list) {
+					m.comp.propagate(state);
+				}
+			}
+			list.clear();
+		}
+	}
+
+	private boolean evaluate(Region r, CircuitState state, Values data,
+			ArrayList<Member> dirty) {
+		long[] slots = data.slots;
+		long[] ends = data.ends;
+		long[] pending = data.pending;
+		int base = r.slotBase;
+		int words = (r.members.length + 63) >>> 6;
+		boolean full = !data.valid[r.index];
+		data.writeEpoch++;
+		if (data.writeEpoch == Integer.MAX_VALUE) {
+			data.writeEpoch = 1;
+			Arrays.fill(data.writeStamps, 0);
+		}
+		int writeCount = 0;
+
+		if (full) {
+			// nothing is known from before, so everything is computed
+			for (int i = 0; i < r.inputLocs.length; i++) {
+				Value v = state.getValue(map, r.inputPoints[i], r.inputLocs[i]);
+				if (!isUsable(v, r.inputWidths[i])) return false;
+				slots[base + r.inputSlots[i]] = v.toLongValue();
+			}
+			for (int i = 0; i < r.members.length; i++) {
+				pending[i >>> 6] |= 1L << i;
+			}
+		} else {
+			// A changed input marks every member reading it as dirty, so
+			// only the dirty members' inputs need to be read again.
+			for (Member m : dirty) {
+				for (int i = 0; i < m.slots.length; i++) {
+					if (!m.fromState[i]) continue;
+					Value v = state.getValue(m.ports, i);
+					if (!isUsable(v, m.widths[i])) {
+						Arrays.fill(pending, 0, words, 0L);
+						return false;
+					}
+					slots[base + m.slots[i]] = v.toLongValue();
+				}
+				// an event scheduled while the member was propagated as usual
+				// may have overwritten an output stored at once
+				for (int k = 0; k < m.outputs.length; k++) {
+					if (!m.internal[k]) continue;
+					int e = m.outputs[k];
+					Value v = state.getValue(m.ports, e);
+					if (!isUsable(v, m.widths[e])
+							|| v.toLongValue() != slots[base + m.slots[e]]) {
+						writeCount = data.addWrite(m.outputIds[k], writeCount);
+					}
+				}
+				pending[m.order >>> 6] |= 1L << m.order;
+			}
+		}
+
+		// Members come in order of their dependencies, so a member marked
+		// while evaluating another always comes later.
+		for (int w = 0; w < words; w++) {
+			long bits;
+			while ((bits = pending[w]) != 0) {
+				pending[w] = bits & (bits - 1);
+				Member m = r.members[(w << 6) + Long.numberOfTrailingZeros(bits)];
+				int[] ms = m.slots;
+				for (int i = 0; i < ms.length; i++) {
+					ends[i] = ms[i] < 0 ? 0 : slots[base + ms[i]];
+				}
+				if (!m.computer.computeBitmasks(state, ends, m.connected)) {
+					Arrays.fill(pending, w, words, 0L);
+					return false;
+				}
+				for (int k = 0; k < m.outputs.length; k++) {
+					int e = m.outputs[k];
+					int s = base + ms[e];
+					long val = ends[e] & m.widths[e].getLongMask();
+					if (full || val != slots[s]) {
+						slots[s] = val;
+						writeCount = data.addWrite(m.outputIds[k], writeCount);
+						for (Member reader : m.readers[k]) {
+							pending[reader.order >>> 6] |= 1L << reader.order;
+						}
+					}
+				}
+			}
+		}
+		data.valid[r.index] = true;
+
+		// Only now that the region is computed are the values stored or
+		// scheduled.
+		Propagator prop = state.getPropagator();
+		Value[] sent = data.sent[r.index];
+		if (sent == null) {
+			sent = new Value[r.sentCount];
+			data.sent[r.index] = sent;
+		}
+		HashSet<Location> changed = null;
+		int[] writes = data.writes;
+		for (int j = 0; j < writeCount; j++) {
+			Member m = r.outputMembers[writes[j]];
+			int k = r.outputIndices[writes[j]];
+			int e = m.outputs[k];
+			Value v = Value.createKnown(m.widths[e], slots[base + m.slots[e]]);
+			if (m.internal[k]) {
+				if (prop.setValueNow(state, map, m.ports.points[e], m.locs[e],
+						v, m.comp)) {
+					if (changed == null) changed = new HashSet<Location>();
+					changed.add(m.locs[e]);
+				}
+			} else {
+				int s = m.sentIndex[k];
+				if (!v.equals(sent[s])) {
+					sent[s] = v;
+					state.setValue(m.ports, e, v, m.comp, m.delays[k]);
+				}
+			}
+		}
+		if (changed != null) {
+			circuit.wires.propagate(state, changed);
+			// settling the internal nets marks the members reading them
+			// as dirty, though they are already up to date
+			for (int j = 0; j < writeCount; j++) {
+				Member m = r.outputMembers[writes[j]];
+				int k = r.outputIndices[writes[j]];
+				if (!m.internal[k]) continue;
+				for (Member reader : m.readers[k]) {
+					state.markComponentAsClean(reader.comp);
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean isUsable(Value v, BitWidth width) {
+		return v.getWidth() == width.getWidth() && v.isFullyDefined();
+	}
+
+	//
+	// compilation
+	//
+	private Member createMember(Component comp, BitmaskComputer computer) {
+		List<EndData> ends = comp.getEnds();
+		int n = ends.size();
+		Member m = new Member();
+		m.comp = comp;
+		m.computer = computer;
+		m.locs = new Location[n];
+		m.widths = new BitWidth[n];
+		m.connected = new boolean[n];
+		m.isOutput = new boolean[n];
+		m.outputs = computer.getOutputEnds();
+		for (int e : m.outputs) {
+			if (e < 0 || e >= n) return null;
+			m.isOutput[e] = true;
+		}
+		for (int i = 0; i < n; i++) {
+			EndData end = ends.get(i);
+			m.locs[i] = end.getLocation();
+			m.widths[i] = end.getWidth();
+			m.connected[i] = circuit.isConnected(m.locs[i], comp);
+			if (m.widths[i].getWidth() <= 0) return null;
+		}
+		m.ports = new PortSlots(map, comp);
+		return m;
+	}
+
+	private void computeNets(HashMap<Component,Member> candidates) {
+		HashMap<Object,Net> nets = new HashMap<Object,Net>();
+		for (Member m : members.values()) {
+			m.nets = new Net[m.locs.length];
+			for (int i = 0; i < m.locs.length; i++) {
+				Location loc = m.locs[i];
+				WireBundle b = map.getBundleAt(loc);
+				Object key = b == null ? loc : b;
+				Net net = nets.get(key);
+				if (net == null) {
+					net = createNet(b, loc, candidates);
+					nets.put(key, net);
+				}
+				m.nets[i] = net;
+			}
+		}
+		for (Net net : nets.values()) {
+			if (net.isLinked()) {
+				for (Member reader : net.readers) {
+					net.driver.succs.add(reader);
+				}
+			}
+		}
+	}
+
+	private Net createNet(WireBundle b, Location loc,
+			HashMap<Component,Member> candidates) {
+		Net net = new Net();
+		Iterable<Location> points;
+		if (b == null) {
+			points = Collections.singleton(loc);
+		} else {
+			points = b.points;
+			net.simple = isSimple(b);
+		}
+		BitWidth width = null;
+		for (Location p : points) {
+			for (Component comp : circuit.getNonWires(p)) {
+				if (comp.getFactory() instanceof Tunnel) continue;
+				Member cand = candidates.get(comp);
+				Member m = members.get(comp);
+				List<EndData> ends = comp.getEnds();
+				for (int i = 0; i < ends.size(); i++) {
+					EndData end = ends.get(i);
+					if (!end.getLocation().equals(p)) continue;
+					if (width == null) {
+						width = end.getWidth();
+					} else if (!width.equals(end.getWidth())) {
+						net.simple = false;
+					}
+					boolean drives = cand != null ? cand.isOutput[i] : end.isOutput();
+					if (drives) {
+						net.drivers++;
+						if (m != null) net.driver = m;
+					}
+					if (m == null) {
+						net.external = true;
+					} else if (!drives) {
+						net.readers.add(m);
+					}
+				}
+			}
+		}
+		return net;
+	}
+
+	static boolean isSimple(WireBundle b) {
+		if (!b.isValid() || b.threads == null) return false;
+		if (b.getPullValue() != Value.UNKNOWN) return false;
+		for (WireThread t : b.threads) {
+			for (CircuitWires.ThreadBundle tb : t.getBundles()) {
+				if (tb.b != b) return false;
+			}
+		}
+		return true;
+	}
+
+	/** Removes the members lying on cycles, found as Tarjan's algorithm
+	 * finds strongly connected components. Returns true if there were
+	 * any. */
+	private boolean removeCycles() {
+		ArrayList<Member> cyclic = new ArrayList<Member>();
+		ArrayList<Member> stack = new ArrayList<Member>();
+		ArrayList<Member> calls = new ArrayList<Member>();
+		int count = 0;
+		for (Member root : members.values()) {
+			if (root.index >= 0) continue;
+			root.index = count;
+			root.lowlink = count;
+			count++;
+			root.next = 0;
+			root.onStack = true;
+			stack.add(root);
+			calls.add(root);
+			while (!calls.isEmpty()) {
+				Member v = calls.get(calls.size() - 1);
+				if (v.next < v.succs.size()) {
+					Member w = v.succs.get(v.next);
+					v.next++;
+					if (w.index < 0) {
+						w.index = count;
+						w.lowlink = count;
+						count++;
+						w.next = 0;
+						w.onStack = true;
+						stack.add(w);
+						calls.add(w);
+					} else if (w.onStack) {
+						v.lowlink = Math.min(v.lowlink, w.index);
+					}
+					continue;
+				}
+				calls.remove(calls.size() - 1);
+				if (!calls.isEmpty()) {
+					Member u = calls.get(calls.size() - 1);
+					u.lowlink = Math.min(u.lowlink, v.lowlink);
+				}
+				if (v.lowlink == v.index) {
+					Member top = stack.remove(stack.size() - 1);
+					top.onStack = false;
+					if (top != v || v.succs.contains(v)) {
+						cyclic.add(top);
+						while (top != v) {
+							top = stack.remove(stack.size() - 1);
+							top.onStack = false;
+							cyclic.add(top);
+						}
+					}
+				}
+			}
+		}
+		for (Member m : cyclic) {
+			members.remove(m.comp);
+		}
+		return !cyclic.isEmpty();
+	}
+
+	private Region[] createRegions() {
+		// join each linked net's driver to its readers
+		for (Member m : members.values()) {
+			for (Member w : m.succs) {
+				Member a = m.find();
+				Member b = w.find();
+				if (a != b) a.parent = b;
+				w.preds++;
+			}
+		}
+
+		// put the members in order of their dependencies
+		ArrayList<Member> order = new ArrayList<Member>(members.size());
+		for (Member m : members.values()) {
+			if (m.preds == 0) order.add(m);
+		}
+		for (int i = 0; i < order.size(); i++) {
+			for (Member w : order.get(i).succs) {
+				w.preds--;
+				if (w.preds == 0) order.add(w);
+			}
+		}
+
+		HashMap<Member,ArrayList<Member>> groups
+			= new HashMap<Member,ArrayList<Member>>();
+		ArrayList<ArrayList<Member>> lists = new ArrayList<ArrayList<Member>>();
+		for (Member m : order) {
+			Member root = m.find();
+			ArrayList<Member> group = groups.get(root);
+			if (group == null) {
+				group = new ArrayList<Member>();
+				groups.put(root, group);
+				lists.add(group);
+			}
+			group.add(m);
+		}
+
+		Region[] ret = new Region[lists.size()];
+		int slotBase = 0;
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = createRegion(i, lists.get(i));
+			ret[i].slotBase = slotBase;
+			slotBase += ret[i].slotCount;
+		}
+		return ret;
+	}
+
+	private Region createRegion(int index, ArrayList<Member> list) {
+		Region r = new Region();
+		r.index = index;
+		r.members = list.toArray(new Member[list.size()]);
+
+		HashMap<Net,Integer> netSlots = new HashMap<Net,Integer>();
+		ArrayList<Location> inputLocs = new ArrayList<Location>();
+		ArrayList<BitWidth> inputWidths = new ArrayList<BitWidth>();
+		ArrayList<Integer> inputSlots = new ArrayList<Integer>();
+		ArrayList<Integer> arrivals = new ArrayList<Integer>();
+		ArrayList<Member> outputMembers = new ArrayList<Member>();
+		ArrayList<Integer> outputIndices = new ArrayList<Integer>();
+		int slotCount = 0;
+		for (int order = 0; order < r.members.length; order++) {
+			Member m = r.members[order];
+			m.region = r;
+			m.order = order;
+			int n = m.locs.length;
+			r.endCount = Math.max(r.endCount, n);
+			m.slots = new int[n];
+			m.fromState = new boolean[n];
+
+			// the inputs, and when they settle
+			int start = 0;
+			for (int i = 0; i < n; i++) {
+				if (m.isOutput[i]) continue;
+				Net net = m.nets[i];
+				int slot;
+				if (!m.connected[i]) {
+					slot = -1;
+				} else if (netSlots.containsKey(net)) {
+					slot = netSlots.get(net).intValue();
+					m.fromState[i] = !net.isLinked();
+				} else {
+					slot = slotCount++;
+					m.fromState[i] = true;
+					inputLocs.add(m.locs[i]);
+					inputWidths.add(m.widths[i]);
+					inputSlots.add(Integer.valueOf(slot));
+					arrivals.add(Integer.valueOf(0));
+					if (net.simple) {
+						netSlots.put(net, Integer.valueOf(slot));
+					}
+				}
+				m.slots[i] = slot;
+				if (slot >= 0) {
+					start = Math.max(start, arrivals.get(slot).intValue());
+				}
+			}
+
+			// the outputs
+			int done = start + Math.max(1, m.computer.getDelay());
+			int k = m.outputs.length;
+			m.internal = new boolean[k];
+			m.delays = new int[k];
+			m.sentIndex = new int[k];
+			m.outputIds = new int[k];
+			m.readers = new Member[k][];
+			for (int j = 0; j < k; j++) {
+				int e = m.outputs[j];
+				Net net = m.nets[e];
+				int slot = slotCount++;
+				arrivals.add(Integer.valueOf(done));
+				if (net.isLinked()) netSlots.put(net, Integer.valueOf(slot));
+				m.slots[e] = slot;
+				m.internal[j] = net.isLinked() && !net.external;
+				m.delays[j] = done;
+				m.sentIndex[j] = m.internal[j] ? -1 : r.sentCount++;
+				m.outputIds[j] = outputMembers.size();
+				outputMembers.add(m);
+				outputIndices.add(Integer.valueOf(j));
+				if (net.isLinked()) {
+					m.readers[j] = net.readers.toArray(new Member[net.readers.size()]);
+				} else {
+					m.readers[j] = new Member[0];
+				}
+			}
+		}
+		r.slotCount = slotCount;
+
+		int inputs = inputLocs.size();
+		r.inputLocs = inputLocs.toArray(new Location[inputs]);
+		r.inputWidths = inputWidths.toArray(new BitWidth[inputs]);
+		r.inputPoints = new int[inputs];
+		r.inputSlots = new int[inputs];
+		for (int i = 0; i < inputs; i++) {
+			r.inputPoints[i] = map.getPointIndex(r.inputLocs[i]);
+			r.inputSlots[i] = inputSlots.get(i).intValue();
+		}
+		int outputs = outputMembers.size();
+		r.outputMembers = outputMembers.toArray(new Member[outputs]);
+		r.outputIndices = new int[outputs];
+		for (int i = 0; i < outputs; i++) {
+			r.outputIndices[i] = outputIndices.get(i).intValue();
+		}
+		return r;
+	}
+}
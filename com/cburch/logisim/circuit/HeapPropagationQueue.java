@@ -0,0 +1,80 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.PriorityQueue;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/** The classic event queue: one SetData per event, kept in a binary heap. */
+class HeapPropagationQueue extends PropagationQueue {
+	private static class Event extends SetData {
+		PortSlots ports;
+		int end;
+
+		Event(int time, int serialNumber, CircuitState state, Location loc,
+				PortSlots ports, int end, Component cause, Value val) {
+			super(time, serialNumber, state, loc, cause, val);
+			this.ports = ports;
+			this.end = end;
+		}
+	}
+
+	private PriorityQueue<Event> queue = new PriorityQueue<Event>();
+	private SetData current = null;
+
+	@Override
+	boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	@Override
+	int size() {
+		return queue.size();
+	}
+
+	@Override
+	void clear() {
+		queue.clear();
+		current = null;
+	}
+
+	@Override
+	void add(int time, int serialNumber, CircuitState state,
+			Location loc, PortSlots ports, int end, Component cause, Value val) {
+		queue.add(new Event(time, serialNumber, state, loc, ports, end,
+				cause, val));
+	}
+
+	@Override
+	int peekTime() {
+		return queue.peek().time;
+	}
+
+	@Override
+	boolean removeIfAt(int time) {
+		Event data = queue.peek();
+		if (data == null || data.time != time) return false;
+		queue.remove();
+		current = data;
+		this.time = data.time;
+		this.serialNumber = data.serialNumber;
+		this.state = data.state;
+		this.cause = data.cause;
+		this.loc = data.loc;
+		this.ports = data.ports;
+		this.end = data.end;
+		this.val = data.val;
+		data.ports = null; // the event goes on as a cause, without them
+		return true;
+	}
+
+	@Override
+	SetData toSetData() {
+		return current;
+	}
+}
@@ -0,0 +1,249 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/** Processes the dirty points and components of a tree of CircuitStates
+ * on a fork-join pool, giving the same results as the sequential walk
+ * done by CircuitState.processDirtyPoints and processDirtyComponents.
+ *
+ * Settling wires touches only the state being settled, so each state's
+ * dirty points are handled independently. Components may reach into
+ * their parent state (for pins) or their substates (for subcircuits),
+ * and the order in which they schedule values determines how the
+ * Propagator orders simultaneous events. So each subtree of states
+ * runs as a task after its parent's own components are done, and the
+ * values it schedules are buffered rather than queued. The buffers are
+ * concatenated in the order of the sequential walk and handed back to
+ * the Propagator, which queues them just as if they had been scheduled
+ * directly. */
+class ParallelPropagation {
+	static class EventBuffer {
+		private CircuitState[] states = null;
+		private Location[] locs;
+		private PortSlots[] ports;
+		private int[] ends;
+		private Value[] vals;
+		private Component[] causes;
+		private int[] delays;
+		private int size = 0;
+
+		int size() {
+			return size;
+		}
+
+		void add(CircuitState state, Location loc, PortSlots slots, int end,
+				Value val, Component cause, int delay) {
+			ensureCapacity(size + 1);
+			states[size] = state;
+			locs[size] = loc;
+			ports[size] = slots;
+			ends[size] = end;
+			vals[size] = val;
+			causes[size] = cause;
+			delays[size] = delay;
+			size++;
+		}
+
+		void addAll(EventBuffer other) {
+			int n = other.size;
+			if (n == 0) return;
+			ensureCapacity(size + n);
+			System.arraycopy(other.states, 0, states, size, n);
+			System.arraycopy(other.locs, 0, locs, size, n);
+			System.arraycopy(other.ports, 0, ports, size, n);
+			System.arraycopy(other.ends, 0, ends, size, n);
+			System.arraycopy(other.vals, 0, vals, size, n);
+			System.arraycopy(other.causes, 0, causes, size, n);
+			System.arraycopy(other.delays, 0, delays, size, n);
+			size += n;
+		}
+
+		void replay(Propagator prop) {
+			for (int i = 0; i < size; i++) {
+				prop.setValue(states[i], locs[i], ports[i], ends[i], vals[i],
+						causes[i], delays[i]);
+			}
+		}
+
+		private void ensureCapacity(int needed) {
+			if (states == null) {
+				int cap = Math.max(16, needed);
+				states = new CircuitState[cap];
+				locs = new Location[cap];
+				ports = new PortSlots[cap];
+				ends = new int[cap];
+				vals = new Value[cap];
+				causes = new Component[cap];
+				delays = new int[cap];
+			} else if (needed > states.length) {
+				int cap = Math.max(2 * states.length, needed);
+				states = Arrays.copyOf(states, cap);
+				locs = Arrays.copyOf(locs, cap);
+				ports = Arrays.copyOf(ports, cap);
+				ends = Arrays.copyOf(ends, cap);
+				vals = Arrays.copyOf(vals, cap);
+				causes = Arrays.copyOf(causes, cap);
+				delays = Arrays.copyOf(delays, cap);
+			}
+		}
+	}
+
+	private class PointsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private CircuitState[] states;
+		private boolean[] includeAll;
+		private int start;
+		private int end;
+
+		PointsTask(CircuitState[] states, boolean[] includeAll,
+				int start, int end) {
+			this.states = states;
+			this.includeAll = includeAll;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= 1) {
+				for (int i = start; i < end; i++) {
+					states[i].processOwnDirtyPoints(includeAll[i]);
+				}
+			} else {
+				int mid = (start + end) >>> 1;
+				invokeAll(new PointsTask(states, includeAll, start, mid),
+					new PointsTask(states, includeAll, mid, end));
+			}
+		}
+	}
+
+	private class ComponentsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private CircuitState state;
+		private EventBuffer events = new EventBuffer();
+
+		ComponentsTask(CircuitState state) {
+			this.state = state;
+		}
+
+		@Override
+		protected void compute() {
+			EventBuffer prev = current.get();
+			current.set(events);
+			try {
+				state.processOwnDirtyComponents();
+			} finally {
+				current.set(prev);
+			}
+
+			Set<CircuitState> substates = state.getSubstates();
+			CircuitState[] subs = substates.toArray(new CircuitState[substates.size()]);
+			if (subs.length == 1) {
+				ComponentsTask sub = new ComponentsTask(subs[0]);
+				sub.compute();
+				events.addAll(sub.events);
+			} else if (subs.length > 1) {
+				ArrayList<ComponentsTask> tasks = new ArrayList<ComponentsTask>(subs.length);
+				for (CircuitState sub : subs) {
+					tasks.add(new ComponentsTask(sub));
+				}
+				invokeAll(tasks);
+				for (ComponentsTask sub : tasks) {
+					events.addAll(sub.events);
+				}
+			}
+		}
+	}
+
+	private static ForkJoinPool pool = null;
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) pool = new ForkJoinPool();
+		return pool;
+	}
+
+	private ThreadLocal<EventBuffer> current = new ThreadLocal<EventBuffer>();
+
+	ParallelPropagation() { }
+
+	/** Records a value being scheduled from within a parallel task,
+	 * returning false if the current thread isn't running one. */
+	boolean record(CircuitState state, Location loc, PortSlots ports,
+			int end, Value val, Component cause, int delay) {
+		EventBuffer buf = current.get();
+		if (buf == null) return false;
+		buf.add(state, loc, ports, end, val, cause, delay);
+		return true;
+	}
+
+	void processDirtyPoints(CircuitState root) {
+		ArrayList<CircuitState> all = new ArrayList<CircuitState>();
+		collectStates(root, all);
+
+		// Like the sequential walk, only the first state of a circuit
+		// whose bundle map is void settles all of its points; the bundle
+		// maps are then brought up to date here so the tasks need not
+		// compute them.
+		ArrayList<CircuitState> dirty = new ArrayList<CircuitState>();
+		ArrayList<Boolean> dirtyAll = new ArrayList<Boolean>();
+		HashSet<Circuit> voided = new HashSet<Circuit>();
+		HashSet<Circuit> circuits = new HashSet<Circuit>();
+		for (CircuitState state : all) {
+			CircuitWires wires = state.getCircuit().wires;
+			boolean includeAll = wires.isMapVoided()
+				&& voided.add(state.getCircuit());
+			if (includeAll || state.hasDirtyPoints()) {
+				dirty.add(state);
+				dirtyAll.add(Boolean.valueOf(includeAll));
+			}
+			circuits.add(state.getCircuit());
+		}
+		for (Circuit circ : circuits) {
+			circ.wires.ensureComputed();
+		}
+
+		int n = dirty.size();
+		CircuitState[] states = dirty.toArray(new CircuitState[n]);
+		boolean[] includeAll = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			includeAll[i] = dirtyAll.get(i).booleanValue();
+		}
+		if (n == 1) {
+			states[0].processOwnDirtyPoints(includeAll[0]);
+		} else if (n > 1) {
+			getPool().invoke(new PointsTask(states, includeAll, 0, n));
+		}
+	}
+
+	EventBuffer processDirtyComponents(CircuitState root) {
+		ComponentsTask task = new ComponentsTask(root);
+		if (root.getSubstates().isEmpty()) {
+			task.compute();
+		} else {
+			getPool().invoke(task);
+		}
+		return task.events;
+	}
+
+	private static void collectStates(CircuitState state,
+			ArrayList<CircuitState> dest) {
+		dest.add(state);
+		for (CircuitState sub : state.getSubstates()) {
+			collectStates(sub, dest);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.List;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Location;
+
+/** Where the ends of a component fall in the point numbering of its
+ * circuit's bundle map, so that the component's ports can be read and
+ * written without looking up their locations. These come from
+ * CircuitState.getPortSlots, and they hold only until the circuit's
+ * wiring changes; CircuitState.isCurrent tells whether they still do. */
+public final class PortSlots {
+	final CircuitWires.BundleMap map;
+	final Location[] locs;
+	final int[] points; // index of each end's point in map, or -1
+	final int[] drivers; // the component's driver slot at each end, or -1
+
+	PortSlots(CircuitWires.BundleMap map, Component comp) {
+		List<EndData> ends = comp.getEnds();
+		int n = ends.size();
+		this.map = map;
+		this.locs = new Location[n];
+		this.points = new int[n];
+		this.drivers = new int[n];
+		for (int i = 0; i < n; i++) {
+			EndData end = ends.get(i);
+			Location loc = end == null ? null : end.getLocation();
+			locs[i] = loc;
+			points[i] = loc == null ? -1 : map.getPointIndex(loc);
+			drivers[i] = loc == null ? -1 : map.getDriverSlot(loc, comp);
+		}
+	}
+
+	public int getEndCount() {
+		return locs.length;
+	}
+}
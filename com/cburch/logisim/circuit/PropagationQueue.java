@@ -0,0 +1,49 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/** The queue of pending value changes used by a Propagator. Events are
+ * ordered by time and, within the same time, by serial number. An event
+ * removed through <code>removeIfAt</code> is exposed through the fields
+ * of this object until the next removal. An event scheduled through a
+ * component's PortSlots carries them and the end's index, so that the
+ * point and the component's driver slot there needn't be looked up;
+ * otherwise ports is null. */
+abstract class PropagationQueue {
+	int time;
+	int serialNumber;
+	CircuitState state;
+	Component cause;
+	Location loc;
+	PortSlots ports;
+	int end;
+	Value val;
+
+	abstract boolean isEmpty();
+
+	abstract int size();
+
+	abstract void clear();
+
+	abstract void add(int time, int serialNumber, CircuitState state,
+			Location loc, PortSlots ports, int end, Component cause, Value val);
+
+	/** Returns the time of the earliest pending event; the queue must not
+	 * be empty. */
+	abstract int peekTime();
+
+	/** Removes the earliest pending event if it is scheduled for the
+	 * given time, making its data available through this object's fields.
+	 * Returns false if no such event exists. */
+	abstract boolean removeIfAt(int time);
+
+	/** Returns a SetData holding the most recently removed event, suitable
+	 * for insertion into a cause list. */
+	abstract SetData toSetData();
+}
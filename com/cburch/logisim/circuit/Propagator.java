@@ -6,7 +6,6 @@ package com.cburch.logisim.circuit;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.PriorityQueue;
 import java.util.Random;
 
 import com.cburch.logisim.comp.Component;
@@ -17,6 +16,7 @@ import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.Options;
+import com.cburch.logisim.prefs.AppPreferences;
 
 public class Propagator {
 	static class SetData implements Comparable<SetData> {
@@ -28,7 +28,7 @@ public class Propagator {
 		Value val;          // value being emitted
 		SetData next = null;
 
-		private SetData(int time, int serialNumber, CircuitState state,
+		SetData(int time, int serialNumber, CircuitState state,
 				Location loc, Component cause, Value val) {
 			this.time = time;
 			this.serialNumber = serialNumber;
@@ -117,15 +117,22 @@ public class Propagator {
 	 * practice). */
 	private volatile int simRandomShift;
 
-	private PriorityQueue<SetData> toProcess = new PriorityQueue<SetData>();
+	private PropagationQueue toProcess = createQueue();
+	private ParallelPropagation parallel = createParallel();
+	private boolean compiled = AppPreferences.SIM_COMPILED.getBoolean();
 	private int clock = 0;
 	private boolean isOscillating = false;
 	private boolean oscAdding = false;
 	private PropagationPoints oscPoints = new PropagationPoints(); 
 	private int  ticks = 0;
+	private long eventCount = 0;
 	private Random noiseSource = new Random();
 	private int noiseCount = 0;
 	private int setDataSerialNumber = 0;
+	private int visitEpoch = 0; // incremented for each step
+	private Object visitEra = new Object(); // replaced when visitEpoch wraps
+	private HashMap<CircuitState,HashSet<ComponentPoint>> visitedOther
+		= new HashMap<CircuitState,HashSet<ComponentPoint>>();
 	
 	static int lastId = 0;
 	int id = lastId++;
@@ -166,13 +173,76 @@ public class Propagator {
 		return root;
 	}
 	
-	void reset() {
-		toProcess.clear();
+	private static PropagationQueue createQueue() {
+		String type = AppPreferences.SIM_EVENT_QUEUE.get();
+		if (type.equals(AppPreferences.SIM_QUEUE_HEAP)) {
+			return new HeapPropagationQueue();
+		} else {
+			return new TimingWheelQueue();
+		}
+	}
+	
+	private static ParallelPropagation createParallel() {
+		if (AppPreferences.SIM_PARALLEL.getBoolean()) {
+			return new ParallelPropagation();
+		} else {
+			return null;
+		}
+	}
+	
+	/** Switches to the given kind of event queue (one of the
+	 * AppPreferences.SIM_QUEUE_ values), moving any pending events into it.
+	 * The preference normally determines this; this lets a benchmark
+	 * compare the queues without touching the user's preferences. */
+	public void setEventQueue(String type) {
+		PropagationQueue old = toProcess;
+		PropagationQueue ret;
+		if (type.equals(AppPreferences.SIM_QUEUE_HEAP)) {
+			ret = new HeapPropagationQueue();
+		} else {
+			ret = new TimingWheelQueue();
+		}
+		while (!old.isEmpty()) {
+			old.removeIfAt(old.peekTime());
+			ret.add(old.time, old.serialNumber, old.state, old.loc,
+					old.ports, old.end, old.cause, old.val);
+		}
+		toProcess = ret;
+	}
+	
+	/** Turns parallel propagation on or off, overriding the preference
+	 * until the next reset. */
+	public void setParallel(boolean value) {
+		if (value) {
+			if (parallel == null) parallel = new ParallelPropagation();
+		} else {
+			parallel = null;
+		}
+	}
+	
+	/** Turns compiled evaluation of combinational regions (see
+	 * CombinationalNetlist) on or off, overriding the preference until
+	 * the next reset. */
+	public void setCompiled(boolean value) {
+		compiled = value;
+	}
+	
+	boolean isCompiled() {
+		return compiled;
+	}
+	
+	// The methods that change the states hold the propagator, so that
+	// CircuitState.cloneState can copy a state between steps.
+	synchronized void reset() {
+		// pick up any change to the queue, parallel, and compiled preferences
+		toProcess = createQueue();
+		parallel = createParallel();
+		compiled = AppPreferences.SIM_COMPILED.getBoolean();
 		root.reset();
 		isOscillating = false;
 	}
 	
-	public void propagate() {
+	public synchronized void propagate() {
 		oscPoints.clear();
 		clearDirtyPoints();
 		clearDirtyComponents();
@@ -199,7 +269,7 @@ public class Propagator {
 		oscPoints.clear();
 	}
 	
-	void step(PropagationPoints changedPoints) {
+	synchronized void step(PropagationPoints changedPoints) {
 		oscPoints.clear();
 		clearDirtyPoints();
 		clearDirtyComponents();
@@ -213,46 +283,50 @@ public class Propagator {
 	}
 	
 	private void stepInternal(PropagationPoints changedPoints) {
-		if (toProcess.isEmpty()) return;
+		PropagationQueue queue = toProcess;
+		if (queue.isEmpty()) return;
 		
 		// update clock
-		clock = toProcess.peek().time;
+		clock = queue.peekTime();
 
 		// propagate all values for this clock tick
-		HashMap<CircuitState,HashSet<ComponentPoint>> visited
-			= new HashMap<CircuitState,HashSet<ComponentPoint>>();
-		while (true) {
-			SetData data = toProcess.peek();
-			if (data == null || data.time != clock) break;
-			toProcess.remove();
-			CircuitState state = data.state;
+		visitEpoch++;
+		if (visitEpoch == Integer.MAX_VALUE) {
+			visitEpoch = 1;
+			visitEra = new Object();
+		}
+		if (!visitedOther.isEmpty()) visitedOther.clear();
+		while (queue.removeIfAt(clock)) {
+			CircuitState state = queue.state;
+			Location loc = queue.loc;
+			PortSlots ports = queue.ports;
+			eventCount++;
 
 			// if it's already handled for this clock tick, continue
-			HashSet<ComponentPoint> handled = visited.get(state);
-			if (handled != null) {
-				if (!handled.add(new ComponentPoint(data.cause, data.loc))) continue;
-			} else {
-				handled = new HashSet<ComponentPoint>();
-				visited.put(state, handled);
-				handled.add(new ComponentPoint(data.cause, data.loc));
-			}
+			if (!markVisited(state, loc, ports, queue.end, queue.cause)) continue;
 			
 			/*DEBUGGING - comment out
-			Simulator.log(data.time + ": proc " + data.loc + " in "
-					+ data.state + " to " + data.val
-					+ " by " + data.cause); // */
+			Simulator.log(queue.time + ": proc " + loc + " in "
+					+ state + " to " + queue.val
+					+ " by " + queue.cause); // */
 			
-			if (changedPoints != null) changedPoints.add(state, data.loc);
+			if (changedPoints != null) changedPoints.add(state, loc);
 
 			// change the information about value
-			SetData oldHead = state.causes.get(data.loc);
+			CircuitWires.BundleMap map = null;
+			int index = -1;
+			if (ports != null) {
+				map = ports.map;
+				index = ports.points[queue.end];
+			}
+			SetData oldHead = state.values.getCauseForWrite(map, index, loc);
 			Value   oldVal  = computeValue(oldHead);
-			SetData newHead = addCause(state, oldHead, data);
+			SetData newHead = addCause(state, map, index, oldHead, queue);
 			Value   newVal  = computeValue(newHead);
 
 			// if the value at point has changed, propagate it
 			if (!newVal.equals(oldVal)) {
-				state.markPointAsDirty(data.loc);
+				state.markPointAsDirty(loc);
 			}
 		}
 
@@ -260,6 +334,42 @@ public class Propagator {
 		clearDirtyComponents();
 	}
 	
+	private boolean markVisited(CircuitState state, Location loc,
+			PortSlots ports, int end, Component cause) {
+		CircuitWires wires = state.getCircuit().wires;
+		CircuitWires.BundleMap map = state.visitedMap;
+		if (map == null || !wires.isCurrent(map)) {
+			map = wires.getDriverMap();
+			state.visitedMap = map;
+			state.visitedStamps = null;
+		}
+		int slot;
+		if (ports != null && ports.map == map) {
+			slot = ports.drivers[end];
+		} else {
+			slot = map.getDriverSlot(loc, cause);
+		}
+		if (slot < 0) {
+			// cause is not (or no longer) in the circuit at loc
+			HashSet<ComponentPoint> handled = visitedOther.get(state);
+			if (handled == null) {
+				handled = new HashSet<ComponentPoint>();
+				visitedOther.put(state, handled);
+			}
+			return handled.add(new ComponentPoint(cause, loc));
+		}
+
+		int[] stamps = state.visitedStamps;
+		if (stamps == null || state.visitedEra != visitEra) {
+			stamps = new int[map.driverCount];
+			state.visitedStamps = stamps;
+			state.visitedEra = visitEra;
+		}
+		if (stamps[slot] == visitEpoch) return false;
+		stamps[slot] = visitEpoch;
+		return true;
+	}
+	
 	boolean isPending() {
 		return !toProcess.isEmpty();
 	}
@@ -306,7 +416,12 @@ public class Propagator {
 	} */
 	
 	void locationTouched(CircuitState state, Location loc) {
-		if (oscAdding) oscPoints.add(state, loc);
+		if (oscAdding) {
+			PropagationPoints points = oscPoints;
+			synchronized(points) {
+				points.add(state, loc);
+			}
+		}
 	}
 
 	//
@@ -314,7 +429,20 @@ public class Propagator {
 	//
 	void setValue(CircuitState state, Location pt, Value val,
 			Component cause, int delay) {
+		setValue(state, pt, null, -1, val, cause, delay);
+	}
+
+	void setValue(CircuitState state, PortSlots ports, int end, Value val,
+			Component cause, int delay) {
+		setValue(state, ports.locs[end], ports, end, val, cause, delay);
+	}
+
+	void setValue(CircuitState state, Location pt, PortSlots ports, int end,
+			Value val, Component cause, int delay) {
 		if (cause instanceof Wire || cause instanceof Splitter) return;
+		ParallelPropagation par = parallel;
+		if (par != null
+				&& par.record(state, pt, ports, end, val, cause, delay)) return;
 		if (delay <= 0) {
 			delay = 1;
 		}
@@ -332,8 +460,8 @@ public class Propagator {
 				}
 			}
 		}
-		toProcess.add(new SetData(clock + delay, setDataSerialNumber,
-				state, pt, cause, val));
+		toProcess.add(clock + delay, setDataSerialNumber,
+				state, pt, ports, end, cause, val);
 		/*DEBUGGING - comment out
 		Simulator.log(clock + ": set " + pt + " in "
 				+ state + " to " + val
@@ -343,7 +471,40 @@ public class Propagator {
 		setDataSerialNumber++;
 	}
 
-	public boolean tick() {
+	/** Changes the value that a component emits at a point immediately,
+	 * rather than through the event queue. Returns true if the value at the
+	 * point changed, in which case the caller must see that the point is
+	 * settled. This is only for CombinationalNetlist, at points where no
+	 * other component can see the difference; index is the point's index
+	 * in map. */
+	boolean setValueNow(CircuitState state, CircuitWires.BundleMap map,
+			int index, Location pt, Value val, Component cause) {
+		SetData head = state.values.getCauseForWrite(map, index, pt);
+		Value oldVal = computeValue(head);
+		boolean found = false;
+		for (SetData n = head; n != null; n = n.next) {
+			if (n.cause == cause) {
+				if (n.val.equals(val)) return false;
+				n.val = val;
+				found = true;
+				break;
+			}
+		}
+		if (!found) {
+			// never queued, so it needs no serial number
+			SetData data = new SetData(clock, 0, state, pt, cause, val);
+			if (head == null) {
+				state.values.putCause(map, index, pt, data);
+				head = data;
+			} else {
+				data.next = head.next;
+				head.next = data;
+			}
+		}
+		return !computeValue(head).equals(oldVal);
+	}
+
+	public synchronized boolean tick() {
 		ticks++;
 		return root.tick(ticks);
 	}
@@ -352,15 +513,21 @@ public class Propagator {
 		return ticks;
 	}
 
+	/** Returns how many events have been taken from the queue since the
+	 * propagator was created. */
+	public long getEventCount() {
+		return eventCount;
+	}
+
 	//
 	// private methods
 	//
 	void checkComponentEnds(CircuitState state, Component comp) {
 		for (EndData end : comp.getEnds()) {
 			Location loc    = end.getLocation();
-			SetData oldHead = state.causes.get(loc);
+			SetData oldHead = state.values.getCauseForWrite(loc);
 			Value   oldVal  = computeValue(oldHead);
-			SetData newHead = removeCause(state, oldHead, loc, comp);
+			SetData newHead = removeCause(state, null, -1, oldHead, loc, comp);
 			Value   newVal  = computeValue(newHead);
 			Value   wireVal = state.getValueByWire(loc);
 
@@ -372,26 +539,34 @@ public class Propagator {
 	}
 
 	private void clearDirtyPoints() {
-		root.processDirtyPoints();
+		ParallelPropagation par = parallel;
+		if (par == null) {
+			root.processDirtyPoints();
+		} else {
+			par.processDirtyPoints(root);
+		}
 	}
 
 	private void clearDirtyComponents() {
-		root.processDirtyComponents();
+		ParallelPropagation par = parallel;
+		if (par == null) {
+			root.processDirtyComponents();
+		} else {
+			par.processDirtyComponents(root).replay(this);
+		}
 	}
 
-	private SetData addCause(CircuitState state, SetData head,
-			SetData data) {
-		if (data.val == null) { // actually, it should be removed
-			return removeCause(state, head, data.loc, data.cause);
+	private SetData addCause(CircuitState state, CircuitWires.BundleMap map,
+			int index, SetData head, PropagationQueue queue) {
+		if (queue.val == null) { // actually, it should be removed
+			return removeCause(state, map, index, head, queue.loc, queue.cause);
 		}
 
-		HashMap<Location,SetData> causes = state.causes;
-
 		// first check whether this is change of previous info.
 		boolean replaced = false;
 		for (SetData n = head; n != null; n = n.next) {
-			if (n.cause == data.cause) {
-				n.val = data.val;
+			if (n.cause == queue.cause) {
+				n.val = queue.val;
 				replaced = true;
 				break;
 			}
@@ -399,8 +574,9 @@ public class Propagator {
 
 		// otherwise, insert to list of causes
 		if (!replaced) {
+			SetData data = queue.toSetData();
 			if (head == null) {
-				causes.put(data.loc, data);
+				state.values.putCause(map, index, data.loc, data);
 				head = data;
 			} else {
 				data.next = head.next;
@@ -411,15 +587,13 @@ public class Propagator {
 		return head;
 	}
 
-	private SetData removeCause(CircuitState state, SetData head,
-			Location loc, Component cause) {
-		HashMap<Location,SetData> causes = state.causes;
+	private SetData removeCause(CircuitState state, CircuitWires.BundleMap map,
+			int index, SetData head, Location loc, Component cause) {
 		if (head == null) {
 			;
 		} else if (head.cause == cause) {
 			head = head.next;
-			if (head == null) causes.remove(loc);
-			else causes.put(loc, head);
+			state.values.putCause(map, index, loc, head);
 		} else {
 			SetData prev = head;
 			SetData cur = head.next;
@@ -11,6 +11,8 @@ import com.cburch.logisim.data.Value;
 import com.cburch.logisim.util.StringGetter;
 
 public abstract class RadixOption extends AttributeOption {
+	private static final double LOG10_2 = Math.log10(2);
+
 	public static final RadixOption RADIX_2 = new Radix2();
 	public static final RadixOption RADIX_8 = new Radix8();
 	public static final RadixOption RADIX_10_UNSIGNED = new Radix10Unsigned();
@@ -111,7 +113,12 @@ public abstract class RadixOption extends AttributeOption {
 			case 25: case 26: case 27:          return 9; // 16M..64M
 			case 28: case 29: case 30:          return 10; // 128M..512M
 			case 31: case 32:                   return 11; // 1G..2G
-			default:                            return 1;
+			default:
+				// the digits of 2^(w-1), plus a minus sign
+				if (width.getWidth() > 32) {
+					return 1 + (int) Math.ceil((width.getWidth() - 1) * LOG10_2);
+				}
+				return 1;
 			}
 		}
 	}
@@ -138,7 +145,11 @@ public abstract class RadixOption extends AttributeOption {
 			case 24: case 25: case 26:          return 8;
 			case 27: case 28: case 29:          return 9;
 			case 30: case 31: case 32:          return 10;
-			default:                            return 1;
+			default:
+				if (width.getWidth() > 32) {
+					return (int) Math.ceil(width.getWidth() * LOG10_2);
+				}
+				return 1;
 			}
 		}
 	}
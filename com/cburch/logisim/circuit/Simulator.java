@@ -37,6 +37,7 @@ public class Simulator {
 		private volatile boolean resetRequested = false;
 		private volatile boolean propagateRequested = false;
 		private volatile boolean complete = false;
+		private volatile boolean turbo = false;
 
 		// These variables apply only if PRINT_TICK_RATE is set
 		int tickRateTicks = 0;
@@ -71,18 +72,29 @@ public class Simulator {
 			notifyAll();
 		}
 		
+		synchronized void setTurbo(boolean value) {
+			if (turbo != value) {
+				turbo = value;
+				notifyAll();
+			}
+		}
+		
 		public synchronized void shutDown() {
 			complete = true;
 			notifyAll();
 		}
 		
+		private boolean isTurboReady() {
+			return turbo && isRunning && propagator != null;
+		}
+		
 		@Override
 		public void run() {
 			while (!complete) {
 				synchronized(this) {
 					while (!complete && !propagateRequested
 							&& !resetRequested && ticksRequested == 0
-							&& stepsRequested == 0) {
+							&& stepsRequested == 0 && !isTurboReady()) {
 						try {
 							wait();
 						} catch (InterruptedException e) { }
@@ -96,7 +108,9 @@ public class Simulator {
 					propagateRequested |= isRunning;
 				}
 				
-				if (propagateRequested || ticksRequested > 0 || stepsRequested > 0) {
+				boolean turboBatch = isTurboReady();
+				if (propagateRequested || ticksRequested > 0 || stepsRequested > 0
+						|| turboBatch) {
 					boolean ticked = false;
 					propagateRequested = false;
 					if (isRunning) {
@@ -105,24 +119,40 @@ public class Simulator {
 						if (propagator == null) {
 							ticksRequested = 0;
 						} else {
-							ticked = ticksRequested > 0;
-							if (ticked) doTick();
+							// In turbo mode, tick repeatedly until it is time to
+							// tell the listeners, so that repainting the canvas
+							// does not hold back the simulation.
+							long deadline = System.nanoTime() + TURBO_BATCH_NANOS;
 							do {
-								propagateRequested = false;
-								try {
-									exceptionEncountered = false;
-									propagator.propagate();
-								} catch (Throwable thr) {
-									thr.printStackTrace();
-									exceptionEncountered = true;
+								long start = System.nanoTime();
+								long events = propagator.getEventCount();
+								boolean tick = ticksRequested > 0 || turboBatch;
+								if (ticksRequested > 0) doTick();
+								else if (turboBatch) propagator.tick();
+								do {
+									propagateRequested = false;
+									try {
+										exceptionEncountered = false;
+										propagator.propagate();
+									} catch (Throwable thr) {
+										thr.printStackTrace();
+										exceptionEncountered = true;
+										setIsRunning(false);
+									}
+								} while (propagateRequested);
+								if (tick) {
+									ticked = true;
+									statistics.recordTick(System.nanoTime() - start,
+											propagator.getEventCount() - events);
+								}
+								if (isOscillating()) {
 									setIsRunning(false);
+									ticksRequested = 0;
+									propagateRequested = false;
 								}
-							} while (propagateRequested);
-							if (isOscillating()) {
-								setIsRunning(false);
-								ticksRequested = 0;
-								propagateRequested = false;
-							}
+							} while (turboBatch && isTurboReady() && !resetRequested
+									&& stepsRequested == 0
+									&& System.nanoTime() < deadline);
 						}
 					} else {
 						if (stepsRequested > 0) {
@@ -158,6 +188,13 @@ public class Simulator {
 		}
 	}
 
+	/** The tick frequency at which the simulator ticks as fast as it can
+	 * propagate the circuit. */
+	public static final double TURBO_FREQUENCY = Double.POSITIVE_INFINITY;
+
+	// how long to keep ticking in turbo mode between notifications
+	private static final long TURBO_BATCH_NANOS = 30000000L;
+
 	private boolean isRunning = true;
 	private boolean isTicking = false;
 	private boolean exceptionEncountered = false;
@@ -165,6 +202,7 @@ public class Simulator {
 
 	private PropagationManager manager;
 	private SimulatorTicker ticker;
+	private SimulatorStatistics statistics = new SimulatorStatistics();
 	private ArrayList<SimulatorListener> listeners
 		= new ArrayList<SimulatorListener>();
 
@@ -190,6 +228,7 @@ public class Simulator {
 
 	public void setCircuitState(CircuitState state) {
 		manager.setPropagator(state.getPropagator());
+		statistics.clear();
 		renewTickerAwake();
 	}
 	
@@ -217,6 +256,12 @@ public class Simulator {
 		manager.stepPoints.draw(context);
 	}
 	
+	/** Returns the measurements of the ticks carried out since ticking was
+	 * last enabled or its frequency was last changed. */
+	public SimulatorStatistics getStatistics() {
+		return statistics;
+	}
+	
 	public boolean isExceptionEncountered() {
 		return exceptionEncountered;
 	}
@@ -242,18 +287,26 @@ public class Simulator {
 	public void setIsTicking(boolean value) {
 		if (isTicking != value) {
 			isTicking = value;
+			if (value) statistics.clear();
 			renewTickerAwake();
 			fireSimulatorStateChanged();
 		}
 	}
 	
 	private void renewTickerAwake() {
-		ticker.setAwake(isRunning && isTicking && tickFrequency > 0);
+		boolean ticking = isRunning && isTicking && tickFrequency > 0;
+		boolean turbo = ticking && isTurbo();
+		ticker.setAwake(ticking && !turbo);
+		manager.setTurbo(turbo);
 	}
 
 	public double getTickFrequency() {
 		return tickFrequency;
 	}
+	
+	public boolean isTurbo() {
+		return tickFrequency == TURBO_FREQUENCY;
+	}
 
 	public void setTickFrequency(double freq) {
 		if (tickFrequency != freq) {
@@ -261,12 +314,16 @@ public class Simulator {
 			int ticks;
 			if (millis > 0) {
 				ticks = 1;
+			} else if (freq == TURBO_FREQUENCY) {
+				millis = 1; // unused, since the ticker sleeps
+				ticks = 1;
 			} else {
 				millis = 1;
 				ticks = (int) Math.round(freq / 1000);
 			}
 			
 			tickFrequency = freq;
+			statistics.clear();
 			ticker.setTickFrequency(millis, ticks);
 			renewTickerAwake();
 			fireSimulatorStateChanged();
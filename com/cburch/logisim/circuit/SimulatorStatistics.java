@@ -0,0 +1,111 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+/** Measurements of the ticks that a Simulator has carried out: how many
+ * ticks and events it has processed each second, and a histogram of how
+ * long each tick took to propagate. The simulator's thread records into it
+ * while any other thread reads it.
+ *
+ * Bucket <code>i</code> of the histogram counts the ticks whose propagation
+ * took less than <code>2^i</code> microseconds (and at least half that);
+ * the last bucket also counts everything slower. */
+public class SimulatorStatistics {
+	public static final int BUCKET_COUNT = 24;
+
+	// rates are measured over windows of about this length
+	private static final long WINDOW_NANOS = 1000000000L;
+	// and not reported until a window has run at least this long
+	private static final long MIN_WINDOW_NANOS = 100000000L;
+
+	private long ticks = 0;
+	private long events = 0;
+	private long propagationNanos = 0;
+	private long[] histogram = new long[BUCKET_COUNT];
+
+	private long windowStart = 0;
+	private long windowTicks = 0;
+	private long windowEvents = 0;
+	private double tickRate = 0.0;
+	private double eventRate = 0.0;
+
+	SimulatorStatistics() { }
+
+	synchronized void recordTick(long nanos, long eventCount) {
+		long now = System.nanoTime();
+		if (ticks == 0 && windowStart == 0) windowStart = now - nanos;
+		ticks++;
+		events += eventCount;
+		propagationNanos += nanos;
+		histogram[getBucket(nanos)]++;
+
+		long elapse = now - windowStart;
+		if (elapse >= WINDOW_NANOS) {
+			tickRate = (ticks - windowTicks) * 1e9 / elapse;
+			eventRate = (events - windowEvents) * 1e9 / elapse;
+			windowStart = now;
+			windowTicks = ticks;
+			windowEvents = events;
+		}
+	}
+
+	public synchronized void clear() {
+		ticks = 0;
+		events = 0;
+		propagationNanos = 0;
+		histogram = new long[BUCKET_COUNT];
+		windowStart = 0;
+		windowTicks = 0;
+		windowEvents = 0;
+		tickRate = 0.0;
+		eventRate = 0.0;
+	}
+
+	public synchronized long getTickCount() {
+		return ticks;
+	}
+
+	public synchronized long getEventCount() {
+		return events;
+	}
+
+	/** Returns the ticks per second, or 0 if too little has been
+	 * measured. */
+	public synchronized double getTickRate() {
+		if (tickRate > 0) return tickRate;
+		long elapse = System.nanoTime() - windowStart;
+		if (windowStart == 0 || elapse < MIN_WINDOW_NANOS) return 0.0;
+		return (ticks - windowTicks) * 1e9 / elapse;
+	}
+
+	/** Returns the events processed per second, or 0 if too little has
+	 * been measured. */
+	public synchronized double getEventRate() {
+		if (eventRate > 0) return eventRate;
+		long elapse = System.nanoTime() - windowStart;
+		if (windowStart == 0 || elapse < MIN_WINDOW_NANOS) return 0.0;
+		return (events - windowEvents) * 1e9 / elapse;
+	}
+
+	/** Returns the mean time to propagate a tick, in nanoseconds. */
+	public synchronized double getMeanPropagationNanos() {
+		return ticks == 0 ? 0.0 : (double) propagationNanos / ticks;
+	}
+
+	public synchronized long[] getPropagationHistogram() {
+		return histogram.clone();
+	}
+
+	/** Returns the time in nanoseconds below which the ticks counted in the
+	 * given bucket took to propagate. */
+	public static long getBucketLimit(int bucket) {
+		return 1000L << bucket;
+	}
+
+	private static int getBucket(long nanos) {
+		long micros = nanos / 1000;
+		int ret = micros <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(ret, BUCKET_COUNT - 1);
+	}
+}
@@ -14,6 +14,7 @@ import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.Attributes;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Direction;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.StdAttr;
 
 class SplitterAttributes extends AbstractAttributeSet {
@@ -34,7 +35,7 @@ class SplitterAttributes extends AbstractAttributeSet {
 	public static final Attribute<BitWidth> ATTR_WIDTH
 		= Attributes.forBitWidth("incoming", Strings.getter("splitterBitWidthAttr"));
 	public static final Attribute<Integer> ATTR_FANOUT
-		= Attributes.forIntegerRange("fanout", Strings.getter("splitterFanOutAttr"), 1, 32);
+		= Attributes.forIntegerRange("fanout", Strings.getter("splitterFanOutAttr"), 1, Value.MAX_WIDTH);
 
 	private static final List<Attribute<?>> INIT_ATTRIBUTES
 		= Arrays.asList(new Attribute<?>[] {
@@ -18,6 +18,7 @@ import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.tools.key.BitWidthConfigurator;
 import com.cburch.logisim.tools.key.IntegerConfigurator;
@@ -116,9 +117,9 @@ public class SplitterFactory extends AbstractComponentFactory {
 			KeyConfigurator altConfig = ParallelConfigurator.create(
 					new BitWidthConfigurator(SplitterAttributes.ATTR_WIDTH),
 					new IntegerConfigurator(SplitterAttributes.ATTR_FANOUT,
-							1, 32, InputEvent.ALT_DOWN_MASK));
+							1, Value.MAX_WIDTH, InputEvent.ALT_DOWN_MASK));
 			return JoinedConfigurator.create(
-				new IntegerConfigurator(SplitterAttributes.ATTR_FANOUT, 1, 32, 0),
+				new IntegerConfigurator(SplitterAttributes.ATTR_FANOUT, 1, Value.MAX_WIDTH, 0),
 				altConfig);
 		}
 		return super.getFeature(key, attrs);
@@ -0,0 +1,257 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/** An event queue organized as a timing wheel. Each event is a record in
+ * a set of parallel arrays, recycled through a free list, so that
+ * scheduling an event allocates nothing once the arrays have grown to
+ * the circuit's working size.
+ *
+ * Every event in the wheel lies within WHEEL_SIZE time units of the
+ * current time, so each slot holds events for only one time, linked in
+ * serial-number order. Events scheduled further ahead wait in a small
+ * binary heap and move into the wheel as the current time approaches. */
+class TimingWheelQueue extends PropagationQueue {
+	private static final int WHEEL_BITS = 8;
+	private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	// event records
+	private int[] recTime;
+	private int[] recSerial;
+	private int[] recNext;
+	private CircuitState[] recState;
+	private Location[] recLoc;
+	private PortSlots[] recPorts;
+	private int[] recEnd;
+	private Component[] recCause;
+	private Value[] recVal;
+	private int recUsed = 0; // records ever handed out
+	private int freeHead = -1;
+
+	// the wheel proper
+	private int[] slotHead = new int[WHEEL_SIZE];
+	private int[] slotTail = new int[WHEEL_SIZE];
+	private int wheelCount = 0;
+	private int now = 0; // no event in the wheel precedes this time
+
+	// events beyond the wheel's horizon, as a heap of record indices
+	private int[] overflow = new int[16];
+	private int overflowCount = 0;
+
+	TimingWheelQueue() {
+		allocate(64);
+		Arrays.fill(slotHead, -1);
+		Arrays.fill(slotTail, -1);
+	}
+
+	@Override
+	boolean isEmpty() {
+		return wheelCount == 0 && overflowCount == 0;
+	}
+
+	@Override
+	int size() {
+		return wheelCount + overflowCount;
+	}
+
+	@Override
+	void clear() {
+		Arrays.fill(slotHead, -1);
+		Arrays.fill(slotTail, -1);
+		Arrays.fill(recState, 0, recUsed, null);
+		Arrays.fill(recLoc, 0, recUsed, null);
+		Arrays.fill(recPorts, 0, recUsed, null);
+		Arrays.fill(recCause, 0, recUsed, null);
+		Arrays.fill(recVal, 0, recUsed, null);
+		wheelCount = 0;
+		overflowCount = 0;
+		recUsed = 0;
+		freeHead = -1;
+	}
+
+	@Override
+	void add(int time, int serialNumber, CircuitState state,
+			Location loc, PortSlots ports, int end, Component cause, Value val) {
+		int rec = newRecord();
+		recTime[rec] = time;
+		recSerial[rec] = serialNumber;
+		recState[rec] = state;
+		recLoc[rec] = loc;
+		recPorts[rec] = ports;
+		recEnd[rec] = end;
+		recCause[rec] = cause;
+		recVal[rec] = val;
+		int dist = time - now;
+		if (dist >= 0 && dist < WHEEL_SIZE) {
+			insertIntoWheel(rec);
+		} else {
+			overflowPush(rec);
+		}
+	}
+
+	@Override
+	int peekTime() {
+		int next;
+		if (wheelCount > 0) {
+			int slot = now & WHEEL_MASK;
+			while (slotHead[slot] < 0) slot = (slot + 1) & WHEEL_MASK;
+			next = recTime[slotHead[slot]];
+		} else {
+			next = recTime[overflow[0]];
+		}
+		if (next != now) {
+			now = next;
+			// pull in events that have come within the wheel's horizon
+			while (overflowCount > 0
+					&& recTime[overflow[0]] - now < WHEEL_SIZE) {
+				insertIntoWheel(overflowPop());
+			}
+		}
+		return next;
+	}
+
+	@Override
+	boolean removeIfAt(int time) {
+		int slot = time & WHEEL_MASK;
+		int rec = slotHead[slot];
+		if (rec < 0 || recTime[rec] != time) return false;
+
+		slotHead[slot] = recNext[rec];
+		if (slotHead[slot] < 0) slotTail[slot] = -1;
+		wheelCount--;
+
+		this.time = recTime[rec];
+		this.serialNumber = recSerial[rec];
+		this.state = recState[rec];
+		this.loc = recLoc[rec];
+		this.ports = recPorts[rec];
+		this.end = recEnd[rec];
+		this.cause = recCause[rec];
+		this.val = recVal[rec];
+
+		recState[rec] = null;
+		recLoc[rec] = null;
+		recPorts[rec] = null;
+		recCause[rec] = null;
+		recVal[rec] = null;
+		recNext[rec] = freeHead;
+		freeHead = rec;
+		return true;
+	}
+
+	@Override
+	SetData toSetData() {
+		return new SetData(time, serialNumber, state, loc, cause, val);
+	}
+
+	private int newRecord() {
+		if (freeHead >= 0) {
+			int ret = freeHead;
+			freeHead = recNext[ret];
+			return ret;
+		}
+		if (recUsed == recTime.length) allocate(2 * recTime.length);
+		return recUsed++;
+	}
+
+	private void allocate(int capacity) {
+		if (recTime == null) {
+			recTime = new int[capacity];
+			recSerial = new int[capacity];
+			recNext = new int[capacity];
+			recState = new CircuitState[capacity];
+			recLoc = new Location[capacity];
+			recPorts = new PortSlots[capacity];
+			recEnd = new int[capacity];
+			recCause = new Component[capacity];
+			recVal = new Value[capacity];
+		} else {
+			recTime = Arrays.copyOf(recTime, capacity);
+			recSerial = Arrays.copyOf(recSerial, capacity);
+			recNext = Arrays.copyOf(recNext, capacity);
+			recState = Arrays.copyOf(recState, capacity);
+			recLoc = Arrays.copyOf(recLoc, capacity);
+			recPorts = Arrays.copyOf(recPorts, capacity);
+			recEnd = Arrays.copyOf(recEnd, capacity);
+			recCause = Arrays.copyOf(recCause, capacity);
+			recVal = Arrays.copyOf(recVal, capacity);
+		}
+	}
+
+	private void insertIntoWheel(int rec) {
+		int slot = recTime[rec] & WHEEL_MASK;
+		int serial = recSerial[rec];
+		int tail = slotTail[slot];
+		wheelCount++;
+		if (tail < 0) {
+			recNext[rec] = -1;
+			slotHead[slot] = rec;
+			slotTail[slot] = rec;
+		} else if (recSerial[tail] - serial < 0) {
+			// the usual case: serial numbers arrive in increasing order
+			recNext[rec] = -1;
+			recNext[tail] = rec;
+			slotTail[slot] = rec;
+		} else {
+			// an event migrating from the overflow heap may precede
+			// some of those already in the slot
+			int prev = -1;
+			int cur = slotHead[slot];
+			while (cur >= 0 && recSerial[cur] - serial < 0) {
+				prev = cur;
+				cur = recNext[cur];
+			}
+			recNext[rec] = cur;
+			if (prev < 0) slotHead[slot] = rec;
+			else recNext[prev] = rec;
+		}
+	}
+
+	private boolean overflowLess(int a, int b) {
+		int ret = recTime[a] - recTime[b];
+		if (ret != 0) return ret < 0;
+		return recSerial[a] - recSerial[b] < 0;
+	}
+
+	private void overflowPush(int rec) {
+		if (overflowCount == overflow.length) {
+			overflow = Arrays.copyOf(overflow, 2 * overflow.length);
+		}
+		int pos = overflowCount++;
+		while (pos > 0) {
+			int parent = (pos - 1) >> 1;
+			if (!overflowLess(rec, overflow[parent])) break;
+			overflow[pos] = overflow[parent];
+			pos = parent;
+		}
+		overflow[pos] = rec;
+	}
+
+	private int overflowPop() {
+		int ret = overflow[0];
+		int last = overflow[--overflowCount];
+		int pos = 0;
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= overflowCount) break;
+			if (child + 1 < overflowCount
+					&& overflowLess(overflow[child + 1], overflow[child])) {
+				child++;
+			}
+			if (!overflowLess(overflow[child], last)) break;
+			overflow[pos] = overflow[child];
+			pos = child;
+		}
+		if (overflowCount > 0) overflow[pos] = last;
+		return ret;
+	}
+}
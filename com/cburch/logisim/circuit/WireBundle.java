@@ -15,6 +15,10 @@ class WireBundle {
 	private Location widthDeterminant = null;
 	WireThread[] threads = null;
 	SmallSet<Location> points = new SmallSet<Location>(); // points bundle hits
+	// the same points with their indices in the bundle map, once it
+	// has numbered them, so that propagation needn't look them up
+	Location[] pointArray = null;
+	int[] pointIndices = null;
 	private WidthIncompatibilityData incompatibilityData = null;
 
 	WireBundle() {
@@ -69,6 +73,18 @@ class WireBundle {
 		return incompatibilityData;
 	}
 
+	void numberPoints(CircuitWires.BundleMap map) {
+		int n = points.size();
+		pointArray = new Location[n];
+		pointIndices = new int[n];
+		int i = 0;
+		for (Location p : points) {
+			pointArray[i] = p;
+			pointIndices[i] = map.getPointIndex(p);
+			i++;
+		}
+	}
+
 	void isolate() {
 		parent = this;
 	}
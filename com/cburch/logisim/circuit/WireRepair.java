@@ -223,16 +223,38 @@ class WireRepair extends CircuitTransaction {
 	}
 	
 	private void doSplits(CircuitMutator mutator) {
-		Set<Location> splitLocs = circuit.wires.points.getSplitLocations();
+		// index the split locations by column and by row, so that each
+		// wire looks only at the locations lying along it
+		HashMap<Integer,ArrayList<Location>> columns;
+		HashMap<Integer,ArrayList<Location>> rows;
+		columns = new HashMap<Integer,ArrayList<Location>>();
+		rows = new HashMap<Integer,ArrayList<Location>>();
+		for (Location loc : circuit.wires.points.getSplitLocations()) {
+			addToLine(columns, loc.getX(), loc);
+			addToLine(rows, loc.getY(), loc);
+		}
+		for (ArrayList<Location> line : columns.values()) Collections.sort(line);
+		for (ArrayList<Location> line : rows.values()) Collections.sort(line);
+
 		ReplacementMap repl = new ReplacementMap();
 		for (Wire w : circuit.getWires()) {
 			Location w0 = w.getEnd0();
 			Location w1 = w.getEnd1();
+			boolean vertical = w.isVertical();
+			HashMap<Integer,ArrayList<Location>> lines = vertical ? columns : rows;
+			int across = vertical ? w0.getX() : w0.getY();
+			int start = vertical ? w0.getY() : w0.getX();
 			ArrayList<Location> splits = null;
-			for (Location loc : splitLocs) {
-				if (w.contains(loc) && !loc.equals(w0) && !loc.equals(w1)) {
-					if (splits == null) splits = new ArrayList<Location>();
-					splits.add(loc);
+			for (int d = -2; d <= 2; d++) { // Wire.contains allows 2 either side
+				ArrayList<Location> line = lines.get(Integer.valueOf(across + d));
+				if (line == null) continue;
+				for (int i = findFirst(line, vertical, start); i < line.size(); i++) {
+					Location loc = line.get(i);
+					if (!w.contains(loc)) break;
+					if (!loc.equals(w0) && !loc.equals(w1)) {
+						if (splits == null) splits = new ArrayList<Location>();
+						splits.add(loc);
+					}
 				}
 			}
 			if (splits != null) {
@@ -249,4 +271,31 @@ class WireRepair extends CircuitTransaction {
 		}
 		mutator.replace(circuit, repl);
 	}
+
+	private static void addToLine(HashMap<Integer,ArrayList<Location>> lines,
+			int coord, Location loc) {
+		Integer key = Integer.valueOf(coord);
+		ArrayList<Location> line = lines.get(key);
+		if (line == null) {
+			line = new ArrayList<Location>(4);
+			lines.put(key, line);
+		}
+		line.add(loc);
+	}
+
+	// returns the index of the first location in the sorted line whose
+	// position along the line is at least start
+	private static int findFirst(ArrayList<Location> line, boolean vertical,
+			int start) {
+		int lo = 0;
+		int hi = line.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			Location loc = line.get(mid);
+			int pos = vertical ? loc.getY() : loc.getX();
+			if (pos < start) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
 }
@@ -7,6 +7,7 @@ import com.cburch.logisim.util.SmallSet;
 
 class WireThread {
 	private WireThread parent;
+	int index = -1; // position in CircuitWires.State's thread values
 	private SmallSet<CircuitWires.ThreadBundle> bundles
 		= new SmallSet<CircuitWires.ThreadBundle>();
 
@@ -4,6 +4,8 @@
 package com.cburch.logisim.data;
 
 import java.awt.Window;
+import java.io.IOException;
+import java.io.Writer;
 
 import javax.swing.JTextField;
 
@@ -47,5 +49,12 @@ public abstract class Attribute<V> {
 		return value.toString();
 	}
 
+	/** Writes the same text as <code>toStandardString</code>. Attributes
+	 * whose values can be large override this to write the text out as
+	 * it is produced rather than building it as one string. */
+	public void writeStandardString(Writer out, V value) throws IOException {
+		out.write(toStandardString(value));
+	}
+
 	public abstract V parse(String value);
 }
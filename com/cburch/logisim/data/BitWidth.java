@@ -60,12 +60,20 @@ public class BitWidth implements Comparable<BitWidth> {
 		return width;
 	}
 	
+	/** Returns the mask for the low bits of an int; widths of 32 bits and
+	 * more give all ones. */
 	public int getMask() {
 		if (width == 0)       return 0;
-		else if (width == 32) return -1;
+		else if (width >= 32) return -1;
 		else                 return (1 << width) - 1;
 	}
 
+	public long getLongMask() {
+		if (width == 0)       return 0;
+		else if (width >= 64) return -1L;
+		else                 return (1L << width) - 1;
+	}
+
 	@Override
 	public boolean equals(Object other_obj) {
 		if (!(other_obj instanceof BitWidth)) return false;
@@ -113,7 +121,7 @@ public class BitWidth implements Comparable<BitWidth> {
 
 	private static void ensurePrefab() {
 		if (prefab == null) {
-			prefab = new BitWidth[Math.min(32, Value.MAX_WIDTH)];
+			prefab = new BitWidth[Value.MAX_WIDTH];
 			prefab[0] = ONE;
 			for (int i = 1; i < prefab.length; i++) {
 				prefab[i] = new BitWidth(i + 1);
@@ -6,8 +6,6 @@ package com.cburch.logisim.data;
 import java.awt.Color;
 import java.util.Arrays;
 
-import com.cburch.logisim.util.Cache;
-
 public class Value {
 	public static final Value FALSE   = new Value(1, 0, 0, 0);
 	public static final Value TRUE    = new Value(1, 0, 0, 1);
@@ -15,7 +13,7 @@ public class Value {
 	public static final Value ERROR   = new Value(1, 1, 0, 0);
 	public static final Value NIL     = new Value(0, 0, 0, 0);
 
-	public static final int MAX_WIDTH = 32;
+	public static final int MAX_WIDTH = 64;
 
 	public static final Color NIL_COLOR = Color.GRAY;
 	public static final Color FALSE_COLOR = new Color(0, 100, 0);
@@ -24,8 +22,37 @@ public class Value {
 	public static final Color ERROR_COLOR = new Color(192, 0, 0);
 	public static final Color WIDTH_ERROR_COLOR = new Color(255, 123, 0);
 	public static final Color MULTI_COLOR = Color.BLACK;
-	
-	private static final Cache cache = new Cache();
+
+	// Multi-bit values are interned so that propagation does not allocate
+	// a new Value for every evaluation. The fully defined values of up to
+	// SMALL_WIDTH bits, and the all-unknown and all-error values of each
+	// width, are kept in tables; everything else goes through the cache.
+	// Its slots are chosen by a hash that mixes all four fields, and each
+	// value can sit in either slot of a pair, so that two hot values
+	// landing on the same slot do not keep evicting each other. Threads
+	// racing on the cache can only lose entries, since the fields of a
+	// Value are final.
+	private static final int SMALL_WIDTH = 8;
+	private static final Value[][] small = new Value[SMALL_WIDTH + 1][];
+	private static final Value[] unknowns = new Value[MAX_WIDTH + 1];
+	private static final Value[] errors = new Value[MAX_WIDTH + 1];
+	private static final int CACHE_MASK = (1 << 13) - 1;
+	private static final Value[] cache = new Value[CACHE_MASK + 1];
+
+	static {
+		for (int w = 2; w <= SMALL_WIDTH; w++) {
+			Value[] vals = new Value[1 << w];
+			for (int i = 0; i < vals.length; i++) {
+				vals[i] = new Value(w, 0, 0, i);
+			}
+			small[w] = vals;
+		}
+		for (int w = 2; w <= MAX_WIDTH; w++) {
+			long mask = w == 64 ? -1L : ~(-1L << w);
+			unknowns[w] = new Value(w, 0, mask, 0);
+			errors[w] = new Value(w, mask, 0, 0);
+		}
+	}
 
 	public static Value create(Value[] values) {
 		if (values.length == 0) return NIL;
@@ -34,11 +61,11 @@ public class Value {
 			"Cannot have more than " + MAX_WIDTH + " bits in a value");
 
 		int width = values.length;
-		int value = 0;
-		int unknown = 0;
-		int error = 0;
+		long value = 0;
+		long unknown = 0;
+		long error = 0;
 		for (int i = 0; i < values.length; i++) {
-			int mask = 1 << i;
+			long mask = 1L << i;
 			if (values[i] == TRUE)         value |= mask;
 			else if (values[i] == FALSE)   /* do nothing */;
 			else if (values[i] == UNKNOWN) unknown |= mask;
@@ -51,7 +78,13 @@ public class Value {
 		return Value.create(width, error, unknown, value);
 	}
 
+	/** Creates a value from the bits of an int, taken as unsigned: a
+	 * width beyond 32 bits is filled out with zeroes. */
 	public static Value createKnown(BitWidth bits, int value) {
+		return Value.create(bits.getWidth(), 0, 0, value & 0xFFFFFFFFL);
+	}
+
+	public static Value createKnown(BitWidth bits, long value) {
 		return Value.create(bits.getWidth(), 0, 0, value);
 	}
 
@@ -63,7 +96,7 @@ public class Value {
 		return Value.create(bits.getWidth(), -1, 0, 0);
 	}
 
-	private static Value create(int width, int error, int unknown, int value) {
+	private static Value create(int width, long error, long unknown, long value) {
 		if (width == 0) {
 			return Value.NIL;
 		} else if (width == 1) {
@@ -72,20 +105,37 @@ public class Value {
 			else if ((value & 1) != 0)  return Value.TRUE;
 			else return Value.FALSE;
 		} else {
-			int mask = (width == 32 ? -1 : ~(-1 << width));
+			if (width > MAX_WIDTH) throw new RuntimeException(
+				"Cannot have more than " + MAX_WIDTH + " bits in a value");
+			long mask = (width == 64 ? -1L : ~(-1L << width));
 			error = error & mask;
 			unknown = unknown & mask & ~error;
 			value = value & mask & ~unknown & ~error;
 
-			int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
-			Object cached = cache.get(hashCode);
-			if (cached != null) {
-				Value val = (Value) cached;
-				if (val.value == value && val.width == width && val.error == error
-						&& val.unknown == unknown) return val;
+			if (error == 0) {
+				if (unknown == 0) {
+					if (width <= SMALL_WIDTH) return small[width][(int) value];
+				} else if (unknown == mask) {
+					return unknowns[width];
+				}
+			} else if (error == mask) {
+				return errors[width];
 			}
-			Value ret= new Value(width, error, unknown, value);
-			cache.put(hashCode, ret);
+
+			long mix = (value + 31 * (unknown + 31 * error)) * 0x9E3779B97F4A7C15L;
+			int slot = ((int) (mix >>> 32) + width) & CACHE_MASK;
+			Value[] cache = Value.cache;
+			Value val = cache[slot];
+			if (val != null && val.value == value && val.width == width
+					&& val.error == error && val.unknown == unknown) return val;
+			Value other = cache[slot ^ 1];
+			if (other != null && other.value == value && other.width == width
+					&& other.error == error && other.unknown == unknown) return other;
+			// the newcomer takes the slot, and what it displaces moves to
+			// the other slot of the pair
+			Value ret = new Value(width, error, unknown, value);
+			if (val != null) cache[slot ^ 1] = val;
+			cache[slot] = ret;
 			return ret;
 		}
 	}
@@ -104,11 +154,11 @@ public class Value {
 	}
 
 	private final int width;
-	private final int error;
-	private final int unknown;
-	private final int value;
+	private final long error;
+	private final long unknown;
+	private final long value;
 
-	private Value(int width, int error, int unknown, int value) {
+	private Value(int width, long error, long unknown, long value) {
 		// To ensure that the one-bit values are unique, this should be called only
 		// for the one-bit values and by the private create method
 		this.width = width;
@@ -123,7 +173,7 @@ public class Value {
 
 	public Value extendWidth(int newWidth, Value others) {
 		if (width == newWidth) return this;
-		int maskInverse = (width == 32 ? 0 : (-1 << width));
+		long maskInverse = (width == 64 ? 0 : (-1L << width));
 		if (others == Value.ERROR) {
 			return Value.create(newWidth, error | maskInverse, unknown, value);
 		} else if (others == Value.FALSE) {
@@ -136,10 +186,10 @@ public class Value {
 	}
 
 	public boolean isUnknown() {
-		if (width == 32) {
-			return error == 0 && unknown == -1;
+		if (width == 64) {
+			return error == 0 && unknown == -1L;
 		} else {
-			return error == 0 && unknown == ((1 << width) - 1);
+			return error == 0 && unknown == ((1L << width) - 1);
 		}
 	}
 
@@ -155,7 +205,7 @@ public class Value {
 		} else if (width == 1) {
 			return val;
 		} else {
-			int mask = ~(1 << which);
+			long mask = ~(1L << which);
 			return Value.create(this.width,
 				(this.error   & mask) | (val.error   << which),
 				(this.unknown & mask) | (val.unknown << which),
@@ -173,7 +223,7 @@ public class Value {
 
 	public Value get(int which) {
 		if (which < 0 || which >= width) return ERROR;
-		int mask = 1 << which;
+		long mask = 1L << which;
 		if ((error & mask) != 0) return ERROR;
 		else if ((unknown & mask) != 0) return UNKNOWN;
 		else if ((value & mask) != 0) return TRUE;
@@ -202,13 +252,21 @@ public class Value {
 	@Override
 	public int hashCode() {
 		int ret = width;
-		ret = 31 * ret + error;
-		ret = 31 * ret + unknown;
-		ret = 31 * ret + value;
+		ret = 31 * ret + (int) (error ^ (error >>> 32));
+		ret = 31 * ret + (int) (unknown ^ (unknown >>> 32));
+		ret = 31 * ret + (int) (value ^ (value >>> 32));
 		return ret;
 	}
 
+	/** Returns the low 32 bits of the value, or -1 if any bit is
+	 * undefined. Values wider than 32 bits should use toLongValue. */
 	public int toIntValue() {
+		if (error != 0) return -1;
+		if (unknown != 0) return -1;
+		return (int) value;
+	}
+
+	public long toLongValue() {
 		if (error != 0) return -1;
 		if (unknown != 0) return -1;
 		return value;
@@ -286,14 +344,20 @@ public class Value {
 		if (isErrorValue()) return Strings.get("valueError");
 		if (!isFullyDefined()) return Strings.get("valueUnknown");
 		
-		int value = toIntValue();
+		long value = toLongValue();
 		if (signed) {
-			if (width < 32 && (value >> (width - 1)) != 0) {
-				value |= (-1) << width;
+			if (width < 64 && (value >> (width - 1)) != 0) {
+				value |= (-1L) << width;
 			}
 			return "" + value;
+		} else if (value >= 0) {
+			return "" + value;
 		} else {
-			return "" + ((long) value & 0xFFFFFFFFL);
+			// a 64-bit value with its top bit set: halve it to get below
+			// the sign bit, then put back the last digit
+			long quot = (value >>> 1) / 5;
+			long rem = value - quot * 10;
+			return "" + quot + rem;
 		}
 	}
 	
@@ -306,7 +370,8 @@ public class Value {
 			if (width == 0) return "-";
 			if (isErrorValue()) return Strings.get("valueError");
 			if (!isFullyDefined()) return Strings.get("valueUnknown");
-			return Integer.toString(toIntValue(), radix);
+			if (width <= 32) return Integer.toString(toIntValue(), radix);
+			return Long.toString(toLongValue(), radix);
 		}
 	}
 
@@ -338,7 +403,7 @@ public class Value {
 			if (other == UNKNOWN) return this;
 			return ERROR;
 		} else {
-			int disagree = (this.value ^ other.value)
+			long disagree = (this.value ^ other.value)
 				& ~(this.unknown | other.unknown);
 			return Value.create(Math.max(this.width, other.width),
 				this.error | other.error | disagree,
@@ -354,9 +419,9 @@ public class Value {
 			if (this == TRUE  && other == TRUE ) return TRUE;
 			return ERROR;
 		} else {
-			int false0 = ~this.value & ~this.error & ~this.unknown;
-			int false1 = ~other.value & ~other.error & ~other.unknown;
-			int falses = false0 | false1;
+			long false0 = ~this.value & ~this.error & ~this.unknown;
+			long false1 = ~other.value & ~other.error & ~other.unknown;
+			long falses = false0 | false1;
 			return Value.create(Math.max(this.width, other.width),
 					(this.error | other.error | this.unknown | other.unknown) & ~falses,
 					0,
@@ -371,9 +436,9 @@ public class Value {
 			if (this == FALSE && other == FALSE) return FALSE;
 			return ERROR;
 		} else {
-			int true0 = this.value & ~this.error & ~this.unknown;
-			int true1 = other.value & ~other.error & ~other.unknown;
-			int trues = true0 | true1;
+			long true0 = this.value & ~this.error & ~this.unknown;
+			long true1 = other.value & ~other.error & ~other.unknown;
+			long trues = true0 | true1;
 			return Value.create(Math.max(this.width, other.width),
 				(this.error | other.error | this.unknown | other.unknown) & ~trues,
 				0,
@@ -0,0 +1,35 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.file;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/** Entry points into reading and writing files for the benchmarks in
+ * com.cburch.logisim.bench. Nothing else should use these. */
+public class FileBenchmarks {
+	private FileBenchmarks() { }
+
+	/** Reads a file as it is streamed in, as Logisim does, or else by
+	 * first building its whole document. */
+	public static LogisimFile read(InputStream in, Loader loader,
+			boolean streaming) throws Exception {
+		if (streaming) {
+			return LogisimFile.loadSub(in, loader);
+		} else {
+			return LogisimFile.load(XmlReader.loadDocument(in), loader);
+		}
+	}
+
+	/** Writes a file as a stream, as Logisim does, or else by first
+	 * building its whole document. */
+	public static void write(LogisimFile file, OutputStream out,
+			boolean streaming) throws Exception {
+		if (streaming) {
+			XmlWriter.write(file, out, file.getLoader());
+		} else {
+			XmlWriter.writeDocument(file, out, file.getLoader());
+		}
+	}
+}
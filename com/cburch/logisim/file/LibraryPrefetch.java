@@ -0,0 +1,198 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.file;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.cburch.logisim.util.ZipClassLoader;
+
+/** Reads the libraries that a file refers to on background threads while
+ * the Loader works through the file itself. As each Logisim file is
+ * parsed, the libraries it names are queued: other Logisim files are read
+ * into documents, themselves then queued for the libraries they name, and
+ * JAR files have their library classes loaded, though not initialized.
+ *
+ * None of this changes what the Loader does with the libraries: it still
+ * takes them in the order the files list them, on its own thread, so that
+ * circular references, missing files, and errors are handled just as
+ * before. It only finds the slow part already done, or waits for it to
+ * finish. Anything that fails in the background is simply done again by
+ * the Loader, which reports the failure as usual. */
+class LibraryPrefetch {
+	private static final int THREADS
+		= Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private static class DaemonFactory implements ThreadFactory {
+		public Thread newThread(Runnable r) {
+			Thread ret = new Thread(r, "LibraryPrefetch");
+			ret.setDaemon(true);
+			return ret;
+		}
+	}
+
+	private Map<File,File> substitutions;
+	private Loader.ProgressListener listener;
+	private ExecutorService executor;
+	// all guarded by this
+	private HashMap<File,Future<Document>> documents
+		= new HashMap<File,Future<Document>>();
+	private HashMap<String,Future<Class<?>>> classes
+		= new HashMap<String,Future<Class<?>>>();
+	private int queued = 0;
+	private int done = 0;
+
+	LibraryPrefetch(Map<File,File> substitutions,
+			Loader.ProgressListener listener) {
+		this.substitutions = new HashMap<File,File>(substitutions);
+		this.listener = listener;
+		this.executor = Executors.newFixedThreadPool(THREADS, new DaemonFactory());
+	}
+
+	void close() {
+		executor.shutdownNow();
+	}
+
+	/** Queues the libraries named by a file's root element, whose names
+	 * are relative to the given directory. */
+	void queueLibraries(Element root, File dir) {
+		for (Element libElt : XmlIterator.forChildElements(root, "lib")) {
+			String desc = libElt.getAttribute("desc");
+			int sep = desc.indexOf('#');
+			if (sep < 0) continue;
+			String type = desc.substring(0, sep);
+			String name = desc.substring(sep + 1);
+			if (type.equals("file")) {
+				queueFile(resolve(dir, name));
+			} else if (type.equals("jar")) {
+				int classSep = name.lastIndexOf('#');
+				if (classSep < 0) continue;
+				queueJar(resolve(dir, name.substring(0, classSep)),
+						name.substring(classSep + 1));
+			}
+		}
+	}
+
+	// mirrors Loader.getFileFor and Loader.getSubstitution
+	private File resolve(File dir, String name) {
+		File file = new File(name);
+		if (!file.isAbsolute() && dir != null) file = new File(dir, name);
+		File sub = substitutions.get(file);
+		return sub == null ? file : sub;
+	}
+
+	private synchronized void queueFile(final File file) {
+		if (documents.containsKey(file) || !file.canRead()) return;
+		queued++;
+		documents.put(file, executor.submit(new Callable<Document>() {
+			public Document call() throws Exception {
+				try {
+					InputStream in = new BufferedInputStream(new FileInputStream(file));
+					Document ret;
+					try {
+						ret = XmlReader.loadDocument(in);
+					} finally {
+						in.close();
+					}
+					queueLibraries(ret.getDocumentElement(), file.getParentFile());
+					return ret;
+				} finally {
+					finished(file);
+				}
+			}
+		}));
+		fireProgress(file);
+	}
+
+	private synchronized void queueJar(final File file, final String className) {
+		String key = file.getPath() + "#" + className;
+		if (classes.containsKey(key) || !file.canRead()) return;
+		queued++;
+		classes.put(key, executor.submit(new Callable<Class<?>>() {
+			public Class<?> call() throws Exception {
+				try {
+					return new ZipClassLoader(file).loadClass(className);
+				} finally {
+					finished(file);
+				}
+			}
+		}));
+		fireProgress(file);
+	}
+
+	private void finished(File file) {
+		synchronized (this) {
+			done++;
+		}
+		fireProgress(file);
+	}
+
+	private void fireProgress(File file) {
+		if (listener == null) return;
+		int n;
+		int total;
+		synchronized (this) {
+			n = done;
+			total = queued;
+		}
+		listener.libraryProgress(file, n, total);
+	}
+
+	/** Returns the document read from the given file, after waiting for it
+	 * if necessary, or null if it was never queued or could not be read. */
+	Document takeDocument(File file) {
+		Future<Document> future;
+		synchronized (this) {
+			future = documents.get(file);
+			// the entry stays so that the file is not queued again
+			documents.put(file, null);
+		}
+		return future == null ? null : get(future);
+	}
+
+	/** Returns the class loaded from the given JAR file, or null if it was
+	 * never queued or could not be loaded. */
+	Class<?> takeClass(File file, String className) {
+		Future<Class<?>> future;
+		synchronized (this) {
+			String key = file.getPath() + "#" + className;
+			future = classes.get(key);
+			classes.put(key, null);
+		}
+		return future == null ? null : get(future);
+	}
+
+	private static <T> T get(Future<T> future) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			return null;
+		} catch (CancellationException e) {
+			return null;
+		} finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -19,6 +19,9 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.filechooser.FileFilter;
 
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
 import com.cburch.logisim.std.Builtin;
 import com.cburch.logisim.tools.Library;
 import com.cburch.logisim.util.JFileChoosers;
@@ -31,6 +34,12 @@ public class Loader implements LibraryLoader {
 	public static final FileFilter LOGISIM_FILTER = new LogisimFileFilter();
 	public static final FileFilter JAR_FILTER = new JarFileFilter();
 
+	public static interface ProgressListener {
+		/** Reports, from any thread, how many of the libraries found so far
+		 * in the files being opened have been read in the background. */
+		public void libraryProgress(File file, int loaded, int total);
+	}
+
 	private static class LogisimFileFilter extends FileFilter {
 		@Override
 		public boolean accept(File f) {
@@ -60,11 +69,13 @@ public class Loader implements LibraryLoader {
 	// fixed
 	private Component parent;
 	private Builtin builtin = new Builtin();
+	private ProgressListener progressListener = null;
 
 	// to be cleared with each new file
 	private File mainFile = null;
 	private Stack<File> filesOpening = new Stack<File>();
 	private Map<File,File> substitutions = new HashMap<File,File>();
+	private LibraryPrefetch prefetch = null;
 
 	public Loader(Component parent) {
 		this.parent = parent;
@@ -78,6 +89,10 @@ public class Loader implements LibraryLoader {
 	public void setParent(Component value) {
 		parent = value;
 	}
+
+	public void setProgressListener(ProgressListener value) {
+		progressListener = value;
+	}
 	
 	private File getSubstitution(File source) {
 		File ret = substitutions.get(source);
@@ -273,22 +288,62 @@ public class Loader implements LibraryLoader {
 			}
 		}
 
+		// the outermost file read starts the libraries it refers to
+		// loading in the background, until it is done
+		boolean startsPrefetch = prefetch == null;
+		if (startsPrefetch) {
+			prefetch = new LibraryPrefetch(substitutions, progressListener);
+		}
+
 		LogisimFile ret = null;
 		filesOpening.push(actual);
 		try {
-			ret = LogisimFile.load(actual, this);
+			Document doc = prefetch.takeDocument(actual);
+			if (doc != null) {
+				ret = LogisimFile.load(doc, this);
+			} else {
+				ret = LogisimFile.load(actual, this);
+			}
 		} catch (IOException e) {
 			throw new LoadFailedException(StringUtil.format(Strings.get("logisimLoadError"),
 					toProjectName(actual), e.toString()));
 		} finally {
 			filesOpening.pop();
+			if (startsPrefetch) {
+				prefetch.close();
+				prefetch = null;
+			}
 		}
 		ret.setName(toProjectName(actual));
 		return ret;
 	}
 
+	// used by XmlReader as it begins on each file's contents
+	void prefetchLibraries(Element root) {
+		if (prefetch != null) prefetch.queueLibraries(root, getCurrentDirectory());
+	}
+
 	Library loadJarFile(File request, String className) throws LoadFailedException {
 		File actual = getSubstitution(request);
+		Class<?> retClass = prefetch == null ? null
+				: prefetch.takeClass(actual, className);
+		if (retClass == null) retClass = loadJarClass(actual, className);
+		if (!(Library.class.isAssignableFrom(retClass))) {
+			throw new LoadFailedException(StringUtil.format(Strings.get("jarClassNotLibraryError"), className));
+		}
+		
+		// instantiate library
+		Library ret;
+		try {
+			ret = (Library) retClass.newInstance();
+		} catch (Exception e) {
+			throw new LoadFailedException(StringUtil.format(Strings.get("jarLibraryNotCreatedError"), className));
+		}
+		return ret;
+	}
+
+	private Class<?> loadJarClass(File actual, String className)
+			throws LoadFailedException {
 		// Up until 2.1.8, this was written to use a URLClassLoader, which
 		// worked pretty well, except that the class never releases its file
 		// handles. For this reason, with 2.2.0, it's been switched to use
@@ -315,24 +370,11 @@ public class Loader implements LibraryLoader {
 		*/
 		
 		// load library class from loader
-		Class<?> retClass;
 		try {
-			retClass = loader.loadClass(className);
+			return loader.loadClass(className);
 		} catch (ClassNotFoundException e) {
 			throw new LoadFailedException(StringUtil.format(Strings.get("jarClassNotFoundError"), className));
 		}
-		if (!(Library.class.isAssignableFrom(retClass))) {
-			throw new LoadFailedException(StringUtil.format(Strings.get("jarClassNotLibraryError"), className));
-		}
-		
-		// instantiate library
-		Library ret;
-		try {
-			ret = (Library) retClass.newInstance();
-		} catch (Exception e) {
-			throw new LoadFailedException(StringUtil.format(Strings.get("jarLibraryNotCreatedError"), className));
-		}
-		return ret;
 	}
 
 	//
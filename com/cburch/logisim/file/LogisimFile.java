@@ -18,9 +18,9 @@ import java.util.LinkedList;
 import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
+import javax.xml.stream.XMLStreamException;
 
+import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 import com.cburch.logisim.circuit.Circuit;
@@ -301,14 +301,12 @@ public class LogisimFile extends Library implements LibraryEventSource {
 	void write(OutputStream out, LibraryLoader loader) throws IOException {
 		try {
 			XmlWriter.write(this, out, loader);
-		} catch (TransformerConfigurationException e) {
-			loader.showError("internal error configuring transformer");
 		} catch (ParserConfigurationException e) {
 			loader.showError("internal error configuring parser");
-		} catch (TransformerException e) {
+		} catch (XMLStreamException e) {
 			String msg = e.getMessage();
 			String err = Strings.get("xmlConversionError");
-			if (msg == null) err += ": " + msg;
+			if (msg != null) err += ": " + msg;
 			loader.showError(err);
 		}
 	}
@@ -402,6 +400,14 @@ public class LogisimFile extends Library implements LibraryEventSource {
 		}
 	}
 
+	// reads a file that a LibraryPrefetch has already parsed
+	static LogisimFile load(Document doc, Loader loader) {
+		XmlReader xmlReader = new XmlReader(loader);
+		LogisimFile ret = xmlReader.readLibrary(doc);
+		ret.loader = loader;
+		return ret;
+	}
+
 	public static LogisimFile loadSub(InputStream in, Loader loader)
 			throws IOException, SAXException {
 		// fetch first line and then reset
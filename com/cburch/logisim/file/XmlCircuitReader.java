@@ -52,6 +52,10 @@ public class XmlCircuitReader extends CircuitTransaction {
 	private void buildCircuit(XmlReader.CircuitData circData, CircuitMutator mutator) {
 		Element elt = circData.circuitElement;
 		Circuit dest = circData.circuit;
+		if (elt == null) {
+			buildStreamedCircuit(circData, mutator);
+			return;
+		}
 		Map<Element, Component> knownComponents = circData.knownComponents;
 		if (knownComponents == null) knownComponents = Collections.emptyMap();
 		try {
@@ -81,6 +85,38 @@ public class XmlCircuitReader extends CircuitTransaction {
 			}
 		}
 		
+		setAppearance(circData);
+	}
+
+	// builds a circuit read by XmlStreamingReader, whose components were
+	// created as they were read, save those naming a circuit not yet read
+	private void buildStreamedCircuit(XmlReader.CircuitData circData,
+			CircuitMutator mutator) {
+		Circuit dest = circData.circuit;
+		try {
+			reader.initAttributeSet(circData.staticAttributes, dest.getStaticAttributes(), null);
+		} catch (XmlReaderException e) {
+			reader.addErrors(e, dest.getName() + ".static");
+		}
+
+		for (Object o : circData.contents) {
+			if (o instanceof XmlReader.ComponentData) {
+				XmlReader.ComponentData data = (XmlReader.ComponentData) o;
+				try {
+					mutator.add(dest, getComponent(data, reader));
+				} catch (XmlReaderException e) {
+					reader.addErrors(e, dest.getName() + "." + data);
+				}
+			} else {
+				mutator.add(dest, (Component) o);
+			}
+		}
+
+		setAppearance(circData);
+	}
+
+	private void setAppearance(XmlReader.CircuitData circData) {
+		Circuit dest = circData.circuit;
 		List<AbstractCanvasObject> appearance = circData.appearance;
 		if (appearance != null && !appearance.isEmpty()) {
 			dest.getAppearance().setObjectsForce(appearance);
@@ -102,40 +138,47 @@ public class XmlCircuitReader extends CircuitTransaction {
 
 	void addWire(Circuit dest, CircuitMutator mutator, Element elt)
 			throws XmlReaderException {
+		mutator.add(dest, getWire(elt.getAttribute("from"), elt.getAttribute("to")));
+	}
+
+	static Wire getWire(String from, String to) throws XmlReaderException {
 		Location pt0;
 		try {
-			String str = elt.getAttribute("from");
-			if (str == null || str.equals("")) {
+			if (from == null || from.equals("")) {
 				throw new XmlReaderException(Strings.get("wireStartMissingError"));
 			}
-			pt0 = Location.parse(str);
+			pt0 = Location.parse(from);
 		} catch (NumberFormatException e) {
 			throw new XmlReaderException(Strings.get("wireStartInvalidError"));
 		}
 
 		Location pt1;
 		try {
-			String str = elt.getAttribute("to");
-			if (str == null || str.equals("")) {
+			if (to == null || to.equals("")) {
 				throw new XmlReaderException(Strings.get("wireEndMissingError"));
 			}
-			pt1 = Location.parse(str);
+			pt1 = Location.parse(to);
 		} catch (NumberFormatException e) {
 			throw new XmlReaderException(Strings.get("wireEndInvalidError"));
 		}
 
-		mutator.add(dest, Wire.create(pt0, pt1));
+		return Wire.create(pt0, pt1);
 	}
 	
 	static Component getComponent(Element elt, XmlReader.ReadContext reader)
 			throws XmlReaderException {
+		return getComponent(XmlReader.ComponentData.fromElement(elt), reader);
+	}
+
+	static Component getComponent(XmlReader.ComponentData data,
+			XmlReader.ReadContext reader) throws XmlReaderException {
 		// Determine the factory that creates this element
-		String name = elt.getAttribute("name");
+		String name = data.name;
 		if (name == null || name.equals("")) {
 			throw new XmlReaderException(Strings.get("compNameMissingError"));
 		}
 
-		String libName = elt.getAttribute("lib");
+		String libName = data.lib;
 		Library lib = reader.findLibrary(libName);
 		if (lib == null) {
 			throw new XmlReaderException(Strings.get("compUnknownError", "no-lib"));
@@ -152,9 +195,9 @@ public class XmlCircuitReader extends CircuitTransaction {
 		ComponentFactory source = ((AddTool) tool).getFactory();
 
 		// Determine attributes
-		String loc_str = elt.getAttribute("loc");
+		String loc_str = data.loc;
 		AttributeSet attrs = source.createAttributeSet();
-		reader.initAttributeSet(elt, attrs, source);
+		reader.initAttributeSet(data.attrs, attrs, source);
 
 		// Create component if location known
 		if (loc_str == null || loc_str.equals("")) {
@@ -6,6 +6,7 @@ package com.cburch.logisim.file;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +14,7 @@ import java.util.Map;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -41,11 +43,80 @@ class XmlReader {
 		Circuit circuit;
 		Map<Element, Component> knownComponents;
 		List<AbstractCanvasObject> appearance;
+		// for a circuit read by XmlStreamingReader, in place of the element:
+		// its attributes, and its Wires, Components, and the ComponentData
+		// of components that could not be created yet, in order
+		AttributeValues staticAttributes;
+		List<Object> contents;
 		
 		public CircuitData(Element circuitElement, Circuit circuit) {
 			this.circuitElement = circuitElement;
 			this.circuit = circuit;
 		}
+
+		Collection<Component> getKnownComponents() {
+			if (contents == null) return knownComponents.values();
+			ArrayList<Component> ret = new ArrayList<Component>();
+			for (Object o : contents) {
+				if (o instanceof Component) ret.add((Component) o);
+			}
+			return ret;
+		}
+	}
+
+	/** The attribute values given within an element, by name. */
+	static class AttributeValues {
+		HashMap<String,String> values = new HashMap<String,String>();
+		ArrayList<String> messages = null;
+
+		void put(String name, String value) {
+			if (name == null) {
+				if (messages == null) messages = new ArrayList<String>();
+				messages.add(Strings.get("attrNameMissingError"));
+			} else {
+				values.put(name, value);
+			}
+		}
+
+		static AttributeValues fromElement(Element parentElt) {
+			AttributeValues ret = new AttributeValues();
+			for (Element attrElt : XmlIterator.forChildElements(parentElt, "a")) {
+				if (!attrElt.hasAttribute("name")) {
+					ret.put(null, null);
+				} else if (attrElt.hasAttribute("val")) {
+					ret.put(attrElt.getAttribute("name"), attrElt.getAttribute("val"));
+				} else {
+					ret.put(attrElt.getAttribute("name"), attrElt.getTextContent());
+				}
+			}
+			return ret;
+		}
+	}
+
+	/** A component as given within a file. */
+	static class ComponentData {
+		String name;
+		String lib;
+		String loc;
+		AttributeValues attrs;
+
+		ComponentData(String name, String lib, String loc, AttributeValues attrs) {
+			this.name = name;
+			this.lib = lib;
+			this.loc = loc;
+			this.attrs = attrs;
+		}
+
+		static ComponentData fromElement(Element elt) {
+			return new ComponentData(elt.getAttribute("name"),
+					elt.getAttribute("lib"), elt.getAttribute("loc"),
+					AttributeValues.fromElement(elt));
+		}
+
+		@Override
+		public String toString() {
+			return name + "(" + loc + ")";
+		}
 	}
 	
 	class ReadContext {
@@ -105,24 +176,8 @@ class XmlReader {
 				String name = sub_elt.getTagName();
 				if (name.equals("circuit") || name.equals("lib")) {
 					; // Nothing to do: Done earlier.
-				} else if (name.equals("options")) {
-					try {
-						initAttributeSet(sub_elt, file.getOptions().getAttributeSet(), null);
-					} catch (XmlReaderException e) {
-						addErrors(e, "options");
-					}
-				} else if (name.equals("mappings")) {
-					initMouseMappings(sub_elt);
-				} else if (name.equals("toolbar")) {
-					initToolbarData(sub_elt);
-				} else if (name.equals("main")) {
-					String main = sub_elt.getAttribute("name");
-					Circuit circ = file.getCircuit(main);
-					if (circ != null) {
-						file.setMainCircuit(circ);
-					}
-				} else if (name.equals("message")) {
-					file.addMessage(sub_elt.getAttribute("value"));
+				} else {
+					initOther(sub_elt);
 				}
 			}
 			
@@ -132,7 +187,31 @@ class XmlReader {
 			builder.execute();
 		}
 
-		private Library toLibrary(Element elt) {
+		// handles the children of the root other than libraries and circuits
+		void initOther(Element sub_elt) {
+			String name = sub_elt.getTagName();
+			if (name.equals("options")) {
+				try {
+					initAttributeSet(sub_elt, file.getOptions().getAttributeSet(), null);
+				} catch (XmlReaderException e) {
+					addErrors(e, "options");
+				}
+			} else if (name.equals("mappings")) {
+				initMouseMappings(sub_elt);
+			} else if (name.equals("toolbar")) {
+				initToolbarData(sub_elt);
+			} else if (name.equals("main")) {
+				String main = sub_elt.getAttribute("name");
+				Circuit circ = file.getCircuit(main);
+				if (circ != null) {
+					file.setMainCircuit(circ);
+				}
+			} else if (name.equals("message")) {
+				file.addMessage(sub_elt.getAttribute("value"));
+			}
+		}
+
+		Library toLibrary(Element elt) {
 			if (!elt.hasAttribute("name")) {
 				loader.showError(Strings.get("libNameMissingError"));
 				return null;
@@ -175,10 +254,10 @@ class XmlReader {
 			return known;
 		}
 		
-		private void loadAppearance(Element appearElt, CircuitData circData,
+		void loadAppearance(Element appearElt, CircuitData circData,
 				String context) {
 			Map<Location, Instance> pins = new HashMap<Location, Instance>();
-			for (Component comp : circData.knownComponents.values()) {
+			for (Component comp : circData.getKnownComponents()) {
 				if (comp.getFactory() == Pin.FACTORY) {
 					Instance instance = Instance.getInstanceFor(comp);
 					pins.put(comp.getLocation(), instance);
@@ -209,7 +288,7 @@ class XmlReader {
 			}
 		}
 
-		private void initMouseMappings(Element elt) {
+		void initMouseMappings(Element elt) {
 			MouseMappings map = file.getOptions().getMouseMappings();
 			for (Element sub_elt : XmlIterator.forChildElements(elt, "tool")) {
 				Tool tool;
@@ -245,7 +324,7 @@ class XmlReader {
 			}
 		}
 
-		private void initToolbarData(Element elt) {
+		void initToolbarData(Element elt) {
 			ToolbarData toolbar = file.getOptions().getToolbarData();
 			for (Element sub_elt : XmlIterator.forChildElements(elt)) {
 				if (sub_elt.getTagName().equals("sep")) {
@@ -286,24 +365,14 @@ class XmlReader {
 		
 		void initAttributeSet(Element parentElt, AttributeSet attrs,
 				AttributeDefaultProvider defaults) throws XmlReaderException {
-			ArrayList<String> messages = null;
-			
-			HashMap<String,String> attrsDefined = new HashMap<String,String>();
-			for (Element attrElt : XmlIterator.forChildElements(parentElt, "a")) {
-				if (!attrElt.hasAttribute("name")) {
-					if (messages == null) messages = new ArrayList<String>();
-					messages.add(Strings.get("attrNameMissingError"));
-				} else {
-					String attrName = attrElt.getAttribute("name");
-					String attrVal;
-					if (attrElt.hasAttribute("val")) {
-						attrVal = attrElt.getAttribute("val");
-					} else {
-						attrVal = attrElt.getTextContent();
-					}
-					attrsDefined.put(attrName, attrVal);
-				}
-			}
+			initAttributeSet(AttributeValues.fromElement(parentElt), attrs, defaults);
+		}
+
+		void initAttributeSet(AttributeValues given, AttributeSet attrs,
+				AttributeDefaultProvider defaults) throws XmlReaderException {
+			ArrayList<String> messages = given.messages == null ? null
+					: new ArrayList<String>(given.messages);
+			HashMap<String,String> attrsDefined = given.values;
 
 			if (attrs == null) return;
 			
@@ -366,12 +435,33 @@ class XmlReader {
 	}
 
 	LogisimFile readLibrary(InputStream is) throws IOException, SAXException {
-		Document doc = loadXmlFrom(is);
+		LogisimFile file = new LogisimFile((Loader) loader);
+		ReadContext context = new ReadContext(file);
+		Document doc;
+		try {
+			doc = new XmlStreamingReader((Loader) loader, context).read(is);
+		} catch (XMLStreamException e) {
+			throw new SAXException(e);
+		}
+		if (doc != null) {
+			considerRepairs(doc, doc.getDocumentElement());
+			return readLibrary(doc);
+		}
+		return finishLibrary(context);
+	}
+
+	/** Reads a file from a document given by loadDocument. */
+	LogisimFile readLibrary(Document doc) {
 		Element elt = doc.getDocumentElement();
-		considerRepairs(doc, elt);
+		((Loader) loader).prefetchLibraries(elt);
 		LogisimFile file = new LogisimFile((Loader) loader);
 		ReadContext context = new ReadContext(file);
 		context.toLogisimFile(elt);
+		return finishLibrary(context);
+	}
+
+	private LogisimFile finishLibrary(ReadContext context) {
+		LogisimFile file = context.file;
 		if (file.getCircuitCount() == 0) {
 			file.addCircuit(new Circuit("main"));
 		}
@@ -386,7 +476,15 @@ class XmlReader {
 		return file;
 	}
 	
-	private Document loadXmlFrom(InputStream is) throws SAXException, IOException {
+	/** Parses a file into a document, repaired for the current version;
+	 * this may be done on any thread. */
+	static Document loadDocument(InputStream is) throws SAXException, IOException {
+		Document doc = loadXmlFrom(is);
+		considerRepairs(doc, doc.getDocumentElement());
+		return doc;
+	}
+
+	private static Document loadXmlFrom(InputStream is) throws SAXException, IOException {
 		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 		factory.setNamespaceAware(true);
 		DocumentBuilder builder = null;
@@ -396,7 +494,7 @@ class XmlReader {
 		return builder.parse(is);
 	}
 	
-	private void considerRepairs(Document doc, Element root) {
+	private static void considerRepairs(Document doc, Element root) {
 		LogisimVersion version = LogisimVersion.parse(root.getAttribute("source"));
 		if (version.compareTo(LogisimVersion.get(2, 3, 0)) < 0) {
 			// This file was saved before an Edit tool existed. Most likely
@@ -435,7 +533,7 @@ class XmlReader {
 		}
 	}
 	
-	private void repairForWiringLibrary(Document doc, Element root) {
+	private static void repairForWiringLibrary(Document doc, Element root) {
 		Element oldBaseElt = null;
 		String oldBaseLabel = null;
 		Element gatesElt = null;
@@ -508,7 +606,7 @@ class XmlReader {
 		updateFromLabelMap(XmlIterator.forDescendantElements(root, "tool"), labelMap);
 	}
 	
-	private void addToLabelMap(HashMap<String,String> labelMap, String srcLabel,
+	private static void addToLabelMap(HashMap<String,String> labelMap, String srcLabel,
 			String dstLabel, String toolNames) {
 		if (srcLabel != null && dstLabel != null) {
 			for (String tool : toolNames.split(";")) {
@@ -517,7 +615,7 @@ class XmlReader {
 		}
 	}
 	
-	private void relocateTools(Element src, Element dest,
+	private static void relocateTools(Element src, Element dest,
 			HashMap<String,String> labelMap) {
 		if (src == null || src == dest) return;
 		String srcLabel = src.getAttribute("name");
@@ -538,7 +636,7 @@ class XmlReader {
 		}
 	}
 
-	private void updateFromLabelMap(Iterable<Element> elts,
+	private static void updateFromLabelMap(Iterable<Element> elts,
 			HashMap<String,String> labelMap) {
 		for (Element elt : elts) {
 			String oldLib = elt.getAttribute("lib");
@@ -552,7 +650,7 @@ class XmlReader {
 		}
 	}
 	
-	private void repairForLegacyLibrary(Document doc, Element root) {
+	private static void repairForLegacyLibrary(Document doc, Element root) {
 		Element legacyElt = null;
 		String legacyLabel = null;
 		for (Element libElt : XmlIterator.forChildElements(root, "lib")) {
@@ -0,0 +1,274 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.file;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.cburch.logisim.LogisimVersion;
+import com.cburch.logisim.Main;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.tools.Library;
+
+/** Reads a file as a stream, creating each circuit's wires and components
+ * as their elements go by, rather than first building the document in
+ * memory. For a large file, the document takes far more memory than the
+ * circuits read from it, and much of the time of reading is spent building
+ * it only to be thrown away.
+ *
+ * The smaller parts of the file - the libraries, each circuit's
+ * appearance, the options, mappings, and toolbar - are still read into
+ * elements, so that XmlReader handles them just as before. A component
+ * naming a circuit that comes later in the file, or anything else that
+ * cannot be created when it is read, is kept as it was given and created
+ * along with the rest when the circuits are built, where any error is
+ * reported as before. Files from versions needing repairs are read into a
+ * document and left for XmlReader to repair. */
+class XmlStreamingReader {
+	// files from versions before this are repaired by XmlReader
+	private static final LogisimVersion FIRST_UNREPAIRED = LogisimVersion.get(2, 6, 3);
+
+	private static XMLInputFactory factory = null;
+
+	private static synchronized XMLInputFactory getFactory() {
+		if (factory == null) {
+			factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		}
+		return factory;
+	}
+
+	private Loader loader;
+	private XmlReader.ReadContext context;
+	private XMLStreamReader in;
+	private Document scratch;
+	private List<Element> libElts = new ArrayList<Element>();
+
+	XmlStreamingReader(Loader loader, XmlReader.ReadContext context) {
+		this.loader = loader;
+		this.context = context;
+	}
+
+	/** Reads the file into the context's file. If the file needs repairs,
+	 * this instead reads it into a document and returns that, and the
+	 * context is left untouched. */
+	Document read(InputStream is) throws XMLStreamException {
+		try {
+			scratch = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		} catch (ParserConfigurationException e) {
+			throw new XMLStreamException(e);
+		}
+		in = getFactory().createXMLStreamReader(is);
+		try {
+			if (!nextChild()) return null;
+			String versionString = getAttribute("source");
+			if (LogisimVersion.parse(versionString).compareTo(FIRST_UNREPAIRED) < 0) {
+				scratch.appendChild(readElement());
+				return scratch;
+			}
+			readProject(versionString);
+			return null;
+		} finally {
+			in.close();
+		}
+	}
+
+	private void readProject(String versionString) throws XMLStreamException {
+		if (versionString.equals("")) {
+			context.sourceVersion = Main.VERSION;
+		} else {
+			context.sourceVersion = LogisimVersion.parse(versionString);
+		}
+
+		List<XmlReader.CircuitData> circuitsData = new ArrayList<XmlReader.CircuitData>();
+		List<Element> others = new ArrayList<Element>();
+		while (nextChild()) {
+			String name = in.getLocalName();
+			if (name.equals("lib")) {
+				libElts.add(readElement());
+			} else {
+				// a file lists its libraries first, but any components
+				// read before a later library are created when the
+				// circuits are built
+				loadLibraries();
+				if (name.equals("circuit")) {
+					circuitsData.add(readCircuit());
+				} else {
+					others.add(readElement());
+				}
+			}
+		}
+		loadLibraries();
+
+		// the circuits are all known now, so the main circuit can be found
+		for (Element elt : others) {
+			context.initOther(elt);
+		}
+
+		XmlCircuitReader builder = new XmlCircuitReader(context, circuitsData);
+		builder.execute();
+	}
+
+	private void loadLibraries() {
+		if (libElts.isEmpty()) return;
+		Element root = scratch.createElement("project");
+		for (Element libElt : libElts) root.appendChild(libElt);
+		loader.prefetchLibraries(root);
+		for (Element libElt : libElts) {
+			Library lib = context.toLibrary(libElt);
+			if (lib != null) context.file.addLibrary(lib);
+		}
+		libElts.clear();
+	}
+
+	private XmlReader.CircuitData readCircuit() throws XMLStreamException {
+		String name = getAttribute("name");
+		if (name.equals("")) {
+			context.addError(Strings.get("circNameMissingError"), "C??");
+		}
+		XmlReader.CircuitData circData = new XmlReader.CircuitData(null, new Circuit(name));
+		context.file.addCircuit(circData.circuit);
+		circData.staticAttributes = new XmlReader.AttributeValues();
+		circData.contents = new ArrayList<Object>();
+
+		List<Element> appearElts = new ArrayList<Element>();
+		while (nextChild()) {
+			String sub = in.getLocalName();
+			if (sub.equals("a")) {
+				readAttribute(circData.staticAttributes);
+			} else if (sub.equals("wire")) {
+				String from = getAttribute("from");
+				String to = getAttribute("to");
+				skipElement();
+				try {
+					circData.contents.add(XmlCircuitReader.getWire(from, to));
+				} catch (XmlReaderException e) {
+					context.addErrors(e, name + ".w" + from + "-" + to);
+				}
+			} else if (sub.equals("comp")) {
+				String compName = getAttribute("name");
+				String lib = getAttribute("lib");
+				String loc = getAttribute("loc");
+				XmlReader.AttributeValues attrs = new XmlReader.AttributeValues();
+				while (nextChild()) {
+					if (in.getLocalName().equals("a")) {
+						readAttribute(attrs);
+					} else {
+						skipElement();
+					}
+				}
+				XmlReader.ComponentData data = new XmlReader.ComponentData(compName, lib, loc, attrs);
+				try {
+					circData.contents.add(XmlCircuitReader.getComponent(data, context));
+				} catch (XmlReaderException e) {
+					circData.contents.add(data);
+				}
+			} else if (sub.equals("appear")) {
+				appearElts.add(readElement());
+			} else {
+				skipElement();
+			}
+		}
+
+		// the appearance comes before the pins it refers to
+		for (Element appearElt : appearElts) {
+			context.loadAppearance(appearElt, circData, name + ".appear");
+		}
+		return circData;
+	}
+
+	private void readAttribute(XmlReader.AttributeValues dest)
+			throws XMLStreamException {
+		String name = in.getAttributeValue(null, "name");
+		String val = in.getAttributeValue(null, "val");
+		if (val == null) {
+			val = readText();
+		} else {
+			skipElement();
+		}
+		dest.put(name, val);
+	}
+
+	//
+	// moving through the stream
+	//
+	// advances to the next child of the element begun, or past the end of
+	// the element, returning false; each child must be read or skipped
+	// before asking for the next
+	private boolean nextChild() throws XMLStreamException {
+		while (in.hasNext()) {
+			int event = in.next();
+			if (event == XMLStreamConstants.START_ELEMENT) return true;
+			if (event == XMLStreamConstants.END_ELEMENT) return false;
+		}
+		return false;
+	}
+
+	private void skipElement() throws XMLStreamException {
+		while (nextChild()) skipElement();
+	}
+
+	private String getAttribute(String name) {
+		String ret = in.getAttributeValue(null, name);
+		return ret == null ? "" : ret;
+	}
+
+	// reads all the text within the element begun, as getTextContent would
+	private String readText() throws XMLStreamException {
+		StringBuilder ret = new StringBuilder();
+		int depth = 1;
+		while (depth > 0) {
+			int event = in.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			} else if (isText(event)) {
+				ret.append(in.getTextCharacters(), in.getTextStart(), in.getTextLength());
+			}
+		}
+		return ret.toString();
+	}
+
+	// reads the element begun into an element of the scratch document
+	private Element readElement() throws XMLStreamException {
+		Element ret = scratch.createElement(getQualifiedName(in.getPrefix(), in.getLocalName()));
+		for (int i = 0, n = in.getAttributeCount(); i < n; i++) {
+			ret.setAttribute(getQualifiedName(in.getAttributePrefix(i),
+					in.getAttributeLocalName(i)), in.getAttributeValue(i));
+		}
+		while (true) {
+			int event = in.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				ret.appendChild(readElement());
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				return ret;
+			} else if (isText(event)) {
+				ret.appendChild(scratch.createTextNode(in.getText()));
+			}
+		}
+	}
+
+	private static String getQualifiedName(String prefix, String localName) {
+		if (prefix == null || prefix.equals("")) return localName;
+		return prefix + ":" + localName;
+	}
+
+	private static boolean isText(int event) {
+		return event == XMLStreamConstants.CHARACTERS
+			|| event == XMLStreamConstants.CDATA
+			|| event == XMLStreamConstants.SPACE;
+	}
+}
@@ -3,13 +3,20 @@
 
 package com.cburch.logisim.file;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -22,6 +29,9 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 import com.cburch.draw.model.AbstractCanvasObject;
 import com.cburch.logisim.LogisimVersion;
@@ -39,7 +49,30 @@ import com.cburch.logisim.util.InputEventUtil;
 import com.cburch.logisim.util.StringUtil;
 
 class XmlWriter {
+	/** Writes the file out as it goes, building only the element for each
+	 * wire or component in turn, so that the whole document is never held
+	 * in memory. The elements come out just as writeDocument gives them,
+	 * though the spacing between them may differ. */
 	static void write(LogisimFile file, OutputStream out, LibraryLoader loader)
+			throws ParserConfigurationException, XMLStreamException {
+		DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+		DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+
+		Document doc = docBuilder.newDocument();
+		XmlWriter context = new XmlWriter(file, doc, loader);
+		context.streaming = true;
+		XMLStreamWriter xml = XMLOutputFactory.newInstance()
+			.createXMLStreamWriter(out, "UTF-8");
+		ElementWriter dest = new ElementWriter(xml);
+		xml.writeStartDocument("UTF-8", "1.0");
+		context.writeLogisimFile(dest);
+		xml.writeCharacters("\n");
+		xml.writeEndDocument();
+		xml.close();
+	}
+
+	/** Builds the whole document and then writes it out. */
+	static void writeDocument(LogisimFile file, OutputStream out, LibraryLoader loader)
 			throws ParserConfigurationException,
 				TransformerConfigurationException, TransformerException {
 		DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
@@ -70,6 +103,7 @@ class XmlWriter {
 	private Document doc;
 	private LibraryLoader loader;
 	private HashMap<Library,String> libs = new HashMap<Library,String>();
+	private boolean streaming = false; // values are written by ElementWriter
 
 	private XmlWriter(LogisimFile file, Document doc, LibraryLoader loader) {
 		this.file = file;
@@ -78,31 +112,62 @@ class XmlWriter {
 	}
 
 	Element fromLogisimFile() {
-		Element ret = doc.createElement("project");
+		Element ret = createProject();
 		doc.appendChild(ret);
+		for (Element elt : fromHeader()) {
+			ret.appendChild(elt);
+		}
+		for (Circuit circ : file.getCircuits()) {
+			ret.appendChild(fromCircuit(circ));
+		}
+		return ret;
+	}
+
+	private void writeLogisimFile(ElementWriter dest) throws XMLStreamException {
+		dest.startElement(createProject());
+		for (Element elt : fromHeader()) {
+			dest.writeElement(elt);
+		}
+		for (Circuit circ : file.getCircuits()) {
+			dest.startElement(fromCircuitHeader(circ));
+			for (Wire w : circ.getWires()) {
+				dest.writeElement(fromWire(w));
+			}
+			for (Component comp : circ.getNonWires()) {
+				Element elt = fromComponent(comp);
+				if (elt != null) dest.writeElement(elt);
+			}
+			dest.endElement();
+		}
+		dest.endElement();
+	}
+
+	private Element createProject() {
+		Element ret = doc.createElement("project");
 		ret.appendChild(doc.createTextNode("\nThis file is intended to be "
 				+ "loaded by Logisim (http://www.cburch.com/logisim/).\n"));
 		ret.setAttribute("version", "1.0");
 		ret.setAttribute("source", Main.VERSION_NAME);
+		return ret;
+	}
 
+	// the elements preceding the circuits
+	private List<Element> fromHeader() {
+		List<Element> ret = new ArrayList<Element>();
 		for (Library lib : file.getLibraries()) {
 			Element elt = fromLibrary(lib);
-			if (elt != null) ret.appendChild(elt);
+			if (elt != null) ret.add(elt);
 		}
 
 		if (file.getMainCircuit() != null) {
 			Element mainElt = doc.createElement("main");
 			mainElt.setAttribute("name", file.getMainCircuit().getName());
-			ret.appendChild(mainElt);
+			ret.add(mainElt);
 		}
 
-		ret.appendChild(fromOptions());
-		ret.appendChild(fromMouseMappings());
-		ret.appendChild(fromToolbarData());
-
-		for (Circuit circ : file.getCircuits()) {
-			ret.appendChild(fromCircuit(circ));
-		}
+		ret.add(fromOptions());
+		ret.add(fromMouseMappings());
+		ret.add(fromToolbarData());
 		return ret;
 	}
 
@@ -191,6 +256,19 @@ class XmlWriter {
 	}
 
 	Element fromCircuit(Circuit circuit) {
+		Element ret = fromCircuitHeader(circuit);
+		for (Wire w : circuit.getWires()) {
+			ret.appendChild(fromWire(w));
+		}
+		for (Component comp : circuit.getNonWires()) {
+			Element elt = fromComponent(comp);
+			if (elt != null) ret.appendChild(elt);
+		}
+		return ret;
+	}
+
+	// the circuit's element with all but its wires and components
+	private Element fromCircuitHeader(Circuit circuit) {
 		Element ret = doc.createElement("circuit");
 		ret.setAttribute("name", circuit.getName());
 		addAttributeSetContent(ret, circuit.getStaticAttributes(), null);
@@ -206,13 +284,6 @@ class XmlWriter {
 			}
 			ret.appendChild(appear);
 		}
-		for (Wire w : circuit.getWires()) {
-			ret.appendChild(fromWire(w));
-		}
-		for (Component comp : circuit.getNonWires()) {
-			Element elt = fromComponent(comp);
-			if (elt != null) ret.appendChild(elt);
-		}
 		return ret;
 	}
 
@@ -262,6 +333,13 @@ class XmlWriter {
 				if (dflt == null || !dflt.equals(val)) {
 					Element a = doc.createElement("a");
 					a.setAttribute("name", attr.getName());
+					if (streaming) {
+						// the value's text is produced only as it is written
+						a.setUserData(AttributeValue.KEY,
+								new AttributeValue(attr, val), null);
+						elt.appendChild(a);
+						continue;
+					}
 					String value = attr.toStandardString(val);
 					if (value.indexOf("\n") >= 0) {
 						a.appendChild(doc.createTextNode(value));
@@ -300,4 +378,165 @@ class XmlWriter {
 		}
 		return false;
 	}
+
+	// an attribute's value, left for ElementWriter to write
+	private static class AttributeValue {
+		static final String KEY = "logisim.value";
+
+		Attribute<Object> attr;
+		Object value;
+
+		AttributeValue(Attribute<Object> attr, Object value) {
+			this.attr = attr;
+			this.value = value;
+		}
+	}
+
+	/** Writes elements to a stream, indented two spaces for each level as
+	 * the transformer indents the document. */
+	private static class ElementWriter {
+		private XMLStreamWriter out;
+		private int depth = 0;
+
+		ElementWriter(XMLStreamWriter out) {
+			this.out = out;
+		}
+
+		/** Writes the element's start tag and any children it has so far,
+		 * leaving it open for more. */
+		void startElement(Element elt) throws XMLStreamException {
+			indent();
+			out.writeStartElement(elt.getTagName());
+			writeAttributes(elt);
+			depth++;
+			writeChildren(elt);
+		}
+
+		void endElement() throws XMLStreamException {
+			depth--;
+			indent();
+			out.writeEndElement();
+		}
+
+		void writeElement(Element elt) throws XMLStreamException {
+			NodeList children = elt.getChildNodes();
+			Object value = elt.getUserData(AttributeValue.KEY);
+			if (value != null) {
+				writeValue(elt, (AttributeValue) value);
+			} else if (children.getLength() == 0) {
+				indent();
+				out.writeEmptyElement(elt.getTagName());
+				writeAttributes(elt);
+			} else if (!hasChildElements(elt)) {
+				// text is written as it is, with nothing added around it
+				indent();
+				out.writeStartElement(elt.getTagName());
+				writeAttributes(elt);
+				out.writeCharacters(elt.getTextContent());
+				out.writeEndElement();
+			} else {
+				startElement(elt);
+				endElement();
+			}
+		}
+
+		// Writes the element for an attribute's value, as text if the value
+		// spans several lines and as a val attribute otherwise. The text
+		// goes out as the attribute produces it, so that a large value is
+		// never held in memory as a whole.
+		private void writeValue(final Element elt, AttributeValue value)
+				throws XMLStreamException {
+			Writer text = new Writer() {
+				StringBuilder buf = new StringBuilder();
+				boolean started = false;
+
+				@Override
+				public void write(char[] cbuf, int off, int len) throws IOException {
+					buf.append(cbuf, off, len);
+					if (!started) {
+						if (buf.indexOf("\n") < 0) return;
+						try {
+							indent();
+							out.writeStartElement(elt.getTagName());
+							writeAttributes(elt);
+						} catch (XMLStreamException e) {
+							throw new IOException(e);
+						}
+						started = true;
+					}
+					if (buf.length() >= 8192) flush();
+				}
+
+				@Override
+				public void flush() throws IOException {
+					if (!started || buf.length() == 0) return;
+					try {
+						out.writeCharacters(buf.toString());
+					} catch (XMLStreamException e) {
+						throw new IOException(e);
+					}
+					buf.setLength(0);
+				}
+
+				@Override
+				public void close() throws IOException {
+					try {
+						if (started) {
+							flush();
+							out.writeEndElement();
+						} else {
+							indent();
+							out.writeEmptyElement(elt.getTagName());
+							writeAttributes(elt);
+							out.writeAttribute("val", buf.toString());
+						}
+					} catch (XMLStreamException e) {
+						throw new IOException(e);
+					}
+				}
+			};
+			try {
+				value.attr.writeStandardString(text, value.value);
+				text.close();
+			} catch (IOException e) {
+				if (e.getCause() instanceof XMLStreamException) {
+					throw (XMLStreamException) e.getCause();
+				}
+				throw new XMLStreamException(e);
+			}
+		}
+
+		private void writeAttributes(Element elt) throws XMLStreamException {
+			NamedNodeMap attrs = elt.getAttributes();
+			for (int i = 0, n = attrs.getLength(); i < n; i++) {
+				Node attr = attrs.item(i);
+				out.writeAttribute(attr.getNodeName(), attr.getNodeValue());
+			}
+		}
+
+		private void writeChildren(Element elt) throws XMLStreamException {
+			for (Node child = elt.getFirstChild(); child != null;
+					child = child.getNextSibling()) {
+				if (child instanceof Element) {
+					writeElement((Element) child);
+				} else if (child.getNodeType() == Node.TEXT_NODE) {
+					out.writeCharacters(child.getNodeValue());
+				}
+			}
+		}
+
+		private boolean hasChildElements(Element elt) {
+			for (Node child = elt.getFirstChild(); child != null;
+					child = child.getNextSibling()) {
+				if (child instanceof Element) return true;
+			}
+			return false;
+		}
+
+		private void indent() throws XMLStreamException {
+			StringBuilder buf = new StringBuilder("\n");
+			for (int i = 0; i < depth; i++) buf.append("  ");
+			out.writeCharacters(buf.toString());
+		}
+	}
 }
@@ -3,177 +3,409 @@
 
 package com.cburch.logisim.gui.hex;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Arrays;
-import java.util.StringTokenizer;
 
 import com.cburch.hex.HexModel;
 
 public class HexFile {
 	private HexFile() { }
-	
+
+	/** A text image: the "v2.0 raw" header, then hex values. */
+	public static final int FORMAT_TEXT = 0;
+	/** An image of Intel HEX records. */
+	public static final int FORMAT_INTEL = 1;
+	/** A raw binary image, each value in one, two, or four little-endian
+	 * bytes according to its width. */
+	public static final int FORMAT_BINARY = 2;
+
 	private static final String RAW_IMAGE_HEADER = "v2.0 raw";
-	private static final String COMMENT_MARKER = "#";
-	
-	private static class HexReader {
-		private BufferedReader in;
-		private int[] data;
-		private StringTokenizer curLine;
-		private long leftCount;
-		private long leftValue;
-		
-		public HexReader(BufferedReader in) throws IOException {
+	private static final char COMMENT_MARKER = '#';
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private static final int BLOCK_SIZE = 4096;
+
+	/** The values of an image file, read a block at a time. */
+	public static interface ImageSource {
+		/** Reads the next block of consecutive values into the array and
+		 * returns how many there were, or -1 at the end of the image. */
+		public int read(int[] dst) throws IOException;
+
+		/** Returns the address of the first value in the block last read. */
+		public long getStart();
+
+		public void close() throws IOException;
+	}
+
+	private static abstract class CharSource implements ImageSource {
+		private Reader in;
+		private char[] buf = new char[8192];
+		private int pos = 0;
+		private int len = 0;
+
+		CharSource(Reader in) {
 			this.in = in;
-			data = new int[4096];
-			curLine = findNonemptyLine();
-		}
-		
-		private StringTokenizer findNonemptyLine() throws IOException {
-			String line = in.readLine();
-			while (line != null) {
-				int index = line.indexOf(COMMENT_MARKER);
-				if (index >= 0) {
-					line = line.substring(0, index);
-				}
-
-				StringTokenizer ret = new StringTokenizer(line);
-				if (ret.hasMoreTokens()) return ret;
-				line = this.in.readLine();
-			}
-			return null;
-		}
-		
-		private String nextToken() throws IOException {
-			if (curLine != null && curLine.hasMoreTokens()) {
-				return curLine.nextToken();
-			} else {
-				curLine = findNonemptyLine();
-				return curLine == null ? null : curLine.nextToken();
-			}
-		}
-		
-		public boolean hasNext() throws IOException {
-			if (leftCount > 0) {
-				return true;
-			} else if (curLine != null && curLine.hasMoreTokens()) {
-				return true;
-			} else {
-				curLine = findNonemptyLine();
-				return curLine != null;
-			}
-		}
-		
-		public int[] next() throws IOException {
-			int pos = 0;
-			if (leftCount > 0) {
-				int n = (int) Math.min(data.length - pos, leftCount);
-				if (n == 1) {
-					data[pos] = (int) leftValue;
-					pos++;
-					leftCount--;
-				} else {
-					Arrays.fill(data, pos, pos + n, (int) leftValue);
-					pos += n;
-					leftCount -= n;
-				}
-			}
-			if (pos >= data.length) return data;
-				
-			for (String tok = nextToken(); tok != null; tok = nextToken()) {
-				try {
-					int star = tok.indexOf("*");
-					if (star < 0) {
-						leftCount = 1;
-						leftValue = Long.parseLong(tok, 16);
+		}
+
+		int readChar() throws IOException {
+			if (pos == len) {
+				len = in.read(buf, 0, buf.length);
+				pos = 0;
+				if (len <= 0) {
+					len = 0;
+					return -1;
+				}
+			}
+			char ret = buf[pos];
+			pos++;
+			return ret;
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/** Reads the values of a text image, decoding the digits straight
+	 * from a buffer of characters. Each token is either a hex value or a
+	 * decimal count, an asterisk, and a hex value to be repeated that many
+	 * times; a <code>#</code> starts a comment running to the end of the
+	 * line. */
+	private static class TextSource extends CharSource {
+		private long start = 0;
+		private long next = 0;
+		private long leftCount = 0;
+		private int leftValue = 0;
+
+		TextSource(Reader in) {
+			super(in);
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public int read(int[] dst) throws IOException {
+			int n = 0;
+			while (n < dst.length) {
+				if (leftCount > 0) {
+					int k = (int) Math.min(dst.length - n, leftCount);
+					if (k == 1) {
+						dst[n] = leftValue;
 					} else {
-						leftCount = Long.parseLong(tok.substring(0, star));
-						leftValue = Long.parseLong(tok.substring(star + 1), 16);
+						Arrays.fill(dst, n, n + k, leftValue);
+					}
+					n += k;
+					leftCount -= k;
+				} else if (!readToken()) {
+					break;
+				}
+			}
+			start = next;
+			next += n;
+			return n == 0 ? -1 : n;
+		}
+
+		private boolean readToken() throws IOException {
+			int c = readChar();
+			while (c >= 0 && (c == COMMENT_MARKER || Character.isWhitespace(c))) {
+				if (c == COMMENT_MARKER) {
+					while (c >= 0 && c != '\n' && c != '\r') c = readChar();
+				}
+				c = readChar();
+			}
+			if (c < 0) return false;
+
+			long count = 1;
+			boolean starSeen = false;
+			long hex = 0;
+			long dec = 0;
+			boolean isDecimal = true;
+			int digits = 0;
+			while (c >= 0 && c != COMMENT_MARKER && !Character.isWhitespace(c)) {
+				if (c == '*') {
+					if (starSeen || digits == 0 || !isDecimal) {
+						throw new IOException(Strings.get("hexNumberFormatError"));
 					}
-				} catch (NumberFormatException e) {
-					throw new IOException(Strings.get("hexNumberFormatError"));
-				}
-				
-				int n = (int) Math.min(data.length - pos, leftCount);
-				if (n == 1) {
-					data[pos] = (int) leftValue;
-					pos++;
-					leftCount--;
+					starSeen = true;
+					count = dec;
+					hex = 0;
+					digits = 0;
 				} else {
-					Arrays.fill(data, pos, pos + n, (int) leftValue);
-					pos += n;
-					leftCount -= n;
+					int d = Character.digit(c, 16);
+					if (d < 0 || digits >= 16) {
+						throw new IOException(Strings.get("hexNumberFormatError"));
+					}
+					hex = (hex << 4) | d;
+					if (d > 9 || digits >= 18) isDecimal = false;
+					dec = 10 * dec + d;
+					digits++;
 				}
-				if (pos >= data.length) return data;
+				c = readChar();
 			}
-			
-			if (pos >= data.length) {
-				return data;
-			} else {
-				int[] ret = new int[pos];
-				System.arraycopy(data, 0, ret, 0, pos);
-				return ret;
+			if (digits == 0) {
+				throw new IOException(Strings.get("hexNumberFormatError"));
+			}
+			if (c == COMMENT_MARKER) {
+				while (c >= 0 && c != '\n' && c != '\r') c = readChar();
+			}
+			leftCount = count;
+			leftValue = (int) hex;
+			return true;
+		}
+	}
+
+	/** Reads the data records of an Intel HEX image. The addresses in the
+	 * records count bytes; a value wider than a byte takes up as many
+	 * consecutive addresses as the bytes it is stored in, least significant
+	 * first. */
+	private static class IntelSource extends CharSource {
+		private int bytesPerValue;
+		private long start = 0;
+		private long base = 0;
+		private boolean done = false;
+		private byte[] data = new byte[255];
+		private int dataLength = 0;
+		private long dataAddress = 0;
+		private boolean pending = false;
+
+		IntelSource(Reader in, int width) {
+			super(in);
+			this.bytesPerValue = getBytesPerValue(width);
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public int read(int[] dst) throws IOException {
+			int n = 0;
+			long nextAddress = -1;
+			while (pending || readRecord()) {
+				pending = true;
+				if (n > 0 && dataAddress != nextAddress) break;
+				if (n == 0) start = dataAddress / bytesPerValue;
+				long lastValue = (dataAddress + dataLength - 1) / bytesPerValue;
+				if (n > 0 && lastValue - start >= dst.length) break;
+				for (int i = 0; i < dataLength; i++) {
+					long addr = dataAddress + i;
+					int k = (int) (addr / bytesPerValue - start);
+					int shift = 8 * (int) (addr % bytesPerValue);
+					if (k >= n) {
+						dst[k] = 0;
+						n = k + 1;
+					}
+					dst[k] |= (data[i] & 0xFF) << shift;
+				}
+				nextAddress = dataAddress + dataLength;
+				pending = false;
+			}
+			return n == 0 ? -1 : n;
+		}
+
+		private boolean readRecord() throws IOException {
+			while (!done) {
+				int c = readChar();
+				while (c >= 0 && Character.isWhitespace(c)) c = readChar();
+				if (c < 0) {
+					done = true;
+					break;
+				}
+				if (c != ':') throw new IOException(Strings.get("hexRecordFormatError"));
+				int count = readByte();
+				int addr = (readByte() << 8) | readByte();
+				int type = readByte();
+				int sum = count + (addr >> 8) + (addr & 0xFF) + type;
+				for (int i = 0; i < count; i++) {
+					int b = readByte();
+					data[i] = (byte) b;
+					sum += b;
+				}
+				sum += readByte();
+				if ((sum & 0xFF) != 0) {
+					throw new IOException(Strings.get("hexRecordFormatError"));
+				}
+				switch (type) {
+				case 0: // data
+					if (count == 0) break;
+					dataLength = count;
+					dataAddress = base + addr;
+					return true;
+				case 1: // end of file
+					done = true;
+					break;
+				case 2: // extended segment address
+					base = ((long) (((data[0] & 0xFF) << 8) | (data[1] & 0xFF))) << 4;
+					break;
+				case 4: // extended linear address
+					base = ((long) (((data[0] & 0xFF) << 8) | (data[1] & 0xFF))) << 16;
+					break;
+				default: // start addresses do not matter here
+				}
+			}
+			return false;
+		}
+
+		private int readByte() throws IOException {
+			int hi = Character.digit(readHexChar(), 16);
+			int lo = Character.digit(readHexChar(), 16);
+			if (hi < 0 || lo < 0) {
+				throw new IOException(Strings.get("hexRecordFormatError"));
+			}
+			return (hi << 4) | lo;
+		}
+
+		private char readHexChar() throws IOException {
+			int c = readChar();
+			if (c < 0) throw new IOException(Strings.get("hexRecordFormatError"));
+			return (char) c;
+		}
+	}
+
+	private static class BinarySource implements ImageSource {
+		private InputStream in;
+		private int bytesPerValue;
+		private long start = 0;
+		private long next = 0;
+
+		BinarySource(InputStream in, int width) {
+			this.in = new BufferedInputStream(in, 65536);
+			this.bytesPerValue = getBytesPerValue(width);
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public int read(int[] dst) throws IOException {
+			int n = 0;
+			while (n < dst.length) {
+				int val = 0;
+				int i = 0;
+				for (; i < bytesPerValue; i++) {
+					int b = in.read();
+					if (b < 0) break;
+					val |= b << (8 * i);
+				}
+				if (i == 0) break;
+				dst[n] = val;
+				n++;
+				if (i < bytesPerValue) break;
 			}
+			start = next;
+			next += n;
+			return n == 0 ? -1 : n;
+		}
+
+		public void close() throws IOException {
+			in.close();
 		}
 	}
 
+	private static int getBytesPerValue(int width) {
+		if (width <= 8) return 1;
+		else if (width <= 16) return 2;
+		else return 4;
+	}
+
 	public static void save(Writer out, HexModel src) throws IOException {
 		long first = src.getFirstOffset();
 		long last = src.getLastOffset();
 		while (last > first && src.get(last) == 0) last--;
+		char[] buf = new char[8192];
+		int len = 0;
 		int tokens = 0;
 		long cur = 0;
-		while (cur <= last) {
-			int val = src.get(cur);
-			long start = cur;
-			cur++;
-			while (cur <= last && src.get(cur) == val) cur++;
-			long len = cur - start;
-			if (len < 4) { cur = start + 1; len = 1; }
-			try {
-				if (tokens > 0) out.write(tokens % 8 == 0 ? '\n' : ' ');
-				if (cur != start + 1) out.write((cur - start) + "*");
-				out.write(Integer.toHexString(val));
-			} catch (IOException e) {
-				throw new IOException(Strings.get("hexFileWriteError"));
+		try {
+			while (cur <= last) {
+				int val = src.get(cur);
+				long start = cur;
+				cur++;
+				while (cur <= last && src.get(cur) == val) cur++;
+				long count = cur - start;
+				if (count < 4) { cur = start + 1; count = 1; }
+				if (len > buf.length - 40) {
+					out.write(buf, 0, len);
+					len = 0;
+				}
+				if (tokens > 0) {
+					buf[len] = tokens % 8 == 0 ? '\n' : ' ';
+					len++;
+				}
+				if (count > 1) {
+					String countStr = Long.toString(count);
+					countStr.getChars(0, countStr.length(), buf, len);
+					len += countStr.length();
+					buf[len] = '*';
+					len++;
+				}
+				int digits = 1;
+				while (digits < 8 && (val >>> (4 * digits)) != 0) digits++;
+				for (int i = digits - 1; i >= 0; i--) {
+					buf[len] = HEX_DIGITS[(val >>> (4 * i)) & 0xF];
+					len++;
+				}
+				tokens++;
+			}
+			if (tokens > 0) {
+				buf[len] = '\n';
+				len++;
 			}
-			tokens++;
+			out.write(buf, 0, len);
+		} catch (IOException e) {
+			throw new IOException(Strings.get("hexFileWriteError"));
 		}
-		if (tokens > 0) out.write('\n');
 	}
-	
+
 	public static void open(HexModel dst, Reader in) throws IOException {
-		HexReader reader = new HexReader(new BufferedReader(in));
-		long offs = dst.getFirstOffset();
-		while (reader.hasNext()) {
-			int[] values = reader.next();
-			if (offs + values.length - 1 > dst.getLastOffset()) {
+		load(dst, new TextSource(in));
+	}
+
+	private static void load(HexModel dst, ImageSource in) throws IOException {
+		long first = dst.getFirstOffset();
+		long last = dst.getLastOffset();
+		long end = first; // everything before has been written
+		int[] buf = new int[BLOCK_SIZE];
+		for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+			long start = first + in.getStart();
+			if (start + n - 1 > last) {
 				throw new IOException(Strings.get("hexFileSizeError"));
 			}
-			dst.set(offs, values);
-			offs += values.length;
+			if (start > end) dst.fill(end, start - end, 0);
+			int[] values = buf;
+			if (n < buf.length) {
+				values = new int[n];
+				System.arraycopy(buf, 0, values, 0, n);
+			}
+			dst.set(start, values);
+			end = Math.max(end, start + n);
 		}
-		dst.fill(offs, dst.getLastOffset() - offs + 1, 0);
+		dst.fill(end, last - end + 1, 0);
 	}
-	
+
 	public static int[] parse(Reader in) throws IOException {
-		HexReader reader = new HexReader(new BufferedReader(in));
+		TextSource reader = new TextSource(in);
 		int cur = 0;
-		int[] data = new int[4096];
-		while (reader.hasNext()) {
-			int[] values = reader.next();
-			if (cur + values.length > data.length) {
+		int[] data = new int[BLOCK_SIZE];
+		int[] block = new int[BLOCK_SIZE];
+		for (int n = reader.read(block); n >= 0; n = reader.read(block)) {
+			if (cur + n > data.length) {
 				int[] oldData = data;
-				data = new int[Math.max(cur + values.length, 3 * data.length / 2)];
+				data = new int[Math.max(cur + n, 3 * data.length / 2)];
 				System.arraycopy(oldData, 0, data, 0, cur);
 			}
-			System.arraycopy(values, 0, data, cur, values.length);
-			cur += values.length;
+			System.arraycopy(block, 0, data, cur, n);
+			cur += n;
 		}
 		if (cur != data.length) {
 			int[] oldData = data;
@@ -183,34 +415,80 @@ public class HexFile {
 		return data;
 	}
 
-	public static void open(HexModel dst, File src) throws IOException {
-		BufferedReader in;
+	/** Determines the format of an image file. A file named as a raw
+	 * binary image, ending in ".bin" or ".raw", is one; any other must
+	 * begin with the header of a text image or an Intel HEX record. */
+	public static int getImageFormat(File src) throws IOException {
+		if (isBinaryName(src)) return FORMAT_BINARY;
+		InputStream in;
 		try {
-			in = new BufferedReader(new FileReader(src));
+			in = new FileInputStream(src);
 		} catch (IOException e) {
 			throw new IOException(Strings.get("hexFileOpenError"));
 		}
 		try {
-			String header = in.readLine();
-			if (!header.equals(RAW_IMAGE_HEADER)) {
-				throw new IOException(Strings.get("hexHeaderFormatError"));
+			byte[] buf = new byte[64];
+			int len = 0;
+			while (len < buf.length) {
+				int n = in.read(buf, len, buf.length - len);
+				if (n < 0) break;
+				len += n;
 			}
-			open(dst, in);
-			try {
-				BufferedReader oldIn = in;
-				in = null;
-				oldIn.close();
-			} catch (IOException e) {
-				throw new IOException(Strings.get("hexFileReadError"));
+			String header = new String(buf, 0, len, "ISO-8859-1");
+			int eol = 0;
+			while (eol < len && header.charAt(eol) != '\n'
+					&& header.charAt(eol) != '\r') eol++;
+			String line = header.substring(0, eol);
+			if (line.equals(RAW_IMAGE_HEADER)) return FORMAT_TEXT;
+			if (line.length() >= 11 && line.charAt(0) == ':'
+					&& (eol < len || line.length() < buf.length)) {
+				boolean hex = true;
+				for (int i = 1; i < line.length(); i++) {
+					if (Character.digit(line.charAt(i), 16) < 0) hex = false;
+				}
+				if (hex) return FORMAT_INTEL;
 			}
+			throw new IOException(Strings.get("hexHeaderFormatError"));
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Opens an image file of any format for reading the values of the
+	 * given width; the caller must close the returned source. */
+	public static ImageSource openImage(File src, int width) throws IOException {
+		int format = getImageFormat(src);
+		try {
+			if (format == FORMAT_BINARY) {
+				return new BinarySource(new FileInputStream(src), width);
+			}
+			Reader in = new FileReader(src);
+			if (format == FORMAT_INTEL) return new IntelSource(in, width);
+			TextSource ret = new TextSource(in);
+			// skip over the header line
+			for (int c = ret.readChar(); c >= 0 && c != '\n'; c = ret.readChar()) ;
+			return ret;
+		} catch (IOException e) {
+			throw new IOException(Strings.get("hexFileOpenError"));
+		}
+	}
+
+	public static void open(HexModel dst, File src) throws IOException {
+		ImageSource in = openImage(src, dst.getValueWidth());
+		try {
+			load(dst, in);
 		} finally {
 			try {
-				if (in != null) in.close();
+				in.close();
 			} catch (IOException e) { }
 		}
 	}
 
 	public static void save(File dst, HexModel src) throws IOException {
+		if (isBinaryName(dst)) {
+			saveBinary(dst, src);
+			return;
+		}
 		FileWriter out;
 		try {
 			out = new FileWriter(dst);
@@ -232,4 +510,40 @@ public class HexFile {
 			}
 		}
 	}
+
+	private static boolean isBinaryName(File file) {
+		String name = file.getName().toLowerCase();
+		return name.endsWith(".bin") || name.endsWith(".raw");
+	}
+
+	// Writes the values through the last one that is not 0 as a raw
+	// binary image, the format that getImageFormat expects of the name
+	private static void saveBinary(File dst, HexModel src) throws IOException {
+		int bytesPerValue = getBytesPerValue(src.getValueWidth());
+		long first = src.getFirstOffset();
+		long last = src.getLastOffset();
+		while (last >= first && src.get(last) == 0) last--;
+		OutputStream out;
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(dst), 65536);
+		} catch (IOException e) {
+			throw new IOException(Strings.get("hexFileOpenError"));
+		}
+		try {
+			try {
+				for (long addr = first; addr <= last; addr++) {
+					int val = src.get(addr);
+					for (int i = 0; i < bytesPerValue; i++) out.write(val >>> (8 * i));
+				}
+			} catch (IOException e) {
+				throw new IOException(Strings.get("hexFileWriteError"));
+			}
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+				throw new IOException(Strings.get("hexFileWriteError"));
+			}
+		}
+	}
 }
@@ -201,6 +201,13 @@ public class HexFrame extends LFrame {
 		editListener.register(menubar);
 	}
 	
+	/** Switches the frame over to another model, as when the memory it
+	 * shows is taken over by a copy of the simulation's state. */
+	public void setModel(HexModel value) {
+		model = value;
+		editor.setModel(value);
+	}
+	
 	@Override
 	public void setVisible(boolean value) {
 		if (value && !isVisible()) {
@@ -0,0 +1,163 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.cburch.logisim.data.Value;
+
+/** Writes the log in a compact binary form, in which an entry takes only a
+ * few bytes for each value that changed. The file is a sequence of
+ * records, each beginning with a tag byte.
+ *
+ * A header record, tagged 'H', is followed by the bytes "LGLOG", a version
+ * byte (1), the number of columns as a varint, and for each column its
+ * name in modified UTF-8 (as DataOutput.writeUTF) and its radix as a byte.
+ * A header begins each selection, so a file appended to is still read
+ * from top to bottom.
+ *
+ * An entry record, tagged 'E', is followed by the ticks elapsed since the
+ * previous entry as a varint (unsigned, seven bits to a byte, low first),
+ * a bitmap with one bit per column (low bit of the first byte for the
+ * first column) that is set for each value written, and then each of
+ * those values. The first entry after a header writes every value. A
+ * value is a kind byte, which is 0 for no value, 1 or 2 for a one-bit
+ * value of 0 or 1; 3 for any other fully defined value, followed by its
+ * width as a varint and its bits in (width + 7) / 8 bytes, low byte first;
+ * or 4 for a value with undefined bits, followed by its width and three
+ * such fields: the bits that are 1, the bits that are floating, and the
+ * bits that are errors. */
+class BinaryEncoder extends LogEncoder {
+	private static final byte[] MAGIC = { 'L', 'G', 'L', 'O', 'G' };
+	private static final int VERSION = 1;
+
+	private OutputStream out;
+	// records are encoded here and written out in large pieces
+	private byte[] buf = new byte[1 << 16];
+	private int len = 0;
+	private Value[] last = new Value[0];
+	private boolean first;
+	private long lastTime;
+	private byte[] changed = new byte[0];
+
+	@Override
+	void open(OutputStream stream) {
+		out = stream;
+		len = 0;
+	}
+
+	@Override
+	void writeHeader(Columns columns, Value[] values, boolean showHeader)
+			throws IOException {
+		int n = columns.size();
+		ByteArrayOutputStream names = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(names);
+		for (int i = 0; i < n; i++) {
+			data.writeUTF(columns.getName(i));
+			data.writeByte(columns.getRadix(i));
+		}
+		data.flush();
+		writeByte('H');
+		for (int i = 0; i < MAGIC.length; i++) writeByte(MAGIC[i]);
+		writeByte(VERSION);
+		writeVarint(n);
+		byte[] bytes = names.toByteArray();
+		for (int i = 0; i < bytes.length; i++) writeByte(bytes[i]);
+		last = new Value[n];
+		changed = new byte[(n + 7) / 8];
+		first = true;
+	}
+
+	@Override
+	void writeEntry(long time, Value[] values) throws IOException {
+		int n = Math.min(values.length, last.length);
+		for (int i = 0; i < changed.length; i++) changed[i] = 0;
+		for (int i = 0; i < n; i++) {
+			if (first || !equal(values[i], last[i])) {
+				changed[i >> 3] |= 1 << (i & 7);
+			}
+		}
+
+		long delta = first || time < lastTime ? 0 : time - lastTime;
+		writeByte('E');
+		writeVarint(delta);
+		for (int i = 0; i < changed.length; i++) writeByte(changed[i]);
+		for (int i = 0; i < n; i++) {
+			if ((changed[i >> 3] & (1 << (i & 7))) != 0) {
+				writeValue(values[i]);
+				last[i] = values[i];
+			}
+		}
+		first = false;
+		lastTime = time;
+		if (len > buf.length / 2) flush();
+	}
+
+	@Override
+	void flush() throws IOException {
+		out.write(buf, 0, len);
+		len = 0;
+		out.flush();
+	}
+
+	private void writeValue(Value v) {
+		if (v == null) {
+			writeByte(0);
+		} else if (v == Value.FALSE) {
+			writeByte(1);
+		} else if (v == Value.TRUE) {
+			writeByte(2);
+		} else if (v.isFullyDefined()) {
+			writeByte(3);
+			writeVarint(v.getWidth());
+			writeBits(v.toLongValue(), v.getWidth());
+		} else {
+			int width = v.getWidth();
+			long ones = 0;
+			long floating = 0;
+			long errors = 0;
+			for (int i = 0; i < width; i++) {
+				Value bit = v.get(i);
+				if (bit == Value.TRUE) ones |= 1L << i;
+				else if (bit == Value.UNKNOWN) floating |= 1L << i;
+				else if (bit == Value.ERROR) errors |= 1L << i;
+			}
+			writeByte(4);
+			writeVarint(width);
+			writeBits(ones, width);
+			writeBits(floating, width);
+			writeBits(errors, width);
+		}
+	}
+
+	private void writeBits(long bits, int width) {
+		for (int i = 0; i < width; i += 8) {
+			writeByte((int) (bits >>> i));
+		}
+	}
+
+	private void writeVarint(long value) {
+		while ((value & ~0x7FL) != 0) {
+			writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		writeByte((int) value);
+	}
+
+	private void writeByte(int b) {
+		if (len == buf.length) {
+			byte[] grown = new byte[2 * buf.length];
+			System.arraycopy(buf, 0, grown, 0, len);
+			buf = grown;
+		}
+		buf[len++] = (byte) b;
+	}
+
+	private static boolean equal(Value a, Value b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -13,6 +13,7 @@ import java.io.IOException;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
@@ -25,6 +26,21 @@ import com.cburch.logisim.util.JFileChoosers;
 import com.cburch.logisim.util.StringUtil;
 
 class FilePanel extends LogPanel {
+	private static class FormatOption {
+		private int format;
+		private String key;
+
+		FormatOption(int format, String key) {
+			this.format = format;
+			this.key = key;
+		}
+
+		@Override
+		public String toString() {
+			return Strings.get(key);
+		}
+	}
+
 	private class Listener implements ActionListener, ModelListener {
 		public void selectionChanged(ModelEvent event) { }
 
@@ -39,6 +55,13 @@ class FilePanel extends LogPanel {
 			enableButton.setEnabled(file != null);
 			
 			headerCheckBox.setSelected(model.getFileHeader());
+			for (int i = 0; i < formatOptions.length; i++) {
+				if (formatOptions[i].format == model.getFileFormat()) {
+					formatBox.setSelectedItem(formatOptions[i]);
+				}
+			}
+			// only the text format may leave out its header
+			headerCheckBox.setEnabled(model.getFileFormat() == Model.FORMAT_TEXT);
 		}
 		
 		private void computeEnableItems(Model model) {
@@ -91,6 +114,9 @@ class FilePanel extends LogPanel {
 				getModel().setFile(file);
 			} else if (src == headerCheckBox) {
 				getModel().setFileHeader(headerCheckBox.isSelected());
+			} else if (src == formatBox) {
+				FormatOption option = (FormatOption) formatBox.getSelectedItem();
+				if (option != null) getModel().setFileFormat(option.format);
 			}
 		}
 	}
@@ -102,6 +128,13 @@ class FilePanel extends LogPanel {
 	private JTextField fileField = new JTextField();
 	private JButton selectButton = new JButton();
 	private JCheckBox headerCheckBox = new JCheckBox();
+	private JLabel formatLabel = new JLabel();
+	private FormatOption[] formatOptions = {
+			new FormatOption(Model.FORMAT_TEXT, "fileFormatText"),
+			new FormatOption(Model.FORMAT_VCD, "fileFormatVcd"),
+			new FormatOption(Model.FORMAT_BINARY, "fileFormatBinary"),
+	};
+	private JComboBox formatBox = new JComboBox(formatOptions);
 	private JFileChooser chooser = JFileChoosers.create();
 	
 	public FilePanel(LogFrame frame) {
@@ -121,6 +154,10 @@ class FilePanel extends LogPanel {
 		filePanel.add(selectButton);
 		fileField.setEditable(false);
 		fileField.setEnabled(false);
+
+		JPanel formatPanel = new JPanel();
+		formatPanel.add(formatLabel);
+		formatPanel.add(formatBox);
 		
 		setLayout(new GridBagLayout());
 		gb = (GridBagLayout) getLayout();
@@ -137,12 +174,14 @@ class FilePanel extends LogPanel {
 		gb.setConstraints(filePanel, gc);      add(filePanel);
 		  gc.fill = GridBagConstraints.NONE;
 		glue = new JPanel(); gc.weighty = 1.0; gb.setConstraints(glue, gc); add(glue); gc.weighty = 0.0;
+		gb.setConstraints(formatPanel, gc);    add(formatPanel);
 		gb.setConstraints(headerCheckBox, gc); add(headerCheckBox);
 		glue = new JPanel(); gc.weighty = 1.0; gb.setConstraints(glue, gc); add(glue); gc.weighty = 0.0;
 		
 		enableButton.addActionListener(listener);
 		selectButton.addActionListener(listener);
 		headerCheckBox.addActionListener(listener);
+		formatBox.addActionListener(listener);
 		modelChanged(null, getModel());
 		localeChanged();
 	}
@@ -163,6 +202,8 @@ class FilePanel extends LogPanel {
 		fileLabel.setText(Strings.get("fileLabel") + " ");
 		selectButton.setText(Strings.get("fileSelectButton"));
 		headerCheckBox.setText(Strings.get("fileHeaderCheck"));
+		formatLabel.setText(Strings.get("fileFormatLabel") + " ");
+		formatBox.repaint();
 	}
 
 	@Override
@@ -0,0 +1,80 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.log;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.cburch.logisim.data.Value;
+
+/** Carries entries from the thread that propagates to the thread that
+ * writes the log file, without either taking a lock. It is a ring of
+ * entries allocated once and reused: the propagating thread alone fills
+ * them and advances the tail, and the writing thread alone reads them and
+ * advances the head. When the ring is full, the propagating thread waits
+ * for the writer rather than dropping entries. */
+class LogBuffer {
+	static class Entry {
+		long time;
+		LogEncoder.Columns columns;
+		Value[] values = new Value[0];
+	}
+
+	private static final int CAPACITY = 4096; // must be a power of 2
+
+	private Entry[] entries;
+	private volatile long head = 0; // next entry to read; advanced by the reader
+	private volatile long tail = 0; // next entry to fill; advanced by put
+	private volatile Thread reader = null;
+	private volatile boolean closed = false;
+
+	LogBuffer() {
+		entries = new Entry[CAPACITY];
+		for (int i = 0; i < CAPACITY; i++) entries[i] = new Entry();
+	}
+
+	void setReader(Thread value) {
+		reader = value;
+	}
+
+	/** Stops entries from being put, releasing a thread waiting for room
+	 * once the reader is gone. */
+	void close() {
+		closed = true;
+	}
+
+	/** Copies an entry into the ring. Only one thread may call this. */
+	void put(long time, LogEncoder.Columns columns, Value[] values) {
+		long t = tail;
+		while (t - head >= CAPACITY) {
+			if (closed) return;
+			LockSupport.unpark(reader);
+			LockSupport.parkNanos(100000L);
+		}
+		Entry e = entries[(int) t & (CAPACITY - 1)];
+		e.time = time;
+		e.columns = columns;
+		if (e.values.length != values.length) e.values = new Value[values.length];
+		System.arraycopy(values, 0, e.values, 0, values.length);
+		tail = t + 1;
+		// the reader is woken only once there is enough to be worth it;
+		// otherwise it looks on its own schedule
+		if (t - head == CAPACITY / 2) LockSupport.unpark(reader);
+	}
+
+	/** Returns how many entries are ready to be read. */
+	int available() {
+		return (int) (tail - head);
+	}
+
+	/** Returns the entry at the given position among those ready. It stays
+	 * valid until released. */
+	Entry get(int index) {
+		return entries[(int) (head + index) & (CAPACITY - 1)];
+	}
+
+	/** Hands the first entries ready back to be filled again. */
+	void release(int count) {
+		head = head + count;
+	}
+}
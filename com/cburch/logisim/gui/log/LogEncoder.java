@@ -0,0 +1,85 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.cburch.logisim.data.Value;
+
+/** Writes entries of the log into a file in one of the formats offered.
+ * An encoder is used only by the thread writing the file, and it lasts
+ * as long as the file and format do: the file may be closed while the
+ * simulation is idle and opened again, and the encoder simply carries on
+ * where it left off. */
+abstract class LogEncoder {
+	/** What the log holds at some time: the names of the values logged,
+	 * the radix in which to show each, and the width of each, or 0 where
+	 * the component doesn't give it. The log's selection is copied
+	 * into a new one each time it changes, so that the writing thread
+	 * never looks at the selection itself. */
+	static class Columns {
+		private String[] names;
+		private int[] radixes;
+		private int[] widths;
+
+		Columns(Selection sel) {
+			int n = sel.size();
+			names = new String[n];
+			radixes = new int[n];
+			widths = new int[n];
+			for (int i = 0; i < n; i++) {
+				SelectionItem item = sel.get(i);
+				names[i] = item.toString();
+				radixes[i] = item.getRadix();
+				widths[i] = item.getWidth();
+			}
+		}
+
+		int size() {
+			return names.length;
+		}
+
+		String getName(int index) {
+			return names[index];
+		}
+
+		int getRadix(int index) {
+			return radixes[index];
+		}
+
+		int getWidth(int index) {
+			return widths[index];
+		}
+	}
+
+	static LogEncoder create(int format) {
+		switch (format) {
+		case Model.FORMAT_VCD: return new VcdEncoder();
+		case Model.FORMAT_BINARY: return new BinaryEncoder();
+		default: return new TextEncoder();
+		}
+	}
+
+	/** Returns whether entries can be added to a file already holding
+	 * some. If not, the file is emptied whenever a header is written. */
+	boolean canAppend() {
+		return true;
+	}
+
+	/** Starts writing to a file just opened. */
+	abstract void open(OutputStream out);
+
+	/** Describes the columns of the entries that follow. The values are
+	 * those of the first entry, and showHeader is the user's choice of
+	 * whether to include a header where the format allows leaving it out. */
+	abstract void writeHeader(Columns columns, Value[] values,
+			boolean showHeader) throws IOException;
+
+	/** Writes an entry, at the given time in ticks of the clock. */
+	abstract void writeEntry(long time, Value[] values) throws IOException;
+
+	/** Writes out whatever has been buffered. */
+	abstract void flush() throws IOException;
+}
@@ -202,6 +202,17 @@ public class LogFrame extends LFrame {
 		}
 	}
 	
+	/** Stops logging and deletes the logs' temporary files, once the
+	 * project is closed. */
+	@Override
+	public void dispose() {
+		if (curSimulator != null) curSimulator.removeSimulatorListener(myListener);
+		if (curModel != null) curModel.setSelected(this, false);
+		for (Model model : modelMap.values()) model.close();
+		modelMap.clear();
+		super.dispose();
+	}
+	
 	@Override
 	public void setVisible(boolean value) {
 		if (value) {
@@ -0,0 +1,107 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/** A temporary file into which the logs of a model move their older runs,
+ * so that a long history does not stay on the heap. The file is mapped
+ * into memory a segment at a time, leaving it to the operating system to
+ * keep the pages in use, and runs are copied back out when they are read.
+ * Nothing in the file is freed until the project's log window is disposed
+ * along with the project, when the file is deleted. */
+class LogSpill {
+	private static final int SEGMENT_SIZE = 1 << 24;
+
+	private File file = null;
+	private FileChannel channel = null;
+	private ArrayList<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	private long end = 0;
+	private boolean failed = false;
+
+	/** Writes runs into the file, returning where they lie. */
+	synchronized long write(int[] starts, long[] symbols, byte[] tags,
+			int runs) throws IOException {
+		if (failed) throw new IOException("spill file unavailable");
+		int bytes = 13 * runs;
+		if (bytes > SEGMENT_SIZE) throw new IOException("runs too large to spill");
+		int seg = (int) (end / SEGMENT_SIZE);
+		int offs = (int) (end % SEGMENT_SIZE);
+		if (offs + bytes > SEGMENT_SIZE) {
+			seg++;
+			offs = 0;
+		}
+		MappedByteBuffer buf;
+		try {
+			buf = getSegment(seg);
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+		for (int i = 0; i < runs; i++) {
+			buf.putInt(offs + 4 * i, starts[i]);
+		}
+		int symOffs = offs + 4 * runs;
+		for (int i = 0; i < runs; i++) {
+			buf.putLong(symOffs + 8 * i, symbols[i]);
+		}
+		int tagOffs = symOffs + 8 * runs;
+		for (int i = 0; i < runs; i++) {
+			buf.put(tagOffs + i, tags[i]);
+		}
+		long ret = (long) seg * SEGMENT_SIZE + offs;
+		end = ret + bytes;
+		return ret;
+	}
+
+	/** Deletes the file. Runs written before may not be read afterwards,
+	 * and writing more fails. */
+	synchronized void close() {
+		failed = true;
+		segments.clear();
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) { }
+			channel = null;
+		}
+		if (file != null) {
+			// where the mappings keep the file from being deleted until
+			// they are collected, deleteOnExit still removes it later
+			file.delete();
+			file = null;
+		}
+	}
+
+	/** Reads back runs written at pos. */
+	synchronized void read(long pos, int runs, int[] starts, long[] symbols,
+			byte[] tags) {
+		ByteBuffer buf = segments.get((int) (pos / SEGMENT_SIZE)).duplicate();
+		buf.position((int) (pos % SEGMENT_SIZE));
+		buf.asIntBuffer().get(starts, 0, runs);
+		buf.position(buf.position() + 4 * runs);
+		buf.asLongBuffer().get(symbols, 0, runs);
+		buf.position(buf.position() + 8 * runs);
+		buf.get(tags, 0, runs);
+	}
+
+	private MappedByteBuffer getSegment(int seg) throws IOException {
+		while (segments.size() <= seg) {
+			if (channel == null) {
+				file = File.createTempFile("logisim-log", ".tmp");
+				file.deleteOnExit();
+				channel = new RandomAccessFile(file, "rw").getChannel();
+			}
+			long pos = (long) segments.size() * SEGMENT_SIZE;
+			segments.add(channel.map(FileChannel.MapMode.READ_WRITE, pos, SEGMENT_SIZE));
+		}
+		return segments.get(seg);
+	}
+}
@@ -3,135 +3,220 @@
 
 package com.cburch.logisim.gui.log;
 
-import java.io.FileWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.SwingUtilities;
 
 import com.cburch.logisim.data.Value;
 
+/** Writes the log file. Entries arrive from the thread propagating the
+ * circuit, which only copies them into a LogBuffer; this thread takes
+ * them from there in batches and encodes them in the format chosen, so
+ * that propagation never waits on formatting or on the disk. The settings
+ * of the file are copied from the model as they change, on the thread
+ * changing them, and the file itself is touched only by this thread. */
 class LogThread extends Thread implements ModelListener {
 	// file will be flushed with at least this frequency
 	private static final int FLUSH_FREQUENCY = 500;
-	
+
 	// file will be closed after waiting this many milliseconds between writes
 	private static final int IDLE_UNTIL_CLOSE = 10000;
-	
+
+	// the latest values, written first when logging to a file begins
+	private static class Pending {
+		private File file;
+		private LogBuffer.Entry entry;
+	}
+
 	private Model model;
-	private boolean canceled = false;
-	private Object lock = new Object();
-	private PrintWriter writer = null;
-	private boolean headerDirty = true;
+	private LogBuffer buffer = new LogBuffer();
+	private volatile boolean canceled = false;
+	private volatile LogEncoder.Columns columns;
+	private volatile File target = null;
+	private volatile int targetFormat = Model.FORMAT_TEXT;
+	private volatile boolean fileHeader = true;
+	private volatile Pending pending = null;
+
+	// used only by this thread
+	private File file = null;
+	private int format = Model.FORMAT_TEXT;
+	private LogEncoder encoder = null;
+	private LogEncoder.Columns written = null;
+	private OutputStream out = null;
 	private long lastWrite = 0;
-	
+	private long lastFlush = 0;
+
 	public LogThread(Model model) {
 		this.model = model;
+		this.columns = new LogEncoder.Columns(model.getSelection());
+		buffer.setReader(this);
 		model.addModelListener(this);
 	}
-	
+
 	@Override
 	public void run() {
 		while (!canceled) {
-			synchronized(lock) {
-				if (writer != null) {
-					if (System.currentTimeMillis() - lastWrite > IDLE_UNTIL_CLOSE) {
-						writer.close();
-						writer = null;
-					} else {
-						writer.flush();
+			writeAvailable();
+			if (out != null) {
+				long now = System.currentTimeMillis();
+				if (now - lastWrite > IDLE_UNTIL_CLOSE) {
+					closeFile();
+				} else if (now - lastFlush >= FLUSH_FREQUENCY) {
+					try {
+						encoder.flush();
+					} catch (IOException e) {
+						fail();
 					}
+					lastFlush = now;
 				}
 			}
-			try {
-				Thread.sleep(FLUSH_FREQUENCY);
-			} catch (InterruptedException e) { }
-		}
-		synchronized(lock) {
-			if (writer != null) {
-				writer.close();
-				writer = null;
+			if (buffer.available() == 0) {
+				LockSupport.parkNanos(this, FLUSH_FREQUENCY * 1000000L);
 			}
 		}
+		buffer.close();
+		writeAvailable();
+		closeFile();
 	}
-	
+
 	public void cancel() {
-		synchronized(lock) {
-			canceled = true;
-			if (writer != null) {
-				writer.close();
-				writer = null;
-			}
-		}
+		canceled = true;
+		buffer.close();
+		LockSupport.unpark(this);
 	}
 
 	public void selectionChanged(ModelEvent event) {
-		headerDirty = true;
+		columns = new LogEncoder.Columns(model.getSelection());
 	}
 
 	public void entryAdded(ModelEvent event, Value[] values) {
-		synchronized(lock) {
-			if (isFileEnabled()) addEntry(values);
+		if (target == null || canceled) return;
+		LogEncoder.Columns cols = columns;
+		if (cols.size() != values.length) {
+			// the selection changed, and we are told of it after the entry
+			cols = new LogEncoder.Columns(model.getSelection());
+			columns = cols;
 		}
+		buffer.put(getTime(), cols, values);
 	}
 
 	public void filePropertyChanged(ModelEvent event) {
-		synchronized(lock) {
-			if (isFileEnabled()) {
-				if (writer == null) {
-					Selection sel = model.getSelection();
-					Value[] values = new Value[sel.size()];
-					boolean found = false;
-					for (int i = 0; i < values.length; i++) {
-						values[i] = model.getValueLog(sel.get(i)).getLast();
-						if (values[i] != null) found = true;
-					}
-					if (found) addEntry(values);
-				}
-			} else {
-				if (writer != null) {
-					writer.close();
-					writer = null;
-				}
+		File oldTarget = target;
+		int oldFormat = targetFormat;
+		File newTarget = isFileEnabled() ? model.getFile() : null;
+		int newFormat = model.getFileFormat();
+		if (newTarget == null) {
+			pending = null;
+		} else if (!newTarget.equals(oldTarget) || newFormat != oldFormat) {
+			Selection sel = model.getSelection();
+			Value[] values = new Value[sel.size()];
+			boolean found = false;
+			for (int i = 0; i < values.length; i++) {
+				values[i] = model.getValueLog(sel.get(i)).getLast();
+				if (values[i] != null) found = true;
 			}
+			Pending p = null;
+			if (found) {
+				p = new Pending();
+				p.file = newTarget;
+				p.entry = new LogBuffer.Entry();
+				p.entry.time = getTime();
+				p.entry.columns = columns;
+				p.entry.values = values;
+			}
+			pending = p;
 		}
+		fileHeader = model.getFileHeader();
+		targetFormat = newFormat;
+		target = newTarget;
+		LockSupport.unpark(this);
 	}
-	
+
 	private boolean isFileEnabled() {
 		return !canceled && model.isSelected() && model.isFileEnabled()
 			&& model.getFile() != null;
 	}
-	
-	// Should hold lock and have verified that isFileEnabled() before
-	// entering this method.
-	private void addEntry(Value[] values) {
-		if (writer == null) {
-			try {
-				writer = new PrintWriter(new FileWriter(model.getFile(), true));
-			} catch (IOException e) {
-				model.setFile(null);
-				return;
-			}
+
+	private long getTime() {
+		return model.getCircuitState().getPropagator().getTickCount();
+	}
+
+	private void writeAvailable() {
+		// the entries already made belong to the file they were made for
+		writeBuffered();
+
+		File newFile = target;
+		int newFormat = targetFormat;
+		if (newFile == null ? file != null
+				: !newFile.equals(file) || newFormat != format) {
+			closeFile();
+			file = newFile;
+			format = newFormat;
+			encoder = newFile == null ? null : LogEncoder.create(newFormat);
+			written = null;
 		}
-		Selection sel = model.getSelection();
-		if (headerDirty) {
-			if (model.getFileHeader()) {
-				StringBuilder buf = new StringBuilder();
-				for (int i = 0; i < sel.size(); i++) {
-					if (i > 0) buf.append("\t");
-					buf.append(sel.get(i).toString());
-				}
-				writer.println(buf.toString());
-			}
-			headerDirty = false;
+
+		Pending p = pending;
+		if (p != null && p.file.equals(file)) {
+			pending = null;
+			write(p.entry);
+		}
+		writeBuffered();
+	}
+
+	private void writeBuffered() {
+		int n = buffer.available();
+		for (int i = 0; i < n; i++) {
+			write(buffer.get(i));
 		}
-		StringBuilder buf = new StringBuilder();
-		for (int i = 0; i < values.length; i++) {
-			if (i > 0) buf.append("\t");
-			if (values[i] != null) {
-				int radix = sel.get(i).getRadix();
-				buf.append(values[i].toDisplayString(radix));
+		buffer.release(n);
+	}
+
+	private void write(LogBuffer.Entry entry) {
+		if (encoder == null) return;
+		try {
+			boolean header = entry.columns != written;
+			boolean restart = header && !encoder.canAppend();
+			if (out == null || restart) {
+				closeFile();
+				out = new FileOutputStream(file, !restart);
+				encoder.open(out);
+			}
+			if (header) {
+				encoder.writeHeader(entry.columns, entry.values, fileHeader);
+				written = entry.columns;
 			}
+			encoder.writeEntry(entry.time, entry.values);
+			lastWrite = System.currentTimeMillis();
+		} catch (IOException e) {
+			fail();
 		}
-		writer.println(buf.toString());
-		lastWrite = System.currentTimeMillis();
+	}
+
+	private void closeFile() {
+		if (out == null) return;
+		try {
+			encoder.flush();
+		} catch (IOException e) { }
+		try {
+			out.close();
+		} catch (IOException e) { }
+		out = null;
+	}
+
+	// gives up on the file until another is chosen; the user sees it
+	// disappear from the window
+	private void fail() {
+		closeFile();
+		encoder = null;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				model.setFile(null);
+			}
+		});
 	}
 }
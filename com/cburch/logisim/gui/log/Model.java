@@ -11,22 +11,35 @@ import javax.swing.JFrame;
 
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 
 class Model {
+	// the formats in which the log file may be written
+	static final int FORMAT_TEXT = 0;
+	static final int FORMAT_VCD = 1;
+	static final int FORMAT_BINARY = 2;
+
 	private EventSourceWeakSupport<ModelListener> listeners;
 	private Selection selection;
 	private HashMap<SelectionItem,ValueLog> log;
 	private boolean fileEnabled = false;
 	private File file = null;
 	private boolean fileHeader = true;
+	private int fileFormat = FORMAT_TEXT;
 	private boolean selected = false;
 	private LogThread logger = null;
+	private Value[] curValues = new Value[0];
+	private LogSpill spill = null;
+	// the tick of each entry, as the ticks elapsed since the entry before
+	private RunLog ticks;
+	private long lastTick = 0;
 	
 	public Model(CircuitState circuitState) {
 		listeners = new EventSourceWeakSupport<ModelListener>();
 		selection = new Selection(circuitState, this);
 		log = new HashMap<SelectionItem,ValueLog>();
+		ticks = new RunLog(getSpill());
 	}
 	
 	public boolean isSelected() {
@@ -47,12 +60,43 @@ class Model {
 	public ValueLog getValueLog(SelectionItem item) {
 		ValueLog ret = log.get(item);
 		if (ret == null && selection.indexOf(item) >= 0) {
-			ret = new ValueLog();
+			ret = new ValueLog(getSpill());
 			log.put(item, ret);
 		}
 		return ret;
 	}
 	
+	/** Returns the number of entries whose ticks are known, which is at
+	 * least the number of entries in any value's log. */
+	public long getEntryCount() {
+		return ticks.size();
+	}
+	
+	/** Returns the clock tick at which an entry was made, counting the
+	 * entries as for getEntryCount. */
+	public long getEntryTick(long index) {
+		return ticks.getSum(index);
+	}
+	
+	/** Returns the index of the first entry made at or after the given
+	 * clock tick, or getEntryCount() if there is none. */
+	public long getEntryIndex(long tick) {
+		return ticks.findSum(tick);
+	}
+
+	/** Deletes the file into which older entries were moved; the log must
+	 * not be read afterwards. */
+	void close() {
+		if (spill != null) spill.close();
+	}
+	
+	private LogSpill getSpill() {
+		if (spill == null && AppPreferences.LOG_SPILL.getBoolean()) {
+			spill = new LogSpill();
+		}
+		return spill;
+	}
+	
 	public boolean isFileEnabled() {
 		return fileEnabled;
 	}
@@ -65,6 +109,10 @@ class Model {
 		return fileHeader;
 	}
 	
+	public int getFileFormat() {
+		return fileFormat;
+	}
+	
 	public void setFileEnabled(boolean value) {
 		if (fileEnabled == value) return;
 		fileEnabled = value;
@@ -84,9 +132,20 @@ class Model {
 		fireFilePropertyChanged(new ModelEvent());
 	}
 	
+	public void setFileFormat(int value) {
+		if (fileFormat == value) return;
+		fileFormat = value;
+		fireFilePropertyChanged(new ModelEvent());
+	}
+	
 	public void propagationCompleted() {
 		CircuitState circuitState = getCircuitState();
-		Value[] vals = new Value[selection.size()];
+		// the array is reused, since listeners copy what they keep
+		Value[] vals = curValues;
+		if (vals.length != selection.size()) {
+			vals = new Value[selection.size()];
+			curValues = vals;
+		}
 		boolean changed = false;
 		for (int i = selection.size() - 1; i >= 0; i--) {
 			SelectionItem item = selection.get(i);
@@ -101,6 +160,9 @@ class Model {
 				SelectionItem item = selection.get(i);
 				getValueLog(item).append(vals[i]);
 			}
+			long tick = circuitState.getPropagator().getTickCount();
+			ticks.append(tick - lastTick);
+			lastTick = tick;
 			fireEntryAdded(new ModelEvent(), vals);
 		}
 	}
@@ -7,6 +7,7 @@ import com.cburch.logisim.data.Value;
 
 interface ModelListener {
 	public void selectionChanged(ModelEvent event);
+	// the array is reused for the next entry, so it must be copied if kept
 	public void entryAdded(ModelEvent event, Value[] values);
 	public void filePropertyChanged(ModelEvent event);
 }
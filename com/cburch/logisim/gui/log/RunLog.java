@@ -0,0 +1,245 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/** A long sequence of numbers, stored as runs of equal numbers. The runs
+ * are kept in chunks of primitive arrays, each chunk remembering the
+ * index of its first entry and the sum of all entries before it, so that
+ * an entry or a sum up to an entry is found by searching the chunks and
+ * then the runs within one. Each run may also carry a small tag, which
+ * the sums ignore; a ValueLog keeps the width of its values there.
+ *
+ * Only the last few chunks stay on the heap. Older ones move into a
+ * LogSpill if one is given; otherwise, or once it fails, the oldest are
+ * forgotten, and the sequence then begins at a later entry. */
+class RunLog {
+	private static final int CHUNK_RUNS = 4096;
+	// chunks kept on the heap, besides the one being filled
+	private static final int MAX_RESIDENT = 16;
+	// chunks kept in all when there is nowhere to spill them
+	private static final int MAX_UNSPILLED = 64;
+
+	private static class Chunk {
+		private long first; // index of the first entry in the chunk
+		private long sum;   // sum of all entries before the chunk
+		private int runs = 0;
+		private int length = 0;
+		private int[] starts = new int[16]; // offset of each run from first
+		private long[] symbols = new long[16];
+		private byte[] tags = new byte[16];
+		private long spilled = -1; // position in the spill, once there
+	}
+
+	private LogSpill spill;
+	private boolean spilling;
+	private ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+	private int firstResident = 0; // chunks before this one are spilled
+	private long start = 0; // index of the first entry kept
+	private long end = 0;   // index past the last entry
+	private long total = 0; // sum of all entries ever appended
+	// the spilled chunk read last, copied back onto the heap, since the
+	// table reads the rows near one another
+	private Chunk cached = null;
+	private int[] cachedStarts = null;
+	private long[] cachedSymbols = null;
+	private byte[] cachedTags = null;
+
+	RunLog(LogSpill spill) {
+		this.spill = spill;
+		this.spilling = spill != null;
+	}
+
+	/** Returns the number of entries kept. */
+	synchronized long size() {
+		return end - start;
+	}
+
+	synchronized long getLast() {
+		Chunk c = chunks.get(chunks.size() - 1);
+		return c.symbols[c.runs - 1];
+	}
+
+	synchronized int getLastTag() {
+		Chunk c = chunks.get(chunks.size() - 1);
+		return c.tags[c.runs - 1];
+	}
+
+	synchronized long get(long index) {
+		long i = start + index;
+		Chunk c = findChunk(i);
+		load(c);
+		return cachedSymbols[findRun(c, (int) (i - c.first))];
+	}
+
+	synchronized int getTag(long index) {
+		long i = start + index;
+		Chunk c = findChunk(i);
+		load(c);
+		return cachedTags[findRun(c, (int) (i - c.first))];
+	}
+
+	/** Returns the sum of all entries ever appended, through the given
+	 * one; entries forgotten are still counted. */
+	synchronized long getSum(long index) {
+		long i = start + index;
+		Chunk c = findChunk(i);
+		load(c);
+		int offs = (int) (i - c.first);
+		int run = findRun(c, offs);
+		long ret = c.sum;
+		for (int r = 0; r < run; r++) {
+			ret += cachedSymbols[r] * (cachedStarts[r + 1] - cachedStarts[r]);
+		}
+		return ret + cachedSymbols[run] * (offs + 1 - cachedStarts[run]);
+	}
+
+	/** Returns the index of the first entry through which the sum of
+	 * getSum reaches the given one, or size() if none does. The entries
+	 * must not be negative, so that the sums never decrease; the chunks
+	 * are searched by the sums before them, and then the runs of one. */
+	synchronized long findSum(long sum) {
+		if (chunks.isEmpty() || chunks.get(0).sum >= sum) return 0;
+		int lo = 0;
+		int hi = chunks.size() - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (chunks.get(mid).sum < sum) lo = mid;
+			else hi = mid - 1;
+		}
+		Chunk c = chunks.get(lo);
+		load(c);
+		long acc = c.sum;
+		for (int r = 0; r < c.runs; r++) {
+			long symbol = cachedSymbols[r];
+			int next = r + 1 < c.runs ? cachedStarts[r + 1] : c.length;
+			long runSum = symbol * (next - cachedStarts[r]);
+			if (acc + runSum >= sum) {
+				long count = (sum - acc + symbol - 1) / symbol;
+				return c.first + cachedStarts[r] + count - 1 - start;
+			}
+			acc += runSum;
+		}
+		return c.first + c.length - start;
+	}
+
+	synchronized void append(long symbol) {
+		append(symbol, 0);
+	}
+
+	/** Appends an entry whose run carries the given tag, from 0 to 127;
+	 * a run continues only while both the number and the tag repeat. */
+	synchronized void append(long symbol, int tag) {
+		int n = chunks.size();
+		Chunk c = n == 0 ? null : chunks.get(n - 1);
+		if (c != null && c.symbols[c.runs - 1] == symbol
+				&& c.tags[c.runs - 1] == tag) {
+			c.length++;
+		} else {
+			if (c == null || c.runs == CHUNK_RUNS) c = addChunk();
+			if (c.runs == c.starts.length) {
+				int len = Math.min(CHUNK_RUNS, 2 * c.runs);
+				int[] newStarts = new int[len];
+				long[] newSymbols = new long[len];
+				byte[] newTags = new byte[len];
+				System.arraycopy(c.starts, 0, newStarts, 0, c.runs);
+				System.arraycopy(c.symbols, 0, newSymbols, 0, c.runs);
+				System.arraycopy(c.tags, 0, newTags, 0, c.runs);
+				c.starts = newStarts;
+				c.symbols = newSymbols;
+				c.tags = newTags;
+			}
+			c.starts[c.runs] = c.length;
+			c.symbols[c.runs] = symbol;
+			c.tags[c.runs] = (byte) tag;
+			c.runs++;
+			c.length++;
+		}
+		end++;
+		total += symbol;
+	}
+
+	private Chunk addChunk() {
+		Chunk ret = new Chunk();
+		ret.first = end;
+		ret.sum = total;
+		chunks.add(ret);
+
+		// the chunk just filled joins the others on the heap, and the
+		// oldest of them may have to go
+		while (true) {
+			int resident = chunks.size() - firstResident;
+			if (spilling && resident - 1 > MAX_RESIDENT) {
+				Chunk old = chunks.get(firstResident);
+				try {
+					old.spilled = spill.write(old.starts, old.symbols,
+							old.tags, old.runs);
+					old.starts = null;
+					old.symbols = null;
+					old.tags = null;
+					firstResident++;
+					continue;
+				} catch (IOException e) {
+					spilling = false;
+				}
+			}
+			if (!spilling && resident > MAX_UNSPILLED) {
+				// the entries must stay contiguous, so any chunks
+				// already spilled are forgotten before those on the heap
+				chunks.remove(0);
+				if (firstResident > 0) firstResident--;
+				start = chunks.get(0).first;
+				continue;
+			}
+			break;
+		}
+		return ret;
+	}
+
+	private Chunk findChunk(long index) {
+		int lo = 0;
+		int hi = chunks.size() - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (chunks.get(mid).first <= index) lo = mid;
+			else hi = mid - 1;
+		}
+		return chunks.get(lo);
+	}
+
+	// makes the chunk's runs available in cachedStarts, cachedSymbols,
+	// and cachedTags
+	private void load(Chunk c) {
+		if (c.starts != null) {
+			cachedStarts = c.starts;
+			cachedSymbols = c.symbols;
+			cachedTags = c.tags;
+			cached = null;
+		} else if (c != cached) {
+			int[] starts = new int[c.runs];
+			long[] symbols = new long[c.runs];
+			byte[] tags = new byte[c.runs];
+			spill.read(c.spilled, c.runs, starts, symbols, tags);
+			cached = c;
+			cachedStarts = starts;
+			cachedSymbols = symbols;
+			cachedTags = tags;
+		}
+	}
+
+	// returns the run holding the entry at the given offset in the chunk
+	// just loaded
+	private int findRun(Chunk c, int offs) {
+		int lo = 0;
+		int hi = c.runs - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (cachedStarts[mid] <= offs) lo = mid;
+			else hi = mid - 1;
+		}
+		return lo;
+	}
+}
@@ -9,8 +9,11 @@ import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.SubcircuitFactory;
 import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeEvent;
 import com.cburch.logisim.data.AttributeListener;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.StdAttr;
 
@@ -101,6 +104,22 @@ class SelectionItem implements AttributeListener, CircuitListener {
 		model.fireSelectionChanged(new ModelEvent());
 	}
 	
+	/** Returns the width of the values logged, as the component's data
+	 * width attribute gives it, or 0 if it has none, as a probe, whose
+	 * width is its wire's. The attribute is found by name, since several
+	 * components keep a "width" attribute of their own. */
+	public int getWidth() {
+		AttributeSet attrs = comp.getAttributeSet();
+		for (Attribute<?> attr : attrs.getAttributes()) {
+			String name = attr.getName();
+			if (name.equals("width") || name.equals("dataWidth")) {
+				Object val = attrs.getValue(attr);
+				if (val instanceof BitWidth) return ((BitWidth) val).getWidth();
+			}
+		}
+		return 0;
+	}
+	
 	public String toShortString() {
 		return shortDescriptor;
 	}
@@ -12,17 +12,22 @@ import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 
 import javax.swing.JScrollBar;
+import javax.swing.ToolTipManager;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.util.GraphicsUtil;
+import com.cburch.logisim.util.StringUtil;
 
 class TablePanel extends LogPanel {
 	private static final Font HEAD_FONT = new Font("Serif", Font.BOLD, 14);
 	private static final Font BODY_FONT = new Font("Serif", Font.PLAIN, 14);
 	private static final int COLUMN_SEP = 8;
 	private static final int HEADER_SEP = 4;
+	// only this many of the latest rows are shown, so that the table's
+	// height in pixels does not overflow
+	private static final int MAX_ROWS = Integer.MAX_VALUE / 128;
 	
 	private class MyListener implements ModelListener {
 		public void selectionChanged(ModelEvent event) {
@@ -48,13 +53,14 @@ class TablePanel extends LogPanel {
 		private void computeRowCount() {
 			Model model = getModel();
 			Selection sel = model.getSelection();
-			int rows = 0;
+			long rows = 0;
 			for (int i = sel.size() - 1; i >= 0; i--) {
-				int x = model.getValueLog(sel.get(i)).size();
+				long x = model.getValueLog(sel.get(i)).size();
 				if (x > rows) rows = x;
 			}
+			rows = Math.min(rows, MAX_ROWS);
 			if (rowCount != rows) {
-				rowCount = rows;
+				rowCount = (int) rows;
 				computePreferredSize();
 			}
 		}
@@ -122,6 +128,7 @@ class TablePanel extends LogPanel {
 		super(frame);
 		vsb = new VerticalScrollBar();
 		modelChanged(null, getModel());
+		ToolTipManager.sharedInstance().registerComponent(this);
 	}
 	
 	@Override
@@ -161,6 +168,17 @@ class TablePanel extends LogPanel {
 		return ret >= 0 && ret < rowCount ? ret : -1;
 	}
 	
+	@Override
+	public String getToolTipText(MouseEvent event) {
+		int row = getRow(event);
+		Model model = getModel();
+		if (row < 0 || model == null) return null;
+		long index = model.getEntryCount() - rowCount + row;
+		if (index < 0) return null;
+		return StringUtil.format(Strings.get("tableTickTip"),
+				"" + model.getEntryTick(index));
+	}
+	
 	@Override
 	public void paintComponent(Graphics g) {
 		super.paintComponent(g);
@@ -202,11 +220,13 @@ class TablePanel extends LogPanel {
 			SelectionItem item = sel.get(col);
 			ValueLog log = model.getValueLog(item);
 			int radix = item.getRadix();
-			int offs = rowCount - log.size();
-			y = y0 + Math.max(offs, firstRow) * cellHeight;
-			for (int row = Math.max(offs, firstRow); row < lastRow; row++) {
+			// the log may hold more than the rows shown
+			long offs = rowCount - log.size();
+			int row0 = (int) Math.max(offs, firstRow);
+			y = y0 + row0 * cellHeight;
+			for (int row = row0; row < lastRow; row++) {
 				Value val = log.get(row - offs);
-				String label = val.toDisplayString(radix);
+				String label = val == null ? "" : val.toDisplayString(radix);
 				int width = bodyMetric.stringWidth(label);
 				g.drawString(label, x + (cellWidth - width) / 2,
 						y + bodyMetric.getAscent());
@@ -0,0 +1,61 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import com.cburch.logisim.data.Value;
+
+/** Writes the log as it always has been: one line for each entry, with
+ * the values separated by tabs, each shown in the radix chosen for it,
+ * following an optional line naming them. */
+class TextEncoder extends LogEncoder {
+	private BufferedWriter out;
+	private Columns columns;
+	private StringBuilder line = new StringBuilder();
+
+	@Override
+	void open(OutputStream stream) {
+		out = new BufferedWriter(new OutputStreamWriter(stream), 1 << 16);
+	}
+
+	@Override
+	void writeHeader(Columns columns, Value[] values, boolean showHeader)
+			throws IOException {
+		this.columns = columns;
+		if (showHeader) {
+			line.setLength(0);
+			for (int i = 0; i < columns.size(); i++) {
+				if (i > 0) line.append('\t');
+				line.append(columns.getName(i));
+			}
+			writeLine();
+		}
+	}
+
+	@Override
+	void writeEntry(long time, Value[] values) throws IOException {
+		line.setLength(0);
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) line.append('\t');
+			if (values[i] != null) {
+				line.append(values[i].toDisplayString(columns.getRadix(i)));
+			}
+		}
+		writeLine();
+	}
+
+	private void writeLine() throws IOException {
+		out.append(line);
+		out.newLine();
+	}
+
+	@Override
+	void flush() throws IOException {
+		out.flush();
+	}
+}
@@ -3,44 +3,73 @@
 
 package com.cburch.logisim.gui.log;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
 
+/** The history of one value in the log. Each value is turned into a
+ * number and the numbers are kept in a RunLog, so a value that holds
+ * steady costs nothing per entry. A fully defined value is its own
+ * number, its bits, and its width goes into the run's tag. Any other
+ * value, tagged 0, is numbered in order of first appearance from 0, and
+ * -1 stands for no value; these are usually few, such as the value with
+ * all bits floating. */
 class ValueLog {
-	private static final int LOG_SIZE = 400;
-
-	private Value[] log;
-	private short curSize;
-	private short firstIndex;
-	
-	public ValueLog() {
-		log = new Value[LOG_SIZE];
-		curSize = 0;
-		firstIndex = 0;
+	private static final long NO_VALUE = -1;
+
+	private RunLog runs;
+	private ArrayList<Value> others = new ArrayList<Value>();
+	private HashMap<Value,Long> otherSymbols = new HashMap<Value,Long>();
+
+	public ValueLog(LogSpill spill) {
+		runs = new RunLog(spill);
 	}
-	
-	public int size() {
-		return curSize;
+
+	public long size() {
+		return runs.size();
 	}
-	
-	public Value get(int index) {
-		int i = firstIndex + index;
-		if (i >= LOG_SIZE) i -= LOG_SIZE;
-		return log[i];
+
+	public Value get(long index) {
+		return toValue(runs.get(index), runs.getTag(index));
 	}
-	
+
 	public Value getLast() {
-		return curSize < LOG_SIZE ? (curSize == 0 ? null : log[curSize - 1])
-				: (firstIndex == 0 ? log[curSize - 1] : log[firstIndex - 1]);
+		return runs.size() == 0 ? null
+				: toValue(runs.getLast(), runs.getLastTag());
 	}
-	
+
 	public void append(Value val) {
-		if (curSize < LOG_SIZE) {
-			log[curSize] = val;
-			curSize++;
+		if (val != null && val.getWidth() > 0 && val.isFullyDefined()) {
+			runs.append(val.toLongValue(), val.getWidth());
+		} else {
+			runs.append(toSymbol(val), 0);
+		}
+	}
+
+	private long toSymbol(Value val) {
+		if (val == null) return NO_VALUE;
+		synchronized (others) {
+			Long ret = otherSymbols.get(val);
+			if (ret == null) {
+				ret = Long.valueOf(others.size());
+				others.add(val);
+				otherSymbols.put(val, ret);
+			}
+			return ret.longValue();
+		}
+	}
+
+	private Value toValue(long symbol, int width) {
+		if (width > 0) {
+			return Value.createKnown(BitWidth.create(width), symbol);
+		} else if (symbol == NO_VALUE) {
+			return null;
 		} else {
-			log[firstIndex] = val;
-			firstIndex++;
-			if (firstIndex >= LOG_SIZE) firstIndex = 0;
+			synchronized (others) {
+				return others.get((int) symbol);
+			}
 		}
 	}
 }
@@ -0,0 +1,148 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Date;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.data.Value;
+
+/** Writes the log as a Value Change Dump (IEEE 1364), which waveform
+ * viewers such as GTKWave read. Each tick of the clock is one nanosecond,
+ * and each entry records only the values that changed. Floating values are
+ * written as z and errors as x.
+ *
+ * A dump declares its signals once, at the top, so a file holds only one
+ * selection: when the selection changes, the file is begun again. */
+class VcdEncoder extends LogEncoder {
+	private BufferedWriter out;
+	private String[] ids;
+	private int[] widths;
+	private Value[] last;
+	private long lastTime;
+	private long timeOffset;
+	private boolean dumped;
+	private StringBuilder buf = new StringBuilder();
+
+	@Override
+	boolean canAppend() {
+		return false;
+	}
+
+	@Override
+	void open(OutputStream stream) {
+		out = new BufferedWriter(new OutputStreamWriter(stream), 1 << 16);
+	}
+
+	@Override
+	void writeHeader(Columns columns, Value[] values, boolean showHeader)
+			throws IOException {
+		int n = columns.size();
+		ids = new String[n];
+		widths = new int[n];
+		last = new Value[n];
+		lastTime = 0;
+		timeOffset = 0;
+		dumped = false;
+
+		out.write("$date\n\t" + new Date() + "\n$end\n");
+		out.write("$version\n\tLogisim " + Main.VERSION_NAME + "\n$end\n");
+		out.write("$timescale 1ns $end\n");
+		out.write("$scope module logisim $end\n");
+		for (int i = 0; i < n; i++) {
+			ids[i] = getId(i);
+			// a component that doesn't give its width (such as a probe)
+			// is declared as wide as its first value
+			widths[i] = columns.getWidth(i);
+			if (widths[i] <= 0) {
+				Value v = i < values.length ? values[i] : null;
+				widths[i] = v == null ? 1 : Math.max(1, v.getWidth());
+			}
+			out.write("$var wire " + widths[i] + " " + ids[i] + " "
+					+ getReference(columns.getName(i)) + " $end\n");
+		}
+		out.write("$upscope $end\n");
+		out.write("$enddefinitions $end\n");
+	}
+
+	@Override
+	void writeEntry(long time, Value[] values) throws IOException {
+		// the tick count starts over when the simulation is reset, but a
+		// dump's times must never go backwards
+		long t = time + timeOffset;
+		if (t < lastTime) {
+			timeOffset += lastTime - t;
+			t = lastTime;
+		}
+
+		buf.setLength(0);
+		if (!dumped || t != lastTime) {
+			buf.append('#').append(t).append('\n');
+		}
+		if (!dumped) buf.append("$dumpvars\n");
+		int n = Math.min(values.length, ids.length);
+		for (int i = 0; i < n; i++) {
+			Value v = values[i];
+			if (v == null || (dumped && v.equals(last[i]))) continue;
+			last[i] = v;
+			appendValue(buf, v, widths[i]);
+			if (widths[i] > 1) buf.append(' ');
+			buf.append(ids[i]).append('\n');
+		}
+		if (!dumped) buf.append("$end\n");
+		out.append(buf);
+		dumped = true;
+		lastTime = t;
+	}
+
+	@Override
+	void flush() throws IOException {
+		out.flush();
+	}
+
+	private static void appendValue(StringBuilder buf, Value v, int width) {
+		if (width == 1) {
+			buf.append(getBit(v.get(0)));
+			return;
+		}
+		buf.append('b');
+		if (v.isFullyDefined() && v.getWidth() == width) {
+			long bits = v.toLongValue();
+			if (width < 64) bits &= ~(-1L << width);
+			buf.append(Long.toBinaryString(bits));
+		} else {
+			// bits beyond a value narrower than declared come out as x
+			for (int i = width - 1; i >= 0; i--) {
+				buf.append(getBit(v.get(i)));
+			}
+		}
+	}
+
+	private static char getBit(Value bit) {
+		if (bit == Value.TRUE) return '1';
+		if (bit == Value.FALSE) return '0';
+		if (bit == Value.UNKNOWN) return 'z';
+		return 'x';
+	}
+
+	// identifiers are drawn from the printable characters
+	private static String getId(int index) {
+		StringBuilder ret = new StringBuilder();
+		do {
+			ret.append((char) ('!' + index % 94));
+			index = index / 94 - 1;
+		} while (index >= 0);
+		return ret.toString();
+	}
+
+	// a reference may not contain spaces
+	private static String getReference(String name) {
+		String ret = name.replace(' ', '_').replace('\t', '_');
+		return ret.length() == 0 ? "_" : ret;
+	}
+}
@@ -337,7 +337,8 @@ public class Canvas extends JPanel
 			paintThread.requestRepaint();
 		}
 		public void tickCompleted(SimulatorEvent e) {
-			waitForRepaintDone();
+			// in turbo mode, the repaints are what is throttled instead
+			if (!e.getSource().isTurbo()) waitForRepaintDone();
 		}
 		public void simulatorStateChanged(SimulatorEvent e) { }
 
@@ -6,6 +6,7 @@ package com.cburch.logisim.gui.main;
 import com.cburch.logisim.circuit.Simulator;
 import com.cburch.logisim.circuit.SimulatorEvent;
 import com.cburch.logisim.circuit.SimulatorListener;
+import com.cburch.logisim.circuit.SimulatorStatistics;
 
 class TickCounter implements SimulatorListener {
 	private static final int QUEUE_LENGTH = 1000;
@@ -15,6 +16,7 @@ class TickCounter implements SimulatorListener {
 	private int queueStart;
 	private int queueSize;
 	private double tickFrequency;
+	private Simulator turboSim = null;
 	
 	public TickCounter() {
 		queueTimes = new long[QUEUE_LENGTH];
@@ -24,6 +26,7 @@ class TickCounter implements SimulatorListener {
 
 	public void clear() {
 		queueSize = 0;
+		turboSim = null;
 	}
 	
 	public void propagationCompleted(SimulatorEvent e) {
@@ -39,7 +42,10 @@ class TickCounter implements SimulatorListener {
 
 	public void tickCompleted(SimulatorEvent e) {
 		Simulator sim = e.getSource();
-		if (!sim.isTicking()) {
+		// in turbo mode, an event stands for many ticks, so the rate comes
+		// from the simulator's own measurements instead
+		turboSim = sim.isTicking() && sim.isTurbo() ? sim : null;
+		if (!sim.isTicking() || turboSim != null) {
 			queueSize = 0;
 		} else {
 			double freq = sim.getTickFrequency();
@@ -81,6 +87,10 @@ class TickCounter implements SimulatorListener {
 	}
 
 	public String getTickRate() {
+		Simulator sim = turboSim;
+		if (sim != null) {
+			return getTurboRate(sim);
+		}
 		int size = queueSize;
 		if (size <= 1) {
 			return "";
@@ -132,6 +142,26 @@ class TickCounter implements SimulatorListener {
 		}
 	}
 	
+	private String getTurboRate(Simulator sim) {
+		if (!sim.isTicking() || !sim.isTurbo()) return "";
+		SimulatorStatistics stats = sim.getStatistics();
+		double rate = stats.getTickRate();
+		if (rate <= 0) return "";
+		String ret;
+		if (rate >= 1000000.0) {
+			ret = Strings.get("tickRateMHz", roundString(rate / 1000000.0,
+					rate / 1000000.0));
+		} else if (rate >= 1000.0) {
+			ret = Strings.get("tickRateKHz", roundString(rate / 1000.0,
+					rate / 1000.0));
+		} else {
+			ret = Strings.get("tickRateHz", roundString(rate, rate));
+		}
+		long events = Math.round(stats.getEventRate());
+		return Strings.get("tickRateEvents", ret,
+				String.format("%,d", Long.valueOf(events)));
+	}
+	
 	private String roundString(double val, double min) {
 		// round so we have only three significant digits
 		int i = 0; // invariant: a = 10^i
@@ -44,7 +44,9 @@ class MenuSimulate extends Menu {
 
 		public void localeChanged() {
 			double f = freq;
-			if (f < 1000) {
+			if (f == Simulator.TURBO_FREQUENCY) {
+				setText(Strings.get("simulateTickTurboItem"));
+			} else if (f < 1000) {
 				String hzStr;
 				if (Math.abs(f - Math.round(f)) < 0.0001) {
 					hzStr = "" + (int) Math.round(f);
@@ -152,6 +154,7 @@ class MenuSimulate extends Menu {
 	private MenuItemImpl tickOnce;
 	private JMenu tickFreq = new JMenu();
 	private TickFrequencyChoice[] tickFreqs = {
+		new TickFrequencyChoice(Simulator.TURBO_FREQUENCY),
 		new TickFrequencyChoice(4096),
 		new TickFrequencyChoice(2048),
 		new TickFrequencyChoice(1024),
@@ -288,7 +291,8 @@ class MenuSimulate extends Menu {
 		if (currentSim != oldSim) {
 			double freq = currentSim == null ? 1.0 : currentSim.getTickFrequency();
 			for (int i = 0; i < tickFreqs.length; i++) {
-				tickFreqs[i].setSelected(Math.abs(tickFreqs[i].freq - freq) < 0.001);
+				double f = tickFreqs[i].freq;
+				tickFreqs[i].setSelected(f == freq || Math.abs(f - freq) < 0.001);
 			}
 
 			if (oldSim != null) oldSim.removeSimulatorListener(myListener);
@@ -16,6 +16,10 @@ import com.cburch.logisim.prefs.AppPreferences;
 class ExperimentalOptions extends OptionsPanel {
 	private JLabel accelRestart = new JLabel();
 	private PrefOptionList accel;
+	private PrefOptionList simQueue;
+	private PrefBoolean simParallel;
+	private PrefBoolean simCompiled;
+	private PrefBoolean logSpill;
 
 	public ExperimentalOptions(PreferencesFrame window) {
 		super(window);
@@ -28,6 +32,19 @@ class ExperimentalOptions extends OptionsPanel {
 				new PrefOption(AppPreferences.ACCEL_D3D, Strings.getter("accelD3D")),
 			});
 		
+		simQueue = new PrefOptionList(AppPreferences.SIM_EVENT_QUEUE,
+			Strings.getter("simQueueLabel"), new PrefOption[] {
+				new PrefOption(AppPreferences.SIM_QUEUE_WHEEL, Strings.getter("simQueueWheel")),
+				new PrefOption(AppPreferences.SIM_QUEUE_HEAP, Strings.getter("simQueueHeap")),
+			});
+		
+		simParallel = new PrefBoolean(AppPreferences.SIM_PARALLEL,
+				Strings.getter("simParallelLabel"));
+		simCompiled = new PrefBoolean(AppPreferences.SIM_COMPILED,
+				Strings.getter("simCompiledLabel"));
+		logSpill = new PrefBoolean(AppPreferences.LOG_SPILL,
+				Strings.getter("logSpillLabel"));
+		
 		JPanel accelPanel = new JPanel(new BorderLayout());
 		accelPanel.add(accel.getJLabel(), BorderLayout.LINE_START);
 		accelPanel.add(accel.getJComboBox(), BorderLayout.CENTER);
@@ -36,9 +53,21 @@ class ExperimentalOptions extends OptionsPanel {
 		JPanel accelPanel2 = new JPanel();
 		accelPanel2.add(accelPanel);
 		
+		JPanel simPanel = new JPanel(new BorderLayout());
+		simPanel.add(simQueue.getJLabel(), BorderLayout.LINE_START);
+		simPanel.add(simQueue.getJComboBox(), BorderLayout.CENTER);
+		JPanel simChecks = new JPanel(new BorderLayout());
+		simChecks.add(simParallel, BorderLayout.PAGE_START);
+		simChecks.add(simCompiled, BorderLayout.CENTER);
+		simChecks.add(logSpill, BorderLayout.PAGE_END);
+		simPanel.add(simChecks, BorderLayout.PAGE_END);
+		JPanel simPanel2 = new JPanel();
+		simPanel2.add(simPanel);
+		
 		setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
 		add(Box.createGlue());
 		add(accelPanel2);
+		add(simPanel2);
 		add(Box.createGlue());
 	}
 
@@ -55,6 +84,10 @@ class ExperimentalOptions extends OptionsPanel {
 	@Override
 	public void localeChanged() {
 		accel.localeChanged();
+		simQueue.localeChanged();
+		simParallel.localeChanged();
+		simCompiled.localeChanged();
+		logSpill.localeChanged();
 		accelRestart.setText(Strings.get("accelRestartLabel"));
 	}
 }
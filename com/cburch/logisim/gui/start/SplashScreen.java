@@ -8,6 +8,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -16,7 +17,11 @@ import javax.swing.JProgressBar;
 import javax.swing.JWindow;
 import javax.swing.SwingUtilities;
 
-public class SplashScreen extends JWindow implements ActionListener {
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.util.StringUtil;
+
+public class SplashScreen extends JWindow
+		implements ActionListener, Loader.ProgressListener {
 	public static final int LIBRARIES = 0;
 	public static final int TEMPLATE_CREATE = 1;
 	public static final int TEMPLATE_OPEN = 2;
@@ -103,6 +108,25 @@ public class SplashScreen extends JWindow implements ActionListener {
 		}
 	}
 	
+	// fills the part of the bar between loading the file and creating the
+	// project as the libraries it refers to are read
+	public void libraryProgress(File file, int loaded, int total) {
+		Marker[] ms = markers;
+		if (ms == null || total <= 0) return;
+		int start = ms[FILE_LOAD].count;
+		int end = ms[PROJECT_CREATE].count;
+		final int value = start + (int) ((long) (end - start) * loaded / total);
+		final String message = StringUtil.format(Strings.get("progressLibraryLoad"),
+				"" + loaded, "" + total);
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				if (markers == null) return;
+				progress.setString(message);
+				progress.setValue(value);
+			}
+		});
+	}
+	
 	@Override
 	public void setVisible(boolean value) {
 		if (value) {
@@ -82,6 +82,10 @@ public class Startup {
 	private File loadFile;
 	private HashMap<File,File> substitutions = new HashMap<File,File>();
 	private int ttyFormat = 0;
+	private File batchFile = null;
+	private int batchThreads = 0;
+	private long tickLimit = 0;
+	private long timeout = 0;
 	
 	// from other sources
 	private boolean initialized = false;
@@ -105,6 +109,24 @@ public class Startup {
 		return ttyFormat;
 	}
 	
+	File getBatchFile() {
+		return batchFile;
+	}
+	
+	int getBatchThreads() {
+		return batchThreads;
+	}
+	
+	long getTickLimit() {
+		return tickLimit;
+	}
+	
+	/** Returns the time each simulation may run, in milliseconds, or 0
+	 * if there is no limit. */
+	long getTimeout() {
+		return timeout;
+	}
+	
 	Map<File,File> getSubstitutions() {
 		return Collections.unmodifiableMap(substitutions);
 	}
@@ -315,6 +337,35 @@ public class Startup {
 					System.err.println(Strings.get("loadNeedsFileError")); //OK
 					return null;
 				}
+			} else if (arg.equals("-batch")) {
+				if (i + 1 < args.length) {
+					i++;
+					ret.batchFile = new File(args[i]);
+				} else {
+					System.err.println(Strings.get("batchNeedsFileError")); //OK
+					return null;
+				}
+			} else if (arg.equals("-threads") || arg.equals("-ticks")
+					|| arg.equals("-timeout")) {
+				double val = -1;
+				if (i + 1 < args.length) {
+					i++;
+					try {
+						val = Double.parseDouble(args[i]);
+					} catch (NumberFormatException e) { }
+				}
+				if (!(val > 0)) {
+					System.err.println(StringUtil.format( //OK
+							Strings.get("argPositiveNumberError"), arg));
+					return null;
+				}
+				if (arg.equals("-threads")) {
+					ret.batchThreads = (int) Math.min(val, 1024);
+				} else if (arg.equals("-ticks")) {
+					ret.tickLimit = (long) Math.ceil(val);
+				} else {
+					ret.timeout = Math.max(1, (long) (val * 1000));
+				}
 			} else if (arg.equals("-empty")) {
 				if (ret.templFile != null || ret.templEmpty || ret.templPlain) {
 					System.err.println(Strings.get("argOneTemplateError")); //OK
@@ -392,6 +443,16 @@ public class Startup {
 			System.err.println(Strings.get("loadNeedsTtyError")); //OK
 			return null;
 		}
+		if (ret.batchFile != null) {
+			if (!ret.isTty) {
+				System.err.println(Strings.get("batchNeedsTtyError")); //OK
+				return null;
+			}
+			if ((ret.ttyFormat & TtyInterface.FORMAT_TTY) != 0) {
+				System.err.println(Strings.get("batchTtyFormatError")); //OK
+				return null;
+			}
+		}
 		return ret;
 	}
 
@@ -400,6 +461,7 @@ public class Startup {
 		System.err.println(); //OK
 		System.err.println(Strings.get("argOptionHeader")); //OK
 		System.err.println("   " + Strings.get("argAccentsOption")); //OK
+		System.err.println("   " + Strings.get("argBatchOption")); //OK
 		System.err.println("   " + Strings.get("argClearOption")); //OK
 		System.err.println("   " + Strings.get("argEmptyOption")); //OK
 		System.err.println("   " + Strings.get("argGatesOption")); //OK
@@ -410,6 +472,9 @@ public class Startup {
 		System.err.println("   " + Strings.get("argPlainOption")); //OK
 		System.err.println("   " + Strings.get("argSubOption")); //OK
 		System.err.println("   " + Strings.get("argTemplateOption")); //OK
+		System.err.println("   " + Strings.get("argThreadsOption")); //OK
+		System.err.println("   " + Strings.get("argTicksOption")); //OK
+		System.err.println("   " + Strings.get("argTimeoutOption")); //OK
 		System.err.println("   " + Strings.get("argTtyOption")); //OK
 		System.err.println("   " + Strings.get("argVersionOption")); //OK
 		System.exit(-1);
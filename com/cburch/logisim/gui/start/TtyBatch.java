@@ -0,0 +1,262 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.start;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.util.StringUtil;
+
+/** Runs many simulations of the same circuit for the "-batch" option,
+ * each in its own CircuitState, several at once on a pool of threads.
+ *
+ * Each line of the batch file describes one run: the image file to load
+ * into the circuit's RAMs, if it is not the one given by "-load", and
+ * values for input pins, written as label=value. Blank lines and lines
+ * beginning with # are skipped. Each run's output - a line repeating its
+ * line of the file, then what a single simulation would print - is
+ * collected in memory and written out in the order of the file, so that
+ * the runs' outputs never interleave.
+ *
+ * The file is loaded only once. Before the runs begin, one state is
+ * propagated, which computes what the runs share - each circuit's bundle
+ * map, and its compiled netlist if compiled evaluation is on - so that
+ * the runs only read it. */
+class TtyBatch {
+	// guards the creation of states, which register themselves with the
+	// circuit and the project's options
+	private static final Object createLock = new Object();
+
+	private static class Run implements Callable<Result> {
+		private String text;
+		private File image;
+		private Instance[] pins;
+		private Value[] values;
+		private Startup args;
+		private Project proj;
+		private Circuit circuit;
+		private ArrayList<Instance> outputPins;
+		private Instance haltPin;
+
+		public Result call() {
+			StringWriter buf = new StringWriter();
+			PrintWriter out = new PrintWriter(buf);
+			out.println("# " + text);
+			int code;
+			try {
+				CircuitState state = createState(proj, circuit);
+				Propagator prop = state.getPropagator();
+				prop.propagate();
+				if (image != null && !TtyInterface.loadRam(state, image)) {
+					throw new IOException(Strings.get("loadNoRamError"));
+				}
+				if (pins.length > 0) {
+					for (int i = 0; i < pins.length; i++) {
+						InstanceState pinState = state.getInstanceState(pins[i]);
+						Pin.FACTORY.setValue(pinState, values[i]);
+						// fireInvalidated would mark the pin dirty in every
+						// state of the circuit, including other runs'
+						state.markComponentAsDirty(Instance.getComponentFor(pins[i]));
+					}
+					prop.propagate();
+				}
+				code = TtyInterface.runSimulation(state, outputPins, haltPin,
+						args.getTtyFormat(), args.getTickLimit(), args.getTimeout(), out);
+			} catch (IOException e) {
+				out.println(StringUtil.format(Strings.get("batchRunError"),
+						e.getMessage()));
+				code = -1;
+			}
+			out.flush();
+			return new Result(buf.toString(), code);
+		}
+	}
+
+	private static class Result {
+		private String output;
+		private int code;
+
+		Result(String output, int code) {
+			this.output = output;
+			this.code = code;
+		}
+	}
+
+	/** Performs all the runs in the batch file, returning 0 if every run
+	 * was halted by its halt pin, and otherwise the code with which the
+	 * first that was not ended. */
+	static int run(Startup args, Project proj, Circuit circuit,
+			Map<Instance,String> pinNames, ArrayList<Instance> outputPins,
+			Instance haltPin) {
+		HashMap<String,Instance> inputPins = new HashMap<String,Instance>();
+		for (Map.Entry<Instance,String> entry : pinNames.entrySet()) {
+			Instance pin = entry.getKey();
+			if (Pin.FACTORY.isInputPin(pin) && !inputPins.containsKey(entry.getValue())) {
+				inputPins.put(entry.getValue(), pin);
+			}
+		}
+
+		List<Run> runs;
+		try {
+			runs = readBatch(args.getBatchFile(), args.getLoadFile(), inputPins);
+		} catch (IOException e) {
+			System.err.println(e.getMessage()); //OK
+			return -1;
+		}
+		for (Run run : runs) {
+			run.args = args;
+			run.proj = proj;
+			run.circuit = circuit;
+			run.outputPins = outputPins;
+			run.haltPin = haltPin;
+		}
+
+		createState(proj, circuit).getPropagator().propagate();
+
+		int threads = args.getBatchThreads();
+		if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+		threads = Math.max(1, Math.min(threads, runs.size()));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<Result>> results = new ArrayList<Future<Result>>();
+		for (Run run : runs) {
+			results.add(pool.submit(run));
+		}
+
+		int ret = 0;
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+		try {
+			for (Future<Result> future : results) {
+				Result result;
+				try {
+					result = future.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					result = new Result(StringUtil.format(Strings.get("batchRunError"),
+							cause.toString()) + "\n", -1);
+				}
+				out.write(result.output);
+				if (ret == 0) ret = result.code;
+			}
+			out.flush();
+		} catch (IOException e) {
+			ret = -1;
+		} catch (InterruptedException e) {
+			ret = -1;
+		}
+		pool.shutdownNow();
+		return ret;
+	}
+
+	private static CircuitState createState(Project proj, Circuit circuit) {
+		synchronized (createLock) {
+			CircuitState ret = new CircuitState(proj, circuit);
+			// the runs themselves keep the processors busy
+			ret.getPropagator().setParallel(false);
+			return ret;
+		}
+	}
+
+	private static List<Run> readBatch(File file, File defaultImage,
+			Map<String,Instance> inputPins) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		ArrayList<Run> ret = new ArrayList<Run>();
+		BufferedReader in;
+		try {
+			in = new BufferedReader(new FileReader(file));
+		} catch (IOException e) {
+			throw new IOException(StringUtil.format(Strings.get("batchReadError"),
+					e.getMessage()));
+		}
+		try {
+			int lineNumber = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) continue;
+				try {
+					ret.add(parseRun(line, dir, defaultImage, inputPins));
+				} catch (IOException e) {
+					throw new IOException(StringUtil.format(Strings.get("batchLineError"),
+							file.getName(), "" + lineNumber, e.getMessage()));
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return ret;
+	}
+
+	private static Run parseRun(String line, File dir, File defaultImage,
+			Map<String,Instance> inputPins) throws IOException {
+		Run ret = new Run();
+		ret.text = line;
+		ArrayList<Instance> pins = new ArrayList<Instance>();
+		ArrayList<Value> values = new ArrayList<Value>();
+		StringTokenizer toks = new StringTokenizer(line);
+		while (toks.hasMoreTokens()) {
+			String tok = toks.nextToken();
+			int eq = tok.indexOf('=');
+			if (eq < 0) {
+				if (ret.image != null) {
+					throw new IOException(Strings.get("batchImageError"));
+				}
+				File image = new File(tok);
+				ret.image = image.isAbsolute() ? image : new File(dir, tok);
+				continue;
+			}
+			String name = tok.substring(0, eq);
+			String text = tok.substring(eq + 1);
+			Instance pin = inputPins.get(name);
+			if (pin == null) {
+				throw new IOException(StringUtil.format(Strings.get("batchPinError"), name));
+			}
+			BitWidth width = pin.getAttributeValue(StdAttr.WIDTH);
+			try {
+				long val;
+				if (text.startsWith("0x") || text.startsWith("0X")) {
+					val = Long.parseLong(text.substring(2), 16);
+				} else {
+					val = Long.parseLong(text);
+				}
+				values.add(Value.createKnown(width, val));
+			} catch (NumberFormatException e) {
+				throw new IOException(StringUtil.format(Strings.get("batchValueError"),
+						text, name));
+			}
+			pins.add(pin);
+		}
+		if (ret.image == null) ret.image = defaultImage;
+		ret.pins = pins.toArray(new Instance[pins.size()]);
+		ret.values = values.toArray(new Value[values.size()]);
+		return ret;
+	}
+}
@@ -6,6 +6,8 @@ package com.cburch.logisim.gui.start;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Map;
@@ -37,9 +39,15 @@ public class TtyInterface {
 	public static final int FORMAT_HALT = 8;
 	public static final int FORMAT_STATISTICS = 16;
 
+	// the codes with which a simulation ends, and the program exits
+	static final int EXIT_HALTED = 0;
+	static final int EXIT_OSCILLATING = 1;
+	static final int EXIT_TICK_LIMIT = 2;
+	static final int EXIT_TIMEOUT = 3;
+
 	private static boolean lastIsNewline = true;
 	
-	public static void sendFromTty(char c) {
+	public static synchronized void sendFromTty(char c) {
 		lastIsNewline = c == '\n';
 		System.out.print(c); //OK
 	}
@@ -88,6 +96,10 @@ public class TtyInterface {
 			}
 		}
 		
+		if (args.getBatchFile() != null) {
+			System.exit(TtyBatch.run(args, proj, circuit, pinNames, outputPins, haltPin));
+		}
+		
 		CircuitState circState = new CircuitState(proj, circuit);
 		// we have to do our initial propagation before the simulation starts -
 		// it's necessary to populate the circuit with substates.
@@ -105,7 +117,13 @@ public class TtyInterface {
 			}
 		}
 		int ttyFormat = args.getTtyFormat();
-		int simCode = runSimulation(circState, outputPins, haltPin, ttyFormat);
+		// with the TTY's output going straight to System.out, each line
+		// of ours must be flushed to keep them in order
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out),
+				(ttyFormat & FORMAT_TTY) != 0);
+		int simCode = runSimulation(circState, outputPins, haltPin, ttyFormat,
+				args.getTickLimit(), args.getTimeout(), out);
+		out.flush();
 		System.exit(simCode);
 	}
 	
@@ -149,7 +167,7 @@ public class TtyInterface {
 		return digits;
 	}
 	
-	private static boolean loadRam(CircuitState circState, File loadFile)
+	static boolean loadRam(CircuitState circState, File loadFile)
 			throws IOException {
 		if (loadFile == null) return false;
 		
@@ -191,8 +209,12 @@ public class TtyInterface {
 		return found;
 	}
 	
-	private static int runSimulation(CircuitState circState,
-			ArrayList<Instance> outputPins, Instance haltPin, int format) {
+	/** Runs the simulation until the halt pin is set, the circuit
+	 * oscillates, or the tick limit or timeout (if not 0) is reached,
+	 * returning which of these happened. */
+	static int runSimulation(CircuitState circState,
+			ArrayList<Instance> outputPins, Instance haltPin, int format,
+			long tickLimit, long timeoutMillis, PrintWriter out) {
 		boolean showTable = (format & FORMAT_TABLE) != 0;
 		boolean showSpeed = (format & FORMAT_SPEED) != 0;
 		boolean showTty = (format & FORMAT_TTY) != 0;
@@ -215,33 +237,53 @@ public class TtyInterface {
 			}
 		}
 
+		// the states of the pins are fetched once, and the values shown
+		// go back and forth between two arrays
+		InstanceState haltState = null;
+		ArrayList<InstanceState> tableStates = new ArrayList<InstanceState>();
+		for (Instance pin : outputPins) {
+			if (pin == haltPin) {
+				haltState = circState.getInstanceState(pin);
+			} else {
+				tableStates.add(circState.getInstanceState(pin));
+			}
+		}
+		InstanceState[] tablePins = tableStates.toArray(new InstanceState[tableStates.size()]);
+		Value[] curOutputs = new Value[tablePins.length];
+		Value[] prevOutputs = new Value[tablePins.length];
+		boolean first = true;
+
 		int retCode;
 		long tickCount = 0;
 		long start = System.currentTimeMillis();
-		boolean halted = false;
-		ArrayList<Value> prevOutputs = null;
+		long deadline = System.nanoTime() + timeoutMillis * 1000000L;
 		Propagator prop = circState.getPropagator();
 		while (true) {
-			ArrayList<Value> curOutputs = new ArrayList<Value>();
-			for (Instance pin : outputPins) {
-				InstanceState pinState = circState.getInstanceState(pin);
-				Value val = Pin.FACTORY.getValue(pinState);
-				if (pin == haltPin) {
-					halted |= val.equals(Value.TRUE);
-				} else if (showTable) {
-					curOutputs.add(val);
-				}
-			}
 			if (showTable) {
-				displayTableRow(prevOutputs, curOutputs);
+				for (int i = 0; i < tablePins.length; i++) {
+					curOutputs[i] = Pin.FACTORY.getValue(tablePins[i]);
+				}
+				displayTableRow(first ? null : prevOutputs, curOutputs, out);
+				Value[] t = prevOutputs;
+				prevOutputs = curOutputs;
+				curOutputs = t;
+				first = false;
 			}
 			
-			if (halted) {
-				retCode = 0; // normal exit
+			if (haltState != null && Pin.FACTORY.getValue(haltState).equals(Value.TRUE)) {
+				retCode = EXIT_HALTED; // normal exit
 				break;
 			}
 			if (prop.isOscillating()) {
-				retCode = 1; // abnormal exit
+				retCode = EXIT_OSCILLATING; // abnormal exit
+				break;
+			}
+			if (tickLimit > 0 && tickCount >= tickLimit) {
+				retCode = EXIT_TICK_LIMIT;
+				break;
+			}
+			if (timeoutMillis > 0 && System.nanoTime() - deadline >= 0) {
+				retCode = EXIT_TIMEOUT;
 				break;
 			}
 			if (keyboardStates != null) {
@@ -252,35 +294,38 @@ public class TtyInterface {
 					}
 				}
 			}
-			prevOutputs = curOutputs;
 			tickCount++;
 			prop.tick();
 			prop.propagate();
 		}
 		long elapse = System.currentTimeMillis() - start;
 		if (showTty) ensureLineTerminated();
-		if (showHalt || retCode != 0) {
-			if (retCode == 0) {
-				System.out.println(Strings.get("ttyHaltReasonPin")); //OK
-			} else if (retCode == 1) {
-				System.out.println(Strings.get("ttyHaltReasonOscillation")); //OK
+		if (showHalt || retCode != EXIT_HALTED) {
+			if (retCode == EXIT_HALTED) {
+				out.println(Strings.get("ttyHaltReasonPin"));
+			} else if (retCode == EXIT_OSCILLATING) {
+				out.println(Strings.get("ttyHaltReasonOscillation"));
+			} else if (retCode == EXIT_TICK_LIMIT) {
+				out.println(Strings.get("ttyHaltReasonTicks"));
+			} else if (retCode == EXIT_TIMEOUT) {
+				out.println(Strings.get("ttyHaltReasonTimeout"));
 			}
 		}
 		if (showSpeed) {
-			displaySpeed(tickCount, elapse);
+			displaySpeed(tickCount, elapse, out);
 		}
 		return retCode;
 	}
 	
-	private static void displayTableRow(ArrayList<Value> prevOutputs,
-			ArrayList<Value> curOutputs) {
+	private static void displayTableRow(Value[] prevOutputs,
+			Value[] curOutputs, PrintWriter out) {
 		boolean shouldPrint = false;
 		if (prevOutputs == null) {
 			shouldPrint = true;
 		} else {
-			for (int i = 0; i < curOutputs.size(); i++) {
-				Value a = prevOutputs.get(i);
-				Value b = curOutputs.get(i);
+			for (int i = 0; i < curOutputs.length; i++) {
+				Value a = prevOutputs[i];
+				Value b = curOutputs[i];
 				if (!a.equals(b)) {
 					shouldPrint = true;
 					break;
@@ -288,15 +333,15 @@ public class TtyInterface {
 			}
 		}
 		if (shouldPrint) {
-			for (int i = 0; i < curOutputs.size(); i++) {
-				if (i != 0) System.out.print("\t"); //OK
-				System.out.print(curOutputs.get(i)); //OK
+			for (int i = 0; i < curOutputs.length; i++) {
+				if (i != 0) out.print("\t");
+				out.print(curOutputs[i]);
 			}
-			System.out.println(); //OK
+			out.println();
 		}
 	}
 	
-	private static void displaySpeed(long tickCount, long elapse) {
+	private static void displaySpeed(long tickCount, long elapse, PrintWriter out) {
 		double hertz = (double) tickCount / elapse * 1000.0;
 		double precision;
 		if (hertz >= 100) precision = 1.0;
@@ -306,7 +351,7 @@ public class TtyInterface {
 		else precision = 0.0000001;
 		hertz = (int) (hertz / precision) * precision;
 		String hertzStr = hertz == (int) hertz ? "" + (int) hertz : "" + hertz;
-		System.out.println(StringUtil.format(Strings.get("ttySpeedMsg"), //OK
+		out.println(StringUtil.format(Strings.get("ttySpeedMsg"),
 				hertzStr, "" + tickCount, "" + elapse));
 	}
 
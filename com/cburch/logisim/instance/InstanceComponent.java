@@ -11,6 +11,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.PortSlots;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.ComponentEvent;
@@ -45,6 +46,7 @@ class InstanceComponent implements Component, AttributeListener, ToolTipMaker {
 	private AttributeSet attrs;
 	private boolean attrListenRequested;
 	private InstanceTextField textField;
+	private volatile PortSlots portSlots = null;
 	
 	InstanceComponent(InstanceFactory factory, Location loc,
 			AttributeSet attrs) {
@@ -247,6 +249,17 @@ class InstanceComponent implements Component, AttributeListener, ToolTipMaker {
 		factory.propagate(state.getInstanceState(this));
 	}
 
+	// the slots of the ends in the circuit's point numbering, which last
+	// until its wiring changes
+	PortSlots getPortSlots(CircuitState state) {
+		PortSlots ret = portSlots;
+		if (ret == null || !state.isCurrent(ret)) {
+			ret = state.getPortSlots(this);
+			portSlots = ret;
+		}
+		return ret;
+	}
+
 	//
 	// drawing methods
 	//
@@ -5,6 +5,7 @@ package com.cburch.logisim.instance;
 
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.PortSlots;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.EndData;
 import com.cburch.logisim.data.Attribute;
@@ -61,6 +62,10 @@ class InstanceStateImpl implements InstanceState {
 	}
 	
 	public Value getPort(int portIndex) {
+		if (component instanceof InstanceComponent) {
+			PortSlots slots = ((InstanceComponent) component).getPortSlots(circuitState);
+			return circuitState.getValue(slots, portIndex);
+		}
 		EndData data = component.getEnd(portIndex);
 		return circuitState.getValue(data.getLocation());
 	}
@@ -72,6 +77,11 @@ class InstanceStateImpl implements InstanceState {
 	}
 	
 	public void setPort(int portIndex, Value value, int delay) {
+		if (component instanceof InstanceComponent) {
+			PortSlots slots = ((InstanceComponent) component).getPortSlots(circuitState);
+			circuitState.setValue(slots, portIndex, value, component, delay);
+			return;
+		}
 		EndData end = component.getEnd(portIndex);
 		circuitState.setValue(end.getLocation(), value, component, delay);
 	}
@@ -120,6 +120,20 @@ public class AppPreferences {
 		= create(new PrefMonitorStringOpts("graphicsAcceleration",
 				new String[] { ACCEL_DEFAULT, ACCEL_NONE, ACCEL_OPENGL, ACCEL_D3D },
 				ACCEL_DEFAULT));
+
+	public static final String SIM_QUEUE_WHEEL = "wheel";
+	public static final String SIM_QUEUE_HEAP = "heap";
+
+	public static final PrefMonitor<String> SIM_EVENT_QUEUE
+		= create(new PrefMonitorStringOpts("simEventQueue",
+				new String[] { SIM_QUEUE_WHEEL, SIM_QUEUE_HEAP },
+				SIM_QUEUE_WHEEL));
+	public static final PrefMonitor<Boolean> SIM_PARALLEL
+		= create(new PrefMonitorBoolean("simParallel", false));
+	public static final PrefMonitor<Boolean> SIM_COMPILED
+		= create(new PrefMonitorBoolean("simCompiled", false));
+	public static final PrefMonitor<Boolean> LOG_SPILL
+		= create(new PrefMonitorBoolean("logSpill", false));
 	
 	// hidden window preferences - not part of the preferences dialog, changes
 	// to preference does not affect current windows, and the values are not
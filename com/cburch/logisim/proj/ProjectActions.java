@@ -149,6 +149,7 @@ public class ProjectActions {
 			Map<File,File> substitutions) throws LoadFailedException {
 		if (monitor != null) monitor.setProgress(SplashScreen.FILE_LOAD);
 		Loader loader = new Loader(monitor);
+		if (monitor != null) loader.setProgressListener(monitor);
 		LogisimFile file = loader.openLogisimFile(source, substitutions);
 		AppPreferences.updateRecentFile(source);
 		
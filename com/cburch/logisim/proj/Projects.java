@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.WeakHashMap;
 
 import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.gui.log.LogFrame;
 import com.cburch.logisim.gui.main.Frame;
 import com.cburch.logisim.util.MacCompatibility;
 import com.cburch.logisim.util.PropertyChangeWeakSupport;
@@ -31,6 +32,8 @@ public class Projects {
 		frame.removeWindowListener(listener);
 		openProjects.remove(proj);
 		proj.getSimulator().shutDown();
+		LogFrame log = proj.getLogFrame(false);
+		if (log != null) log.dispose();
 		propertySupport.firePropertyChange(projectListProperty, null, null);
 	}
 
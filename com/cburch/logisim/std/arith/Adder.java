@@ -6,12 +6,15 @@ package com.cburch.logisim.std.arith;
 import java.awt.Color;
 import java.awt.Graphics;
 
+import com.cburch.logisim.circuit.BitmaskComputer;
+import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -71,6 +74,36 @@ public class Adder extends InstanceFactory {
 		state.setPort(C_OUT, outs[1], delay);
 	}
 	
+	@Override
+	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == BitmaskComputer.class) {
+			return new BitmaskComputer() {
+				public int[] getOutputEnds() {
+					return new int[] { OUT, C_OUT };
+				}
+
+				public int getDelay() {
+					BitWidth dataWidth = instance.getAttributeValue(StdAttr.WIDTH);
+					return (dataWidth.getWidth() + 2) * PER_DELAY;
+				}
+
+				public boolean computeBitmasks(CircuitState state,
+						long[] values, boolean[] connected) {
+					if (!connected[IN0] || !connected[IN1]) return false;
+					int w = instance.getAttributeValue(StdAttr.WIDTH).getWidth();
+					long a = values[IN0];
+					long b = values[IN1];
+					long sum = a + b + values[C_IN];
+					values[OUT] = sum;
+					values[C_OUT] = computeCarry(w, a, b, sum);
+					return true;
+				}
+			};
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+	
+
 	@Override
 	public void paintInstance(InstancePainter painter) {
 		Graphics g = painter.getGraphics();
@@ -93,17 +126,29 @@ public class Adder extends InstanceFactory {
 		GraphicsUtil.switchToWidth(g, 1);
 	}
 
+	/** Returns the carry out of a w-bit sum of a, b, and a carry in. */
+	static long computeCarry(int w, long a, long b, long sum) {
+		if (w >= 64) {
+			return ((a & b) | ((a | b) & ~sum)) >>> 63;
+		} else {
+			return (sum >>> w) & 1;
+		}
+	}
+
 	static Value[] computeSum(BitWidth width, Value a, Value b, Value c_in) {
 		int w = width.getWidth();
 		if (c_in == Value.UNKNOWN || c_in == Value.NIL) c_in = Value.FALSE;
 		if (a.isFullyDefined() && b.isFullyDefined() && c_in.isFullyDefined()) {
-			if (w >= 32) {
-				long mask = (1L << w) - 1;
-				long ax = (long) a.toIntValue() & mask;
-				long bx = (long) b.toIntValue() & mask;
-				long cx = (long) c_in.toIntValue() & mask;
-				long sum = ax + bx + cx;
-				return new Value[] { Value.createKnown(width, (int) sum),
+			if (w >= 64) {
+				long ax = a.toLongValue();
+				long bx = b.toLongValue();
+				long sum = ax + bx + c_in.toLongValue();
+				long carry = ((ax & bx) | ((ax | bx) & ~sum)) >>> 63;
+				return new Value[] { Value.createKnown(width, sum),
+					carry == 0 ? Value.FALSE : Value.TRUE };
+			} else if (w >= 32) {
+				long sum = a.toLongValue() + b.toLongValue() + c_in.toLongValue();
+				return new Value[] { Value.createKnown(width, sum),
 					((sum >> w) & 1) == 0 ? Value.FALSE : Value.TRUE };
 			} else {
 				int sum = a.toIntValue() + b.toIntValue() + c_in.toIntValue();
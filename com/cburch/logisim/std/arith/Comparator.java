@@ -3,6 +3,8 @@
 
 package com.cburch.logisim.std.arith;
 
+import com.cburch.logisim.circuit.BitmaskComputer;
+import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.Attributes;
@@ -107,6 +109,51 @@ public class Comparator extends InstanceFactory {
 		state.setPort(LT, lt, delay);
 	}
 
+	@Override
+	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == BitmaskComputer.class) {
+			return new BitmaskComputer() {
+				public int[] getOutputEnds() {
+					return new int[] { GT, EQ, LT };
+				}
+
+				public int getDelay() {
+					BitWidth dataWidth = instance.getAttributeValue(StdAttr.WIDTH);
+					return (dataWidth.getWidth() + 2) * Adder.PER_DELAY;
+				}
+
+				public boolean computeBitmasks(CircuitState state,
+						long[] values, boolean[] connected) {
+					if (!connected[IN0] || !connected[IN1]) return false;
+					int w = instance.getAttributeValue(StdAttr.WIDTH).getWidth();
+					long a = values[IN0];
+					long b = values[IN1];
+					int cmp;
+					if (instance.getAttributeValue(MODE_ATTRIBUTE) == UNSIGNED_OPTION) {
+						cmp = compareUnsigned(a, b);
+					} else {
+						// sign-extend both to 64 bits
+						int shift = 64 - w;
+						long sa = (a << shift) >> shift;
+						long sb = (b << shift) >> shift;
+						cmp = sa < sb ? -1 : (sa == sb ? 0 : 1);
+					}
+					values[GT] = cmp > 0 ? 1 : 0;
+					values[EQ] = cmp == 0 ? 1 : 0;
+					values[LT] = cmp < 0 ? 1 : 0;
+					return true;
+				}
+			};
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+
+	private static int compareUnsigned(long a, long b) {
+		if (a == b) return 0;
+		return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE) ? -1 : 1;
+	}
+
+
 	@Override
 	public void paintInstance(InstancePainter painter) {
 		painter.drawBounds();
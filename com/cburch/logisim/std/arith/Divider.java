@@ -5,6 +5,7 @@ package com.cburch.logisim.std.arith;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.math.BigInteger;
 
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.BitWidth;
@@ -95,6 +96,16 @@ public class Divider extends InstanceFactory {
 		int w = width.getWidth();
 		if (upper == Value.NIL || upper.isUnknown()) upper = Value.createKnown(width, 0);
 		if (a.isFullyDefined() && b.isFullyDefined() && upper.isFullyDefined()) {
+			if (w > 32) {
+				// the dividend can have up to 128 bits
+				BigInteger num = Multiplier.unsigned(upper.toLongValue()).shiftLeft(w)
+					.or(Multiplier.unsigned(a.toLongValue()));
+				BigInteger den = Multiplier.unsigned(b.toLongValue());
+				if (den.signum() == 0) den = BigInteger.ONE;
+				BigInteger[] qr = num.divideAndRemainder(den);
+				return new Value[] { Value.createKnown(width, qr[0].longValue()),
+						Value.createKnown(width, qr[1].longValue()) };
+			}
 			long num = ((long) upper.toIntValue() << w)
 				| ((long) a.toIntValue() & 0xFFFFFFFFL);
 			long den = (long) b.toIntValue() & 0xFFFFFFFFL;
@@ -3,11 +3,14 @@
 
 package com.cburch.logisim.std.arith;
 
+import com.cburch.logisim.circuit.BitmaskComputer;
+import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -44,7 +47,7 @@ public class Negator extends InstanceFactory {
 		Value in = state.getPort(IN);
 		Value out;
 		if (in.isFullyDefined()) {
-			out = Value.createKnown(in.getBitWidth(), -in.toIntValue());
+			out = Value.createKnown(in.getBitWidth(), -in.toLongValue());
 		} else {
 			Value[] bits = in.getAll();
 			Value fill = Value.FALSE;
@@ -80,6 +83,31 @@ public class Negator extends InstanceFactory {
 		state.setPort(OUT, out, delay);
 	}
 
+	@Override
+	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == BitmaskComputer.class) {
+			return new BitmaskComputer() {
+				public int[] getOutputEnds() {
+					return new int[] { OUT };
+				}
+
+				public int getDelay() {
+					BitWidth dataWidth = instance.getAttributeValue(StdAttr.WIDTH);
+					return (dataWidth.getWidth() + 2) * Adder.PER_DELAY;
+				}
+
+				public boolean computeBitmasks(CircuitState state,
+						long[] values, boolean[] connected) {
+					if (!connected[IN]) return false;
+					values[OUT] = -values[IN];
+					return true;
+				}
+			};
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+
+
 	@Override
 	public void paintInstance(InstancePainter painter) {
 		painter.drawBounds();
@@ -6,12 +6,15 @@ package com.cburch.logisim.std.arith;
 import java.awt.Color;
 import java.awt.Graphics;
 
+import com.cburch.logisim.circuit.BitmaskComputer;
+import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -67,6 +70,36 @@ public class Subtractor extends InstanceFactory {
 		state.setPort(B_OUT, outs[1].not(), delay);
 	}
 
+	@Override
+	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == BitmaskComputer.class) {
+			return new BitmaskComputer() {
+				public int[] getOutputEnds() {
+					return new int[] { OUT, B_OUT };
+				}
+
+				public int getDelay() {
+					BitWidth data = instance.getAttributeValue(StdAttr.WIDTH);
+					return (data.getWidth() + 4) * Adder.PER_DELAY;
+				}
+
+				public boolean computeBitmasks(CircuitState state,
+						long[] values, boolean[] connected) {
+					if (!connected[IN0] || !connected[IN1]) return false;
+					BitWidth data = instance.getAttributeValue(StdAttr.WIDTH);
+					long a = values[IN0];
+					long b = ~values[IN1] & data.getLongMask();
+					long sum = a + b + (1 - (values[B_IN] & 1));
+					values[OUT] = sum;
+					values[B_OUT] = 1 - Adder.computeCarry(data.getWidth(), a, b, sum);
+					return true;
+				}
+			};
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+	
+
 	@Override
 	public void paintInstance(InstancePainter painter) {
 		Graphics g = painter.getGraphics();
@@ -13,6 +13,9 @@ import javax.swing.Icon;
 import com.cburch.logisim.LogisimVersion;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitmaskComputer;
+import com.cburch.logisim.circuit.BitwiseComputer;
+import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -39,6 +42,8 @@ import com.cburch.logisim.util.Icons;
 import com.cburch.logisim.util.StringGetter;
 
 abstract class AbstractGate extends InstanceFactory {
+	private static final int[] OUTPUT_ENDS = { 0 };
+
 	private String[] iconNames = new String[3];
 	private Icon[] icons = new Icon[3];
 	private int bonusWidth = 0;
@@ -345,6 +350,9 @@ abstract class AbstractGate extends InstanceFactory {
 	protected abstract Value computeOutput(Value[] inputs, int numInputs,
 			InstanceState state);
 	
+	protected abstract long computeBitmask(long[] inputs, int numInputs,
+			GateAttributes attrs);
+	
 	protected abstract Expression computeExpression(Expression[] inputs,
 			int numInputs);
 
@@ -511,6 +519,45 @@ abstract class AbstractGate extends InstanceFactory {
 				}
 			};
 		}
+		if (key == BitmaskComputer.class) {
+			return new BitwiseComputer() {
+				public int[] getOutputEnds() {
+					return OUTPUT_ENDS;
+				}
+
+				public int getDelay() {
+					return GateAttributes.DELAY;
+				}
+
+				public boolean computeBitmasks(CircuitState state,
+						long[] values, boolean[] connected) {
+					GateAttributes attrs = (GateAttributes) instance.getAttributeSet();
+					if (attrs.out != GateAttributes.OUTPUT_01) return false;
+					int inputCount = attrs.inputs;
+					int negated = attrs.negated;
+
+					// the connected inputs are packed into the front of values
+					int numInputs = 0;
+					for (int i = 1; i <= inputCount; i++) {
+						if (connected[i]) {
+							long v = values[i];
+							if (((negated >> (i - 1)) & 1) == 1) v = ~v;
+							values[numInputs] = v;
+							numInputs++;
+						} else {
+							AttributeSet opts = state.getProject().getOptions().getAttributeSet();
+							if (opts.getValue(Options.ATTR_GATE_UNDEFINED)
+									.equals(Options.GATE_UNDEFINED_ERROR)) {
+								return false;
+							}
+						}
+					}
+					if (numInputs == 0) return false;
+					values[0] = computeBitmask(values, numInputs, attrs);
+					return true;
+				}
+			};
+		}
 		return super.getInstanceFeature(instance, key);
 	}
 	
@@ -46,6 +46,12 @@ class AndGate extends AbstractGate {
 		return GateFunctions.computeAnd(inputs, numInputs);
 	}
 
+	@Override
+	protected long computeBitmask(long[] inputs, int numInputs,
+			GateAttributes attrs) {
+		return GateFunctions.computeAnd(inputs, numInputs);
+	}
+
 	@Override
 	protected Expression computeExpression(Expression[] inputs, int numInputs) {
 		Expression ret = inputs[0];
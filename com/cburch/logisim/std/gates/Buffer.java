@@ -9,6 +9,9 @@ import java.awt.Graphics2D;
 import java.util.Map;
 
 import com.cburch.logisim.analyze.model.Expression;
+import com.cburch.logisim.circuit.BitmaskComputer;
+import com.cburch.logisim.circuit.BitwiseComputer;
+import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -103,6 +106,9 @@ class Buffer extends InstanceFactory {
 				}
 			};
 		}
+		if (key == BitmaskComputer.class) {
+			return createBitmaskComputer(instance, false);
+		}
 		return super.getInstanceFeature(instance, key);
 	}
 		
@@ -177,4 +183,29 @@ class Buffer extends InstanceFactory {
 		Object outType = state.getAttributeValue(GateAttributes.ATTR_OUTPUT);
 		return AbstractGate.pullOutput(repaired, outType);
 	}
+
+	static BitmaskComputer createBitmaskComputer(final Instance instance,
+			final boolean invert) {
+		return new BitwiseComputer() {
+			public int[] getOutputEnds() {
+				return new int[] { 0 };
+			}
+
+			public int getDelay() {
+				return GateAttributes.DELAY;
+			}
+
+			public boolean computeBitmasks(CircuitState state, long[] values,
+					boolean[] connected) {
+				Object outType = instance.getAttributeValue(GateAttributes.ATTR_OUTPUT);
+				if (outType == GateAttributes.OUTPUT_0Z
+						|| outType == GateAttributes.OUTPUT_Z1
+						|| !connected[1]) {
+					return false;
+				}
+				values[0] = invert ? ~values[1] : values[1];
+				return true;
+			}
+		};
+	}
 }
@@ -39,6 +39,12 @@ class EvenParityGate extends AbstractGate {
 		return GateFunctions.computeOddParity(inputs, numInputs).not();
 	}
 
+	@Override
+	protected long computeBitmask(long[] inputs, int numInputs,
+			GateAttributes attrs) {
+		return ~GateFunctions.computeOddParity(inputs, numInputs);
+	}
+
 	@Override
 	protected Expression computeExpression(Expression[] inputs, int numInputs) {
 		Expression ret = inputs[0];
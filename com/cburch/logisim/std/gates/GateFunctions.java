@@ -58,4 +58,38 @@ class GateFunctions {
 		}
 		return Value.create(ret);
 	}
+
+	static long computeOr(long[] inputs, int numInputs) {
+		long ret = inputs[0];
+		for (int i = 1; i < numInputs; i++) {
+			ret |= inputs[i];
+		}
+		return ret;
+	}
+
+	static long computeAnd(long[] inputs, int numInputs) {
+		long ret = inputs[0];
+		for (int i = 1; i < numInputs; i++) {
+			ret &= inputs[i];
+		}
+		return ret;
+	}
+
+	static long computeOddParity(long[] inputs, int numInputs) {
+		long ret = inputs[0];
+		for (int i = 1; i < numInputs; i++) {
+			ret ^= inputs[i];
+		}
+		return ret;
+	}
+
+	static long computeExactlyOne(long[] inputs, int numInputs) {
+		long any = 0;
+		long many = 0;
+		for (int i = 0; i < numInputs; i++) {
+			many |= any & inputs[i];
+			any |= inputs[i];
+		}
+		return any & ~many;
+	}
 }
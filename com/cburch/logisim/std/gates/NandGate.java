@@ -49,6 +49,12 @@ class NandGate extends AbstractGate {
 		return GateFunctions.computeAnd(inputs, numInputs).not();
 	}
 
+	@Override
+	protected long computeBitmask(long[] inputs, int numInputs,
+			GateAttributes attrs) {
+		return ~GateFunctions.computeAnd(inputs, numInputs);
+	}
+
 	@Override
 	protected Expression computeExpression(Expression[] inputs, int numInputs) {
 		Expression ret = inputs[0];
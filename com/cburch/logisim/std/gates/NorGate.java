@@ -51,6 +51,12 @@ class NorGate extends AbstractGate {
 		return GateFunctions.computeOr(inputs, numInputs).not();
 	}
 
+	@Override
+	protected long computeBitmask(long[] inputs, int numInputs,
+			GateAttributes attrs) {
+		return ~GateFunctions.computeOr(inputs, numInputs);
+	}
+
 	@Override
 	protected boolean shouldRepairWire(Instance instance, WireRepairData data) {
 		return !data.getPoint().equals(instance.getLocation());
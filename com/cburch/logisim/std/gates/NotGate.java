@@ -12,6 +12,7 @@ import javax.swing.Icon;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.BitmaskComputer;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -138,6 +139,9 @@ class NotGate extends InstanceFactory {
 				}
 			};
 		}
+		if (key == BitmaskComputer.class) {
+			return Buffer.createBitmaskComputer(instance, true);
+		}
 		return super.getInstanceFeature(instance, key);
 	}
 	
@@ -58,6 +58,12 @@ class OddParityGate extends AbstractGate {
 		return GateFunctions.computeOddParity(inputs, numInputs);
 	}
 
+	@Override
+	protected long computeBitmask(long[] inputs, int numInputs,
+			GateAttributes attrs) {
+		return GateFunctions.computeOddParity(inputs, numInputs);
+	}
+
 	@Override
 	protected Expression computeExpression(Expression[] inputs, int numInputs) {
 		Expression ret = inputs[0];
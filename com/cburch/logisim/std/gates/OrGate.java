@@ -49,6 +49,12 @@ class OrGate extends AbstractGate {
 		return GateFunctions.computeOr(inputs, numInputs);
 	}
 
+	@Override
+	protected long computeBitmask(long[] inputs, int numInputs,
+			GateAttributes attrs) {
+		return GateFunctions.computeOr(inputs, numInputs);
+	}
+
 	@Override
 	protected boolean shouldRepairWire(Instance instance, WireRepairData data) {
 		boolean ret = !data.getPoint().equals(instance.getLocation());
@@ -70,6 +70,16 @@ class XorGate extends AbstractGate {
 		}
 	}
 
+	@Override
+	protected long computeBitmask(long[] inputs, int numInputs,
+			GateAttributes attrs) {
+		if (attrs.xorBehave == GateAttributes.XOR_ODD) {
+			return GateFunctions.computeOddParity(inputs, numInputs);
+		} else {
+			return GateFunctions.computeExactlyOne(inputs, numInputs);
+		}
+	}
+
 	@Override
 	protected boolean shouldRepairWire(Instance instance, WireRepairData data) {
 		return !data.getPoint().equals(instance.getLocation());
@@ -34,6 +34,9 @@ public class Counter extends InstanceFactory {
 	static final AttributeOption ON_GOAL_LOAD = new AttributeOption("load",
 			"load", Strings.getter("counterGoalLoad"));
 
+	// a counter's values are ints, so it is at most 32 bits wide
+	static final Attribute<BitWidth> ATTR_WIDTH = Attributes.forBitWidth("width",
+			Strings.getter("stdDataWidthAttr"), 1, 32);
 	static final Attribute<Integer> ATTR_MAX = Attributes.forHexInteger("max",
 			Strings.getter("counterMaxAttr"));
 	static final Attribute<AttributeOption> ATTR_ON_GOAL = Attributes.forOption("ongoal",
@@ -56,11 +59,11 @@ public class Counter extends InstanceFactory {
 		setIconName("counter.gif");
 		setInstancePoker(RegisterPoker.class);
 		setInstanceLogger(RegisterLogger.class);
-		setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
+		setKeyConfigurator(new BitWidthConfigurator(ATTR_WIDTH, 1, 32));
 		
 		Port[] ps = new Port[7];
-		ps[OUT] = new Port(  0,   0, Port.OUTPUT, StdAttr.WIDTH);
-		ps[IN]  = new Port(-30,   0, Port.INPUT, StdAttr.WIDTH);
+		ps[OUT] = new Port(  0,   0, Port.OUTPUT, ATTR_WIDTH);
+		ps[IN]  = new Port(-30,   0, Port.INPUT, ATTR_WIDTH);
 		ps[CK]  = new Port(-20,  20, Port.INPUT, 1);
 		ps[CLR] = new Port(-10,  20, Port.INPUT, 1);
 		ps[LD]  = new Port(-30, -10, Port.INPUT, 1);
@@ -97,7 +100,7 @@ public class Counter extends InstanceFactory {
 			state.setData(data);
 		}
 
-		BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+		BitWidth dataWidth = state.getAttributeValue(ATTR_WIDTH);
 		Object triggerType = state.getAttributeValue(StdAttr.EDGE_TRIGGER);
 		int max = state.getAttributeValue(ATTR_MAX).intValue();
 		Value clock = state.getPort(CK);
@@ -111,7 +114,7 @@ public class Counter extends InstanceFactory {
 		} else {
 			boolean ld = state.getPort(LD) == Value.TRUE;
 			boolean ct = state.getPort(CT) != Value.FALSE;
-			int oldVal = data.value;
+			int oldVal = (int) data.value;
 			int newVal;
 			if (!triggered) {
 				newVal = oldVal;
@@ -169,14 +172,14 @@ public class Counter extends InstanceFactory {
 		Graphics g = painter.getGraphics();
 		Bounds bds = painter.getBounds();
 		RegisterData state = (RegisterData) painter.getData();
-		BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+		BitWidth widthVal = painter.getAttributeValue(ATTR_WIDTH);
 		int width = widthVal == null ? 8 : widthVal.getWidth();
 
 		// determine text to draw in label
 		String a;
 		String b = null;
 		if (painter.getShowState()) {
-			int val = state == null ? 0 : state.value;
+			int val = state == null ? 0 : (int) state.value;
 			String str = StringUtil.toHexString(width, val);
 			if (str.length() <= 4) {
 				a = str;
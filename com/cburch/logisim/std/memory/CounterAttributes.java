@@ -17,7 +17,7 @@ class CounterAttributes extends AbstractAttributeSet {
 	
 	public CounterAttributes() {
 		base = AttributeSets.fixedSet(new Attribute<?>[] {
-				StdAttr.WIDTH, Counter.ATTR_MAX, Counter.ATTR_ON_GOAL,
+				Counter.ATTR_WIDTH, Counter.ATTR_MAX, Counter.ATTR_ON_GOAL,
 				StdAttr.EDGE_TRIGGER,
 				StdAttr.LABEL, StdAttr.LABEL_FONT
 			}, new Object[] {
@@ -49,14 +49,14 @@ class CounterAttributes extends AbstractAttributeSet {
 		if (oldValue == null ? value == null : oldValue.equals(value)) return;
 
 		Integer newMax = null;
-		if (attr == StdAttr.WIDTH) {
-			BitWidth oldWidth = base.getValue(StdAttr.WIDTH);
+		if (attr == Counter.ATTR_WIDTH) {
+			BitWidth oldWidth = base.getValue(Counter.ATTR_WIDTH);
 			BitWidth newWidth = (BitWidth) value;
 			int oldW = oldWidth.getWidth();
 			int newW = newWidth.getWidth();
 			Integer oldValObj = base.getValue(Counter.ATTR_MAX);
 			int oldVal = oldValObj.intValue();
-			base.setValue(StdAttr.WIDTH, newWidth);
+			base.setValue(Counter.ATTR_WIDTH, newWidth);
 			if (newW > oldW) {
 				newMax = Integer.valueOf(newWidth.getMask());
 			} else {
@@ -67,10 +67,10 @@ class CounterAttributes extends AbstractAttributeSet {
 					fireAttributeValueChanged(Counter.ATTR_MAX, newValObj);
 				}
 			}
-			fireAttributeValueChanged(StdAttr.WIDTH, newWidth);
+			fireAttributeValueChanged(Counter.ATTR_WIDTH, newWidth);
 		} else if (attr == Counter.ATTR_MAX) {
 			int oldVal = ((Integer) value).intValue();
-			BitWidth width = base.getValue(StdAttr.WIDTH);
+			BitWidth width = base.getValue(Counter.ATTR_WIDTH);
 			int newVal = oldVal & width.getMask();
 			if (newVal != oldVal) {
 				@SuppressWarnings("unchecked")
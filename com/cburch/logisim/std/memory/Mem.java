@@ -7,6 +7,8 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
 import java.util.WeakHashMap;
 
 import com.cburch.hex.HexModel;
@@ -44,7 +46,7 @@ abstract class Mem extends InstanceFactory {
 	public static final Attribute<BitWidth> ADDR_ATTR = Attributes.forBitWidth(
 			"addrWidth", Strings.getter("ramAddrWidthAttr"), 2, 24);
 	public static final Attribute<BitWidth> DATA_ATTR = Attributes.forBitWidth(
-			"dataWidth", Strings.getter("ramDataWidthAttr"));
+			"dataWidth", Strings.getter("ramDataWidthAttr"), 1, 32);
 	
 	// port-related constants
 	static final int DATA = 0;
@@ -55,15 +57,16 @@ abstract class Mem extends InstanceFactory {
 	// other constants
 	static final int DELAY = 10;
 
-	private WeakHashMap<Instance,File> currentInstanceFiles;
+	private Map<Instance,File> currentInstanceFiles;
 
 	Mem(String name, StringGetter desc, int extraPorts) {
 		super(name, desc);
-		currentInstanceFiles = new WeakHashMap<Instance,File>();
+		// images may be loaded from several simulations at once
+		currentInstanceFiles = Collections.synchronizedMap(new WeakHashMap<Instance,File>());
 		setInstancePoker(MemPoker.class);
 		setKeyConfigurator(JoinedConfigurator.create(
 				new BitWidthConfigurator(ADDR_ATTR, 2, 24, 0),
-				new BitWidthConfigurator(DATA_ATTR)));
+				new BitWidthConfigurator(DATA_ATTR, 1, 32)));
 
 		setOffsetBounds(Bounds.create(-140, -40, 140, 80));
 	}
@@ -158,11 +161,37 @@ abstract class Mem extends InstanceFactory {
 	
 	public void loadImage(InstanceState instanceState, File imageFile)
 			throws IOException { 
-		MemState s = this.getState(instanceState);
-		HexFile.open(s.getContents(), imageFile);
+		MemContents contents = this.getState(instanceState).getContents();
+		if (HexFile.getImageFormat(imageFile) == HexFile.FORMAT_BINARY) {
+			contents.mapImage(imageFile);
+		} else {
+			HexFile.ImageSource src = HexFile.openImage(imageFile,
+					contents.getWidth());
+			try {
+				contents.load(src);
+			} finally {
+				src.close();
+			}
+		}
 		this.setCurrentImage(instanceState.getInstance(), imageFile);
 	}
 
+	/** Returns the profile of the accesses that the simulator has made to
+	 * the memory in the given state, or null if it is not being profiled. */
+	public MemProfile getProfile(Instance instance, CircuitState state) {
+		MemState s = getState(instance, state);
+		return s == null ? null : s.getProfile();
+	}
+
+	/** Starts counting the accesses to the memory in the given state,
+	 * discarding any earlier profile, or stops counting them. */
+	public void setProfiled(Instance instance, CircuitState state,
+			boolean value) {
+		MemState s = getState(instance, state);
+		if (s == null) return;
+		s.setProfile(value ? new MemProfile(s.getAddrBits()) : null);
+	}
+
 	@Override
 	protected Object getInstanceFeature(Instance instance, Object key) {
 		if (key == MenuExtender.class) return new MemMenu(this, instance);
@@ -3,26 +3,65 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.Arrays;
 
+import javax.swing.SwingUtilities;
+
 import com.cburch.hex.HexModel;
 import com.cburch.hex.HexModelListener;
+import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 
 class MemContents implements Cloneable, HexModel {
 	private static final int PAGE_SIZE_BITS = 12;
 	private static final int PAGE_SIZE = 1 << PAGE_SIZE_BITS;
 	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	// the largest memory for which load keeps the old values for undoing
+	private static final int MAX_UNDOABLE_LOAD = 1 << 16;
+	// the most ranges of pending changes kept apart before merging
+	private static final int MAX_DIRTY_RANGES = 4;
 	
 	static MemContents create(int addrBits, int width) {
 		return new MemContents(addrBits, width);
 	}
+
+	/** Creates a memory whose values are given by the text of a contents
+	 * attribute, which is decoded only when the values are first needed.
+	 * The text is decoded from the given offset, in the given format, or
+	 * as hex text if the format is null. Until then, the original text
+	 * can be had from getEncoded. */
+	static MemContents createEncoded(int addrBits, int width, String text,
+			int offset, String format) {
+		MemContents ret = new MemContents(addrBits, width);
+		ret.encodedOffset = offset;
+		ret.encodedFormat = format;
+		ret.encoded = text;
+		return ret;
+	}
 	
 	private EventSourceWeakSupport<HexModelListener> listeners = null;
+	private EventSourceWeakSupport<HexModelListener> editListeners = null;
 	private int width;
 	private int addrBits;
 	private int mask;
 	private MemContentsSub.ContentsInterface[] pages;
+	private boolean[] pageShared; // whether a page is also used by a clone
+	private MemImage image = null; // the file that unwritten pages read from
+
+	// the attribute text that the pages have yet to be decoded from
+	private volatile String encoded = null;
+	private int encodedOffset;
+	private String encodedFormat;
+
+	// ranges changed by write but not yet announced, ends exclusive
+	private Object dirtyLock = new Object();
+	private long[] dirtyStarts = new long[MAX_DIRTY_RANGES];
+	private long[] dirtyEnds = new long[MAX_DIRTY_RANGES];
+	private int dirtyCount = 0;
+	private boolean flushPosted = false;
 	
 	private MemContents(int addrBits, int width) {
 		listeners = null;
@@ -39,11 +78,27 @@ class MemContents implements Cloneable, HexModel {
 
 	public void removeHexModelListener(HexModelListener l) {
 		if (listeners == null) return;
-		listeners.add(l);
+		listeners.remove(l);
 		if (listeners.isEmpty()) listeners = null; 
 	}
+
+	/** Registers a listener that is told of the changes made through the
+	 * HexModel methods but not of those the simulator makes through write,
+	 * which it must not react to. While a memory has only such listeners,
+	 * writes announce nothing at all. */
+	void addEditListener(HexModelListener l) {
+		if (editListeners == null) {
+			editListeners = new EventSourceWeakSupport<HexModelListener>();
+		}
+		editListeners.add(l);
+	}
 	
 	private void fireMetainfoChanged() {
+		if (editListeners != null) {
+			for (HexModelListener l : editListeners) {
+				l.metainfoChanged(this);
+			}
+		}
 		if (listeners == null) return;
 		boolean found = false;
 		for (HexModelListener l : listeners) {
@@ -55,6 +110,16 @@ class MemContents implements Cloneable, HexModel {
 	
 	private void fireBytesChanged(long start, long numBytes,
 			int[] oldValues) {
+		if (editListeners != null) {
+			for (HexModelListener l : editListeners) {
+				l.bytesChanged(this, start, numBytes, oldValues);
+			}
+		}
+		fireBytesChangedToListeners(start, numBytes, oldValues);
+	}
+
+	private void fireBytesChangedToListeners(long start, long numBytes,
+			int[] oldValues) {
 		if (listeners == null) return;
 		boolean found = false;
 		for (HexModelListener l : listeners) {
@@ -72,12 +137,16 @@ class MemContents implements Cloneable, HexModel {
 		try {
 			MemContents ret = (MemContents) super.clone();
 			ret.listeners = null;
-			ret.pages = new MemContentsSub.ContentsInterface[this.pages.length];
-			for (int i = 0; i < ret.pages.length; i++) {
-				if (this.pages[i] != null) {
-					ret.pages[i] = this.pages[i].clone();
-				}
-			}
+			ret.editListeners = null;
+			ret.dirtyLock = new Object();
+			ret.dirtyStarts = new long[MAX_DIRTY_RANGES];
+			ret.dirtyEnds = new long[MAX_DIRTY_RANGES];
+			ret.dirtyCount = 0;
+			ret.flushPosted = false;
+			// the pages are shared until either copy writes into them
+			ret.pages = this.pages.clone();
+			Arrays.fill(this.pageShared, true);
+			ret.pageShared = this.pageShared.clone();
 			return ret;
 		} catch (CloneNotSupportedException ex) { return this; }
 	}
@@ -86,6 +155,7 @@ class MemContents implements Cloneable, HexModel {
 	public int getWidth() { return width; }
 	
 	public int get(long addr) {
+		if (encoded != null) decode();
 		int page = (int) (addr >>> PAGE_SIZE_BITS);
 		int offs = (int) (addr & PAGE_MASK);
 		if (page < 0 || page >= pages.length || pages[page] == null) return 0;
@@ -93,33 +163,104 @@ class MemContents implements Cloneable, HexModel {
 	}
 	
 	public boolean isClear() {
+		if (encoded != null) decode();
 		for (int i = 0; i < pages.length; i++) {
 			MemContentsSub.ContentsInterface page = pages[i];
-			if (page != null) {
-				for (int j = page.getLength() - 1; j >= 0; j--) {
-					if (page.get(j) != 0) return false;
-				}
-			}
+			if (page != null && !page.isClear()) return false;
 		}
 		return true;
 	}
 	
 	public void set(long addr, int value) {
+		if (encoded != null) decode();
 		int page = (int) (addr >>> PAGE_SIZE_BITS);
 		int offs = (int) (addr & PAGE_MASK);
 		int old = pages[page] == null ? 0 : pages[page].get(offs) & mask;
 		int val = value & mask;
 		if (old != val) {
-			if (pages[page] == null) {
-				pages[page] = MemContentsSub.createContents(PAGE_SIZE, width);
+			ensureSettable(page, offs, val);
+			pages[page].set(offs, val);
+			if (listeners != null || editListeners != null) {
+				fireBytesChanged(addr, 1, new int[] { old });
 			}
+		}
+	}
+
+	/** Changes a value as set does, but on behalf of the simulator:
+	 * listeners learn of the change later, along with other changes
+	 * nearby, and without its old value. The pending changes are announced
+	 * on the event dispatch thread, at most once for each repaint, and
+	 * not to edit listeners. Nothing at all is recorded while there are no
+	 * other listeners. */
+	void write(long addr, int value) {
+		if (encoded != null) decode();
+		int page = (int) (addr >>> PAGE_SIZE_BITS);
+		int offs = (int) (addr & PAGE_MASK);
+		int old = pages[page] == null ? 0 : pages[page].get(offs) & mask;
+		int val = value & mask;
+		if (old != val) {
+			ensureSettable(page, offs, val);
 			pages[page].set(offs, val);
-			fireBytesChanged(addr, 1, new int[] { old });
+			if (listeners != null) addDirty(addr);
+		}
+	}
+
+	private void addDirty(long addr) {
+		synchronized (dirtyLock) {
+			int n = dirtyCount;
+			for (int i = 0; i < n; i++) {
+				if (addr >= dirtyStarts[i] - 1 && addr <= dirtyEnds[i]) {
+					if (addr < dirtyStarts[i]) dirtyStarts[i] = addr;
+					if (addr >= dirtyEnds[i]) dirtyEnds[i] = addr + 1;
+					return;
+				}
+			}
+			if (n < MAX_DIRTY_RANGES) {
+				dirtyStarts[n] = addr;
+				dirtyEnds[n] = addr + 1;
+				dirtyCount = n + 1;
+			} else {
+				// widen whichever range needs to grow the least
+				int best = 0;
+				long bestGap = Long.MAX_VALUE;
+				for (int i = 0; i < n; i++) {
+					long gap = addr < dirtyStarts[i] ? dirtyStarts[i] - addr
+							: addr + 1 - dirtyEnds[i];
+					if (gap < bestGap) { best = i; bestGap = gap; }
+				}
+				if (addr < dirtyStarts[best]) dirtyStarts[best] = addr;
+				else dirtyEnds[best] = addr + 1;
+			}
+			if (!flushPosted) {
+				flushPosted = true;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() { flushChanges(); }
+				});
+			}
+		}
+	}
+
+	/** Announces the changes made through write that have not been yet. */
+	void flushChanges() {
+		long[] starts;
+		long[] ends;
+		synchronized (dirtyLock) {
+			flushPosted = false;
+			if (dirtyCount == 0) return;
+			starts = new long[dirtyCount];
+			ends = new long[dirtyCount];
+			System.arraycopy(dirtyStarts, 0, starts, 0, dirtyCount);
+			System.arraycopy(dirtyEnds, 0, ends, 0, dirtyCount);
+			dirtyCount = 0;
+		}
+		for (int i = 0; i < starts.length; i++) {
+			fireBytesChangedToListeners(starts[i], ends[i] - starts[i], null);
 		}
 	}
 
 	public void set(long start, int[] values) {
 		if (values.length == 0) return;
+		if (encoded != null) decode();
 		
 		int pageStart = (int) (start >>> PAGE_SIZE_BITS);
 		int startOffs = (int) (start & PAGE_MASK);
@@ -149,7 +290,7 @@ class MemContents implements Cloneable, HexModel {
 					int[] oldValues = page.get(startOffs, vals.length);
 					page.load(startOffs, vals, mask);
 					if (page.isClear()) pages[pageStart] = null;
-					fireBytesChanged(start, PAGE_SIZE - pageStart, oldValues);
+					fireBytesChanged(start, PAGE_SIZE - startOffs, oldValues);
 				}
 				nextOffs = vals.length;
 			}
@@ -163,13 +304,15 @@ class MemContents implements Cloneable, HexModel {
 						if ((values[offs + j] & mask) != 0) { allZeroes = false; break; }
 					}
 					if (!allZeroes) {
-						page = MemContentsSub.createContents(PAGE_SIZE, width);
-						pages[i] = page;
+						ensurePage(i);
+						page = pages[i];
 					}
 				}
 				if (page != null) {
 					System.arraycopy(values, offs, vals, 0, PAGE_SIZE);
-					if (!page.matches(vals, startOffs, mask)) {
+					if (!page.matches(vals, 0, mask)) {
+						ensurePage(i);
+						page = pages[i];
 						int[] oldValues = page.get(0, PAGE_SIZE);
 						page.load(0, vals, mask);
 						if (page.isClear()) pages[i] = null;
@@ -182,7 +325,7 @@ class MemContents implements Cloneable, HexModel {
 				vals = new int[endOffs + 1];
 				System.arraycopy(values, offs, vals, 0, endOffs + 1);
 				MemContentsSub.ContentsInterface page = pages[pageEnd];
-				if (!page.matches(vals, startOffs, mask)) {
+				if (!page.matches(vals, 0, mask)) {
 					int[] oldValues = page.get(0, endOffs + 1);
 					page.load(0, vals, mask);
 					if (page.isClear()) pages[pageEnd] = null;
@@ -194,6 +337,7 @@ class MemContents implements Cloneable, HexModel {
 	
 	public void fill(long start, long len, int value) {
 		if (len == 0) return;
+		if (encoded != null) decode();
 		
 		int pageStart = (int) (start >>> PAGE_SIZE_BITS);
 		int startOffs = (int) (start & PAGE_MASK);
@@ -227,7 +371,7 @@ class MemContents implements Cloneable, HexModel {
 						int[] oldValues = page.get(startOffs, vals.length);
 						page.load(startOffs, vals, mask);
 						if (value == 0 && page.isClear()) pages[pageStart] = null;
-						fireBytesChanged(start, PAGE_SIZE - pageStart, oldValues);
+						fireBytesChanged(start, PAGE_SIZE - startOffs, oldValues);
 					}
 				}
 			}
@@ -239,11 +383,12 @@ class MemContents implements Cloneable, HexModel {
 				int[] vals = new int[PAGE_SIZE];
 				Arrays.fill(vals, value);
 				for (int i = pageStart + 1; i < pageEnd; i++) {
-					ensurePage(i);
 					MemContentsSub.ContentsInterface page = pages[i];
-					if (!page.matches(vals, 0, mask)) {
-						int[] oldValues = page.get(0, PAGE_SIZE);
-						page.load(0, vals, mask);
+					if (page == null || !page.matches(vals, 0, mask)) {
+						int[] oldValues = page == null ? new int[PAGE_SIZE]
+								: page.get(0, PAGE_SIZE);
+						pages[i] = MemContentsSub.createConstant(PAGE_SIZE, value);
+						pageShared[i] = false;
 						fireBytesChanged((long) i << PAGE_SIZE_BITS, PAGE_SIZE, oldValues);
 					}
 				}
@@ -254,6 +399,7 @@ class MemContents implements Cloneable, HexModel {
 					// nothing to do
 				} else {
 					ensurePage(pageEnd);
+					page = pages[pageEnd];
 					int[] vals = new int[endOffs + 1];
 					Arrays.fill(vals, value);
 					if (!page.matches(vals, 0, mask)) {
@@ -268,6 +414,7 @@ class MemContents implements Cloneable, HexModel {
 	}
 	
 	public void clear() {
+		if (encoded != null) decode();
 		for (int i = 0; i < pages.length; i++) {
 			if (pages[i] != null) {
 				if (pages[i] != null) clearPage(i);
@@ -277,6 +424,10 @@ class MemContents implements Cloneable, HexModel {
 	
 	private void clearPage(int index) {
 		MemContentsSub.ContentsInterface page = pages[index];
+		if (page.isClear()) {
+			pages[index] = null;
+			return;
+		}
 		int[] oldValues = new int[page.getLength()];
 		boolean changed = false;
 		for (int j = 0; j < oldValues.length; j++) {
@@ -292,6 +443,7 @@ class MemContents implements Cloneable, HexModel {
 	
 	public void setDimensions(int addrBits, int width) {
 		if (addrBits == this.addrBits && width == this.width) return;
+		if (encoded != null) decode();
 		this.addrBits = addrBits;
 		this.width = width;
 		this.mask = width == 32 ? 0xffffffff : ((1 << width) - 1);
@@ -302,12 +454,13 @@ class MemContents implements Cloneable, HexModel {
 		if (addrBits < PAGE_SIZE_BITS) { pageCount = 1; pageLength = 1 << addrBits; }
 		else { pageCount = 1 << (addrBits - PAGE_SIZE_BITS); pageLength = PAGE_SIZE; }
 		pages = new MemContentsSub.ContentsInterface[pageCount];
+		pageShared = new boolean[pageCount];
 		if (oldPages != null) {
 			int n = Math.min(oldPages.length, pages.length);
 			for (int i = 0; i < n; i++) {
 				if (oldPages[i] != null) {
 					pages[i] = MemContentsSub.createContents(pageLength, width);
-					int m = Math.max(oldPages[i].getLength(), pageLength);
+					int m = Math.min(oldPages[i].getLength(), pageLength);
 					for (int j = 0; j < m; j++) {
 						pages[i].set(j, oldPages[i].get(j));
 					}
@@ -317,9 +470,176 @@ class MemContents implements Cloneable, HexModel {
 		if (pageCount == 0 && pages[0] == null) {
 			pages[0] = MemContentsSub.createContents(pageLength, width);
 		}
+		image = null; // the pages were all copied
 		fireMetainfoChanged();
 	}
 
+	/** Replaces the contents with the values of an image, writing them
+	 * into whole pages rather than through set, and notifies the listeners
+	 * just once; values that the image leaves out become 0. The listeners
+	 * receive the old values, so that the load can be undone, only if the
+	 * memory is small enough for copying them to be cheap. */
+	void load(HexFile.ImageSource src) throws IOException {
+		long size = getLastOffset() + 1;
+		int[] oldValues = null;
+		if (size <= MAX_UNDOABLE_LOAD) {
+			oldValues = new int[(int) size];
+			for (int i = 0; i < oldValues.length; i++) oldValues[i] = get(i);
+		}
+		discardEncoded();
+		Arrays.fill(pages, null);
+		Arrays.fill(pageShared, false);
+		image = null;
+
+		int pageLength = getPageLength();
+		int[] buf = new int[PAGE_SIZE];
+		try {
+			for (int n = src.read(buf); n >= 0; n = src.read(buf)) {
+				long start = src.getStart();
+				if (start + n > size) {
+					throw new IOException(Strings.get("ramImageSizeError"));
+				}
+				int done = 0;
+				while (done < n) {
+					long addr = start + done;
+					int index = (int) (addr >>> PAGE_SIZE_BITS);
+					int offs = (int) (addr & PAGE_MASK);
+					int count = Math.min(n - done, pageLength - offs);
+					int[] vals = buf;
+					if (count != buf.length) {
+						vals = new int[count];
+						System.arraycopy(buf, done, vals, 0, count);
+					}
+					ensurePage(index);
+					pages[index].load(offs, vals, mask);
+					done += count;
+				}
+			}
+		} finally {
+			for (int i = 0; i < pages.length; i++) {
+				if (pages[i] == null) continue;
+				if (pages[i].isClear()) pages[i] = null;
+				else pages[i] = MemContentsSub.compress(pages[i]);
+			}
+			fireBytesChanged(0, size, oldValues);
+		}
+	}
+
+	//
+	// contents decoded on demand
+	//
+	String getEncoded() {
+		return encoded;
+	}
+
+	private synchronized void decode() {
+		String text = encoded;
+		if (text == null) return; // another thread got here first
+		// decoding into a separate object keeps other threads from seeing
+		// a partly decoded memory
+		MemContents dst = new MemContents(addrBits, width);
+		try {
+			StringReader in = new StringReader(text);
+			in.skip(encodedOffset);
+			MemContentsCodec.readContents(in, dst, encodedFormat);
+		} catch (IOException e) {
+			System.err.println(Strings.get("romContentsFormatError")); //OK
+		}
+		pages = dst.pages;
+		pageShared = dst.pageShared;
+		encoded = null;
+	}
+
+	private synchronized void discardEncoded() {
+		encoded = null;
+	}
+
+	//
+	// memory-mapped images
+	//
+	File getImageFile() {
+		return image == null ? null : image.getFile();
+	}
+
+	/** Replaces the contents with a raw image file, which is mapped into
+	 * memory rather than read. Each page reads from the file until it is
+	 * first written; saveImage writes the changed values back. The caller
+	 * holds the propagator of any simulation reading the memory, since the
+	 * pages are replaced. */
+	void mapImage(File file) throws IOException {
+		MemImage img = MemImage.map(file, width, getLastOffset() + 1);
+		discardEncoded();
+		int pageLength = getPageLength();
+		for (int i = 0; i < pages.length; i++) {
+			long start = (long) i << PAGE_SIZE_BITS;
+			pages[i] = start < img.getLength() ? img.createPage(start, pageLength) : null;
+			pageShared[i] = false;
+		}
+		image = img;
+		// the values before are not worth keeping just for the listeners
+		fireBytesChanged(0, getLastOffset() + 1, null);
+	}
+
+	/** Writes the values back into the image file they were mapped from,
+	 * if any has changed, after which the pages read from the file again.
+	 * The file keeps its length, except that it grows just far enough to
+	 * hold any values past its end that are not 0. Clones reading the
+	 * file before keep the values they had. As with mapImage, the caller
+	 * holds the propagator. */
+	void saveImage() throws IOException {
+		if (image == null) return;
+		long length = image.getLength();
+		boolean changed = false;
+		for (int i = 0; i < pages.length; i++) {
+			MemContentsSub.ContentsInterface page = pages[i];
+			long start = (long) i << PAGE_SIZE_BITS;
+			if (page == null ? start < length : page.getImage() != image) {
+				changed = true;
+				for (int j = page == null ? -1 : page.getLength() - 1;
+						j >= 0 && start + j >= length; j--) {
+					if ((page.get(j) & mask) != 0) {
+						length = start + j + 1;
+						break;
+					}
+				}
+			}
+		}
+		if (!changed) return;
+		int pageLength = getPageLength();
+		MemImage img = image.write(pages, pageLength, length);
+		for (int i = 0; i < pages.length; i++) {
+			long start = (long) i << PAGE_SIZE_BITS;
+			pages[i] = start < length ? img.createPage(start, pageLength) : null;
+			pageShared[i] = false;
+		}
+		image = img;
+	}
+
+	/** Makes the page ready for setting one value. A page that is not there
+	 * yet starts out as runs, since a memory that is written only here and
+	 * there should not cost a whole array for each page it touches. */
+	private void ensureSettable(int index, int offs, int value) {
+		MemContentsSub.ContentsInterface page = pages[index];
+		if (page == null) {
+			pages[index] = MemContentsSub.createConstant(PAGE_SIZE, 0);
+			pageShared[index] = false;
+		} else if (page.isCompact()) {
+			if (pageShared[index]) {
+				pages[index] = page.clone();
+				pageShared[index] = false;
+			}
+		} else {
+			ensurePage(index);
+		}
+		if (!pages[index].canSet(offs, value)) {
+			pages[index] = MemContentsSub.expand(pages[index], width);
+		}
+	}
+
+	private int getPageLength() {
+		return addrBits < PAGE_SIZE_BITS ? 1 << addrBits : PAGE_SIZE;
+	}
+
 	public long getFirstOffset() {
 		return 0;
 	}
@@ -332,9 +652,18 @@ class MemContents implements Cloneable, HexModel {
 		return width;
 	}
 	
+	/** Makes the page an array of its own, ready for writing in bulk. */
 	private void ensurePage(int index) {
-		if (pages[index] == null) {
+		MemContentsSub.ContentsInterface page = pages[index];
+		if (page == null) {
 			pages[index] = MemContentsSub.createContents(PAGE_SIZE, width);
+			pageShared[index] = false;
+		} else if (page.isCompact() || page.getImage() != null) {
+			pages[index] = MemContentsSub.expand(page, width);
+			pageShared[index] = false;
+		} else if (pageShared[index]) {
+			pages[index] = pages[index].clone();
+			pageShared[index] = false;
 		}
 	}
 }
@@ -0,0 +1,342 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.std.memory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import com.cburch.hex.HexModel;
+import com.cburch.logisim.gui.hex.HexFile;
+
+/** The compact encoding of memory contents used within project files for
+ * large memories. The values are divided into blocks, each either a run of
+ * one repeated value or a sequence of literal values; the blocks are
+ * deflated, and the compressed bytes are written in base 64, broken into
+ * lines. Both directions work as streams, so neither the text nor the
+ * values ever need to be held in full.
+ *
+ * Each block begins with its count, doubled and plus one if the block
+ * holds literals, written seven bits per byte, least significant first,
+ * with the top bit set on all bytes but the last. A value takes one, two,
+ * or four little-endian bytes according to the data width.
+ *
+ * The contents attributes of the memories in cake.ram2 use this encoding
+ * as well, which is why it works on any HexModel. */
+public class MemContentsCodec {
+	public static final String FORMAT = "deflate";
+	/** Memories with fewer address bits than this are saved as hex text,
+	 * which stays readable and diffable. */
+	public static final int MIN_ADDR_BITS = 12;
+
+	private static final int MIN_RUN = 4;
+	private static final int MAX_LITERALS = 4096;
+	private static final int LINE_LENGTH = 76;
+	private static final String DIGITS
+		= "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+	private static final byte[] DIGIT_VALUES = new byte[128]; // -1 if none
+	static {
+		Arrays.fill(DIGIT_VALUES, (byte) -1);
+		for (int i = 0; i < DIGITS.length(); i++) {
+			DIGIT_VALUES[DIGITS.charAt(i)] = (byte) i;
+		}
+	}
+
+	private MemContentsCodec() { }
+
+	/** Writes the text of a memory's contents attribute: a header line
+	 * giving the memory's dimensions, and then its values, in this
+	 * encoding if the memory has at least MIN_ADDR_BITS address bits and
+	 * as hex text otherwise. */
+	public static void writeContents(Writer out, HexModel src)
+			throws IOException {
+		int addr = 64 - Long.numberOfLeadingZeros(src.getLastOffset());
+		int data = src.getValueWidth();
+		if (addr >= MIN_ADDR_BITS) {
+			out.write("addr/data: " + addr + " " + data + " " + FORMAT + "\n");
+			write(out, src);
+		} else {
+			out.write("addr/data: " + addr + " " + data + "\n");
+			HexFile.save(out, src);
+		}
+	}
+
+	/** Reads the values following the header line of a contents
+	 * attribute, given the format that the header names, or null for hex
+	 * text. */
+	public static void readContents(Reader in, HexModel dst, String format)
+			throws IOException {
+		if (format == null) {
+			HexFile.open(dst, in);
+		} else if (format.equals(FORMAT)) {
+			read(in, dst);
+		} else {
+			throw new IOException(Strings.get("romContentsFormatError"));
+		}
+	}
+
+	public static void write(Writer out, HexModel src) throws IOException {
+		long last = src.getLastOffset();
+		while (last >= 0 && src.get(last) == 0) last--;
+
+		Base64Output text = new Base64Output(out);
+		DeflaterOutputStream zip = new DeflaterOutputStream(text,
+				new Deflater(), 8192);
+		BlockWriter blocks = new BlockWriter(zip,
+				MemImage.getBytesPerValue(src.getValueWidth()));
+		int[] literals = new int[MAX_LITERALS];
+		int numLiterals = 0;
+		long cur = 0;
+		while (cur <= last) {
+			int val = src.get(cur);
+			long start = cur;
+			cur++;
+			while (cur <= last && src.get(cur) == val) cur++;
+			long len = cur - start;
+			if (len >= MIN_RUN) {
+				blocks.writeLiterals(literals, numLiterals);
+				numLiterals = 0;
+				blocks.writeRun(len, val);
+			} else {
+				for (long i = 0; i < len; i++) {
+					if (numLiterals == literals.length) {
+						blocks.writeLiterals(literals, numLiterals);
+						numLiterals = 0;
+					}
+					literals[numLiterals] = val;
+					numLiterals++;
+				}
+			}
+		}
+		blocks.writeLiterals(literals, numLiterals);
+		blocks.flush();
+		zip.finish();
+		text.finish();
+	}
+
+	public static void read(Reader in, HexModel dst) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(
+				new InflaterInputStream(new Base64Input(in)), 8192));
+		int bytesPerValue = MemImage.getBytesPerValue(dst.getValueWidth());
+		long size = dst.getLastOffset() + 1;
+		int[] buffer = new int[MAX_LITERALS];
+		long offs = 0;
+		try {
+			while (true) {
+				int first = data.read();
+				if (first < 0) break;
+				long header = readCount(data, first);
+				long count = header >>> 1;
+				if (count > size - offs) throw new IOException(Strings.get("romContentsFormatError"));
+				if ((header & 1) == 0) {
+					dst.fill(offs, count, readValue(data, bytesPerValue));
+					offs += count;
+				} else {
+					while (count > 0) {
+						int n = (int) Math.min(count, buffer.length);
+						int[] vals = n == buffer.length ? buffer : new int[n];
+						for (int i = 0; i < n; i++) {
+							vals[i] = readValue(data, bytesPerValue);
+						}
+						dst.set(offs, vals);
+						offs += n;
+						count -= n;
+					}
+				}
+			}
+		} catch (EOFException e) {
+			throw new IOException(Strings.get("romContentsFormatError"));
+		} catch (ZipException e) {
+			throw new IOException(Strings.get("romContentsFormatError"));
+		}
+		dst.fill(offs, size - offs, 0);
+	}
+
+	private static long readCount(DataInputStream in, int first)
+			throws IOException {
+		long ret = first & 0x7F;
+		int shift = 7;
+		int b = first;
+		while ((b & 0x80) != 0) {
+			if (shift > 56) throw new IOException(Strings.get("romContentsFormatError"));
+			b = in.readUnsignedByte();
+			ret |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		return ret;
+	}
+
+	private static int readValue(DataInputStream in, int bytesPerValue)
+			throws IOException {
+		int ret = 0;
+		for (int i = 0; i < bytesPerValue; i++) {
+			ret |= in.readUnsignedByte() << (8 * i);
+		}
+		return ret;
+	}
+
+	private static class BlockWriter {
+		private OutputStream out;
+		private int bytesPerValue;
+		private byte[] buf = new byte[8192];
+		private int len = 0;
+
+		BlockWriter(OutputStream out, int bytesPerValue) {
+			this.out = out;
+			this.bytesPerValue = bytesPerValue;
+		}
+
+		void writeRun(long count, int value) throws IOException {
+			writeCount(count << 1);
+			writeValue(value);
+		}
+
+		void writeLiterals(int[] values, int count) throws IOException {
+			if (count == 0) return;
+			writeCount(((long) count << 1) | 1);
+			for (int i = 0; i < count; i++) writeValue(values[i]);
+		}
+
+		private void writeCount(long count) throws IOException {
+			while (count >= 0x80) {
+				put((int) (count & 0x7F) | 0x80);
+				count >>>= 7;
+			}
+			put((int) count);
+		}
+
+		private void writeValue(int value) throws IOException {
+			for (int i = 0; i < bytesPerValue; i++) {
+				put(value >>> (8 * i));
+			}
+		}
+
+		private void put(int b) throws IOException {
+			if (len == buf.length) flush();
+			buf[len] = (byte) b;
+			len++;
+		}
+
+		void flush() throws IOException {
+			out.write(buf, 0, len);
+			len = 0;
+		}
+	}
+
+	private static class Base64Output extends OutputStream {
+		private Writer out;
+		private int bits = 0;
+		private int numBytes = 0;
+		private int column = 0;
+
+		Base64Output(Writer out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			bits = (bits << 8) | (b & 0xFF);
+			numBytes++;
+			if (numBytes == 3) {
+				putDigits(4);
+				bits = 0;
+				numBytes = 0;
+			}
+		}
+
+		/** Writes out any partial group with its padding, ending the
+		 * line; unlike close, it leaves the writer open. */
+		void finish() throws IOException {
+			if (numBytes > 0) {
+				int n = numBytes;
+				bits <<= 8 * (3 - n);
+				putDigits(n + 1);
+				for (int i = n + 1; i < 4; i++) out.write('=');
+				bits = 0;
+				numBytes = 0;
+			}
+			out.write('\n');
+			column = 0;
+		}
+
+		private void putDigits(int count) throws IOException {
+			if (column >= LINE_LENGTH) {
+				out.write('\n');
+				column = 0;
+			}
+			for (int i = 0; i < count; i++) {
+				out.write(DIGITS.charAt((bits >>> (18 - 6 * i)) & 0x3F));
+			}
+			column += 4;
+		}
+	}
+
+	private static class Base64Input extends InputStream {
+		private Reader in;
+		private int[] bytes = new int[3];
+		private int pos = 0;
+		private int count = 0;
+		private boolean done = false;
+
+		Base64Input(Reader in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (pos == count) {
+				if (done || !fill()) return -1;
+			}
+			int ret = bytes[pos];
+			pos++;
+			return ret;
+		}
+
+		@Override
+		public int read(byte[] dst, int offs, int len) throws IOException {
+			if (len == 0) return 0;
+			int n = 0;
+			while (n < len) {
+				int b = read();
+				if (b < 0) break;
+				dst[offs + n] = (byte) b;
+				n++;
+			}
+			return n == 0 ? -1 : n;
+		}
+
+		private boolean fill() throws IOException {
+			int bits = 0;
+			int digits = 0;
+			while (digits < 4) {
+				int c = in.read();
+				if (c < 0 || c == '=') break;
+				if (Character.isWhitespace((char) c)) continue;
+				int d = c < DIGIT_VALUES.length ? DIGIT_VALUES[c] : -1;
+				if (d < 0) throw new IOException(Strings.get("romContentsFormatError"));
+				bits = (bits << 6) | d;
+				digits++;
+			}
+			if (digits < 4) done = true;
+			if (digits < 2) return false;
+			bits <<= 6 * (4 - digits);
+			count = digits - 1;
+			for (int i = 0; i < count; i++) {
+				bytes[i] = (bits >>> (16 - 8 * i)) & 0xFF;
+			}
+			pos = 0;
+			return true;
+		}
+	}
+}
@@ -3,6 +3,7 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 class MemContentsSub {
@@ -13,6 +14,42 @@ class MemContentsSub {
 		else if (bits <= 16) return new ShortContents(size);
 		else                return new IntContents(size);
 	}
+
+	/** Returns a page holding the value at every address. */
+	static ContentsInterface createConstant(int size, int value) {
+		return new RunContents(size, value);
+	}
+
+	/** Returns an ordinary array page holding the same values. */
+	static ContentsInterface expand(ContentsInterface page, int bits) {
+		int n = page.getLength();
+		ContentsInterface ret = createContents(n, bits);
+		ret.load(0, page.get(0, n), -1);
+		return ret;
+	}
+
+	/** Returns the page as runs if it has few enough of them to stay that
+	 * way for a while, and otherwise the page itself. */
+	static ContentsInterface compress(ContentsInterface page) {
+		if (page.isCompact()) return page;
+		int n = page.getLength();
+		int runs = 1;
+		int last = page.get(0);
+		for (int i = 1; i < n; i++) {
+			int val = page.get(i);
+			if (val != last) {
+				runs++;
+				if (runs > RunContents.MAX_RUNS / 2) return page;
+				last = val;
+			}
+		}
+		RunContents ret = new RunContents(n, page.get(0));
+		for (int i = 1; i < n; i++) {
+			int val = page.get(i);
+			if (val != ret.values[ret.count - 1]) ret.insert(ret.count, i, val);
+		}
+		return ret;
+	}
 	
 	static abstract class ContentsInterface implements Cloneable {
 		@Override
@@ -29,6 +66,24 @@ class MemContentsSub {
 		abstract void clear();
 		abstract void load(int start, int[] values, int mask);
 
+		/** Returns the image that the page reads its values from, or null
+		 * if it holds them itself. */
+		MemImage getImage() {
+			return null;
+		}
+
+		/** Returns true if the page is held as runs rather than as an
+		 * array; such a page is replaced by an array before a bulk write. */
+		boolean isCompact() {
+			return false;
+		}
+
+		/** Returns false if the page should be replaced by an array before
+		 * the value is set. */
+		boolean canSet(int addr, int value) {
+			return true;
+		}
+
 		boolean matches(int[] values, int start, int mask) {
 			for (int i = 0; i < values.length; i++) {
 				if (get(start + i) != (values[i] & mask)) return false;
@@ -52,6 +107,7 @@ class MemContentsSub {
 	
 	private static class ByteContents extends ContentsInterface {
 		private byte[] data;
+		private int nonzero = 0; // how many entries of data are not 0
 	
 		public ByteContents(int size) {
 			data = new byte[size];
@@ -82,8 +138,11 @@ class MemContentsSub {
 		void set(int addr, int value) {
 			if (addr >= 0 && addr < data.length) {
 				byte oldValue = data[addr];
-				if (value != oldValue) {
-					data[addr] = (byte) value;
+				byte newValue = (byte) value;
+				if (newValue != oldValue) {
+					if (oldValue == 0) nonzero++;
+					else if (newValue == 0) nonzero--;
+					data[addr] = newValue;
 				}
 			}
 		}
@@ -91,19 +150,33 @@ class MemContentsSub {
 		@Override
 		void clear() {
 			Arrays.fill(data, (byte) 0);
+			nonzero = 0;
 		}
 	
 		@Override
 		void load(int start, int[] values, int mask) {
 			int n = Math.min(values.length, data.length - start);
 			for (int i = 0; i < n; i++) {
-				data[start + i] = (byte) (values[i] & mask);
+				byte oldValue = data[start + i];
+				byte newValue = (byte) (values[i] & mask);
+				if (oldValue == 0) {
+					if (newValue != 0) nonzero++;
+				} else if (newValue == 0) {
+					nonzero--;
+				}
+				data[start + i] = newValue;
 			}
 		}
+
+		@Override
+		boolean isClear() {
+			return nonzero == 0;
+		}
 	}
 
 	private static class ShortContents extends ContentsInterface {
 		private short[] data;
+		private int nonzero = 0; // how many entries of data are not 0
 	
 		public ShortContents(int size) {
 			data = new short[size];
@@ -134,8 +207,11 @@ class MemContentsSub {
 		void set(int addr, int value) {
 			if (addr >= 0 && addr < data.length) {
 				short oldValue = data[addr];
-				if (value != oldValue) {
-					data[addr] = (short) value;
+				short newValue = (short) value;
+				if (newValue != oldValue) {
+					if (oldValue == 0) nonzero++;
+					else if (newValue == 0) nonzero--;
+					data[addr] = newValue;
 				}
 			}
 		}
@@ -143,19 +219,33 @@ class MemContentsSub {
 		@Override
 		void clear() {
 			Arrays.fill(data, (short) 0);
+			nonzero = 0;
 		}
 	
 		@Override
 		void load(int start, int[] values, int mask) {
 			int n = Math.min(values.length, data.length - start);
 			for (int i = 0; i < n; i++) {
-				data[start + i] = (short) (values[i] & mask);
+				short oldValue = data[start + i];
+				short newValue = (short) (values[i] & mask);
+				if (oldValue == 0) {
+					if (newValue != 0) nonzero++;
+				} else if (newValue == 0) {
+					nonzero--;
+				}
+				data[start + i] = newValue;
 			}
 		}
+
+		@Override
+		boolean isClear() {
+			return nonzero == 0;
+		}
 	}
 	
 	private static class IntContents extends ContentsInterface {
 		private int[] data;
+		private int nonzero = 0; // how many entries of data are not 0
 	
 		public IntContents(int size) {
 			data = new int[size];
@@ -186,8 +276,11 @@ class MemContentsSub {
 		void set(int addr, int value) {
 			if (addr >= 0 && addr < data.length) {
 				int oldValue = data[addr];
-				if (value != oldValue) {
-					data[addr] = value;
+				int newValue = value;
+				if (newValue != oldValue) {
+					if (oldValue == 0) nonzero++;
+					else if (newValue == 0) nonzero--;
+					data[addr] = newValue;
 				}
 			}
 		}
@@ -195,14 +288,242 @@ class MemContentsSub {
 		@Override
 		void clear() {
 			Arrays.fill(data, 0);
+			nonzero = 0;
 		}
 	
 		@Override
 		void load(int start, int[] values, int mask) {
 			int n = Math.min(values.length, data.length - start);
 			for (int i = 0; i < n; i++) {
-				data[i] = values[i] & mask;
+				int oldValue = data[start + i];
+				int newValue = values[i] & mask;
+				if (oldValue == 0) {
+					if (newValue != 0) nonzero++;
+				} else if (newValue == 0) {
+					nonzero--;
+				}
+				data[start + i] = newValue;
+			}
+		}
+
+		@Override
+		boolean isClear() {
+			return nonzero == 0;
+		}
+	}
+	
+	/** A page held as runs of equal values, as are pages filled with one
+	 * value and pages that are untouched but for a few addresses. Once a
+	 * write would need more than MAX_RUNS runs, the page asks to be
+	 * replaced by an array. */
+	static class RunContents extends ContentsInterface {
+		static final int MAX_RUNS = 64;
+
+		private int length;
+		private int count; // how many runs there are
+		private int[] starts; // where each run begins, starting with 0
+		private int[] values; // the value throughout each run
+
+		RunContents(int length, int value) {
+			this.length = length;
+			this.count = 1;
+			this.starts = new int[4];
+			this.values = new int[4];
+			this.values[0] = value;
+		}
+
+		@Override
+		public RunContents clone() {
+			RunContents ret = (RunContents) super.clone();
+			ret.starts = this.starts.clone();
+			ret.values = this.values.clone();
+			return ret;
+		}
+
+		@Override
+		boolean isCompact() {
+			return true;
+		}
+
+		@Override
+		int getLength() {
+			return length;
+		}
+
+		@Override
+		int get(int addr) {
+			if (addr < 0 || addr >= length) return 0;
+			return values[find(addr)];
+		}
+
+		@Override
+		int[] get(int start, int len) {
+			int[] ret = new int[len];
+			int end = start + len;
+			for (int i = find(Math.max(start, 0)); i < count; i++) {
+				int from = Math.max(starts[i], start);
+				int to = Math.min(i + 1 < count ? starts[i + 1] : length, end);
+				if (from >= end) break;
+				Arrays.fill(ret, from - start, to - start, values[i]);
 			}
+			return ret;
+		}
+
+		@Override
+		boolean canSet(int addr, int value) {
+			return count + 2 <= MAX_RUNS || get(addr) == value;
+		}
+
+		@Override
+		void set(int addr, int value) {
+			if (addr < 0 || addr >= length) return;
+			int i = find(addr);
+			int old = values[i];
+			if (old == value) return;
+			int end = i + 1 < count ? starts[i + 1] : length;
+			if (addr == starts[i] && addr == end - 1) {
+				values[i] = value;
+			} else if (addr == starts[i]) {
+				insert(i, addr, value);
+				starts[i + 1] = addr + 1;
+			} else if (addr == end - 1) {
+				insert(i + 1, addr, value);
+			} else {
+				insert(i + 1, addr, value);
+				insert(i + 2, addr + 1, old);
+			}
+			merge();
+		}
+
+		@Override
+		void clear() {
+			count = 1;
+			values[0] = 0;
+		}
+
+		@Override
+		void load(int start, int[] values, int mask) {
+			int n = Math.min(values.length, length - start);
+			for (int i = 0; i < n; i++) set(start + i, values[i] & mask);
+		}
+
+		@Override
+		boolean isClear() {
+			return count == 1 && values[0] == 0;
+		}
+
+		private int find(int addr) {
+			int lo = 0;
+			int hi = count - 1;
+			while (lo < hi) {
+				int mid = (lo + hi + 1) >>> 1;
+				if (starts[mid] <= addr) lo = mid;
+				else hi = mid - 1;
+			}
+			return lo;
+		}
+
+		private void insert(int index, int start, int value) {
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, 2 * count);
+				values = Arrays.copyOf(values, 2 * count);
+			}
+			System.arraycopy(starts, index, starts, index + 1, count - index);
+			System.arraycopy(values, index, values, index + 1, count - index);
+			starts[index] = start;
+			values[index] = value;
+			count++;
+		}
+
+		private void merge() {
+			int j = 0;
+			for (int i = 1; i < count; i++) {
+				if (values[i] != values[j]) {
+					j++;
+					starts[j] = starts[i];
+					values[j] = values[i];
+				}
+			}
+			count = j + 1;
+		}
+	}
+
+	/** A page reading from a mapped image. The page copies its values
+	 * onto the heap when it is first written, so that the image, which
+	 * other memories may also read, stays as it is. */
+	static class MappedContents extends ContentsInterface {
+		private MemImage image;
+		private int index; // the page's index in the image
+		private int bytesPerValue;
+		private int length;
+		private int width;
+		private int clear = -1; // whether all values are 0, once known
+		private ContentsInterface written = null; // the values once written
+
+		MappedContents(MemImage image, int index, int bytesPerValue,
+				int length, int width) {
+			this.image = image;
+			this.index = index;
+			this.bytesPerValue = bytesPerValue;
+			this.length = length;
+			this.width = width;
+		}
+
+		@Override
+		public MappedContents clone() {
+			MappedContents ret = (MappedContents) super.clone();
+			if (written != null) ret.written = written.clone();
+			return ret;
+		}
+
+		@Override
+		MemImage getImage() {
+			return written == null ? image : null;
+		}
+
+		@Override
+		int getLength() {
+			return length;
+		}
+
+		@Override
+		int get(int addr) {
+			if (written != null) return written.get(addr);
+			ByteBuffer buffer = image.getSlice(index);
+			int pos = addr * bytesPerValue;
+			if (addr < 0 || pos + bytesPerValue > buffer.limit()) return 0;
+			switch (bytesPerValue) {
+			case 1: return buffer.get(pos);
+			case 2: return buffer.getShort(pos);
+			default: return buffer.getInt(pos);
+			}
+		}
+
+		@Override
+		boolean isClear() {
+			if (written != null) return written.isClear();
+			if (clear < 0) clear = super.isClear() ? 1 : 0;
+			return clear == 1;
+		}
+
+		@Override
+		void set(int addr, int value) {
+			getWritten().set(addr, value);
+		}
+
+		@Override
+		void clear() {
+			written = createContents(length, width);
+		}
+
+		@Override
+		void load(int start, int[] values, int mask) {
+			getWritten().load(start, values, mask);
+		}
+
+		private ContentsInterface getWritten() {
+			if (written == null) written = expand(this, width);
+			return written;
 		}
 	}
 }
@@ -0,0 +1,192 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.std.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/** A raw image file mapped into memory, from which the pages of a
+ * MemContents are read until they are first written. Each value takes
+ * one, two, or four bytes, in little-endian order, according to the data
+ * width, as with the pages kept on the heap. The operating system reads
+ * the file as its pages are touched, so opening even a large image costs
+ * almost nothing.
+ *
+ * Clones of a memory read from the same image. A mapping can't be
+ * released safely while another thread may still read from it, so the
+ * file stays mapped until the collector finds the image unused, and
+ * changes are written into the file in place rather than into a new file
+ * replacing it, which a mapping would prevent on some systems. */
+class MemImage {
+	// the images still in use, so that writing a file preserves the values
+	// that the others mapping it read
+	private static final WeakHashMap<MemImage,Boolean> images
+		= new WeakHashMap<MemImage,Boolean>();
+
+	/** Maps the image in a file for a memory of the given width holding
+	 * the given number of values; a larger image is refused before it is
+	 * mapped. */
+	static MemImage map(File file, int width, long capacity) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE
+					|| size / getBytesPerValue(width) > capacity) {
+				throw new IOException(Strings.get("ramImageSizeError"));
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, size);
+			MemImage ret = new MemImage(file, buffer, width);
+			synchronized (images) {
+				images.put(ret, Boolean.TRUE);
+			}
+			return ret;
+		} finally {
+			// the mapping remains valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	static int getBytesPerValue(int width) {
+		if (width <= 8) return 1;
+		else if (width <= 16) return 2;
+		else return 4;
+	}
+
+	private File file;
+	private MappedByteBuffer buffer;
+	private int capacity;
+	private int width;
+	private int bytesPerValue;
+	private int pageLength = 1;
+	// what each page reads, by page; replaced as a whole when a page is
+	// preserved, so that the pages always see a complete array
+	private volatile ByteBuffer[] slices = new ByteBuffer[0];
+
+	private MemImage(File file, MappedByteBuffer buffer, int width) {
+		this.file = file;
+		this.buffer = buffer;
+		this.capacity = buffer.capacity();
+		this.width = width;
+		this.bytesPerValue = getBytesPerValue(width);
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	/** Returns the number of values in the image. */
+	long getLength() {
+		return capacity / bytesPerValue;
+	}
+
+	/** Returns a page reading the given values straight from the image.
+	 * Values beyond the end of the file read as 0. The pages of an image
+	 * all have the same length. */
+	synchronized MemContentsSub.ContentsInterface createPage(long start, int length) {
+		pageLength = length;
+		int index = (int) (start / length);
+		ByteBuffer[] s = slices;
+		if (index >= s.length) {
+			ByteBuffer[] t = new ByteBuffer[index + 1];
+			System.arraycopy(s, 0, t, 0, s.length);
+			s = t;
+		}
+		if (s[index] == null) {
+			long first = start * bytesPerValue;
+			long last = Math.min(capacity, (start + length) * bytesPerValue);
+			ByteBuffer dup = buffer.duplicate();
+			dup.position((int) Math.min(first, last));
+			dup.limit((int) last);
+			s[index] = dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}
+		slices = s;
+		return new MemContentsSub.MappedContents(this, index, bytesPerValue,
+				length, width);
+	}
+
+	/** Returns what the page of the given index reads. */
+	ByteBuffer getSlice(int index) {
+		return slices[index];
+	}
+
+	/** Writes the values of a memory that reads from this image into the
+	 * image's file, up to the given length, and returns the file mapped
+	 * anew. The pages are given in order, each of the given length, with
+	 * null for a page of zeroes. Only the pages that no longer read from
+	 * this image are written, each in its place; the file grows if the
+	 * length is past its end. Beforehand, every image of the file keeps a
+	 * copy of those pages on the heap, so that other memories still
+	 * reading it keep their values. */
+	MemImage write(MemContentsSub.ContentsInterface[] pages, int pageLength,
+			long length) throws IOException {
+		ArrayList<MemImage> others;
+		synchronized (images) {
+			others = new ArrayList<MemImage>(images.keySet());
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer out = ByteBuffer.allocate(pageLength * bytesPerValue);
+			out.order(ByteOrder.LITTLE_ENDIAN);
+			long start = 0;
+			for (int i = 0; start < length; i++, start += pageLength) {
+				MemContentsSub.ContentsInterface page = pages[i];
+				if (page != null && page.getImage() == this) continue;
+				int n = (int) Math.min(pageLength, length - start);
+				long pos = start * bytesPerValue;
+				for (MemImage img : others) {
+					if (img.file.equals(file)) {
+						img.preserve(pos, pos + n * bytesPerValue);
+					}
+				}
+				out.clear();
+				for (int j = 0; j < n; j++) {
+					int val = page == null ? 0 : page.get(j);
+					switch (bytesPerValue) {
+					case 1: out.put((byte) val); break;
+					case 2: out.putShort((short) val); break;
+					default: out.putInt(val);
+					}
+				}
+				out.flip();
+				while (out.hasRemaining()) {
+					pos += channel.write(out, pos);
+				}
+			}
+			channel.force(false);
+		} finally {
+			raf.close();
+		}
+		return map(file, width, length);
+	}
+
+	// Copies onto the heap the pages reading any of the given bytes of
+	// the file, before they are overwritten
+	private synchronized void preserve(long first, long last) {
+		int pageBytes = pageLength * bytesPerValue;
+		ByteBuffer[] s = slices.clone();
+		boolean changed = false;
+		for (int i = (int) (first / pageBytes); i < s.length
+				&& (long) i * pageBytes < last; i++) {
+			ByteBuffer slice = s[i];
+			if (slice != null && slice.isDirect()) {
+				ByteBuffer copy = ByteBuffer.allocate(slice.capacity());
+				copy.put(slice.duplicate());
+				copy.clear();
+				s[i] = copy.order(ByteOrder.LITTLE_ENDIAN);
+				changed = true;
+			}
+		}
+		if (changed) slices = s;
+	}
+}
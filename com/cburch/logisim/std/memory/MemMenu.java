@@ -9,6 +9,7 @@ import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
 
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
@@ -31,6 +32,8 @@ class MemMenu implements ActionListener, MenuExtender {
 	private JMenuItem clear;
 	private JMenuItem load;
 	private JMenuItem save;
+	private JCheckBoxMenuItem profile;
+	private JMenuItem exportProfile;
 
 	MemMenu(Mem factory, Instance instance) {
 		this.factory = factory;
@@ -52,12 +55,20 @@ class MemMenu implements ActionListener, MenuExtender {
 		clear = createItem(enabled, Strings.get("ramClearMenuItem"));
 		load = createItem(enabled, Strings.get("ramLoadMenuItem"));
 		save = createItem(enabled, Strings.get("ramSaveMenuItem"));
+		boolean profiled = enabled
+			&& factory.getProfile(instance, circState) != null;
+		profile = new JCheckBoxMenuItem(Strings.get("ramProfileMenuItem"), profiled);
+		profile.setEnabled(enabled);
+		profile.addActionListener(this);
+		exportProfile = createItem(profiled, Strings.get("ramExportProfileMenuItem"));
 
 		menu.addSeparator();
 		menu.add(edit);
 		menu.add(clear);
 		menu.add(load);
 		menu.add(save);
+		menu.add(profile);
+		menu.add(exportProfile);
 	}
 
 	private JMenuItem createItem(boolean enabled, String label) {
@@ -73,6 +84,8 @@ class MemMenu implements ActionListener, MenuExtender {
 		else if (src == clear) doClear();
 		else if (src == load) doLoad();
 		else if (src == save) doSave();
+		else if (src == profile) doProfile();
+		else if (src == exportProfile) doExportProfile();
 	}
 
 	private void doEdit() {
@@ -106,7 +119,10 @@ class MemMenu implements ActionListener, MenuExtender {
 		if (choice == JFileChooser.APPROVE_OPTION) {
 			File f = chooser.getSelectedFile();
 			try {
-				factory.loadImage(circState.getInstanceState(instance), f);
+				// the simulator must not read the pages while they change
+				synchronized(circState.getPropagator()) {
+					factory.loadImage(circState.getInstanceState(instance), f);
+				}
 			} catch (IOException e) {
 				JOptionPane.showMessageDialog(frame, e.getMessage(),
 						Strings.get("ramLoadErrorTitle"), JOptionPane.ERROR_MESSAGE);
@@ -125,7 +141,14 @@ class MemMenu implements ActionListener, MenuExtender {
 		if (choice == JFileChooser.APPROVE_OPTION) {
 			File f = chooser.getSelectedFile();
 			try {
-				HexFile.save(f, s.getContents());
+				MemContents contents = s.getContents();
+				if (f.equals(contents.getImageFile())) {
+					synchronized(circState.getPropagator()) {
+						contents.saveImage();
+					}
+				} else {
+					HexFile.save(f, contents);
+				}
 				factory.setCurrentImage(instance, f);
 			} catch (IOException e) {
 				JOptionPane.showMessageDialog(frame, e.getMessage(),
@@ -133,4 +156,25 @@ class MemMenu implements ActionListener, MenuExtender {
 			}
 		}
 	}
+
+	private void doProfile() {
+		factory.setProfiled(instance, circState, profile.isSelected());
+	}
+
+	private void doExportProfile() {
+		MemProfile p = factory.getProfile(instance, circState);
+		if (p == null) return;
+
+		JFileChooser chooser = proj.createChooser();
+		chooser.setDialogTitle(Strings.get("ramExportProfileDialogTitle"));
+		int choice = chooser.showSaveDialog(frame);
+		if (choice == JFileChooser.APPROVE_OPTION) {
+			try {
+				p.write(chooser.getSelectedFile());
+			} catch (IOException e) {
+				JOptionPane.showMessageDialog(frame, e.getMessage(),
+					Strings.get("ramSaveErrorTitle"), JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
 }
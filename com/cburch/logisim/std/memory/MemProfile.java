@@ -0,0 +1,235 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.std.memory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/** Counts the accesses that the simulator makes to a RAM or ROM while
+ * profiling is on for it: the reads and writes to each page of 4096
+ * addresses, the reads and writes to each address, and the clock cycles
+ * over which they were made. A memory keeps no profile until one is
+ * started, so that one not being profiled pays only for a null check.
+ *
+ * A clocked RAM counts each rising edge of its clock as a cycle, and an
+ * access on each cycle in which it is selected and loads or stores. A RAM
+ * with an asynchronous port counts an access on each change to its
+ * inputs, and a ROM counts a read whenever its address changes; neither
+ * has a clock, so neither counts cycles.
+ *
+ * Only the simulator's thread records into the profile, so the counts are
+ * kept in plain arrays, divided by page so that just the pages touched
+ * take space for counts of each address. Other threads may read the
+ * counts while the simulator runs, though they may then see counts a
+ * little behind.
+ *
+ * The memories of cake.ram2 keep the same profiles. */
+public class MemProfile {
+	public static final int PAGE_BITS = 12;
+
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	// the most addresses listed in an exported profile
+	private static final int EXPORT_HOT_ADDRESSES = 256;
+
+	private int addrBits;
+	private long lastAddr;
+	private long[] pageReads;
+	private long[] pageWrites;
+	private long[][] addrReads;
+	private long[][] addrWrites;
+	private long reads = 0;
+	private long writes = 0;
+	private long cycles = 0;
+	private long startNanos;
+
+	public MemProfile(int addrBits) {
+		this.addrBits = addrBits;
+		this.lastAddr = (1L << addrBits) - 1;
+		int pages = addrBits <= PAGE_BITS ? 1 : 1 << (addrBits - PAGE_BITS);
+		this.pageReads = new long[pages];
+		this.pageWrites = new long[pages];
+		this.addrReads = new long[pages][];
+		this.addrWrites = new long[pages][];
+		this.startNanos = System.nanoTime();
+	}
+
+	//
+	// recording, done on the simulator's thread
+	//
+	public void recordCycle() {
+		cycles++;
+	}
+
+	public void recordRead(long addr) {
+		if (addr < 0 || addr > lastAddr) return;
+		int page = (int) (addr >>> PAGE_BITS);
+		long[] counts = addrReads[page];
+		if (counts == null) {
+			counts = new long[PAGE_SIZE];
+			addrReads[page] = counts;
+		}
+		counts[(int) addr & PAGE_MASK]++;
+		pageReads[page]++;
+		reads++;
+	}
+
+	public void recordWrite(long addr) {
+		if (addr < 0 || addr > lastAddr) return;
+		int page = (int) (addr >>> PAGE_BITS);
+		long[] counts = addrWrites[page];
+		if (counts == null) {
+			counts = new long[PAGE_SIZE];
+			addrWrites[page] = counts;
+		}
+		counts[(int) addr & PAGE_MASK]++;
+		pageWrites[page]++;
+		writes++;
+	}
+
+	//
+	// reading the profile
+	//
+	public int getAddressBits() {
+		return addrBits;
+	}
+
+	public int getPageCount() {
+		return pageReads.length;
+	}
+
+	public long getCycleCount() {
+		return cycles;
+	}
+
+	public long getReadCount() {
+		return reads;
+	}
+
+	public long getWriteCount() {
+		return writes;
+	}
+
+	public long getPageReads(int page) {
+		return pageReads[page];
+	}
+
+	public long getPageWrites(int page) {
+		return pageWrites[page];
+	}
+
+	public long getReads(long addr) {
+		return getCount(addrReads, addr);
+	}
+
+	public long getWrites(long addr) {
+		return getCount(addrWrites, addr);
+	}
+
+	private long getCount(long[][] counts, long addr) {
+		if (addr < 0 || addr > lastAddr) return 0;
+		long[] page = counts[(int) (addr >>> PAGE_BITS)];
+		return page == null ? 0 : page[(int) addr & PAGE_MASK];
+	}
+
+	/** Returns the mean reads and writes per clock cycle, or 0 if no
+	 * cycles have been counted. */
+	public double getAccessesPerCycle() {
+		return cycles == 0 ? 0.0 : (double) (reads + writes) / cycles;
+	}
+
+	/** Returns the mean reads and writes per second since profiling
+	 * began. */
+	public double getAccessesPerSecond() {
+		long elapse = System.nanoTime() - startNanos;
+		return elapse <= 0 ? 0.0 : (reads + writes) * 1e9 / elapse;
+	}
+
+	/** Returns the addresses most often read or written, at most the given
+	 * number of them, beginning with the most accessed. Addresses never
+	 * accessed are left out. */
+	public long[] getHotAddresses(int max) {
+		// each candidate packs its count above its address, so that
+		// sorting them orders them by count
+		long[] top = new long[max];
+		int size = 0;
+		for (int page = 0; page < pageReads.length; page++) {
+			long[] r = addrReads[page];
+			long[] w = addrWrites[page];
+			if (r == null && w == null) continue;
+			for (int i = 0; i < PAGE_SIZE; i++) {
+				long count = (r == null ? 0 : r[i]) + (w == null ? 0 : w[i]);
+				if (count == 0) continue;
+				long addr = ((long) page << PAGE_BITS) | i;
+				long key = (Math.min(count, 0xFFFFFFFFFL) << 24) | addr;
+				if (size < max) {
+					top[size] = key;
+					size++;
+					if (size == max) Arrays.sort(top);
+				} else if (max > 0 && key > top[0]) {
+					int j = Arrays.binarySearch(top, key);
+					if (j < 0) j = -j - 1;
+					System.arraycopy(top, 1, top, 0, j - 1);
+					top[j - 1] = key;
+				}
+			}
+		}
+		if (size < max) Arrays.sort(top, 0, size);
+		long[] ret = new long[size];
+		for (int i = 0; i < size; i++) {
+			ret[i] = top[size - 1 - i] & 0xFFFFFF;
+		}
+		return ret;
+	}
+
+	/** Writes the profile as comma-separated values: a summary, then the
+	 * counts for each page accessed, then the most accessed addresses,
+	 * with a blank line between the parts. */
+	public void write(Writer out) throws IOException {
+		out.write("cycles," + cycles + "\n");
+		out.write("reads," + reads + "\n");
+		out.write("writes," + writes + "\n");
+		out.write("accesses per cycle," + getAccessesPerCycle() + "\n");
+		out.write("accesses per second," + getAccessesPerSecond() + "\n");
+		out.write("\n");
+
+		out.write("page start,reads,writes\n");
+		for (int page = 0; page < pageReads.length; page++) {
+			long r = pageReads[page];
+			long w = pageWrites[page];
+			if (r == 0 && w == 0) continue;
+			out.write(toHex((long) page << PAGE_BITS) + "," + r + "," + w + "\n");
+		}
+		out.write("\n");
+
+		out.write("address,reads,writes\n");
+		for (long addr : getHotAddresses(EXPORT_HOT_ADDRESSES)) {
+			out.write(toHex(addr) + "," + getReads(addr) + "," + getWrites(addr) + "\n");
+		}
+	}
+
+	public void write(File file) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"));
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	private String toHex(long addr) {
+		int digits = Math.max(1, (addrBits + 3) / 4);
+		String ret = Long.toHexString(addr);
+		StringBuilder buf = new StringBuilder("0x");
+		for (int i = ret.length(); i < digits; i++) buf.append('0');
+		buf.append(ret);
+		return buf.toString();
+	}
+}
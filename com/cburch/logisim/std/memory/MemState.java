@@ -33,19 +33,23 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
 	private long curScroll = 0;
 	private long cursorLoc = -1;
 	private long curAddr = -1;
+	private MemProfile profile = null;
 
 	MemState(MemContents contents) {
 		this.contents = contents;
 		setBits(contents.getLogLength(), contents.getWidth());
-		contents.addHexModelListener(this);
+		contents.addEditListener(this);
 	}
 	
+	/** Returns a copy for a clone of the circuit's state. The simulation
+	 * continues in the clone, so the copy takes over the profile. */
 	@Override
 	public MemState clone() {
 		try {
 			MemState ret = (MemState) super.clone();
 			ret.contents = contents.clone();
-			ret.contents.addHexModelListener(ret);
+			ret.contents.addEditListener(ret);
+			this.profile = null;
 			return ret;
 		} catch (CloneNotSupportedException e) { return null; }
 	}
@@ -80,6 +84,17 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
 		return contents;
 	}
 
+	//
+	// methods for accessing the access profile
+	//
+	MemProfile getProfile() {
+		return profile;
+	}
+
+	void setProfile(MemProfile value) {
+		profile = value;
+	}
+
 	//
 	// methods for accessing data within memory
 	//
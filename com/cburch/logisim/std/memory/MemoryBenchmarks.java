@@ -0,0 +1,18 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.std.memory;
+
+import com.cburch.hex.HexModel;
+
+/** Entry points into the memory components for the benchmarks in
+ * com.cburch.logisim.bench. Nothing else should use these. */
+public class MemoryBenchmarks {
+	private MemoryBenchmarks() { }
+
+	/** Creates the same contents that a RAM or ROM with the given
+	 * dimensions would hold. */
+	public static HexModel createContents(int addrBits, int width) {
+		return MemContents.create(addrBits, width);
+	}
+}
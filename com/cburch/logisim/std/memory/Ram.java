@@ -7,6 +7,8 @@ import java.awt.Color;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 
+import javax.swing.SwingUtilities;
+
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeEvent;
@@ -162,6 +164,8 @@ public class Ram extends Mem {
 		Value addrValue = state.getPort(ADDR);
 		boolean chipSelect = state.getPort(CS) != Value.FALSE;
 		boolean triggered = asynch || myState.setClock(state.getPort(CLK), StdAttr.TRIG_RISING);
+		MemProfile profile = myState.getProfile();
+		if (profile != null && triggered && !asynch) profile.recordCycle();
 		boolean outputEnabled = state.getPort(OE) != Value.FALSE;
 		boolean shouldClear = state.getPort(CLR) == Value.TRUE;
 		
@@ -192,7 +196,11 @@ public class Ram extends Mem {
 			}
 			if (shouldStore) {
 				Value dataValue = state.getPort(separate ? DIN : DATA);
-				myState.getContents().set(addr, dataValue.toIntValue());
+				myState.getContents().write(addr, dataValue.toIntValue());
+			}
+			if (profile != null) {
+				if (shouldStore) profile.recordWrite(addr);
+				else if (outputEnabled) profile.recordRead(addr);
 			}
 		}
 
@@ -235,7 +243,7 @@ public class Ram extends Mem {
 			this.listener = listener;
 			this.clockState = new ClockState();
 			if (parent != null) parent.getAttributeSet().addAttributeListener(this);
-			contents.addHexModelListener(listener);
+			contents.addEditListener(listener);
 		}
 		
 		void setRam(Instance value) {
@@ -245,12 +253,22 @@ public class Ram extends Mem {
 			if (value != null) value.getAttributeSet().addAttributeListener(this);
 		}
 		
+		// the copy takes over any open hex editor, as the simulation
+		// continues with it
 		@Override
 		public RamState clone() {
 			RamState ret = (RamState) super.clone();
 			ret.parent = null;
 			ret.clockState = this.clockState.clone();
-			ret.getContents().addHexModelListener(listener);
+			final MemContents contents = ret.getContents();
+			contents.addEditListener(listener);
+			final HexFrame frame = hexFrame;
+			if (frame != null) {
+				this.hexFrame = null;
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() { frame.setModel(contents); }
+				});
+			}
 			return ret;
 		}
 		
@@ -24,6 +24,9 @@ import com.cburch.logisim.util.GraphicsUtil;
 import com.cburch.logisim.util.StringUtil;
 
 public class Random extends InstanceFactory {
+	// the generator's values are ints, so it is at most 32 bits wide
+	private static final Attribute<BitWidth> ATTR_WIDTH
+		= Attributes.forBitWidth("width", Strings.getter("stdDataWidthAttr"), 1, 32);
 	private static final Attribute<Integer> ATTR_SEED
 		= Attributes.forInteger("seed", Strings.getter("randomSeedAttr"));
 	
@@ -35,20 +38,20 @@ public class Random extends InstanceFactory {
 	public Random() {
 		super("Random", Strings.getter("randomComponent"));
 		setAttributes(new Attribute[] {
-				StdAttr.WIDTH, ATTR_SEED, StdAttr.EDGE_TRIGGER,
+				ATTR_WIDTH, ATTR_SEED, StdAttr.EDGE_TRIGGER,
 				StdAttr.LABEL, StdAttr.LABEL_FONT
 			}, new Object[] {
 				BitWidth.create(8), Integer.valueOf(0), StdAttr.TRIG_RISING,
 				"", StdAttr.DEFAULT_LABEL_FONT
 			});
-		setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
+		setKeyConfigurator(new BitWidthConfigurator(ATTR_WIDTH, 1, 32));
 
 		setOffsetBounds(Bounds.create(-30, -20, 30, 40));
 		setIconName("random.gif");
 		setInstanceLogger(Logger.class);
 		
 		Port[] ps = new Port[4];
-		ps[OUT] = new Port(  0,   0, Port.OUTPUT, StdAttr.WIDTH);
+		ps[OUT] = new Port(  0,   0, Port.OUTPUT, ATTR_WIDTH);
 		ps[CK]  = new Port(-30, -10, Port.INPUT, 1);
 		ps[NXT] = new Port(-30,  10, Port.INPUT, 1);
 		ps[RST] = new Port(-20,  20, Port.INPUT, 1);
@@ -75,7 +78,7 @@ public class Random extends InstanceFactory {
 			state.setData(data);
 		}
 
-		BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+		BitWidth dataWidth = state.getAttributeValue(ATTR_WIDTH);
 		Object triggerType = state.getAttributeValue(StdAttr.EDGE_TRIGGER);
 		boolean triggered = data.updateClock(state.getPort(CK), triggerType);
 
@@ -93,7 +96,7 @@ public class Random extends InstanceFactory {
 		Graphics g = painter.getGraphics();
 		Bounds bds = painter.getBounds();
 		StateData state = (StateData) painter.getData();
-		BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+		BitWidth widthVal = painter.getAttributeValue(ATTR_WIDTH);
 		int width = widthVal == null ? 8 : widthVal.getWidth();
 
 		// draw boundary, label
@@ -172,7 +175,7 @@ public class Random extends InstanceFactory {
 	
 		@Override
 		public Value getLogValue(InstanceState state, Object option) {
-			BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+			BitWidth dataWidth = state.getAttributeValue(ATTR_WIDTH);
 			if (dataWidth == null) dataWidth = BitWidth.create(0);
 			StateData data = (StateData) state.getData();
 			if (data == null) return Value.createKnown(dataWidth, 0);
@@ -29,6 +29,13 @@ public class Register extends InstanceFactory {
 	private static final int CLR = 3;
 	private static final int EN  = 4;
 
+	/** Returns the attribute giving the width of a register or of a
+	 * counter, which share a poker and a logger. */
+	static Attribute<BitWidth> getWidthAttribute(InstanceState state) {
+		return state.getFactory() instanceof Counter ? Counter.ATTR_WIDTH
+				: StdAttr.WIDTH;
+	}
+
 	public Register() {
 		super("Register", Strings.getter("registerComponent"));
 		setAttributes(new Attribute[] {
@@ -82,7 +89,7 @@ public class Register extends InstanceFactory {
 			data.value = 0;
 		} else if (triggered && state.getPort(EN) != Value.FALSE) {
 			Value in = state.getPort(IN);
-			if (in.isFullyDefined()) data.value = in.toIntValue();
+			if (in.isFullyDefined()) data.value = in.toLongValue();
 		} 
 
 		state.setPort(OUT, Value.createKnown(dataWidth, data.value), DELAY);
@@ -100,12 +107,12 @@ public class Register extends InstanceFactory {
 		String a;
 		String b = null;
 		if (painter.getShowState()) {
-			int val = state == null ? 0 : state.value;
+			long val = state == null ? 0 : state.value;
 			String str = StringUtil.toHexString(width, val);
 			if (str.length() <= 4) {
 				a = str;
 			} else {
-				int split = str.length() - 4;
+				int split = str.length() > 8 ? str.length() / 2 : str.length() - 4;
 				a = str.substring(0, split);
 				b = str.substring(split);
 			}
@@ -18,7 +18,7 @@ public class RegisterLogger extends InstanceLogger {
 
 	@Override
 	public Value getLogValue(InstanceState state, Object option) {
-		BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+		BitWidth dataWidth = state.getAttributeValue(Register.getWidthAttribute(state));
 		if (dataWidth == null) dataWidth = BitWidth.create(0);
 		RegisterData data = (RegisterData) state.getData();
 		if (data == null) return Value.createKnown(dataWidth, 0);
@@ -13,11 +13,10 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstancePoker;
 import com.cburch.logisim.instance.InstanceState;
-import com.cburch.logisim.instance.StdAttr;
 
 public class RegisterPoker extends InstancePoker {
-	private int initValue;
-	private int curValue;
+	private long initValue;
+	private long curValue;
 
 	@Override
 	public boolean init(InstanceState state, MouseEvent e) {
@@ -34,7 +33,7 @@ public class RegisterPoker extends InstancePoker {
 	@Override
 	public void paint(InstancePainter painter) {
 		Bounds bds = painter.getBounds();
-		BitWidth dataWidth = painter.getAttributeValue(StdAttr.WIDTH);
+		BitWidth dataWidth = painter.getAttributeValue(Register.getWidthAttribute(painter));
 		int width = dataWidth == null ? 8 : dataWidth.getWidth();
 		int len = (width + 3) / 4;
 
@@ -54,9 +53,9 @@ public class RegisterPoker extends InstancePoker {
 		int val = Character.digit(e.getKeyChar(), 16);
 		if (val < 0) return;
 
-		BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+		BitWidth dataWidth = state.getAttributeValue(Register.getWidthAttribute(state));
 		if (dataWidth == null) dataWidth = BitWidth.create(8);
-		curValue = (curValue * 16 + val) & dataWidth.getMask();
+		curValue = (curValue * 16 + val) & dataWidth.getLongMask();
 		RegisterData data = (RegisterData) state.getData();
 		data.value = curValue;
 
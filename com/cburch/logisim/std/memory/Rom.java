@@ -7,8 +7,8 @@ import java.awt.Window;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.io.IOException;
-import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 import java.util.WeakHashMap;
@@ -20,7 +20,6 @@ import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
-import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.hex.HexFrame;
 import com.cburch.logisim.gui.main.Frame;
 import com.cburch.logisim.instance.Instance;
@@ -105,6 +104,8 @@ public class Rom extends Mem {
 		if (addr != myState.getCurrent()) {
 			myState.setCurrent(addr);
 			myState.scrollToShow(addr);
+			MemProfile profile = myState.getProfile();
+			if (profile != null) profile.recordRead(addr);
 		}
 
 		int val = myState.getContents().get(addr);
@@ -143,32 +144,44 @@ public class Rom extends Mem {
 
 		@Override
 		public String toStandardString(MemContents state) {
-			int addr = state.getLogLength();
-			int data = state.getWidth();
 			StringWriter ret = new StringWriter();
-			ret.write("addr/data: " + addr + " " + data + "\n");
 			try {
-				HexFile.save(ret, state);
+				writeStandardString(ret, state);
 			} catch (IOException e) { }
 			return ret.toString();
 		}
 
+		@Override
+		public void writeStandardString(Writer out, MemContents state)
+				throws IOException {
+			// contents never looked at are saved just as they were read
+			String encoded = state.getEncoded();
+			if (encoded != null) {
+				out.write(encoded);
+			} else {
+				MemContentsCodec.writeContents(out, state);
+			}
+		}
+
 		@Override
 		public MemContents parse(String value) {
+			// only the header is read now; the values are decoded when
+			// first needed, so that opening a project with many large
+			// memories stays quick
 			int lineBreak = value.indexOf('\n');
 			String first = lineBreak < 0 ? value : value.substring(0, lineBreak);
-			String rest = lineBreak < 0 ? "" : value.substring(lineBreak + 1);
 			StringTokenizer toks = new StringTokenizer(first);
 			try {
 				String header = toks.nextToken();
 				if (!header.equals("addr/data:")) return null;
 				int addr = Integer.parseInt(toks.nextToken());
 				int data = Integer.parseInt(toks.nextToken());
-				MemContents ret = MemContents.create(addr, data);
-				HexFile.open(ret, new StringReader(rest));
-				return ret;
-			} catch (IOException e) {
-				return null;
+				String format = toks.hasMoreTokens() ? toks.nextToken() : null;
+				if (format != null && !format.equals(MemContentsCodec.FORMAT)) {
+					return null;
+				}
+				int start = lineBreak < 0 ? value.length() : lineBreak + 1;
+				return MemContents.createEncoded(addr, data, value, start, format);
 			} catch (NumberFormatException e) {
 				return null;
 			} catch (NoSuchElementException e) {
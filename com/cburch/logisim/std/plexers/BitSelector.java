@@ -6,6 +6,8 @@ package com.cburch.logisim.std.plexers;
 import java.awt.Color;
 import java.awt.Graphics;
 
+import com.cburch.logisim.circuit.BitmaskComputer;
+import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Attributes;
@@ -132,6 +134,36 @@ public class BitSelector extends InstanceFactory {
 		state.setPort(0, group, Plexers.DELAY);
 	}
 
+	@Override
+	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == BitmaskComputer.class) {
+			return new BitmaskComputer() {
+				public int[] getOutputEnds() {
+					return new int[] { 0 };
+				}
+
+				public int getDelay() {
+					return Plexers.DELAY;
+				}
+
+				public boolean computeBitmasks(CircuitState state,
+						long[] values, boolean[] connected) {
+					if (!connected[1] || !connected[2]) return false;
+					BitWidth data = instance.getAttributeValue(StdAttr.WIDTH);
+					BitWidth groupBits = instance.getAttributeValue(GROUP_ATTR);
+					long shift = values[2] * groupBits.getWidth();
+					if (shift >= data.getWidth()) {
+						values[0] = 0;
+					} else {
+						values[0] = values[1] >>> shift;
+					}
+					return true;
+				}
+			};
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+
 	@Override
 	public void paintGhost(InstancePainter painter) {
 		Plexers.drawTrapezoid(painter.getGraphics(), painter.getBounds(),
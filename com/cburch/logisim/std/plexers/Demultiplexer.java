@@ -7,6 +7,8 @@ import java.awt.Color;
 import java.awt.Graphics;
 
 import com.cburch.logisim.LogisimVersion;
+import com.cburch.logisim.circuit.BitmaskComputer;
+import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
@@ -208,6 +210,48 @@ public class Demultiplexer extends InstanceFactory {
 			state.setPort(i, i == outIndex ? out : others, Plexers.DELAY);
 		}
 	}
+
+	@Override
+	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == BitmaskComputer.class) {
+			return new BitmaskComputer() {
+				public int[] getOutputEnds() {
+					BitWidth select = instance.getAttributeValue(Plexers.ATTR_SELECT);
+					int[] ret = new int[1 << select.getWidth()];
+					for (int i = 0; i < ret.length; i++) ret[i] = i;
+					return ret;
+				}
+
+				public int getDelay() {
+					return Plexers.DELAY;
+				}
+
+				public boolean computeBitmasks(CircuitState state,
+						long[] values, boolean[] connected) {
+					BitWidth select = instance.getAttributeValue(Plexers.ATTR_SELECT);
+					boolean enable = instance.getAttributeValue(Plexers.ATTR_ENABLE).booleanValue();
+					int outputs = 1 << select.getWidth();
+					if (enable && connected[outputs + 1] && values[outputs + 1] == 0) {
+						Object opt = instance.getAttributeValue(Plexers.ATTR_DISABLED);
+						if (opt != Plexers.DISABLED_ZERO) return false;
+						for (int i = 0; i < outputs; i++) values[i] = 0;
+						return true;
+					}
+					if (instance.getAttributeValue(Plexers.ATTR_TRISTATE).booleanValue()
+							|| !connected[outputs] || !connected[outputs + (enable ? 2 : 1)]) {
+						return false;
+					}
+					int sel = (int) values[outputs];
+					long out = values[outputs + (enable ? 2 : 1)];
+					for (int i = 0; i < outputs; i++) {
+						values[i] = i == sel ? out : 0;
+					}
+					return true;
+				}
+			};
+		}
+		return super.getInstanceFeature(instance, key);
+	}
 	
 	@Override
 	public void paintGhost(InstancePainter painter) {
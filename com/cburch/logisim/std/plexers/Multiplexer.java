@@ -7,6 +7,8 @@ import java.awt.Color;
 import java.awt.Graphics;
 
 import com.cburch.logisim.LogisimVersion;
+import com.cburch.logisim.circuit.BitmaskComputer;
+import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
@@ -192,6 +194,44 @@ public class Multiplexer extends InstanceFactory {
 		}
 		state.setPort(inputs + (enable ? 2 : 1), out, Plexers.DELAY);
 	}
+
+	@Override
+	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == BitmaskComputer.class) {
+			return new BitmaskComputer() {
+				public int[] getOutputEnds() {
+					BitWidth select = instance.getAttributeValue(Plexers.ATTR_SELECT);
+					boolean enable = instance.getAttributeValue(Plexers.ATTR_ENABLE).booleanValue();
+					int inputs = 1 << select.getWidth();
+					return new int[] { inputs + (enable ? 2 : 1) };
+				}
+
+				public int getDelay() {
+					return Plexers.DELAY;
+				}
+
+				public boolean computeBitmasks(CircuitState state,
+						long[] values, boolean[] connected) {
+					BitWidth select = instance.getAttributeValue(Plexers.ATTR_SELECT);
+					boolean enable = instance.getAttributeValue(Plexers.ATTR_ENABLE).booleanValue();
+					int inputs = 1 << select.getWidth();
+					int out = inputs + (enable ? 2 : 1);
+					if (enable && connected[inputs + 1] && values[inputs + 1] == 0) {
+						Object opt = instance.getAttributeValue(Plexers.ATTR_DISABLED);
+						if (opt != Plexers.DISABLED_ZERO) return false;
+						values[out] = 0;
+						return true;
+					}
+					if (!connected[inputs]) return false;
+					int sel = (int) values[inputs];
+					if (!connected[sel]) return false;
+					values[out] = values[sel];
+					return true;
+				}
+			};
+		}
+		return super.getInstanceFeature(instance, key);
+	}
 	
 	@Override
 	public void paintGhost(InstancePainter painter) {
@@ -34,6 +34,9 @@ import com.cburch.logisim.util.GraphicsUtil;
 public class Constant extends InstanceFactory {
 	public static final Attribute<Integer> ATTR_VALUE
 		= Attributes.forHexInteger("value", Strings.getter("constantValueAttr"));
+	// the value is an int, so a constant is at most 32 bits wide
+	public static final Attribute<BitWidth> ATTR_WIDTH
+		= Attributes.forBitWidth("width", Strings.getter("stdDataWidthAttr"), 1, 32);
 
 	public static InstanceFactory FACTORY = new Constant();
 
@@ -41,7 +44,7 @@ public class Constant extends InstanceFactory {
 	
 	private static final List<Attribute<?>> ATTRIBUTES
 		= Arrays.asList(new Attribute<?>[] {
-				StdAttr.FACING, StdAttr.WIDTH, ATTR_VALUE
+				StdAttr.FACING, ATTR_WIDTH, ATTR_VALUE
 		});
 	
 	private static class ConstantAttributes extends AbstractAttributeSet {
@@ -66,7 +69,7 @@ public class Constant extends InstanceFactory {
 		@SuppressWarnings("unchecked")
 		public <V> V getValue(Attribute<V> attr) {
 			if (attr == StdAttr.FACING) return (V) facing;
-			if (attr == StdAttr.WIDTH) return (V) width;
+			if (attr == ATTR_WIDTH) return (V) width;
 			if (attr == ATTR_VALUE) return (V) Integer.valueOf(value.toIntValue());
 			return null;
 		}
@@ -75,7 +78,7 @@ public class Constant extends InstanceFactory {
 		public <V> void setValue(Attribute<V> attr, V value) {
 			if (attr == StdAttr.FACING) {
 				facing = (Direction) value;
-			} else if (attr == StdAttr.WIDTH) {
+			} else if (attr == ATTR_WIDTH) {
 				width = (BitWidth) value;
 				this.value = this.value.extendWidth(width.getWidth(),
 						this.value.get(this.value.getWidth() - 1));
@@ -110,7 +113,7 @@ public class Constant extends InstanceFactory {
 		setFacingAttribute(StdAttr.FACING);
 		setKeyConfigurator(JoinedConfigurator.create(
 				new ConstantConfigurator(),
-				new BitWidthConfigurator(StdAttr.WIDTH)));
+				new BitWidthConfigurator(ATTR_WIDTH, 1, 32)));
 	}
 
 	@Override
@@ -125,13 +128,13 @@ public class Constant extends InstanceFactory {
 	}
 	
 	private void updatePorts(Instance instance) {
-		Port[] ps = { new Port(0, 0, Port.OUTPUT, StdAttr.WIDTH) };
+		Port[] ps = { new Port(0, 0, Port.OUTPUT, ATTR_WIDTH) };
 		instance.setPorts(ps);
 	}
 
 	@Override
 	protected void instanceAttributeChanged(Instance instance, Attribute<?> attr) {
-		if (attr == StdAttr.WIDTH) {
+		if (attr == ATTR_WIDTH) {
 			instance.recomputeBounds();
 			updatePorts(instance);
 		} else if (attr == StdAttr.FACING) {
@@ -149,7 +152,7 @@ public class Constant extends InstanceFactory {
 
 	@Override
 	public void propagate(InstanceState state) {
-		BitWidth width = state.getAttributeValue(StdAttr.WIDTH);
+		BitWidth width = state.getAttributeValue(ATTR_WIDTH);
 		int value = state.getAttributeValue(ATTR_VALUE).intValue();
 		state.setPort(0, Value.createKnown(width, value), 1);
 	}
@@ -157,7 +160,7 @@ public class Constant extends InstanceFactory {
 	@Override
 	public Bounds getOffsetBounds(AttributeSet attrs) {
 		Direction facing = attrs.getValue(StdAttr.FACING);
-		BitWidth width = attrs.getValue(StdAttr.WIDTH);
+		BitWidth width = attrs.getValue(ATTR_WIDTH);
 		int chars = (width.getWidth() + 3) / 4;
 
 		Bounds ret = null;
@@ -217,7 +220,7 @@ public class Constant extends InstanceFactory {
 	//
 	@Override
 	public void paintIcon(InstancePainter painter) {
-		int w = painter.getAttributeValue(StdAttr.WIDTH).getWidth();
+		int w = painter.getAttributeValue(ATTR_WIDTH).getWidth();
 		int pinx = 16; int piny = 9;
 		Direction dir = painter.getAttributeValue(StdAttr.FACING);
 		if (dir == Direction.EAST) { } // keep defaults
@@ -254,7 +257,7 @@ public class Constant extends InstanceFactory {
 	@Override
 	public void paintInstance(InstancePainter painter) {
 		Bounds bds = painter.getOffsetBounds();
-		BitWidth width = painter.getAttributeValue(StdAttr.WIDTH);
+		BitWidth width = painter.getAttributeValue(ATTR_WIDTH);
 		int intValue = painter.getAttributeValue(ATTR_VALUE).intValue();
 		Value v = Value.createKnown(width, intValue);
 		Location loc = painter.getLocation();
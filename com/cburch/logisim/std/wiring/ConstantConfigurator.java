@@ -5,7 +5,6 @@ package com.cburch.logisim.std.wiring;
 
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
-import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.tools.key.IntegerConfigurator;
 
 class ConstantConfigurator extends IntegerConfigurator {
@@ -15,7 +14,7 @@ class ConstantConfigurator extends IntegerConfigurator {
 
 	@Override
 	public int getMaximumValue(AttributeSet attrs) {
-		BitWidth width = attrs.getValue(StdAttr.WIDTH);
+		BitWidth width = attrs.getValue(Constant.ATTR_WIDTH);
 		int ret = width.getMask();
 		if (ret >= 0) {
 			return ret;
@@ -26,7 +25,7 @@ class ConstantConfigurator extends IntegerConfigurator {
 
 	@Override
 	public int getMinimumValue(AttributeSet attrs) {
-		BitWidth width = attrs.getValue(StdAttr.WIDTH);
+		BitWidth width = attrs.getValue(Constant.ATTR_WIDTH);
 		if (width.getWidth() < 32) {
 			return 0;
 		} else {
@@ -225,6 +225,7 @@ public class Probe extends InstanceFactory {
 			RadixOption radix) {
 		Bounds ret = null;
 		int len = radix == null || radix == RadixOption.RADIX_2 ? width.getWidth() : radix.getMaxLength(width);
+		int rows = (len + 7) / 8; // for the lengths beyond 32, eight to a row
 		if (dir == Direction.EAST) {
 			switch (len) {
 			case 0:
@@ -245,6 +246,8 @@ public class Probe extends InstanceFactory {
 			case 25: case 26: case 27: case 28:
 			case 29: case 30: case 31: case 32:
 				ret = Bounds.create(-80, -40, 80, 80); break;
+			default:
+				ret = Bounds.create(-80, -10 * rows, 80, 20 * rows); break;
 			}
 		} else if (dir == Direction.WEST) {
 			switch (len) {
@@ -266,6 +269,8 @@ public class Probe extends InstanceFactory {
 			case 25: case 26: case 27: case 28:
 			case 29: case 30: case 31: case 32:
 				ret = Bounds.create(0, -40, 80, 80); break;
+			default:
+				ret = Bounds.create(0, -10 * rows, 80, 20 * rows); break;
 			}
 		} else if (dir == Direction.SOUTH) {
 			switch (len) {
@@ -287,6 +292,8 @@ public class Probe extends InstanceFactory {
 			case 25: case 26: case 27: case 28:
 			case 29: case 30: case 31: case 32:
 				ret = Bounds.create(-40, -80, 80, 80); break;
+			default:
+				ret = Bounds.create(-40, -20 * rows, 80, 20 * rows); break;
 			}
 		} else if (dir == Direction.NORTH) {
 			switch (len) {
@@ -308,6 +315,8 @@ public class Probe extends InstanceFactory {
 			case 25: case 26: case 27: case 28:
 			case 29: case 30: case 31: case 32:
 				ret = Bounds.create(-40, 0, 80, 80); break;
+			default:
+				ret = Bounds.create(-40, 0, 80, 20 * rows); break;
 			}
 		}
 		if (ret == null) {
@@ -227,6 +227,21 @@ public class SmallSet<E> extends AbstractSet<E> {
 		}
 	}
 
+	@Override
+	public boolean remove(Object value) {
+		if (size <= HASH_POINT) {
+			return super.remove(value);
+		} else {
+			HashSet<?> vals = (HashSet<?>) values;
+			if (vals.remove(value)) {
+				++version;
+				return true;
+			} else {
+				return false;
+			}
+		}
+	}
+
 	@Override
 	public Iterator<E> iterator() {
 		if (size <= HASH_POINT) {
@@ -88,4 +88,13 @@ public class StringUtil {
 		if (ret.length() > len) ret = ret.substring(ret.length() - len);
 		return ret;
 	}
+
+	public static String toHexString(int bits, long value) {
+		if (bits <= 32) return toHexString(bits, (int) value);
+		if (bits < 64) value &= (1L << bits) - 1;
+		String ret = Long.toHexString(value);
+		int len = (bits + 3) / 4;
+		while (ret.length() < len) ret = "0" + ret;
+		return ret;
+	}
 }